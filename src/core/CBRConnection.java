@@ -10,8 +10,16 @@ import routing.MessageRouter;
  * A constant bit-rate connection between two DTN nodes.
  */
 public class CBRConnection extends Connection {
-	private final int speed;
+	private static final long serialVersionUID = 1L;
+
+	private int speed;
+	/** speed of the ongoing transfer (Bps); less than the connection 
+	 * speed if the sender shares its bandwidth with other transfers */
+	private double transferSpeed;
 	private double transferDoneTime;
+	/** has the finish event of the ongoing transfer been processed (used
+	 * only if the finish times are queued) */
+	private boolean finishProcessed;
 
 	/**
 	 * Creates a new connection between nodes and sets the connection
@@ -27,10 +35,24 @@ public class CBRConnection extends Connection {
 			DTNHost toNode,	NetworkInterface toInterface, int connectionSpeed) {
 		super(fromNode, fromInterface, toNode, toInterface);
 		this.speed = connectionSpeed;
+		this.transferSpeed = connectionSpeed;
 		this.transferDoneTime = 0;
 
 	}
 
+	/**
+	 * Reinitializes a released connection for a new pair of nodes
+	 * @see #CBRConnection(DTNHost, NetworkInterface, DTNHost, 
+	 * NetworkInterface, int)
+	 */
+	void reuse(DTNHost fromNode, NetworkInterface fromInterface, 
+			DTNHost toNode,	NetworkInterface toInterface, int connectionSpeed) {
+		init(fromNode, fromInterface, toNode, toInterface);
+		this.speed = connectionSpeed;
+		this.transferSpeed = connectionSpeed;
+		this.transferDoneTime = 0;
+	}
+
 	/**
 	 * Sets a message that this connection is currently transferring. If message
 	 * passing is controlled by external events, this method is not needed
@@ -54,8 +76,15 @@ public class CBRConnection extends Connection {
 
 		if (retVal == MessageRouter.RCV_OK) {
 			this.msgOnFly = newMessage;
+			this.finishProcessed = false;
+			this.transferSpeed = this.speed;
 			this.transferDoneTime = SimClock.getTime() + 
 			(1.0*m.getSize()) / this.speed;
+			if (this.fromInterface.transferCompletions != null) {
+				this.fromInterface.transferCompletions.add(this,
+						this.transferDoneTime);
+			}
+			notifyTransferStarted();
 		}
 
 		return retVal;
@@ -80,20 +109,72 @@ public class CBRConnection extends Connection {
 	}
 	
 	/**
-	 * Returns true if the current message transfer is done.
+	 * Returns true if the current message transfer is done. If the finish
+	 * times of the transfers are queued (see {@link TransferCompletions}),
+	 * a transfer is done when its finish event has been processed and the
+	 * bytes left are not checked.
 	 * @return True if the transfer is done, false if not
 	 */
 	public boolean isMessageTransferred() {
+		if (this.fromInterface.transferCompletions != null) {
+			return this.msgOnFly == null || this.finishProcessed;
+		}
 		return getRemainingByteCount() == 0;
 	}
 
+	/**
+	 * Marks the ongoing transfer done. Called when its finish event is
+	 * processed.
+	 */
+	void finishTransfer() {
+		this.finishProcessed = true;
+	}
+
 	/**
 	 * returns the current speed of the connection
 	 */
 	public double getSpeed() {
+		return this.transferSpeed;
+	}
+
+	/**
+	 * Returns the speed of the connection when it was created, i.e., the
+	 * highest speed of its transfers
+	 * @return the connection speed (Bps)
+	 */
+	public int getConnectionSpeed() {
 		return this.speed;
 	}
 
+	/**
+	 * Changes the speed of the ongoing transfer, e.g., when the sender 
+	 * shares its bandwidth between several transfers. The bytes left are
+	 * sent with the new speed from now on, so the transfer's done time 
+	 * moves. The speed is reset to the connection speed when the next 
+	 * transfer starts.
+	 * @param speed The new speed (Bps), at most the connection speed
+	 */
+	public void setTransferSpeed(double speed) {
+		assert speed > 0 && speed <= this.speed : "Invalid speed " + speed;
+		if (speed == this.transferSpeed) {
+			return;
+		}
+		if (this.msgOnFly != null) {
+			double now = SimClock.getTime();
+			double bytesLeft = (this.transferDoneTime - now) * 
+				this.transferSpeed;
+			if (bytesLeft > 0) {
+				this.transferDoneTime = now + bytesLeft / speed;
+				/* the earlier finish event is skipped as outdated */
+				if (this.fromInterface.transferCompletions != null) {
+					this.fromInterface.transferCompletions.add(this,
+							this.transferDoneTime);
+				}
+			}
+		}
+		this.transferSpeed = speed;
+	}
+
 	/**
 	 * Returns the amount of bytes to be transferred before ongoing transfer
 	 * is ready or 0 if there's no ongoing transfer or it has finished
@@ -101,18 +182,47 @@ public class CBRConnection extends Connection {
 	 * @return the amount of bytes to be transferred
 	 */
 	public int getRemainingByteCount() {
-		int remaining;
-
 		if (msgOnFly == null) {
 			return 0;
 		}
 
-		remaining = (int)((this.transferDoneTime - SimClock.getTime()) 
-				* this.speed);
+		return getRemainingByteCount(SimClock.getTime());
+	}
+
+	/**
+	 * Returns the amount of bytes of the ongoing transfer that are left at
+	 * the given time
+	 * @param time The time
+	 * @return the amount of bytes left (0 if the transfer is done by then)
+	 */
+	private int getRemainingByteCount(double time) {
+		int remaining = (int)((this.transferDoneTime - time) 
+				* this.transferSpeed);
 
 		return (remaining > 0 ? remaining : 0);
 	}
 
+	/**
+	 * Returns the earliest time when {@link #isMessageTransferred()} is 
+	 * true for the ongoing transfer, i.e., when the bytes left round down
+	 * to zero. This is a bit before {@link #getTransferDoneTime()}, or
+	 * exactly that time if the finish times are queued.
+	 * @return The time when the ongoing transfer is done
+	 */
+	public double getTransferReadyTime() {
+		if (this.fromInterface.transferCompletions != null) {
+			return this.transferDoneTime;
+		}
+		double time = this.transferDoneTime - 1 / this.transferSpeed;
+		while (getRemainingByteCount(time) > 0) {
+			time = Math.nextUp(time);
+		}
+		while (getRemainingByteCount(Math.nextDown(time)) == 0) {
+			time = Math.nextDown(time);
+		}
+		return time;
+	}
+
 	/**
 	 * Returns a String presentation of the connection.
 	 */
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Snapshot of the whole state of a simulation run. A checkpoint contains
+ * the {@link SimContext} of the run (simulation time, ID counters, the
+ * scenario with its world, hosts, routers, event queues and random number
+ * generators, and the state of the other modules), the settings and the
+ * state of the user interface (e.g., the reports). Checkpoints are written
+ * using Java serialization, so all the objects reachable from the
+ * scenario must be serializable; resources that can't be serialized (such
+ * as open files) must be re-opened when the object is read back.
+ * <P>A run can be continued from a checkpoint with the
+ * {@link DTNSim#RESUME_FLAG} option.</P>
+ */
+public class Checkpoint implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	/** Checkpoint settings namespace ({@value}) */
+	public static final String CHECKPOINT_NS = "Checkpoint";
+	/** Checkpointing interval -setting id ({@value}). How often (in
+	 * simulated seconds) the state of the simulation is stored to the
+	 * checkpoint file. Zero disables checkpointing (the default). */
+	public static final String INTERVAL_S = "interval";
+	/** Checkpoint directory -setting id ({@value}). Where the checkpoint
+	 * files are stored. The file name is the name of the scenario and the
+	 * run index (so the concurrent runs of a batch don't overwrite each 
+	 * other's checkpoints) with suffix {@value #CHECKPOINT_EXT}. Default 
+	 * is {@value #DEF_DIR}. */
+	public static final String DIR_S = "dir";
+
+	/** default value for the checkpoint directory */
+	public static final String DEF_DIR = "checkpoints/";
+	/** file name extension of the checkpoint files ({@value}) */
+	public static final String CHECKPOINT_EXT = ".ckpt";
+	/** stack size of the thread that (de)serializes the state. Serializing 
+	 * recurses through the object graph: the hosts are reached through 
+	 * each other (connections, messages' paths, routers' tables) and map 
+	 * nodes through their neighbors, so the depth grows with the number of
+	 * hosts and map nodes and the default stack is too small for large
+	 * scenarios. The stack is only reserved, not committed, up front. */
+	private static final long STACK_SIZE = 1L << 30;
+
+	/** the run's context */
+	private final SimContext context;
+	/** state of the user interface */
+	private final Serializable uiState;
+
+	/**
+	 * Creates a checkpoint of the current run
+	 * @param uiState The state of the user interface to include
+	 */
+	private Checkpoint(Serializable uiState) {
+		this.context = SimContext.current();
+		this.uiState = uiState;
+	}
+
+	/**
+	 * Returns the checkpoint file of the current run based on the settings
+	 * @return the checkpoint file of the current run
+	 */
+	public static File getFile() {
+		Settings s = new Settings(CHECKPOINT_NS);
+		String dir = DEF_DIR;
+		if (s.contains(DIR_S)) {
+			dir = s.valueFillString(s.getSetting(DIR_S));
+			if (!dir.endsWith("/")) {
+				dir += "/";
+			}
+		}
+
+		return new File(dir + SimScenario.getInstance().getName() + "_" +
+				SimContext.current().getRunIndex() + CHECKPOINT_EXT);
+	}
+
+	/**
+	 * Stores the state of the current run to a file. The file is replaced
+	 * only after the whole state has been written, so a crash while
+	 * writing leaves the old checkpoint intact.
+	 * @param file The file where to write the checkpoint
+	 * @param uiState The state of the user interface to include
+	 * @throws SimError if writing the checkpoint failed
+	 */
+	public static void save(final File file, 
+			final Serializable uiState) {
+		runWithLargeStack(new Runnable() {
+			public void run() {
+				write(file, uiState);
+			}
+		});
+	}
+
+	/**
+	 * Writes the state of the current run to a file
+	 * @param file The file where to write the checkpoint
+	 * @param uiState The state of the user interface to include
+	 */
+	private static void write(File file, Serializable uiState) {
+		File dir = file.getAbsoluteFile().getParentFile();
+		if (!dir.exists() && !dir.mkdirs()) {
+			throw new SimError("Couldn't create checkpoint directory '" +
+					dir + "'");
+		}
+
+		File tmpFile = new File(file.getPath() + ".tmp");
+		try {
+			ObjectOutputStream out = new ObjectOutputStream(
+					new GZIPOutputStream(new BufferedOutputStream(
+							new FileOutputStream(tmpFile))));
+			try {
+				/* settings go first so they are in use when the rest of
+				 * the state is read */
+				Properties settings = new Properties();
+				for (String key : Settings.props.stringPropertyNames()) {
+					settings.setProperty(key,
+							Settings.props.getProperty(key));
+				}
+				out.writeObject(settings);
+				out.writeObject(new Checkpoint(uiState));
+			}
+			finally {
+				out.close();
+			}
+			Files.move(tmpFile.toPath(), file.toPath(),
+					StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			tmpFile.delete();
+			throw new SimError("Couldn't write checkpoint '" + file + "': " +
+					e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Reads a checkpoint from a file and makes its run the run of the
+	 * current thread: the run's context is entered and its settings are
+	 * taken in use.
+	 * @param file The file to read the checkpoint from
+	 * @return The state of the user interface stored in the checkpoint
+	 * @throws SimError if reading the checkpoint failed
+	 */
+	public static Serializable restore(final File file) {
+		final Checkpoint[] checkpoint = new Checkpoint[1];
+		runWithLargeStack(new Runnable() {
+			public void run() {
+				checkpoint[0] = read(file);
+			}
+		});
+
+		SimContext.enter(checkpoint[0].context);
+		return checkpoint[0].uiState;
+	}
+
+	/**
+	 * Reads a checkpoint and the settings stored with it from a file
+	 * @param file The file to read the checkpoint from
+	 * @return The checkpoint
+	 */
+	private static Checkpoint read(File file) {
+		Checkpoint checkpoint;
+
+		try {
+			ObjectInputStream in = new ObjectInputStream(
+					new GZIPInputStream(new BufferedInputStream(
+							new FileInputStream(file))));
+			try {
+				Settings.props = (Properties)in.readObject();
+				checkpoint = (Checkpoint)in.readObject();
+			}
+			finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			throw new SimError("Couldn't read checkpoint '" + file + "': " +
+					e.getMessage(), e);
+		} catch (ClassNotFoundException e) {
+			throw new SimError("Invalid checkpoint '" + file + "': " +
+					e.getMessage(), e);
+		}
+
+		return checkpoint;
+	}
+
+	/**
+	 * Runs a task in a thread with a large stack and waits until it is 
+	 * done. The thread inherits the context of the current thread.
+	 * @param task The task to run
+	 * @throws SimError if the task threw an error
+	 */
+	static void runWithLargeStack(Runnable task) {
+		final Throwable[] error = new Throwable[1];
+		final Runnable t = task;
+		Thread thread = new Thread(null, new Runnable() {
+			public void run() {
+				try {
+					t.run();
+				} catch (Throwable e) {
+					error[0] = e;
+				}
+			}
+		}, "checkpoint", STACK_SIZE);
+
+		thread.start();
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SimError("Interrupted while checkpointing");
+		}
+
+		if (error[0] instanceof RuntimeException) {
+			throw (RuntimeException)error[0];
+		}
+		else if (error[0] instanceof Error) {
+			throw (Error)error[0];
+		}
+	}
+}
@@ -4,12 +4,16 @@
  */
 package core;
 
+import java.io.Serializable;
+
 import routing.MessageRouter;
 
 /**
  * A connection between two DTN nodes.
  */
-public abstract class Connection {
+public abstract class Connection implements Serializable {
+	private static final long serialVersionUID = 1L;
+
 	protected DTNHost toNode;
 	protected NetworkInterface toInterface;
 	protected DTNHost fromNode;
@@ -20,6 +24,9 @@ public abstract class Connection {
 	protected Message msgOnFly;
 	/** how many bytes this connection has transferred */
 	protected int bytesTransferred;
+	/** has this connection been released to a checking 
+	 * {@link ConnectionPool} (and should not be used anymore) */
+	private boolean released;
 
 	/**
 	 * Creates a new connection between nodes and sets the connection
@@ -31,12 +38,47 @@ public abstract class Connection {
 	 */
 	public Connection(DTNHost fromNode, NetworkInterface fromInterface, 
 			DTNHost toNode, NetworkInterface toInterface) {
+		init(fromNode, fromInterface, toNode, toInterface);
+	}
+
+	/**
+	 * Sets the end points of the connection and resets its state to a new,
+	 * "up" connection that has not transferred anything. Used by the 
+	 * constructor and when a pooled connection is reused.
+	 * @param fromNode The node that initiated the connection
+	 * @param fromInterface The interface that initiated the connection
+	 * @param toNode The node in the other side of the connection
+	 * @param toInterface The interface in the other side of the connection
+	 */
+	protected void init(DTNHost fromNode, NetworkInterface fromInterface, 
+			DTNHost toNode, NetworkInterface toInterface) {
 		this.fromNode = fromNode;
 		this.fromInterface = fromInterface;
 		this.toNode = toNode;
 		this.toInterface = toInterface;
 		this.isUp = true;
 		this.bytesTransferred = 0;
+		this.msgOnFly = null;
+		this.msgFromNode = null;
+	}
+
+	/**
+	 * Marks this connection released to a checking {@link ConnectionPool}.
+	 * Any later use of the connection throws a SimError.
+	 */
+	void release() {
+		this.released = true;
+	}
+
+	/**
+	 * Makes sure this connection has not been released
+	 * @throws SimError if the connection has been released
+	 */
+	protected void checkNotReleased() {
+		if (this.released) {
+			throw new SimError("Connection " + fromNode + "<->" + toNode +
+					" used after it was released to the connection pool");
+		}
 	}
 
 
@@ -45,6 +87,7 @@ public abstract class Connection {
 	 * @return state of the connection
 	 */
 	public boolean isUp() {
+		checkNotReleased();
 		return this.isUp;
 	}
 
@@ -121,8 +164,22 @@ public abstract class Connection {
 	 * Calls to {@link #getMessage()} will return null after this.
 	 */
 	protected void clearMsgOnFly() {
+		boolean wasTransferring = this.msgOnFly != null;
 		this.msgOnFly = null;
 		this.msgFromNode = null;		
+		if (wasTransferring) {
+			this.fromInterface.transferEnded(this);
+			this.toInterface.transferEnded(this);
+		}
+	}
+
+	/**
+	 * Tells the interfaces at both ends that this connection started
+	 * transferring a message. Must be called after the message on fly is set.
+	 */
+	protected void notifyTransferStarted() {
+		this.fromInterface.transferStarted(this);
+		this.toInterface.transferStarted(this);
 	}
 
 	/**
@@ -154,6 +211,7 @@ public abstract class Connection {
 	 * @return true if the connection is ready to transfer a message
 	 */
 	public boolean isReadyForTransfer() {
+		checkNotReleased();
 		return this.isUp && this.msgOnFly == null; 
 	}
 
@@ -162,6 +220,7 @@ public abstract class Connection {
 	 * @return The message or null if no message is being transferred
 	 */	
 	public Message getMessage() {
+		checkNotReleased();
 		return this.msgOnFly;
 	}
 
@@ -189,12 +248,23 @@ public abstract class Connection {
 		}
 	}
 
+	/**
+	 * Returns the interface of a node at its end of the connection
+	 * @param node The node in one end of the connection
+	 * @return The interface of the node
+	 */
+	public NetworkInterface getInterface(DTNHost node) {
+		checkNotReleased();
+		return node == this.fromNode ? this.fromInterface : this.toInterface;
+	}
+
 	/**
 	 * Returns the node in the other end of the connection
 	 * @param node The node in this end of the connection
 	 * @return The requested node
 	 */
 	public DTNHost getOtherNode(DTNHost node) {
+		checkNotReleased();
 		if (node == this.fromNode) {
 			return this.toNode;
 		}
@@ -209,6 +279,7 @@ public abstract class Connection {
 	 * @return The requested interface
 	 */
 	public NetworkInterface getOtherInterface(NetworkInterface i) {
+		checkNotReleased();
 		if (i == this.fromInterface) {
 			return this.toInterface;
 		}
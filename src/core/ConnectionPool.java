@@ -0,0 +1,121 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+
+/**
+ * Recycles the {@link CBRConnection}s and {@link VBRConnection}s of the
+ * interfaces of one world. A torn down connection is not reused right
+ * away since the routers may still refer to it (e.g., in their lists of
+ * sending connections) until they are updated. The connections retired
+ * during a world update are reused only after the next update, when every
+ * router has been updated at least once with the connection down.
+ * <P>
+ * In the checking mode the released connections are never reused. Instead
+ * they are marked released and any later use of them throws a
+ * {@link SimError}, which reveals the modules that keep references to
+ * connections after they are torn down.
+ * </P>
+ */
+final class ConnectionPool implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	/** are released connections poisoned instead of reused */
+	private final boolean checks;
+	/** connections torn down during the current update */
+	private ArrayList<Connection> retired;
+	/** connections torn down during the previous update */
+	private ArrayList<Connection> cooling;
+	private final ArrayList<CBRConnection> freeCBR;
+	private final ArrayList<VBRConnection> freeVBR;
+
+	/**
+	 * Creates a new, empty pool
+	 * @param checks If true, released connections are checked for use
+	 * instead of reusing them
+	 */
+	ConnectionPool(boolean checks) {
+		this.checks = checks;
+		this.retired = new ArrayList<Connection>();
+		this.cooling = new ArrayList<Connection>();
+		this.freeCBR = new ArrayList<CBRConnection>();
+		this.freeVBR = new ArrayList<VBRConnection>();
+	}
+
+	/**
+	 * Returns a constant bit-rate connection, reusing a released one if
+	 * possible
+	 * @see CBRConnection#CBRConnection(DTNHost, NetworkInterface, DTNHost,
+	 * NetworkInterface, int)
+	 */
+	CBRConnection cbr(DTNHost fromNode, NetworkInterface fromInterface,
+			DTNHost toNode, NetworkInterface toInterface, int speed) {
+		int n = this.freeCBR.size();
+		if (n == 0) {
+			return new CBRConnection(fromNode, fromInterface, toNode,
+					toInterface, speed);
+		}
+		CBRConnection con = this.freeCBR.remove(n - 1);
+		con.reuse(fromNode, fromInterface, toNode, toInterface, speed);
+		return con;
+	}
+
+	/**
+	 * Returns a variable bit-rate connection, reusing a released one if
+	 * possible
+	 * @see VBRConnection#VBRConnection(DTNHost, NetworkInterface, DTNHost,
+	 * NetworkInterface)
+	 */
+	VBRConnection vbr(DTNHost fromNode, NetworkInterface fromInterface,
+			DTNHost toNode, NetworkInterface toInterface) {
+		int n = this.freeVBR.size();
+		if (n == 0) {
+			return new VBRConnection(fromNode, fromInterface, toNode,
+					toInterface);
+		}
+		VBRConnection con = this.freeVBR.remove(n - 1);
+		con.reuse(fromNode, fromInterface, toNode, toInterface);
+		return con;
+	}
+
+	/**
+	 * Tells the pool that a connection was torn down
+	 * @param con The connection
+	 */
+	void retire(Connection con) {
+		this.retired.add(con);
+	}
+
+	/**
+	 * Releases the connections that were torn down during the previous
+	 * update. Called at the end of every world update.
+	 */
+	void endUpdate() {
+		for (int i=0, n = this.cooling.size(); i < n; i++) {
+			Connection con = this.cooling.get(i);
+			if (this.checks) {
+				if (con.isUp() || con.fromInterface.getConnection(
+						con.toInterface) == con) {
+					throw new SimError("Released connection " + con +
+							" is still in use by the interfaces");
+				}
+				con.release();
+			}
+			else if (con.getClass() == CBRConnection.class) {
+				this.freeCBR.add((CBRConnection)con);
+			}
+			else if (con.getClass() == VBRConnection.class) {
+				this.freeVBR.add((VBRConnection)con);
+			}
+		}
+		this.cooling.clear();
+
+		ArrayList<Connection> tmp = this.cooling;
+		this.cooling = this.retired;
+		this.retired = tmp;
+	}
+}
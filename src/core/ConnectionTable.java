@@ -0,0 +1,234 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * Connections of one network interface. Works as an ordinary list of the
+ * connections (in the order they were created) but also indexes them by
+ * the address of the interface at the other end with an open addressing
+ * hash table, so checking whether the interface is connected to another
+ * interface takes constant time instead of a scan of the list.
+ */
+final class ConnectionTable extends AbstractList<Connection>
+		implements RandomAccess, Serializable {
+	private static final long serialVersionUID = 1L;
+
+	/** initial capacity of the list */
+	private static final int INITIAL_CAPACITY = 4;
+	/** marks an empty slot of the hash table */
+	private static final int EMPTY = -1;
+
+	/** the interface whose connections these are */
+	private final NetworkInterface owner;
+	private Connection[] list;
+	private int size;
+
+	/** addresses of the other interfaces, or EMPTY */
+	private int[] keys;
+	/** connection of each key */
+	private Connection[] values;
+	/** number of keys in the hash table */
+	private int nrofKeys;
+
+	/**
+	 * Creates an empty table
+	 * @param owner The interface whose connections are stored
+	 */
+	ConnectionTable(NetworkInterface owner) {
+		this.owner = owner;
+		this.list = new Connection[INITIAL_CAPACITY];
+		this.keys = new int[2 * INITIAL_CAPACITY];
+		this.values = new Connection[2 * INITIAL_CAPACITY];
+		Arrays.fill(this.keys, EMPTY);
+	}
+
+	@Override
+	public Connection get(int index) {
+		if (index >= this.size) {
+			throw new IndexOutOfBoundsException("Index: " + index +
+					", Size: " + this.size);
+		}
+		return this.list[index];
+	}
+
+	@Override
+	public int size() {
+		return this.size;
+	}
+
+	@Override
+	public void add(int index, Connection con) {
+		if (index < 0 || index > this.size) {
+			throw new IndexOutOfBoundsException("Index: " + index +
+					", Size: " + this.size);
+		}
+		if (this.size == this.list.length) {
+			this.list = Arrays.copyOf(this.list, 2 * this.size);
+		}
+		System.arraycopy(this.list, index, this.list, index + 1,
+				this.size - index);
+		this.list[index] = con;
+		this.size++;
+		this.modCount++;
+		index(con);
+	}
+
+	@Override
+	public Connection set(int index, Connection con) {
+		Connection old = get(index);
+		this.list[index] = con;
+		unindex(old);
+		index(con);
+		return old;
+	}
+
+	@Override
+	public Connection remove(int index) {
+		Connection old = get(index);
+		System.arraycopy(this.list, index + 1, this.list, index,
+				this.size - index - 1);
+		this.list[--this.size] = null;
+		this.modCount++;
+		unindex(old);
+		return old;
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		for (int i=0; i < this.size; i++) {
+			if (this.list[i] == o) {
+				remove(i);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(this.list, 0, this.size, null);
+		Arrays.fill(this.keys, EMPTY);
+		Arrays.fill(this.values, null);
+		this.size = 0;
+		this.nrofKeys = 0;
+		this.modCount++;
+	}
+
+	/**
+	 * Returns the connection to another interface
+	 * @param other The other interface
+	 * @return The connection or null if the interfaces are not connected
+	 */
+	Connection get(NetworkInterface other) {
+		int key = other.getAddress();
+		for (int slot = slotOf(key); ; slot = (slot + 1) & mask()) {
+			if (this.keys[slot] == key) {
+				return this.values[slot];
+			}
+			if (this.keys[slot] == EMPTY) {
+				return null;
+			}
+		}
+	}
+
+	private int mask() {
+		return this.keys.length - 1;
+	}
+
+	private int slotOf(int key) {
+		int h = key * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mask();
+	}
+
+	private int keyOf(Connection con) {
+		return con.getOtherInterface(this.owner).getAddress();
+	}
+
+	/**
+	 * Adds a connection to the hash table unless there already is a
+	 * connection to the same interface
+	 */
+	private void index(Connection con) {
+		if (2 * (this.nrofKeys + 1) > this.keys.length) {
+			rehash(2 * this.keys.length);
+		}
+		int key = keyOf(con);
+		int slot = slotOf(key);
+		while (this.keys[slot] != EMPTY) {
+			if (this.keys[slot] == key) {
+				return;
+			}
+			slot = (slot + 1) & mask();
+		}
+		this.keys[slot] = key;
+		this.values[slot] = con;
+		this.nrofKeys++;
+	}
+
+	/**
+	 * Removes a connection from the hash table. If the list still has
+	 * another connection to the same interface, that one is indexed instead.
+	 */
+	private void unindex(Connection con) {
+		int key = keyOf(con);
+		int slot = slotOf(key);
+		while (this.keys[slot] != key) {
+			if (this.keys[slot] == EMPTY) {
+				return;
+			}
+			slot = (slot + 1) & mask();
+		}
+		if (this.values[slot] != con) {
+			return; // a duplicate that was not indexed
+		}
+
+		/* delete by shifting the following entries of the run back */
+		int free = slot;
+		for (int next = (free + 1) & mask(); this.keys[next] != EMPTY;
+				next = (next + 1) & mask()) {
+			int home = slotOf(this.keys[next]);
+			if (((next - home) & mask()) >= ((next - free) & mask())) {
+				this.keys[free] = this.keys[next];
+				this.values[free] = this.values[next];
+				free = next;
+			}
+		}
+		this.keys[free] = EMPTY;
+		this.values[free] = null;
+		this.nrofKeys--;
+
+		for (int i=0; i < this.size; i++) {
+			if (keyOf(this.list[i]) == key) {
+				index(this.list[i]);
+				return;
+			}
+		}
+	}
+
+	private void rehash(int capacity) {
+		int[] oldKeys = this.keys;
+		Connection[] oldValues = this.values;
+		this.keys = new int[capacity];
+		this.values = new Connection[capacity];
+		Arrays.fill(this.keys, EMPTY);
+		this.nrofKeys = 0;
+		for (int i=0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != EMPTY) {
+				int slot = slotOf(oldKeys[i]);
+				while (this.keys[slot] != EMPTY) {
+					slot = (slot + 1) & mask();
+				}
+				this.keys[slot] = oldKeys[i];
+				this.values[slot] = oldValues[i];
+				this.nrofKeys++;
+			}
+		}
+	}
+}
@@ -4,6 +4,7 @@
  */
 package core;
 
+import java.io.Serializable;
 import java.util.*;
 
 import movement.MovementModel;
@@ -17,9 +18,9 @@ import routing.community.Duration;
 /**
  * A DTN capable host.
  */
-public class DTNHost implements Comparable<DTNHost> {
+public class DTNHost implements Comparable<DTNHost>, Serializable {
+    private static final long serialVersionUID = 1L;
 
-    private static int nextAddress = 0;
     private int address;
 
     private Coord location; 	// where is the host
@@ -30,10 +31,17 @@ public class DTNHost implements Comparable<DTNHost> {
     private Path path;
     private double speed;
     private double nextTimeToMove;
+    /** context of the run of this host (for reading the clock) */
+    private SimContext context;
     private String name;
     private final List<MessageListener> msgListeners;
     private final List<MovementListener> movListeners;
+    /** new destinations not yet told to the movement listeners (null if
+     * the listeners are informed immediately) */
+    private List<Tuple<Coord, Double>> deferredDestinations;
     private final List<NetworkInterface> net;
+    /** read-only live list of the connections of all interfaces */
+    private final List<Connection> connectionsView;
     private final ModuleCommunicationBus comBus;
 
     // tambahan testing
@@ -54,7 +62,6 @@ public class DTNHost implements Comparable<DTNHost> {
         
     static {
         DTNSim.registerForReset(DTNHost.class.getCanonicalName());
-        reset();
     }
 
     /**
@@ -73,6 +80,7 @@ public class DTNHost implements Comparable<DTNHost> {
             String groupId, List<NetworkInterface> interf,
             ModuleCommunicationBus comBus,
             MovementModel mmProto, MessageRouter mRouterProto) {
+        this.context = SimContext.current();
         this.comBus = comBus;
         this.location = new Coord(0, 0);
         this.address = getNextAddress();
@@ -84,6 +92,9 @@ public class DTNHost implements Comparable<DTNHost> {
             ni.setHost(this);
             net.add(ni);
         }
+        this.connectionsView = net.size() == 1 ?
+                Collections.unmodifiableList(net.get(0).getConnections()) :
+                new ConnectionsView();
 
         // TODO - think about the names of the interfaces and the nodes
         //this.name = groupId + ((NetworkInterface)net.get(1)).getAddress();
@@ -93,7 +104,12 @@ public class DTNHost implements Comparable<DTNHost> {
         // create instances by replicating the prototypes
         this.movement = mmProto.replicate();
         this.movement.setComBus(comBus);
-        setRouter(mRouterProto.replicate());
+        WarmupSnapshot.pauseRecording(); // router is not part of snapshots
+        try {
+            setRouter(mRouterProto.replicate());
+        } finally {
+            WarmupSnapshot.resumeRecording();
+        }
 
         this.location = movement.getInitialLocation();
 
@@ -125,15 +141,25 @@ public class DTNHost implements Comparable<DTNHost> {
      *
      * @return The next address.
      */
-    private synchronized static int getNextAddress() {
-        return nextAddress++;
+    private static int getNextAddress() {
+        return SimContext.current().nextHostAddress++;
     }
 
     /**
      * Reset the host and its interfaces
      */
     public static void reset() {
-        nextAddress = 0;
+        SimContext.current().nextHostAddress = 0;
+    }
+
+    /**
+     * Moves the host to another context
+     *
+     * @param context The new context of the host's run
+     * @see World#setContext(SimContext)
+     */
+    void setContext(SimContext context) {
+        this.context = context;
     }
 
     /**
@@ -155,6 +181,17 @@ public class DTNHost implements Comparable<DTNHost> {
         this.router = router;
     }
 
+    /**
+     * Replaces the router of this host with a new instance of a prototype.
+     * Used when the host is taken from a warm-up snapshot.
+     *
+     * @param mRouterProto Prototype of the new message router
+     * @see WarmupSnapshot
+     */
+    void replaceRouter(MessageRouter mRouterProto) {
+        setRouter(mRouterProto.replicate());
+    }
+
     /**
      * Returns the router of this host
      *
@@ -213,6 +250,18 @@ public class DTNHost implements Comparable<DTNHost> {
         return lc;
     }
 
+    /**
+     * Returns a read-only view of the connections this host has with other
+     * hosts. Unlike {@link #getConnections()}, this does not copy anything
+     * and the view reflects the changes in the connections, so it must not
+     * be iterated over while connections are created or torn down.
+     *
+     * @return a live view of the connections of this host
+     */
+    public List<Connection> getConnectionsView() {
+        return this.connectionsView;
+    }
+
     /**
      * Returns the current location of this host.
      *
@@ -232,6 +281,26 @@ public class DTNHost implements Comparable<DTNHost> {
         return this.path;
     }
 
+    /**
+     * Returns the destination of the path segment the host is traveling
+     * (or traveled last)
+     *
+     * @return The destination or null if the host has not moved yet
+     */
+    Coord getDestination() {
+        return this.destination;
+    }
+
+    /**
+     * Returns the speed of the path segment the host is traveling
+     * (or traveled last)
+     *
+     * @return The speed
+     */
+    double getSpeed() {
+        return this.speed;
+    }
+
     /**
      * Sets the Node's location overriding any location set by movement model
      *
@@ -380,6 +449,63 @@ public class DTNHost implements Comparable<DTNHost> {
         this.router.update();
     }
 
+    /**
+     * Returns the simulation time when this host is going to move the next
+     * time. If the host is currently moving along a path, the returned time
+     * is not in the future.
+     *
+     * @return The time of the next movement
+     */
+    public double getNextTimeToMove() {
+        return this.nextTimeToMove;
+    }
+
+    /**
+     * Returns true if this host can be moved concurrently with the other
+     * hosts
+     *
+     * @return true if the movement model of the host supports concurrent
+     * movement
+     * @see MovementModel#canMoveConcurrently()
+     */
+    boolean canMoveConcurrently() {
+        return this.movement.canMoveConcurrently();
+    }
+
+    /**
+     * Sets whether the new destinations of this host are told to the
+     * movement listeners immediately or collected until
+     * {@link #flushMovementEvents()} is called. Collecting the events lets
+     * hosts move concurrently while the listeners still get the events in
+     * the same order as if the hosts were moved one by one.
+     *
+     * @param defer If true, the events are collected
+     */
+    void setDeferMovementEvents(boolean defer) {
+        if (defer && this.movListeners != null) {
+            this.deferredDestinations = new ArrayList<Tuple<Coord, Double>>();
+        } else {
+            flushMovementEvents();
+            this.deferredDestinations = null;
+        }
+    }
+
+    /**
+     * Tells the collected new destinations to the movement listeners in the
+     * order the destinations were set
+     */
+    void flushMovementEvents() {
+        if (this.deferredDestinations == null) {
+            return;
+        }
+        for (Tuple<Coord, Double> t : this.deferredDestinations) {
+            for (MovementListener l : this.movListeners) {
+                l.newDestination(this, t.getKey(), t.getValue());
+            }
+        }
+        this.deferredDestinations.clear();
+    }
+
     /**
      * Moves the node towards the next waypoint or waits if it is not time to
      * move yet
@@ -391,7 +517,7 @@ public class DTNHost implements Comparable<DTNHost> {
         double distance;
         double dx, dy;
 
-        if (!isActive() || SimClock.getTime() < this.nextTimeToMove) {
+        if (!isActive() || this.context.clockTime < this.nextTimeToMove) {
             return;
         }
         if (this.destination == null) {
@@ -442,7 +568,10 @@ public class DTNHost implements Comparable<DTNHost> {
         this.destination = path.getNextWaypoint();
         this.speed = path.getSpeed();
 
-        if (this.movListeners != null) {
+        if (this.deferredDestinations != null) {
+            this.deferredDestinations.add(
+                    new Tuple<Coord, Double>(this.destination, this.speed));
+        } else if (this.movListeners != null) {
             for (MovementListener l : this.movListeners) {
                 l.newDestination(this, this.destination, this.speed);
             }
@@ -584,4 +713,34 @@ public class DTNHost implements Comparable<DTNHost> {
         return cek.toString();
     }
 
+
+    /**
+     * Read-only list of the connections of all the interfaces of a host
+     * with more than one interface
+     */
+    private class ConnectionsView extends AbstractList<Connection>
+            implements RandomAccess, Serializable {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public Connection get(int index) {
+            for (int i = 0, n = net.size(); i < n; i++) {
+                List<Connection> cons = net.get(i).getConnections();
+                if (index < cons.size()) {
+                    return cons.get(index);
+                }
+                index -= cons.size();
+            }
+            throw new IndexOutOfBoundsException("Index: " + index);
+        }
+
+        @Override
+        public int size() {
+            int size = 0;
+            for (int i = 0, n = net.size(); i < n; i++) {
+                size += net.get(i).getConnections().size();
+            }
+            return size;
+        }
+    }
 }
@@ -5,10 +5,17 @@
 package core;
 import gui.DTNSimGUI;
 
+import java.io.File;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import ui.DTNSimFanOutUI;
 import ui.DTNSimTextUI;
 
 /**
@@ -18,8 +25,25 @@ public class DTNSim {
 	/** If this option ({@value}) is given to program, batch mode and
 	 * Text UI are used*/
 	public static final String BATCH_MODE_FLAG = "-b";
+	/** If this option ({@value}) is given to program, a simulation run is
+	 * continued from the checkpoint file given as the next argument using 
+	 * the Text UI. The settings are read from the checkpoint.
+	 * @see Checkpoint */
+	public static final String RESUME_FLAG = "-resume";
 	/** Delimiter for batch mode index range values (colon) */
 	public static final String RANGE_DELIMETER = ":";
+	/** How many batch mode runs are executed concurrently -setting id 
+	 * ({@value}). Every run gets its own {@link SimContext}. Default value is
+	 * 1, i.e., runs are executed one after another. */
+	public static final String NROF_BATCH_THREADS_S = "Batch.nrofThreads";
+	/** Run the batch mode runs as one router fan-out run -setting id 
+	 * ({@value}). Boolean. If true, the runs share one movement and 
+	 * contact computation and only their routers (and reports) are 
+	 * separate; the runs must not differ by their movement or interface
+	 * settings. {@link #NROF_BATCH_THREADS_S} threads update the routers.
+	 * Default is false.
+	 * @see DTNSimFanOutUI */
+	public static final String ROUTER_FAN_OUT_S = "Batch.routerFanOut";
 	
 	/** Name of the static method that all resettable classes must have
 	 * @see #registerForReset(String) */
@@ -36,7 +60,9 @@ public class DTNSim {
 	 * arrays are used for different runs (see 
 	 * {@link Settings#setRunIndex(int)}). Following arguments are the settings 
 	 * files for the simulation run (if any). For GUI mode, the number before 
-	 * settings files (if given) is the run index to use for that run.
+	 * settings files (if given) is the run index to use for that run. If the
+	 * first argument is {@link #RESUME_FLAG}, the run stored in the 
+	 * checkpoint file given as the second argument is continued.
 	 * @param args Command line arguments
 	 */
 	public static void main(String[] args) {
@@ -49,6 +75,16 @@ public class DTNSim {
 		/* set US locale to parse decimals in consistent way */
 		java.util.Locale.setDefault(java.util.Locale.US);
 		
+		if (args.length > 0 && args[0].equals(RESUME_FLAG)) {
+			if (args.length != 2) {
+				System.err.println("Option " + RESUME_FLAG + " must be " + 
+						"followed by the checkpoint file (only)");
+				System.exit(-1);
+			}
+			resume(new File(args[1]));
+			return;
+		}
+		
 		if (args.length > 0) {
 			if (args[0].equals(BATCH_MODE_FLAG)) {
 				batchMode = true;
@@ -78,11 +114,18 @@ public class DTNSim {
 		
 		if (batchMode) {
 			long startTime = System.currentTimeMillis();
-			for (int i=nrofRuns[0]; i<nrofRuns[1]; i++) {
-				print("Run " + (i+1) + "/" + nrofRuns[1]);
-				Settings.setRunIndex(i);
-				resetForNextRun();
-				new DTNSimTextUI().start();
+			int nrofThreads = 1;
+			Settings s = new Settings();
+			if (s.contains(NROF_BATCH_THREADS_S)) {
+				nrofThreads = s.getInt(NROF_BATCH_THREADS_S);
+			}
+			if (s.contains(ROUTER_FAN_OUT_S) && 
+					s.getBoolean(ROUTER_FAN_OUT_S)) {
+				new DTNSimFanOutUI(nrofRuns[0], nrofRuns[1], 
+						nrofThreads).start();
+			}
+			else {
+				runBatch(nrofRuns, nrofThreads);
 			}
 			double duration = (System.currentTimeMillis() - startTime)/1000.0;
 			print("---\nAll done in " + String.format("%.2f", duration) + "s");
@@ -93,6 +136,112 @@ public class DTNSim {
 		}
 	}
 	
+	/**
+	 * Runs batch mode runs with the current settings. The runs produce the
+	 * same reports and settings output regardless of the number of threads.
+	 * @param nrofRuns The first and (last_run_index - 1) of the runs
+	 * @param nrofThreads Maximum number of concurrently executed runs
+	 */
+	public static void runBatch(int[] nrofRuns, int nrofThreads) {
+		if (nrofThreads > 1) {
+			runConcurrently(nrofRuns, nrofThreads);
+			return;
+		}
+		for (int i=nrofRuns[0]; i<nrofRuns[1]; i++) {
+			flushSettingsOutput(runBatchRun(i, nrofRuns[1]));
+		}
+	}
+
+	/**
+	 * Runs one batch mode run in a new simulation context
+	 * @param index Run index of the run
+	 * @param lastIndex Index of the last run (for printing progress)
+	 * @return The context of the run
+	 */
+	private static SimContext runBatchRun(int index, int lastIndex) {
+		print("Run " + (index+1) + "/" + lastIndex);
+		SimContext context = new SimContext(index);
+		SimContext.enter(context);
+		try {
+			Settings.setRunIndex(index);
+			resetForNextRun();
+			new DTNSimTextUI().start();
+		}
+		finally {
+			SimContext.exit();
+		}
+		return context;
+	}
+
+	/**
+	 * Writes the settings a run has read to the settings output
+	 * @param context The context of the run
+	 */
+	private static void flushSettingsOutput(SimContext context) {
+		SimContext.enter(context);
+		try {
+			Settings.flushOutput();
+		}
+		finally {
+			SimContext.exit();
+		}
+	}
+
+	/**
+	 * Continues a simulation run from a checkpoint
+	 * @param checkpointFile The checkpoint file
+	 */
+	private static void resume(File checkpointFile) {
+		long startTime = System.currentTimeMillis();
+		print("Resuming from " + checkpointFile);
+		try {
+			new DTNSimTextUI().resume(checkpointFile);
+			Settings.flushOutput();
+		}
+		finally {
+			SimContext.exit();
+		}
+		double duration = (System.currentTimeMillis() - startTime)/1000.0;
+		print("---\nAll done in " + String.format("%.2f", duration) + "s");
+	}
+
+	/**
+	 * Runs batch mode runs concurrently using a thread pool
+	 * @param nrofRuns The first and (last_run_index - 1) of the runs
+	 * @param nrofThreads Maximum number of concurrently executed runs
+	 */
+	private static void runConcurrently(final int[] nrofRuns, 
+			int nrofThreads) {
+		ExecutorService pool = Executors.newFixedThreadPool(nrofThreads);
+		List<Future<SimContext>> runs = new ArrayList<Future<SimContext>>();
+
+		for (int i=nrofRuns[0]; i<nrofRuns[1]; i++) {
+			final int index = i;
+			runs.add(pool.submit(new Callable<SimContext>() {
+				public SimContext call() {
+					return runBatchRun(index, nrofRuns[1]);
+				}
+			}));
+		}
+		pool.shutdown();
+
+		for (int i=0; i<runs.size(); i++) {
+			try {
+				/* settings output in run index order */
+				flushSettingsOutput(runs.get(i).get());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				pool.shutdownNow();
+				return;
+			} catch (ExecutionException e) {
+				System.err.println("Run " + (nrofRuns[0] + i + 1) + 
+						" failed");
+				e.getCause().printStackTrace();
+				System.exit(-1);
+			}
+		}
+	}
+
 	/**
 	 * Initializes Settings
 	 * @param confFiles File name paths where to read additional settings 
@@ -140,7 +289,7 @@ public class DTNSim {
 	 * @param className Full name (i.e., containing the packet path) 
 	 * of the class to register. For example: <code>core.SimClock</code> 
 	 */
-	public static void registerForReset(String className) {
+	public static synchronized void registerForReset(String className) {
 		Class<?> c = null;
 		try {
 			c = Class.forName(className);
@@ -160,10 +309,14 @@ public class DTNSim {
 	}
 	
 	/**
-	 * Resets all registered classes.
+	 * Resets all registered classes in the context of the current thread.
 	 */
-	private static void resetForNextRun() {
-		for (Class<?> c : resetList) {
+	public static void resetForNextRun() {
+		List<Class<?>> classes;
+		synchronized (DTNSim.class) {
+			classes = new ArrayList<Class<?>>(resetList);
+		}
+		for (Class<?> c : classes) {
 			try {
 				Method m = c.getMethod(RESET_METHOD_NAME);
 				m.invoke(null);
@@ -0,0 +1,657 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * <P>Kinetic connectivity update. Instead of checking the ranges of all
+ * near interfaces every update interval, the times when the links can
+ * change are predicted and only those links are checked.</P>
+ * <P>Every host has a snapshot of its location and velocity: hosts move on
+ * straight path segments, so their locations are known until the segment
+ * changes. The snapshot is renewed when the host's location differs from
+ * the predicted one (a new segment, a pause or a jump), when its activity,
+ * range or links change outside of this class, or when it has moved
+ * further than the slack of the grid from the snapshot location. The
+ * interfaces are kept in coarse grids (one per interface type) at their
+ * snapshot locations; the cells are the largest range plus twice the
+ * slack, so the interfaces in non-neighboring cells can't get in range of
+ * each other before either of them renews its snapshot.</P>
+ * <P>When a host renews its snapshot, the links of its interfaces to the
+ * interfaces in the neighboring cells are checked. For every checked
+ * link, the time when the distance next crosses the range is solved from
+ * the two straight movements and the link is checked again at that time.
+ * The predictions use a slightly wider (or narrower) range, so the links
+ * are rather checked a bit early than late.</P>
+ * <P>The link changes are applied like in the two phase update (see
+ * {@link World#TWO_PHASE_CONNECTIVITY_S}): a link comes up from the lower
+ * addressed active host and goes down by the first active host. The
+ * contacts are the same as with the two phase update, but the links that
+ * change during the same update are changed in a different order. Only
+ * usable with interfaces that support the two phase update and don't use
+ * scan intervals.</P>
+ */
+class KineticConnectivity implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	/** largest accepted difference between the predicted and the real
+	 * location of a host (meters) */
+	private static final double LOCATION_TOLERANCE = 1e-6;
+	/** the link predictions use a range this much wider or narrower than
+	 * the real range (meters) */
+	private static final double RANGE_MARGIN = 1e-5;
+	/** cell index of interfaces that are not in a grid */
+	private static final int NO_CELL = -1;
+	/** initial capacity of the link and event arrays */
+	private static final int INITIAL_CAPACITY = 64;
+
+	private final List<DTNHost> hosts;
+	private final int worldSizeX;
+	private final int worldSizeY;
+
+	/* snapshots of the hosts by host address */
+	private final double[] snapX;
+	private final double[] snapY;
+	private final double[] snapTime;
+	private final double[] velX;
+	private final double[] velY;
+	private final boolean[] snapActive;
+	/** time when the host has moved the slack away from the snapshot */
+	private final double[] renewTime;
+	/** incremented on every new snapshot (0 = no snapshot yet) */
+	private final int[] version;
+	/** hosts whose snapshots are renewed in the current update */
+	private final boolean[] renewed;
+
+	/* interfaces by their address */
+	private NetworkInterface[] interfaces;
+	private int[] hostOf;
+	private int[] gridOf;
+	private int[] cellOf;
+	/** range and number of link changes on the latest check */
+	private double[] rangeOf;
+	private int[] linkChangesOf;
+
+	/** grids of the interface types and the indexes of the types */
+	private TypeGrid[] grids;
+	private final HashMap<String, Integer> typeIndexes;
+
+	/** links to check in the current update: lower interface address in
+	 * the high bits, higher address in the low bits */
+	private long[] due;
+	private int dueSize;
+
+	/* heap of the predicted link checks: time, interface addresses and
+	 * the versions of their hosts' snapshots */
+	private double[] eventTimes;
+	private int[] eventFrom;
+	private int[] eventTo;
+	private int[] eventFromVersion;
+	private int[] eventToVersion;
+	private int nrofEvents;
+
+	/**
+	 * Creates a kinetic connectivity update for hosts
+	 * @param hosts The hosts, in the order of their addresses
+	 * @param worldSizeX Width of the world
+	 * @param worldSizeY Height of the world
+	 */
+	KineticConnectivity(List<DTNHost> hosts, int worldSizeX,
+			int worldSizeY) {
+		int n = hosts.size();
+		this.hosts = hosts;
+		this.worldSizeX = worldSizeX;
+		this.worldSizeY = worldSizeY;
+		this.snapX = new double[n];
+		this.snapY = new double[n];
+		this.snapTime = new double[n];
+		this.velX = new double[n];
+		this.velY = new double[n];
+		this.snapActive = new boolean[n];
+		this.renewTime = new double[n];
+		this.version = new int[n];
+		this.renewed = new boolean[n];
+
+		int maxAddress = -1;
+		for (DTNHost host : hosts) {
+			for (NetworkInterface ni : host.getInterfaces()) {
+				maxAddress = Math.max(maxAddress, ni.getAddress());
+			}
+		}
+		this.interfaces = new NetworkInterface[maxAddress + 1];
+		this.hostOf = new int[maxAddress + 1];
+		this.gridOf = new int[maxAddress + 1];
+		this.cellOf = new int[maxAddress + 1];
+		Arrays.fill(this.cellOf, NO_CELL);
+		this.rangeOf = new double[maxAddress + 1];
+		this.linkChangesOf = new int[maxAddress + 1];
+
+		this.typeIndexes = new HashMap<String, Integer>();
+		double[] maxRanges = new double[0];
+		for (int i=0; i < n; i++) {
+			DTNHost host = hosts.get(i);
+			assert host.getAddress() == i : "Hosts not in address order";
+			for (NetworkInterface ni : host.getInterfaces()) {
+				Integer type = this.typeIndexes.get(ni.getInterfaceType());
+				if (type == null) {
+					type = this.typeIndexes.size();
+					this.typeIndexes.put(ni.getInterfaceType(), type);
+					maxRanges = Arrays.copyOf(maxRanges, type + 1);
+				}
+				int addr = ni.getAddress();
+				this.interfaces[addr] = ni;
+				this.hostOf[addr] = i;
+				this.gridOf[addr] = type;
+				maxRanges[type] = Math.max(maxRanges[type],
+						ni.getTransmitRange());
+			}
+		}
+		this.grids = new TypeGrid[maxRanges.length];
+		for (int i=0; i < maxRanges.length; i++) {
+			this.grids[i] = new TypeGrid(maxRanges[i], worldSizeX,
+					worldSizeY);
+		}
+
+		this.due = new long[INITIAL_CAPACITY];
+		this.eventTimes = new double[INITIAL_CAPACITY];
+		this.eventFrom = new int[INITIAL_CAPACITY];
+		this.eventTo = new int[INITIAL_CAPACITY];
+		this.eventFromVersion = new int[INITIAL_CAPACITY];
+		this.eventToVersion = new int[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Returns true if the kinetic update can be used with the hosts: all
+	 * interfaces support the two phase update and don't use scan
+	 * intervals
+	 * @param hosts The hosts
+	 * @return True if the kinetic update can be used
+	 */
+	static boolean supports(List<DTNHost> hosts) {
+		for (DTNHost host : hosts) {
+			for (NetworkInterface ni : host.getInterfaces()) {
+				if (!ni.supportsTwoPhaseUpdate() ||
+						ni.getScanInterval() > 0) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Updates the links whose state may have changed since the previous
+	 * update
+	 */
+	void update() {
+		double now = SimClock.getTime();
+		int n = this.hosts.size();
+		this.dueSize = 0;
+
+		boolean renewAll = false;
+		for (int i=0; i < n; i++) {
+			DTNHost host = this.hosts.get(i);
+			this.renewed[i] = needsRenewal(host, i, now);
+			if (this.renewed[i]) {
+				renewAll |= growGrids(host);
+			}
+		}
+		for (int i=0; i < n; i++) {
+			if (renewAll || this.renewed[i]) {
+				this.renewed[i] = true;
+				renew(this.hosts.get(i), i, now);
+			}
+		}
+
+		/* the renewed hosts' links to all near interfaces, then the
+		 * predicted link checks that are due */
+		for (int i=0; i < n; i++) {
+			if (this.renewed[i]) {
+				for (NetworkInterface ni : this.hosts.get(i).getInterfaces()) {
+					addNearLinks(ni);
+				}
+			}
+		}
+		while (this.nrofEvents > 0 && this.eventTimes[0] <= now) {
+			int from = this.eventFrom[0];
+			int to = this.eventTo[0];
+			boolean valid = this.eventFromVersion[0] ==
+				this.version[this.hostOf[from]] && this.eventToVersion[0] ==
+				this.version[this.hostOf[to]];
+			removeFirstEvent();
+			if (valid) {
+				addDue(from, to);
+			}
+		}
+
+		Arrays.sort(this.due, 0, this.dueSize);
+		int unique = 0;
+		for (int i=0; i < this.dueSize; i++) {
+			if (unique == 0 || this.due[i] != this.due[unique - 1]) {
+				this.due[unique++] = this.due[i];
+			}
+		}
+		this.dueSize = unique;
+
+		for (int i=0; i < this.dueSize; i++) {
+			checkLinkDown(from(this.due[i]), to(this.due[i]));
+		}
+		for (int i=0; i < this.dueSize; i++) {
+			checkLinkUp(from(this.due[i]), to(this.due[i]));
+		}
+		for (int i=0; i < this.dueSize; i++) {
+			NetworkInterface from = from(this.due[i]);
+			NetworkInterface to = to(this.due[i]);
+			this.linkChangesOf[from.getAddress()] = from.linkChanges;
+			this.linkChangesOf[to.getAddress()] = to.linkChanges;
+			predict(from, to, now);
+		}
+	}
+
+	/**
+	 * Returns true if the snapshot of a host must be renewed
+	 * @param host The host
+	 * @param index Index (address) of the host
+	 * @param now Current simulation time
+	 * @return True if the snapshot is outdated
+	 */
+	private boolean needsRenewal(DTNHost host, int index, double now) {
+		if (this.version[index] == 0 || now >= this.renewTime[index]) {
+			return true;
+		}
+		double dt = now - this.snapTime[index];
+		Coord c = host.getLocation();
+		if (Math.abs(c.getX() - (this.snapX[index] + this.velX[index]*dt))
+				> LOCATION_TOLERANCE ||
+				Math.abs(c.getY() - (this.snapY[index] + this.velY[index]*dt))
+				> LOCATION_TOLERANCE) {
+			return true;
+		}
+		List<NetworkInterface> net = host.getInterfaces();
+		for (int i=0, n = net.size(); i < n; i++) {
+			NetworkInterface ni = net.get(i);
+			int addr = ni.getAddress();
+			if (ni.getTransmitRange() != this.rangeOf[addr] ||
+					ni.linkChanges != this.linkChangesOf[addr]) {
+				return true;
+			}
+		}
+		return host.isActive() != this.snapActive[index];
+	}
+
+	/**
+	 * Replaces the grids whose cells are too small for the ranges of the
+	 * host's interfaces
+	 * @param host The host
+	 * @return True if a grid was replaced
+	 */
+	private boolean growGrids(DTNHost host) {
+		boolean grown = false;
+		for (NetworkInterface ni : host.getInterfaces()) {
+			int type = this.gridOf[ni.getAddress()];
+			if (ni.getTransmitRange() > this.grids[type].range) {
+				this.grids[type] = new TypeGrid(ni.getTransmitRange(),
+						this.worldSizeX, this.worldSizeY);
+				for (int addr=0; addr < this.interfaces.length; addr++) {
+					if (this.gridOf[addr] == type) {
+						this.cellOf[addr] = NO_CELL;
+					}
+				}
+				grown = true;
+			}
+		}
+		return grown;
+	}
+
+	/**
+	 * Takes a new snapshot of a host and moves its interfaces in the grids
+	 * @param host The host
+	 * @param index Index (address) of the host
+	 * @param now Current simulation time
+	 */
+	private void renew(DTNHost host, int index, double now) {
+		Coord c = host.getLocation();
+		this.version[index]++;
+		this.snapX[index] = c.getX();
+		this.snapY[index] = c.getY();
+		this.snapTime[index] = now;
+		this.snapActive[index] = host.isActive();
+
+		double speed = 0;
+		Coord dest = host.getDestination();
+		if (host.isActive() && host.getPath() != null && dest != null) {
+			double distance = c.distance(dest);
+			if (distance > 0) {
+				speed = host.getSpeed();
+				this.velX[index] = speed * (dest.getX() - c.getX()) / distance;
+				this.velY[index] = speed * (dest.getY() - c.getY()) / distance;
+			}
+		}
+		if (speed <= 0) {
+			this.velX[index] = 0;
+			this.velY[index] = 0;
+		}
+
+		double slack = Double.MAX_VALUE;
+		for (NetworkInterface ni : host.getInterfaces()) {
+			int addr = ni.getAddress();
+			TypeGrid grid = this.grids[this.gridOf[addr]];
+			this.rangeOf[addr] = ni.getTransmitRange();
+			this.linkChangesOf[addr] = ni.linkChanges;
+			int cell = grid.cellFromCoord(c);
+			if (cell != this.cellOf[addr]) {
+				if (this.cellOf[addr] != NO_CELL) {
+					grid.remove(addr, this.cellOf[addr]);
+				}
+				grid.add(addr, cell);
+				this.cellOf[addr] = cell;
+			}
+			slack = Math.min(slack, grid.slack);
+		}
+		this.renewTime[index] = speed > 0 ?
+				now + (slack - RANGE_MARGIN) / speed : Double.MAX_VALUE;
+	}
+
+	/**
+	 * Adds the links from an interface to the interfaces of other hosts in
+	 * the neighboring cells and to its connected interfaces to the due
+	 * links
+	 * @param ni The interface
+	 */
+	private void addNearLinks(NetworkInterface ni) {
+		int addr = ni.getAddress();
+		int host = this.hostOf[addr];
+		TypeGrid grid = this.grids[this.gridOf[addr]];
+		int cell = this.cellOf[addr];
+		int rowLength = grid.cols + 2;
+		for (int r = -1; r <= 1; r++) {
+			int rowStart = cell + r * rowLength;
+			for (int other = rowStart - 1; other <= rowStart + 1; other++) {
+				int[] members = grid.cellMembers[other];
+				for (int i=0, n = grid.cellCounts[other]; i < n; i++) {
+					if (this.hostOf[members[i]] != host) {
+						addDue(addr, members[i]);
+					}
+				}
+			}
+		}
+		List<Connection> connections = ni.getConnections();
+		for (int i=0, n = connections.size(); i < n; i++) {
+			addDue(addr, connections.get(i).getOtherInterface(ni).getAddress());
+		}
+	}
+
+	/**
+	 * Adds a link to the links to check in this update
+	 * @param a Address of one interface of the link
+	 * @param b Address of the other interface
+	 */
+	private void addDue(int a, int b) {
+		if (this.dueSize == this.due.length) {
+			this.due = Arrays.copyOf(this.due, 2 * this.dueSize);
+		}
+		this.due[this.dueSize++] = a < b ? (long)a << 32 | b :
+			(long)b << 32 | a;
+	}
+
+	private NetworkInterface from(long link) {
+		return this.interfaces[(int)(link >>> 32)];
+	}
+
+	private NetworkInterface to(long link) {
+		return this.interfaces[(int)link];
+	}
+
+	/**
+	 * Tears down the link between two interfaces if it is up and out of
+	 * range. The first active host tears it down.
+	 * @param from The interface with the lower address
+	 * @param to The interface with the higher address
+	 */
+	private void checkLinkDown(NetworkInterface from, NetworkInterface to) {
+		Connection con = findConnection(from, to);
+		if (con == null || from.isWithinRange(to)) {
+			return;
+		}
+		if (from.getHost().isActive()) {
+			from.disconnect(con, to);
+			from.connections.remove(con);
+		}
+		else if (to.getHost().isActive()) {
+			to.disconnect(con, from);
+			to.connections.remove(con);
+		}
+	}
+
+	/**
+	 * Connects two interfaces if they are in range and not connected. The
+	 * lower addressed interface connects (if its host is active).
+	 * @param from The interface with the lower address
+	 * @param to The interface with the higher address
+	 */
+	private void checkLinkUp(NetworkInterface from, NetworkInterface to) {
+		if (from.getHost().isActive() && from.isWithinRange(to) &&
+				!from.isConnected(to)) {
+			from.connect(to);
+		}
+	}
+
+	/**
+	 * Returns the connection between two interfaces
+	 * @return The connection or null if they are not connected
+	 */
+	private Connection findConnection(NetworkInterface from,
+			NetworkInterface to) {
+		List<Connection> connections = from.getConnections();
+		for (int i=0, n = connections.size(); i < n; i++) {
+			if (connections.get(i).getOtherInterface(from) == to) {
+				return connections.get(i);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Predicts when the distance of two interfaces crosses their range the
+	 * next time and schedules a check of their link at that time. Nothing
+	 * is scheduled if either host renews its snapshot before that (the
+	 * link is checked then).
+	 * @param from The interface with the lower address
+	 * @param to The interface with the higher address
+	 * @param now Current simulation time
+	 */
+	private void predict(NetworkInterface from, NetworkInterface to,
+			double now) {
+		int a = this.hostOf[from.getAddress()];
+		int b = this.hostOf[to.getAddress()];
+		double wx = this.velX[b] - this.velX[a];
+		double wy = this.velY[b] - this.velY[a];
+		double ww = wx*wx + wy*wy;
+		if (ww == 0) {
+			return; // the distance doesn't change
+		}
+
+		Coord ca = from.getHost().getLocation();
+		Coord cb = to.getHost().getLocation();
+		double dx = cb.getX() - ca.getX();
+		double dy = cb.getY() - ca.getY();
+		double dw = dx*wx + dy*wy;
+		double range = Math.min(from.getTransmitRange(),
+				to.getTransmitRange());
+		double dt;
+		if (from.isWithinRange(to)) { // when does it leave the range
+			double r = range - RANGE_MARGIN;
+			double c = dx*dx + dy*dy - r*r;
+			dt = c >= 0 ? 0 : (-dw + Math.sqrt(dw*dw - ww*c)) / ww;
+		}
+		else { // when does it enter the range (if ever)
+			double r = range + RANGE_MARGIN;
+			double c = dx*dx + dy*dy - r*r;
+			if (c <= 0) {
+				dt = 0;
+			}
+			else if (dw >= 0 || dw*dw - ww*c < 0) {
+				return; // moving apart or passing by
+			}
+			else {
+				dt = (-dw - Math.sqrt(dw*dw - ww*c)) / ww;
+			}
+		}
+
+		double time = now + dt;
+		if (time >= this.renewTime[a] || time >= this.renewTime[b]) {
+			return;
+		}
+		addEvent(time, from.getAddress(), to.getAddress(), this.version[a],
+				this.version[b]);
+	}
+
+	/**
+	 * Adds a link check to the event heap
+	 */
+	private void addEvent(double time, int from, int to, int fromVersion,
+			int toVersion) {
+		if (this.nrofEvents == this.eventTimes.length) {
+			int newLength = 2 * this.nrofEvents;
+			this.eventTimes = Arrays.copyOf(this.eventTimes, newLength);
+			this.eventFrom = Arrays.copyOf(this.eventFrom, newLength);
+			this.eventTo = Arrays.copyOf(this.eventTo, newLength);
+			this.eventFromVersion =
+				Arrays.copyOf(this.eventFromVersion, newLength);
+			this.eventToVersion = Arrays.copyOf(this.eventToVersion, newLength);
+		}
+		int i = this.nrofEvents++;
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (this.eventTimes[parent] <= time) {
+				break;
+			}
+			moveEvent(parent, i);
+			i = parent;
+		}
+		this.eventTimes[i] = time;
+		this.eventFrom[i] = from;
+		this.eventTo[i] = to;
+		this.eventFromVersion[i] = fromVersion;
+		this.eventToVersion[i] = toVersion;
+	}
+
+	/**
+	 * Removes the earliest link check from the event heap
+	 */
+	private void removeFirstEvent() {
+		int last = --this.nrofEvents;
+		double time = this.eventTimes[last];
+		int i = 0;
+		while (true) {
+			int child = 2*i + 1;
+			if (child >= last) {
+				break;
+			}
+			if (child + 1 < last &&
+					this.eventTimes[child + 1] < this.eventTimes[child]) {
+				child++;
+			}
+			if (time <= this.eventTimes[child]) {
+				break;
+			}
+			moveEvent(child, i);
+			i = child;
+		}
+		moveEvent(last, i);
+	}
+
+	/**
+	 * Copies an event from one heap position to another
+	 */
+	private void moveEvent(int src, int dst) {
+		this.eventTimes[dst] = this.eventTimes[src];
+		this.eventFrom[dst] = this.eventFrom[src];
+		this.eventTo[dst] = this.eventTo[src];
+		this.eventFromVersion[dst] = this.eventFromVersion[src];
+		this.eventToVersion[dst] = this.eventToVersion[src];
+	}
+
+	/**
+	 * Grid of the interfaces of one type at their snapshot locations. The
+	 * cells are stored like in the {@link interfaces.ConnectivityGrid}.
+	 */
+	private static class TypeGrid implements Serializable {
+		private static final long serialVersionUID = 1L;
+
+		/** how large array is initially chosen for a cell's interfaces */
+		private static final int EXPECTED_INTERFACE_COUNT = 5;
+
+		/** largest range of the interfaces */
+		private final double range;
+		/** how far a host can move from its snapshot location */
+		private final double slack;
+		private final double cellSize;
+		private final int rows;
+		private final int cols;
+		private final int[][] cellMembers;
+		private final int[] cellCounts;
+
+		private TypeGrid(double range, int worldSizeX, int worldSizeY) {
+			this.range = range;
+			this.slack = range > 0 ? range : 1;
+			this.cellSize = range + 2 * this.slack;
+			this.rows = (int)(worldSizeY / cellSize) + 1;
+			this.cols = (int)(worldSizeX / cellSize) + 1;
+			// leave empty cells on both sides to make neighbor search easier
+			int nrofCells = (rows+2) * (cols+2);
+			this.cellMembers = new int[nrofCells][];
+			this.cellCounts = new int[nrofCells];
+		}
+
+		/**
+		 * Returns the index of the cell of a location. Locations outside of
+		 * the world are put to the closest cell.
+		 * @param c The location
+		 * @return The cell's index
+		 */
+		private int cellFromCoord(Coord c) {
+			// +1 due empty cells on both sides of the matrix
+			int row = Math.min(Math.max((int)(c.getY()/cellSize), 0),
+					rows - 1) + 1;
+			int col = Math.min(Math.max((int)(c.getX()/cellSize), 0),
+					cols - 1) + 1;
+			return row * (cols+2) + col;
+		}
+
+		private void add(int addr, int cell) {
+			int[] members = this.cellMembers[cell];
+			int count = this.cellCounts[cell];
+			if (members == null) {
+				members = new int[EXPECTED_INTERFACE_COUNT];
+				this.cellMembers[cell] = members;
+			}
+			else if (count == members.length) {
+				members = Arrays.copyOf(members, 2 * count);
+				this.cellMembers[cell] = members;
+			}
+			members[count] = addr;
+			this.cellCounts[cell] = count + 1;
+		}
+
+		private void remove(int addr, int cell) {
+			int[] members = this.cellMembers[cell];
+			int count = this.cellCounts[cell];
+			for (int i=0; i < count; i++) {
+				if (members[i] == addr) {
+					members[i] = members[count - 1];
+					this.cellCounts[cell] = count - 1;
+					return;
+				}
+			}
+			assert false : "interface " + addr + " not found from cell " +
+				cell;
+		}
+	}
+}
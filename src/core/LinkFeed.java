@@ -0,0 +1,150 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Records the link changes of a world's interfaces so that they can be
+ * applied to other worlds with the same hosts and interfaces. The changes
+ * are stored in the order they happened as host addresses and interface
+ * indexes, so they can be applied to any world whose hosts were created
+ * from the same scenario settings.
+ * @see World#follow(World, LinkFeed)
+ */
+public class LinkFeed implements LinkListener {
+	/** number of ints stored per link change */
+	private static final int CHANGE_SIZE = 5;
+
+	/** the link changes: up (1) or down (0), from host, from interface
+	 * index, to host and to interface index for every change */
+	private int[] changes;
+	/** number of ints used in the changes array */
+	private int size;
+
+	/**
+	 * Creates a new, empty link feed
+	 */
+	public LinkFeed() {
+		this.changes = new int[16 * CHANGE_SIZE];
+		this.size = 0;
+	}
+
+	public void interfacesConnected(NetworkInterface from,
+			NetworkInterface to) {
+		add(true, from, to);
+	}
+
+	public void interfacesDisconnected(NetworkInterface from,
+			NetworkInterface to) {
+		add(false, from, to);
+	}
+
+	/**
+	 * Not used; link listeners are informed about the interfaces
+	 */
+	public void hostsConnected(DTNHost host1, DTNHost host2) {}
+
+	/**
+	 * Not used; link listeners are informed about the interfaces
+	 */
+	public void hostsDisconnected(DTNHost host1, DTNHost host2) {}
+
+	/**
+	 * Returns the number of link changes recorded since the last
+	 * {@link #clear()}
+	 * @return the number of recorded link changes
+	 */
+	public int size() {
+		return this.size / CHANGE_SIZE;
+	}
+
+	/**
+	 * Removes all recorded link changes
+	 */
+	public void clear() {
+		this.size = 0;
+	}
+
+	/**
+	 * Applies the recorded link changes, in the recorded order, to the
+	 * hosts of another world. Connections are created and destroyed
+	 * without checking the ranges (cf.
+	 * {@link DTNHost#forceConnection(DTNHost, String, boolean)}).
+	 * @param world The world to apply the changes to
+	 */
+	public void applyTo(World world) {
+		for (int i=0; i < this.size; i += CHANGE_SIZE) {
+			NetworkInterface from = getInterface(world, i + 1);
+			NetworkInterface to = getInterface(world, i + 3);
+			if (this.changes[i] == 1) {
+				from.createConnection(to);
+			}
+			else {
+				from.destroyConnection(to);
+			}
+		}
+	}
+
+	/**
+	 * Returns the interface stored at an index of the changes array
+	 * @param world The world where the interface is
+	 * @param index Index of the host address in the changes array; the
+	 * interface index follows it
+	 * @return The interface
+	 */
+	private NetworkInterface getInterface(World world, int index) {
+		DTNHost host = world.getNodeByAddress(this.changes[index]);
+		return host.getInterfaces().get(this.changes[index + 1]);
+	}
+
+	/**
+	 * Records a link change
+	 * @param up True for a connection up, false for down
+	 * @param from Interface that initiated the change
+	 * @param to Interface at the other end
+	 */
+	private void add(boolean up, NetworkInterface from, NetworkInterface to) {
+		add(up, from.getHost().getAddress(), indexOf(from),
+				to.getHost().getAddress(), indexOf(to));
+	}
+
+	/**
+	 * Records a link change given as host addresses and interface indexes
+	 * @param up True for a connection up, false for down
+	 * @param fromAddr Address of the host that initiated the change
+	 * @param fromIface Index of the interface in that host
+	 * @param toAddr Address of the host at the other end
+	 * @param toIface Index of the interface in the other host
+	 */
+	public void add(boolean up, int fromAddr, int fromIface, int toAddr,
+			int toIface) {
+		if (this.size + CHANGE_SIZE > this.changes.length) {
+			this.changes = Arrays.copyOf(this.changes, 2 * changes.length);
+		}
+		this.changes[size++] = up ? 1 : 0;
+		this.changes[size++] = fromAddr;
+		this.changes[size++] = fromIface;
+		this.changes[size++] = toAddr;
+		this.changes[size++] = toIface;
+	}
+
+	/**
+	 * Returns the index of an interface in its host's interface list
+	 * @param ni The interface
+	 * @return The index of the interface
+	 * @throws SimError if the interface is not found from its host
+	 */
+	public static int indexOf(NetworkInterface ni) {
+		List<NetworkInterface> net = ni.getHost().getInterfaces();
+		for (int i=0, n = net.size(); i < n; i++) {
+			if (net.get(i) == ni) {
+				return i;
+			}
+		}
+		throw new SimError("Interface " + ni + " not found from its host");
+	}
+}
@@ -0,0 +1,29 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+/**
+ * Connection listener that wants to know the network interfaces of the
+ * connections. Listeners implementing this interface are informed with
+ * the methods of this interface instead of the host level methods of
+ * {@link ConnectionListener}.
+ */
+public interface LinkListener extends ConnectionListener {
+
+	/**
+	 * Method is called when two interfaces are connected.
+	 * @param from Interface that initiated the connection
+	 * @param to Interface that was connected to
+	 */
+	void interfacesConnected(NetworkInterface from, NetworkInterface to);
+
+	/**
+	 * Method is called when connection between interfaces is disconnected.
+	 * @param from Interface that initiated the disconnection
+	 * @param to Interface at the other end of the connection
+	 */
+	void interfacesDisconnected(NetworkInterface from, NetworkInterface to);
+
+}
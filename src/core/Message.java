@@ -4,6 +4,7 @@
  */
 package core;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -13,7 +14,9 @@ import java.util.Set;
 /**
  * A message that is created at a node or passed between nodes.
  */
-public class Message implements Comparable<Message> {
+public class Message implements Comparable<Message>, Serializable {
+	private static final long serialVersionUID = 1L;
+
 	/** Value for infinite TTL of message */
 	public static final int INFINITE_TTL = -1;
 	private final DTNHost from;
@@ -24,8 +27,6 @@ public class Message implements Comparable<Message> {
 	private final int size;
 	/** List of nodes this message has passed */
 	private List<DTNHost> path; 
-	/** Next unique identifier to be given */
-	private static int nextUniqueId;
 	/** Unique ID of this message */
 	private final int uniqueId;
 	/** The time this message was received */
@@ -50,7 +51,6 @@ public class Message implements Comparable<Message> {
 	private String	appID;
 	
 	static {
-		reset();
 		DTNSim.registerForReset(Message.class.getCanonicalName());
 	}
 	
@@ -68,7 +68,7 @@ public class Message implements Comparable<Message> {
 		this.id = id;
 		this.size = size;
 		this.path = new ArrayList<DTNHost>();
-		this.uniqueId = nextUniqueId;
+		this.uniqueId = SimContext.current().nextMessageId++;
 		
 		this.timeCreated = SimClock.getTime();
 		this.timeReceived = this.timeCreated;
@@ -78,7 +78,6 @@ public class Message implements Comparable<Message> {
 		this.properties = null;
 		this.appID = null;
 		
-		Message.nextUniqueId++;
 		addNodeOnPath(from);
 	}
 	
@@ -343,7 +342,7 @@ public class Message implements Comparable<Message> {
 	 * Resets all static fields to default values
 	 */
 	public static void reset() {
-		nextUniqueId = 0;
+		SimContext.current().nextMessageId = 0;
 	}
 
 	/**
@@ -4,6 +4,7 @@
  */
 package core;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -14,7 +15,9 @@ import java.util.List;
  * This is fairly similar to Message class' property interface, but these
  * values are shared for a node instead of message.
  */
-public class ModuleCommunicationBus {
+public class ModuleCommunicationBus implements Serializable {
+	private static final long serialVersionUID = 1L;
+
 	/** Initial capacity for the listener lists (instead of 10) */
 	private static final int INIT_CAPACITY = 3;
 	/** The values in the blackboard (or null if none)*/
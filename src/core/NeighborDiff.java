@@ -0,0 +1,187 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <P>Tracks the changes that can change the links of the interfaces, so
+ * an interface that updates its connections can skip the neighbors that
+ * have not changed since its previous update, or the whole update if
+ * nothing has changed around it.</P>
+ * <P>A host changes when it moves, becomes active or inactive, when the
+ * range or the scan interval of its interface changes or when a link of
+ * its interface comes up or goes down. Every change gets a new version
+ * number. The locations and the activity of the hosts are compared to the
+ * previous ones with {@link #findChanges()} before the interfaces are
+ * updated; the other changes are marked when they happen. The version of
+ * a change is also stamped on the cells of a coarse grid (cell size is
+ * the largest range) around the old and the new location of the changed
+ * host, so an interface can tell from the stamp of its own cell whether
+ * any host that could be in its range has changed.</P>
+ * <P>A link can only change when either of its hosts changes, so the
+ * results are the same as without the tracking. Interfaces whose range
+ * is larger than the cell size or that use a scan interval always check
+ * all their neighbors.</P>
+ */
+class NeighborDiff implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private final List<DTNHost> hosts;
+	private final double cellSize;
+	private final int rows;
+	private final int cols;
+	/** latest change version of the cells around every cell
+	 * (cell index = (row + 1) * (cols + 2) + col + 1) */
+	private final long[] stamps;
+	/** latest version of changes */
+	private long version;
+
+	/* state of the hosts at their latest change by host address */
+	private final long[] changed;
+	private final double[] lastX;
+	private final double[] lastY;
+	private final boolean[] lastActive;
+	private final int[] lastCell;
+
+	/**
+	 * Creates change tracking for hosts. All the hosts are considered
+	 * changed at first.
+	 * @param hosts The hosts (indexed by their addresses)
+	 * @param worldSizeX Width of the world
+	 * @param worldSizeY Height of the world
+	 */
+	NeighborDiff(List<DTNHost> hosts, int worldSizeX, int worldSizeY) {
+		this.hosts = hosts;
+		double maxRange = 0;
+		for (DTNHost host : hosts) {
+			for (NetworkInterface ni : host.getInterfaces()) {
+				maxRange = Math.max(maxRange, ni.getTransmitRange());
+			}
+		}
+		this.cellSize = Math.max(maxRange, 1);
+		this.rows = (int)(worldSizeY / this.cellSize) + 1;
+		this.cols = (int)(worldSizeX / this.cellSize) + 1;
+		this.version = 1;
+		this.stamps = new long[(this.rows + 2) * (this.cols + 2)];
+		Arrays.fill(this.stamps, this.version);
+
+		int n = hosts.size();
+		this.changed = new long[n];
+		this.lastX = new double[n];
+		this.lastY = new double[n];
+		this.lastActive = new boolean[n];
+		this.lastCell = new int[n];
+		Arrays.fill(this.changed, this.version);
+		for (int i=0; i < n; i++) {
+			DTNHost host = hosts.get(i);
+			Coord c = host.getLocation();
+			this.lastX[i] = c.getX();
+			this.lastY[i] = c.getY();
+			this.lastActive[i] = host.isActive();
+			this.lastCell[i] = cellOf(c);
+		}
+	}
+
+	/**
+	 * Marks the hosts whose location or activity has changed since their
+	 * previous change. Must be called before the interfaces are updated.
+	 */
+	void findChanges() {
+		for (int i=0, n = this.hosts.size(); i < n; i++) {
+			DTNHost host = this.hosts.get(i);
+			Coord c = host.getLocation();
+			if (c.getX() != this.lastX[i] || c.getY() != this.lastY[i] ||
+					host.isActive() != this.lastActive[i]) {
+				changed(host);
+			}
+		}
+	}
+
+	/**
+	 * Marks a host changed
+	 * @param host The host
+	 */
+	void changed(DTNHost host) {
+		int i = host.getAddress();
+		long v = ++this.version;
+		Coord c = host.getLocation();
+		int cell = cellOf(c);
+		this.changed[i] = v;
+		this.lastX[i] = c.getX();
+		this.lastY[i] = c.getY();
+		this.lastActive[i] = host.isActive();
+		stamp(this.lastCell[i], v);
+		if (cell != this.lastCell[i]) {
+			stamp(cell, v);
+			this.lastCell[i] = cell;
+		}
+	}
+
+	/**
+	 * Returns true if nothing that could change the links of an interface
+	 * has changed since the interface's previous update
+	 * @param ni The interface
+	 * @return true if the interface can skip its update
+	 */
+	boolean isUnchanged(NetworkInterface ni) {
+		int i = ni.getHost().getAddress();
+		return canSkip(ni) && this.changed[i] <= ni.neighborsChecked &&
+			this.stamps[this.lastCell[i]] <= ni.neighborsChecked;
+	}
+
+	/**
+	 * Returns true if the link between two interfaces may have changed
+	 * since the first interface's previous update
+	 * @param ni The updated interface
+	 * @param other The interface at the other end of the (possible) link
+	 * @return true if the link must be checked
+	 */
+	boolean hasChanged(NetworkInterface ni, NetworkInterface other) {
+		long checked = ni.neighborsChecked;
+		return !canSkip(ni) ||
+			this.changed[ni.getHost().getAddress()] > checked ||
+			this.changed[other.getHost().getAddress()] > checked;
+	}
+
+	/**
+	 * Records that an interface has checked its links
+	 * @param ni The interface
+	 */
+	void checked(NetworkInterface ni) {
+		ni.neighborsChecked = this.version;
+	}
+
+	/**
+	 * Returns true if the unchanged neighbors of the interface can be
+	 * skipped
+	 */
+	private boolean canSkip(NetworkInterface ni) {
+		return ni.getTransmitRange() <= this.cellSize &&
+			ni.getScanInterval() == 0;
+	}
+
+	private int cellOf(Coord c) {
+		int row = (int)(c.getY() / this.cellSize);
+		int col = (int)(c.getX() / this.cellSize);
+		row = Math.max(0, Math.min(this.rows - 1, row));
+		col = Math.max(0, Math.min(this.cols - 1, col));
+		return (row + 1) * (this.cols + 2) + col + 1;
+	}
+
+	/**
+	 * Stamps a change version on a cell and its neighbors
+	 */
+	private void stamp(int cell, long v) {
+		int w = this.cols + 2;
+		for (int row = cell - w; row <= cell + w; row += w) {
+			this.stamps[row - 1] = v;
+			this.stamps[row] = v;
+			this.stamps[row + 1] = v;
+		}
+	}
+}
@@ -4,9 +4,10 @@
  */
 package core;
 
-import interfaces.ConnectivityGrid;
 import interfaces.ConnectivityOptimizer;
+import interfaces.NeighborCursor;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
@@ -14,7 +15,9 @@ import java.util.Random;
 /**
  * Network interface of a DTNHost. Takes care of connectivity among hosts.
  */
-abstract public class NetworkInterface implements ModuleCommunicationListener {
+abstract public class NetworkInterface implements ModuleCommunicationListener, Serializable {
+	private static final long serialVersionUID = 1L;
+
 	/** transmit range -setting id ({@value})*/
 	public static final String TRANSMIT_RANGE_S = "transmitRange";
 	/** transmit speed -setting id ({@value})*/
@@ -34,33 +37,48 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	
 	private static final int CON_UP = 1;
 	private static final int CON_DOWN = 2;
-	private static int nextAddress = 0;
-	private static Random rng;
 	protected DTNHost host = null;
 
 	protected String interfacetype;
-	protected List<Connection> connections; // connected hosts
+	/** connected hosts, indexed by the address of the other interface */
+	protected List<Connection> connections;
 	private List<ConnectionListener> cListeners = null; // list of listeners
 	private final int address; // network interface address
 	protected double transmitRange;
 	protected int transmitSpeed;
 	protected ConnectivityOptimizer optimizer = null;
+	/** reusable result of the neighbor searches of this interface */
+	protected final NeighborCursor nearInterfaces = new NeighborCursor();
+	/** link changes found by the latest two phase update */
+	private final LinkChanges pendingLinkChanges = new LinkChanges();
 	/** scanning interval, or 0.0 if n/a */
 	private double scanInterval;
 	private double lastScanTime;
+	/** number of connections created or torn down at this interface */
+	int linkChanges;
+	/** pool for the connections of this interface (null if not pooled) */
+	ConnectionPool connectionPool;
+	/** queue for the finish times of the transfers of this interface's
+	 * connections (null if the transfers are finished at updates) */
+	TransferCompletions transferCompletions;
+	/** change tracking of the neighbors (null if all neighbors are checked
+	 * on every update) */
+	NeighborDiff neighborDiff;
+	/** change version of the neighbor tracking at the latest update */
+	long neighborsChecked;
 
 
 	static {
 		DTNSim.registerForReset(NetworkInterface.class.getCanonicalName());
-		reset();
 	}
 	
 	/**
 	 * Resets the static fields of the class
 	 */
 	public static void reset() {
-		nextAddress = 0;
-		rng = new Random(0);
+		SimContext context = SimContext.current();
+		context.nextInterfaceAddress = 0;
+		context.interfaceRng = new Random(0);
 	}
 	
 	/**
@@ -68,7 +86,7 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	 */
 	public NetworkInterface(Settings s) {
 		this.interfacetype = s.getNameSpace();
-		this.connections = new ArrayList<Connection>();
+		this.connections = new ConnectionTable(this);
 		this.address = getNextNetAddress();
 
 		this.transmitRange = s.getDouble(TRANSMIT_RANGE_S);
@@ -87,7 +105,7 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	 */
 	public NetworkInterface() {
 		this.interfacetype = "Default";
-		this.connections = new ArrayList<Connection>();
+		this.connections = new ConnectionTable(this);
 		this.address = getNextNetAddress();
 	}
 	
@@ -95,7 +113,7 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	 * copy constructor
 	 */
 	public NetworkInterface(NetworkInterface ni) {
-		this.connections = new ArrayList<Connection>();
+		this.connections = new ConnectionTable(this);
 		this.address = getNextNetAddress();
 		this.host = ni.host;
 		this.cListeners = ni.cListeners;
@@ -104,7 +122,7 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		this.transmitSpeed = ni.transmitSpeed;
 		
 		/* draw lastScanTime of [0 -- scanInterval] */
-		this.lastScanTime = rng.nextDouble() * scanInterval;
+		this.lastScanTime = getRng().nextDouble() * scanInterval;
 	}
 
 	/**
@@ -124,7 +142,7 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		comBus.subscribe(RANGE_ID, this);
 		comBus.subscribe(SPEED_ID, this);
 		
-		optimizer = ConnectivityGrid.ConnectivityGridFactory(
+		optimizer = ConnectivityOptimizer.getOptimizer(
 				this.interfacetype.hashCode(), transmitRange);
 		optimizer.addInterface(this);		
 	}
@@ -144,13 +162,25 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		this.cListeners = cListeners;
 	}
 
+	/**
+	 * Returns the rng of the current run used for drawing scanning phases
+	 * @return the rng of the current run
+	 */
+	private static Random getRng() {
+		SimContext context = SimContext.current();
+		if (context.interfaceRng == null) {
+			context.interfaceRng = new Random(0);
+		}
+		return context.interfaceRng;
+	}
+
 	/**
 	 * Returns a new network interface address and increments the address for
 	 * subsequent calls.
 	 * @return The next address.
 	 */
-	private synchronized static int getNextNetAddress() {
-		return nextAddress++;	
+	private static int getNextNetAddress() {
+		return SimContext.current().nextInterfaceAddress++;	
 	}
 
 	/**
@@ -185,6 +215,15 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		return this.connections;
 	}
 	
+	/**
+	 * Returns the scanning interval of this interface
+	 * @return the scanning interval, or 0.0 if the interface scans all the
+	 * time
+	 */
+	double getScanInterval() {
+		return this.scanInterval;
+	}
+
 	/**
 	 * Checks if this interface is currently in the scanning mode
 	 * @return True if the interface is scanning; false if not
@@ -240,10 +279,11 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	protected void connect(Connection con, NetworkInterface anotherInterface) {
 
 		this.connections.add(con);
-		notifyConnectionListeners(CON_UP, anotherInterface.getHost());
+		linkChanged(anotherInterface);
+		notifyConnectionListeners(CON_UP, anotherInterface);
 
 		// set up bidirectional connection
-		anotherInterface.getConnections().add(con);
+		anotherInterface.connections.add(con);
 
 		// inform routers about the connection
 		this.host.connectionUp(con);
@@ -258,18 +298,120 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	protected void disconnect(Connection con, 
 			NetworkInterface anotherInterface) {
 		con.setUpState(false);
-		notifyConnectionListeners(CON_DOWN, anotherInterface.getHost());
+		linkChanged(anotherInterface);
+		notifyConnectionListeners(CON_DOWN, anotherInterface);
 
 		// tear down bidirectional connection
-		if (!anotherInterface.getConnections().remove(con)) {
+		if (!anotherInterface.connections.remove(con)) {
 			throw new SimError("No connection " + con + " found in " +
 					anotherInterface);	
 		}
 
 		this.host.connectionDown(con);
 		anotherInterface.getHost().connectionDown(con);
+		if (this.connectionPool != null) {
+			this.connectionPool.retire(con);
+		}
 	}
 
+	/**
+	 * Counts a link change at this and another interface
+	 * @param anotherInterface The interface at the other end of the link
+	 */
+	private void linkChanged(NetworkInterface anotherInterface) {
+		this.linkChanges++;
+		anotherInterface.linkChanges++;
+		if (this.neighborDiff != null) {
+			this.neighborDiff.changed(this.host);
+			this.neighborDiff.changed(anotherInterface.host);
+		}
+	}
+
+	/**
+	 * Returns true if nothing that could change the links of this 
+	 * interface has changed since the previous update of this interface, 
+	 * so the update can be skipped. Always false if the changes are not
+	 * tracked.
+	 * @return true if no link of this interface can have changed
+	 */
+	protected boolean isNeighborhoodUnchanged() {
+		return this.neighborDiff != null && 
+			this.neighborDiff.isUnchanged(this);
+	}
+
+	/**
+	 * Returns true if the link (or lack of it) between this and another
+	 * interface may have changed since the previous update of this 
+	 * interface. Always true if the changes are not tracked.
+	 * @param anotherInterface The other interface
+	 * @return true if the link must be checked
+	 */
+	protected boolean hasChangedSinceUpdate(NetworkInterface anotherInterface) {
+		return this.neighborDiff == null || 
+			this.neighborDiff.hasChanged(this, anotherInterface);
+	}
+
+	/**
+	 * Records that this interface has checked the links to all the changed
+	 * neighbors. Interfaces that use {@link #hasChangedSinceUpdate} must 
+	 * call this at the end of their update.
+	 */
+	protected void neighborsUpdated() {
+		if (this.neighborDiff != null) {
+			this.neighborDiff.checked(this);
+		}
+	}
+
+	/**
+	 * Returns a new constant bit-rate connection from this interface to 
+	 * another interface. If connection pooling is enabled, a released 
+	 * connection may be reused.
+	 * @param anotherInterface The interface in the other side
+	 * @param speed Transfer speed of the connection (Bps)
+	 * @return The connection
+	 */
+	protected CBRConnection newCBRConnection(NetworkInterface anotherInterface,
+			int speed) {
+		if (this.connectionPool != null) {
+			return this.connectionPool.cbr(this.host, this, 
+					anotherInterface.getHost(), anotherInterface, speed);
+		}
+		return new CBRConnection(this.host, this, anotherInterface.getHost(),
+				anotherInterface, speed);
+	}
+
+	/**
+	 * Returns a new variable bit-rate connection from this interface to 
+	 * another interface. If connection pooling is enabled, a released 
+	 * connection may be reused.
+	 * @param anotherInterface The interface in the other side
+	 * @return The connection
+	 */
+	protected VBRConnection newVBRConnection(
+			NetworkInterface anotherInterface) {
+		if (this.connectionPool != null) {
+			return this.connectionPool.vbr(this.host, this, 
+					anotherInterface.getHost(), anotherInterface);
+		}
+		return new VBRConnection(this.host, this, anotherInterface.getHost(),
+				anotherInterface);
+	}
+
+	/**
+	 * Called when a connection of this interface starts transferring a
+	 * message (in either direction). This implementation does nothing.
+	 * @param con The connection
+	 */
+	protected void transferStarted(Connection con) { }
+
+	/**
+	 * Called when a connection of this interface stops transferring a
+	 * message because the transfer was finished or aborted. This
+	 * implementation does nothing.
+	 * @param con The connection
+	 */
+	protected void transferEnded(Connection con) { }
+
 	/**
 	 * Returns true if another interface is within radio range of this interface
 	 * and this interface is also within radio range of the another interface.
@@ -293,13 +435,17 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	 * @return True if the two hosts are connected
 	 */
 	protected boolean isConnected(NetworkInterface netinterface) {
-		for (int i = 0; i < this.connections.size(); i++) {
-			if (this.connections.get(i).getOtherInterface(this) == 
-				netinterface) {
-				return true;
-			}
-		}
-		return false;
+		return getConnection(netinterface) != null;
+	}
+
+	/**
+	 * Returns the connection between this and another interface. Takes
+	 * constant time regardless of the number of connections.
+	 * @param netinterface The other NetworkInterface
+	 * @return The connection or null if the interfaces are not connected
+	 */
+	public Connection getConnection(NetworkInterface netinterface) {
+		return ((ConnectionTable)this.connections).get(netinterface);
 	}
 	
 	/**
@@ -321,16 +467,108 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	 */
 	abstract public void update();
 
+	/**
+	 * Returns true if this interface supports the two phase connectivity
+	 * update. In the two phase update the link changes of all interfaces
+	 * are first found with {@link #findLinkChanges()} (possibly 
+	 * concurrently) and then applied one interface at a time with 
+	 * {@link #applyLinkChanges()}, instead of calling 
+	 * {@link #update()}. This implementation returns false.
+	 * @return true if the two phase update is supported
+	 */
+	public boolean supportsTwoPhaseUpdate() {
+		return false;
+	}
+
+	/**
+	 * Updates the location of this interface in the connectivity optimizer.
+	 * In the two phase update, this is done for all interfaces before
+	 * finding any link changes.
+	 */
+	public void updateOptimizerLocation() {
+		optimizer.updateLocation(this);
+	}
+
+	/**
+	 * Returns the index of this interface's cell in the connectivity
+	 * optimizer (see {@link ConnectivityOptimizer#getCellIndex})
+	 * @return The cell index
+	 */
+	public int getOptimizerCell() {
+		return optimizer.getCellIndex(this);
+	}
+
+	/**
+	 * Finds the connections of this interface that are out of range and the
+	 * near interfaces that are in range but not connected to this interface.
+	 * Does not modify any state of the other interfaces, so this can be 
+	 * called concurrently for different interfaces as long as no 
+	 * connections are changed meanwhile. The changes are kept in this
+	 * interface until {@link #applyLinkChanges()} is called.
+	 */
+	public void findLinkChanges() {
+		LinkChanges changes = this.pendingLinkChanges;
+		for (int i=0, n = this.connections.size(); i < n; i++) {
+			Connection con = this.connections.get(i);
+			if (!isWithinRange(con.getOtherInterface(this))) {
+				changes.down.add(con);
+			}
+		}
+		optimizer.findNearInterfaces(this, this.nearInterfaces);
+		for (int i=0, n = this.nearInterfaces.size(); i < n; i++) {
+			NetworkInterface ni = this.nearInterfaces.get(i);
+			if (ni != this && isWithinRange(ni) && !isConnected(ni)) {
+				changes.up.add(ni);
+			}
+		}
+	}
+
+	/**
+	 * Applies and clears the link changes found by 
+	 * {@link #findLinkChanges()}. Tears down the out of range connections 
+	 * that the other end has not torn down already and then tries to 
+	 * connect to the found interfaces.
+	 */
+	public void applyLinkChanges() {
+		LinkChanges changes = this.pendingLinkChanges;
+		for (int i=0, n = changes.down.size(); i < n; i++) {
+			Connection con = changes.down.get(i);
+			if (con.isUp()) {
+				disconnect(con, con.getOtherInterface(this));
+				this.connections.remove(con);
+			}
+		}
+		for (int i=0, n = changes.up.size(); i < n; i++) {
+			connect(changes.up.get(i));
+		}
+		changes.down.clear();
+		changes.up.clear();
+	}
+
 	/**
 	 * Notifies all the connection listeners about a change in connections.
+	 * Listeners that are {@link LinkListener}s are told about the
+	 * interfaces instead of the hosts.
 	 * @param type Type of the change (e.g. {@link #CON_DOWN} )
-	 * @param otherHost The other host on the other end of the connection.
+	 * @param otherInterface The interface on the other end of the connection.
 	 */
-	private void notifyConnectionListeners(int type, DTNHost otherHost) {
+	private void notifyConnectionListeners(int type, 
+			NetworkInterface otherInterface) {
 		if (this.cListeners == null) {
 			return;
 		}
+		DTNHost otherHost = otherInterface.getHost();
 		for (ConnectionListener cl : this.cListeners) {
+			if (cl instanceof LinkListener) {
+				LinkListener ll = (LinkListener)cl;
+				if (type == CON_UP) {
+					ll.interfacesConnected(this, otherInterface);
+				}
+				else {
+					ll.interfacesDisconnected(this, otherInterface);
+				}
+				continue;
+			}
 			switch (type) {
 			case CON_UP:
 				cl.hostsConnected(this.host, otherHost);
@@ -363,6 +601,9 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		else {
 			throw new SimError("Unexpected combus ID " + key);
 		}
+		if (this.neighborDiff != null && !key.equals(SPEED_ID)) {
+			this.neighborDiff.changed(this.host);
+		}
 	}
 
 	/** 
@@ -399,10 +640,11 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		Connection con = this.connections.get(index);
 		DTNHost anotherNode = anotherInterface.getHost();
 		con.setUpState(false);
-		notifyConnectionListeners(CON_DOWN, anotherNode);
+		linkChanged(anotherInterface);
+		notifyConnectionListeners(CON_DOWN, anotherInterface);
 
 		// tear down bidirectional connection
-		if (!anotherInterface.getConnections().remove(con)) {
+		if (!anotherInterface.connections.remove(con)) {
 			throw new SimError("No connection " + con + " found in " +
 					anotherNode);   
 		}
@@ -411,6 +653,9 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		anotherNode.connectionDown(con);
 
 		connections.remove(index);
+		if (this.connectionPool != null) {
+			this.connectionPool.retire(con);
+		}
 	}
 
 	/**
@@ -437,4 +682,17 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 			". Connections: " +	this.connections;
 	}
 
+	/**
+	 * Link changes of an interface found in the first phase of the two 
+	 * phase connectivity update
+	 */
+	private static class LinkChanges implements Serializable {
+		private static final long serialVersionUID = 1L;
+		/** connections that went out of range */
+		private final List<Connection> down = new ArrayList<Connection>(0);
+		/** interfaces that came in range */
+		private final List<NetworkInterface> up = 
+			new ArrayList<NetworkInterface>(0);
+	}
+
 }
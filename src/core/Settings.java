@@ -12,11 +12,12 @@ import java.io.PrintStream;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.Properties;
 import java.util.Scanner;
 import java.util.Set;
+import java.util.SortedMap;
 import java.util.Stack;
+import java.util.TreeMap;
 
 /**
  * Interface for simulation settings stored in setting file(s). Settings class
@@ -63,12 +64,8 @@ public class Settings {
      * Stream where all read settings are written to
      */
     private static PrintStream out = null;
-    private static final Set<String> writtenSettings = new HashSet<String>();
+    private static final String NEWLINE = System.getProperty("line.separator");
 
-    /**
-     * run index for run-specific settings
-     */
-    private static int runIndex = 0;
     private String namespace = null; // namespace to look the settings from
     private String secondaryNamespace = null;
     private final Stack<String> oldNamespaces;
@@ -110,8 +107,9 @@ public class Settings {
      * disable run indexing
      */
     public static void setRunIndex(int index) {
-        runIndex = index;
-        writtenSettings.clear();
+        SimContext context = SimContext.current();
+        context.runIndex = index;
+        context.writtenSettings.clear();
     }
 
     /**
@@ -239,6 +237,10 @@ public class Settings {
             throw new SettingsError(e);
         }
 
+        if (out != null && out != System.out) {
+            out.close(); // output of the earlier settings
+        }
+        out = null;
         outFile = props.getProperty(SETTING_OUTPUT_S);
         if (outFile != null) {
             if (outFile.trim().length() == 0) {
@@ -271,17 +273,60 @@ public class Settings {
     }
 
     /**
-     * Writes the given setting string to the settings output (if any)
+     * Writes the given setting string to the settings output (if any). The
+     * settings of a run that collects its settings output are written when
+     * {@link #flushOutput()} is called.
      *
      * @param setting The string to write
      */
     private static void outputSetting(String setting) {
-        if (out != null && !writtenSettings.contains(setting)) {
-            if (writtenSettings.size() == 0) {
-                out.println("# Settings for run " + (runIndex + 1));
+        if (out == null) {
+            return;
+        }
+        SimContext context = SimContext.current();
+        synchronized (context) { // a run can read settings in many threads
+            Set<String> writtenSettings = context.writtenSettings;
+            if (!writtenSettings.add(setting)) {
+                return;
+            }
+            String header = null;
+            if (writtenSettings.size() == 1) {
+                header = "# Settings for run " + (context.runIndex + 1);
+            }
+            if (context.settingsOutput != null) {
+                if (header != null) {
+                    context.settingsOutput.append(header).append(NEWLINE);
+                }
+                context.settingsOutput.append(setting).append(NEWLINE);
+                return;
+            }
+            synchronized (out) {
+                if (header != null) {
+                    out.println(header);
+                }
+                out.println(setting);
+            }
+        }
+    }
+
+    /**
+     * Writes the settings the current run has read since the last call to
+     * the settings output as one block. Runs should call this when they are
+     * done; concurrent runs can call it in their run index order to get the
+     * same output as runs executed one by one.
+     */
+    public static void flushOutput() {
+        SimContext context = SimContext.current();
+        synchronized (context) {
+            if (out == null || context.settingsOutput == null ||
+                    context.settingsOutput.length() == 0) {
+                return;
             }
-            out.println(setting);
-            writtenSettings.add(setting);
+            synchronized (out) {
+                out.print(context.settingsOutput);
+                out.flush();
+            }
+            context.settingsOutput.setLength(0);
         }
     }
 
@@ -340,21 +385,15 @@ public class Settings {
             init(null);
         }
         fullPropName = getFullPropertyName(name, false);
-        String value = props.getProperty(fullPropName);
-
-        if (value != null) { // found value, check if run setting can be parsed
-            value = parseRunSetting(value.trim());
-        }
+        String value = getRunProperty(fullPropName);
+        WarmupSnapshot.settingRead(fullPropName, value);
 
         if ((value == null || value.length() == 0)
                 && this.secondaryNamespace != null) {
             // try secondary namespace if the value wasn't found from primary
             fullPropName = getFullPropertyName(name, true);
-            value = props.getProperty(fullPropName);
-
-            if (value != null) {
-                value = parseRunSetting(value.trim());
-            }
+            value = getRunProperty(fullPropName);
+            WarmupSnapshot.settingRead(fullPropName, value);
         }
 
         if (value == null || value.length() == 0) {
@@ -366,6 +405,47 @@ public class Settings {
         return value;
     }
 
+    /**
+     * Returns the values of all the settings whose names start with a prefix
+     * for the current run, i.e., with the run arrays (if any) already parsed.
+     * The settings are not written to the settings output.
+     *
+     * @param prefix Prefix of the full names of the settings (e.g., a
+     * namespace)
+     * @return The full names and values of the settings, sorted by name
+     */
+    public static SortedMap<String, String> getRunSettings(String prefix) {
+        if (props == null) {
+            init(null);
+        }
+        SortedMap<String, String> settings = new TreeMap<String, String>();
+        for (String name : props.stringPropertyNames()) {
+            if (name.startsWith(prefix)) {
+                settings.put(name, getRunProperty(name));
+            }
+        }
+        return settings;
+    }
+
+    /**
+     * Returns the value of a property for the current run, i.e., with the
+     * run array (if any) already parsed
+     *
+     * @param fullPropName Full (namespace prefixed) name of the property
+     * @return The value of the property or null if there is no such property
+     */
+    static String getRunProperty(String fullPropName) {
+        if (props == null) {
+            init(null);
+        }
+        String value = props.getProperty(fullPropName);
+
+        if (value != null) { // found value, check if run setting can be parsed
+            value = parseRunSetting(value.trim());
+        }
+        return value;
+    }
+
     /**
      * Parses run-specific settings from a String value
      *
@@ -373,6 +453,7 @@ public class Settings {
      * @return The runIndex % arrayLength'th value of the run array
      */
     private static String parseRunSetting(String value) {
+        int runIndex = SimContext.current().runIndex;
         final String RUN_ARRAY_START = "[";
         final String RUN_ARRAY_END = "]";
         final String RUN_ARRAY_DELIM = ";";
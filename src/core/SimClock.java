@@ -6,17 +6,16 @@ package core;
 
 
 /**
- * Wall clock for checking the simulation time.
+ * Wall clock for checking the simulation time. The time is kept in the
+ * {@link SimContext} of the current run.
  */
 public class SimClock {
-	private static double clockTime = 0.0;
-	private static SimClock clock = null;
+	private static final SimClock clock = new SimClock();
 	
 	private SimClock() {}
 	
 	static {
 		DTNSim.registerForReset(SimClock.class.getCanonicalName());
-		reset();
 	}
 	
 	/**
@@ -24,9 +23,6 @@ public class SimClock {
 	 * @return The instance of this clock
 	 */
 	public static SimClock getInstance() {
-		if (clock == null) {
-			clock = new SimClock();
-		}
 		return clock;
 	}
 	
@@ -35,7 +31,7 @@ public class SimClock {
 	 * @return Time as a double
 	 */
 	public static double getTime() {
-		return clockTime;
+		return SimContext.current().clockTime;
 	}
 	
 	/**
@@ -43,15 +39,36 @@ public class SimClock {
 	 * @return Time as integer
 	 */
 	public static int getIntTime() {
-		return (int)Math.round(clockTime);
+		return (int)Math.round(SimContext.current().clockTime);
 	}
 	
+	/**
+	 * Returns the earliest time when at least the given time has elapsed
+	 * since a start time, i.e., the smallest time <CODE>t</CODE> for which
+	 * <CODE>t - start &gt;= elapsed</CODE> is true when computed with
+	 * doubles. Modules that check elapsed times that way can use this to
+	 * tell exactly when the check becomes true.
+	 * @param start The start time
+	 * @param elapsed The time that should have elapsed
+	 * @return The earliest time when the time has elapsed
+	 */
+	public static double timeAfter(double start, double elapsed) {
+		double time = start + elapsed;
+		while (time - start < elapsed) {
+			time = Math.nextUp(time);
+		}
+		while (Math.nextDown(time) - start >= elapsed) {
+			time = Math.nextDown(time);
+		}
+		return time;
+	}
+
 	/**
 	 * Advances the time by n seconds
 	 * @param time Nrof seconds to increase the time
 	 */
 	public void advance(double time) {
-		clockTime += time;
+		SimContext.current().clockTime += time;
 	}
 	
 	/**
@@ -59,7 +76,7 @@ public class SimClock {
 	 * @param time the time to set
 	 */
 	public void setTime(double time) {
-		clockTime = time;
+		SimContext.current().clockTime = time;
 	}
 	
 	/**
@@ -67,13 +84,13 @@ public class SimClock {
 	 * @return the current simulation time in a string 
 	 */
 	public String toString() {
-		return "SimTime: " + clockTime;
+		return "SimTime: " + getTime();
 	}
 	
 	/**
 	 * Resets the static fields of the class
 	 */
 	public static void reset() {
-		clockTime = 0;
+		SimContext.current().clockTime = 0;
 	}
 }
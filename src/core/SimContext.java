@@ -0,0 +1,228 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.io.Serializable;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-run simulation state. All state that used to be kept in static
+ * fields (simulation time, address and ID counters, the scenario, etc.)
+ * lives in the context of the current thread, so that several simulation
+ * runs can execute concurrently in the same JVM. Threads that have not
+ * entered a context explicitly share one global context, which gives the
+ * traditional single run behavior.
+ * <P>Classes outside the core package store their run-specific state with
+ * {@link #getState(Object)} and {@link #setState(Object, Object)}, using
+ * e.g. their class object as the key. Such state should be created lazily
+ * since the context of a new run starts empty.</P>
+ * <P>One run can use its context from several threads at the same time
+ * (see {@link World#forEachHostRange}), so the module state and the
+ * counters are safe for concurrent use. State that is created lazily
+ * while the run is multithreaded should be stored with
+ * {@link #putStateIfAbsent(Object, Object)}.</P>
+ * <P>The settings a run reads are collected in its context and written
+ * to the settings output as one block by {@link Settings#flushOutput()},
+ * so concurrent runs don't mix their settings. Only the global context
+ * writes its settings as they are read.</P>
+ */
+public class SimContext implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	/** context used by the threads that have not entered one */
+	private static final SimContext GLOBAL = new SimContext(0, false);
+	private static final ThreadLocal<SimContext> current =
+		new InheritableThreadLocal<SimContext>() {
+			protected SimContext initialValue() {
+				return GLOBAL;
+			}
+		};
+
+	/** run index for run-specific settings */
+	int runIndex;
+	/** settings already written to the settings output during this run */
+	final Set<String> writtenSettings;
+	/** settings output of this run not written yet (null if the settings
+	 * are written as they are read) */
+	StringBuilder settingsOutput;
+	/** current simulation time */
+	double clockTime;
+	/** next address given to a host */
+	int nextHostAddress;
+	/** next unique ID given to a message */
+	int nextMessageId;
+	/** next address given to a network interface */
+	int nextInterfaceAddress;
+	/** rng for interface scanning phases */
+	Random interfaceRng;
+	/** the scenario of the run */
+	SimScenario scenario;
+	/** state of the modules outside the core package */
+	private final ConcurrentHashMap<Object, Object> state;
+	/** ID counters of the modules outside the core package */
+	private final ConcurrentHashMap<Object, Integer> counters;
+	/** warm-up snapshot being recorded in this run (null if none) */
+	transient WarmupSnapshot warmupRecording;
+
+	/**
+	 * Creates a new, empty context for a simulation run
+	 * @param runIndex The run index for the run-specific settings
+	 * @see Settings#setRunIndex(int)
+	 */
+	public SimContext(int runIndex) {
+		this(runIndex, true);
+	}
+
+	/**
+	 * Creates a new context
+	 * @param runIndex The run index for the run-specific settings
+	 * @param collectSettings If true, the settings output of the run is
+	 * collected until {@link Settings#flushOutput()} is called
+	 */
+	private SimContext(int runIndex, boolean collectSettings) {
+		this.runIndex = runIndex;
+		this.writtenSettings = new HashSet<String>();
+		if (collectSettings) {
+			this.settingsOutput = new StringBuilder();
+		}
+		this.state = new ConcurrentHashMap<Object, Object>();
+		this.counters = new ConcurrentHashMap<Object, Integer>();
+	}
+
+	/**
+	 * Returns the context of the current thread
+	 * @return the context of the current thread
+	 */
+	public static SimContext current() {
+		return current.get();
+	}
+
+	/**
+	 * Makes the given context the context of the current thread (and the
+	 * threads created by it).
+	 * @param context The context to enter
+	 */
+	public static void enter(SimContext context) {
+		current.set(context);
+	}
+
+	/**
+	 * Returns the current thread to the global context
+	 */
+	public static void exit() {
+		current.remove();
+	}
+
+	/**
+	 * Returns the run index of this context
+	 * @return the run index of this context
+	 */
+	public int getRunIndex() {
+		return this.runIndex;
+	}
+
+	/**
+	 * Returns the module state stored with the given key
+	 * @param key The key of the state
+	 * @return The state or null if nothing is stored with the key
+	 */
+	public Object getState(Object key) {
+		return this.state.get(key);
+	}
+
+	/**
+	 * Stores a module state with the given key. Replaces any earlier state
+	 * with the same key.
+	 * @param key The key of the state
+	 * @param value The state to store (null removes the state)
+	 */
+	public void setState(Object key, Object value) {
+		if (value == null) {
+			this.state.remove(key);
+		}
+		else {
+			this.state.put(key, value);
+			if (this.warmupRecording != null) {
+				this.warmupRecording.stateSet(key);
+			}
+		}
+	}
+
+	/**
+	 * Stores a module state with the given key unless some state is already
+	 * stored with it. Unlike {@link #getState(Object)} followed by
+	 * {@link #setState(Object, Object)}, this is atomic.
+	 * @param key The key of the state
+	 * @param value The state to store
+	 * @return The state stored with the key after the call (the given
+	 * value or the earlier state)
+	 */
+	public Object putStateIfAbsent(Object key, Object value) {
+		Object old = this.state.putIfAbsent(key, value);
+		if (old != null) {
+			return old;
+		}
+		if (this.warmupRecording != null) {
+			this.warmupRecording.stateSet(key);
+		}
+		return value;
+	}
+
+	/**
+	 * Returns the next value of a counter and increments the counter.
+	 * Counters start from zero in every run.
+	 * @param key The key of the counter
+	 * @return The next value of the counter
+	 */
+	public synchronized int nextCounterValue(Object key) {
+		Integer value = this.counters.get(key);
+		int next = (value == null ? 0 : value);
+		this.counters.put(key, next + 1);
+		if (this.warmupRecording != null) {
+			this.warmupRecording.stateSet(key);
+		}
+		return next;
+	}
+
+	/**
+	 * Resets a counter back to zero
+	 * @param key The key of the counter
+	 */
+	public synchronized void resetCounter(Object key) {
+		this.counters.remove(key);
+	}
+
+	/**
+	 * Takes in use the post warm-up state of another run: the simulation
+	 * time, the address and ID counters, the scenario and the module state
+	 * with the given keys. The run index and the settings output state of
+	 * this context are kept.
+	 * @param other The context to take the state from
+	 * @param keys Keys of the module state and counters to take
+	 */
+	void adoptWarmupState(SimContext other, Set<Object> keys) {
+		this.clockTime = other.clockTime;
+		this.nextHostAddress = other.nextHostAddress;
+		this.nextMessageId = other.nextMessageId;
+		this.nextInterfaceAddress = other.nextInterfaceAddress;
+		this.interfaceRng = other.interfaceRng;
+		this.scenario = other.scenario;
+		if (this.scenario != null) {
+			this.scenario.getWorld().setContext(this);
+		}
+
+		for (Object key : keys) {
+			if (other.state.containsKey(key)) {
+				this.state.put(key, other.state.get(key));
+			}
+			if (other.counters.containsKey(key)) {
+				this.counters.put(key, other.counters.get(key));
+			}
+		}
+	}
+}
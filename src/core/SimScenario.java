@@ -17,6 +17,7 @@ import movement.MapBasedMovement;
 import movement.MovementModel;
 import movement.map.SimMap;
 import routing.MessageRouter;
+import routing.PassiveRouter;
 import routing.contextAware.ContextAwareRLRouter;
 
 /**
@@ -25,9 +26,6 @@ import routing.contextAware.ContextAwareRLRouter;
  */
 public class SimScenario implements Serializable {
 	
-	/** a way to get a hold of this... */	
-	private static SimScenario myinstance=null;
-
 	/** namespace of scenario settings ({@value})*/
 	public static final String SCENARIO_NS = "Scenario";
 	/** number of host groups -setting id ({@value})*/
@@ -92,7 +90,7 @@ public class SimScenario implements Serializable {
 	/** List of hosts in this simulation */
 	protected List<DTNHost> hosts;
 	/** Name of the simulation */
-	private final String name;
+	private String name;
 	/** number of host groups */
 	int nrofGroups;
 	/** Width of the world */
@@ -111,6 +109,8 @@ public class SimScenario implements Serializable {
 	private final boolean simulateConnections;
 	/** Map used for host movement (if any) */
 	private SimMap simMap;
+	/** Is this a scenario for computing only the movement and contacts */
+	private final boolean contactsOnly;
 
 	/** Global connection event listeners */
 	private final List<ConnectionListener> connectionListeners;
@@ -125,21 +125,31 @@ public class SimScenario implements Serializable {
 
 	static {
 		DTNSim.registerForReset(SimScenario.class.getCanonicalName());
-		reset();
 	}
 	
 	public static void reset() {
-		myinstance = null;
+		SimContext.current().scenario = null;
 	}
 
 	/**
 	 * Creates a scenario based on Settings object.
 	 */
 	protected SimScenario() {
+		this(false);
+	}
+
+	/**
+	 * Creates a scenario based on Settings object.
+	 * @param contactsOnly If true, the scenario is only used for computing
+	 * the movement and the contacts of the hosts: the hosts get passive
+	 * routers and the world does not process the external events
+	 */
+	protected SimScenario(boolean contactsOnly) {
 		Settings s = new Settings(SCENARIO_NS);
+		this.contactsOnly = contactsOnly;
 		nrofGroups = s.getInt(NROF_GROUPS_S);
 
-		this.name = s.valueFillString(s.getSetting(NAME_S));
+		readName();
 		this.endTime = s.getDouble(END_TIME_S);
 		this.updateInterval = s.getDouble(UP_INT_S);
 		this.simulateConnections = s.getBoolean(SIM_CON_S);
@@ -171,16 +181,37 @@ public class SimScenario implements Serializable {
 		this.world = new World(hosts, worldSizeX, worldSizeY, updateInterval, 
 				updateListeners, simulateConnections, 
 				eqHandler.getEventQueues());
+		if (contactsOnly) {
+			this.world.setContactsOnly();
+		}
 	}
 	
 	/**
 	 * Returns the SimScenario instance and creates one if it doesn't exist yet
 	 */
 	public static SimScenario getInstance() {
-		if (myinstance == null) {
-			myinstance = new SimScenario();
+		SimContext context = SimContext.current();
+		if (context.scenario == null) {
+			context.scenario = new SimScenario();
 		}
-		return myinstance;
+		return context.scenario;
+	}
+
+	/**
+	 * Creates a scenario for computing only the movement and the contacts
+	 * of the hosts, and makes it the scenario of the current run. Hosts of
+	 * the scenario have {@link PassiveRouter}s and its world does not 
+	 * process the external events (see {@link World#setContactsOnly()}).
+	 * @return The created scenario
+	 * @throws SimError if the current run already has a scenario
+	 */
+	public static SimScenario createContactInstance() {
+		SimContext context = SimContext.current();
+		if (context.scenario != null) {
+			throw new SimError("The run already has a scenario");
+		}
+		context.scenario = new SimScenario(true);
+		return context.scenario;
 	}
 
 	/**
@@ -340,15 +371,12 @@ public class SimScenario implements Serializable {
 			String gid = s.getSetting(GROUP_ID_S);
 			int nrofHosts = s.getInt(NROF_HOSTS_S);
 			int nrofInterfaces = s.getInt(NROF_INTERF_S);
-			int appCount;
 
 			// creates prototypes of MessageRouter and MovementModel
 			MovementModel mmProto = 
 				(MovementModel)s.createIntializedObject(MM_PACKAGE + 
 						s.getSetting(MOVEMENT_MODEL_S));
-			MessageRouter mRouterProto = 
-				(MessageRouter)s.createIntializedObject(ROUTING_PACKAGE + 
-						s.getSetting(ROUTER_S));
+			MessageRouter mRouterProto = createRouterPrototype(s);
 			
 			// checks that these values are positive (throws Error if not)
 			ensurePositiveValue(nrofHosts, NROF_HOSTS_S);
@@ -365,6 +393,42 @@ public class SimScenario implements Serializable {
 				mmNetInterfaces.add(mmInterface);
 			}
 
+			if (mmProto instanceof MapBasedMovement) {
+				this.simMap = ((MapBasedMovement)mmProto).getMap();
+			}
+
+			// creates hosts of ith group
+			for (int j=0; j<nrofHosts; j++) {
+				ModuleCommunicationBus comBus = new ModuleCommunicationBus();
+
+				// prototypes are given to new DTNHost which replicates
+				// new instances of movement model and message router
+				DTNHost host = new DTNHost(this.messageListeners, 
+						this.movementListeners,	gid, mmNetInterfaces, comBus, 
+						mmProto, mRouterProto);
+				hosts.add(host);
+			}
+		}
+	}
+
+	/**
+	 * Creates the message router prototype, with the applications, of a 
+	 * host group
+	 * @param s Settings of the host group
+	 * @return The router prototype
+	 */
+	private MessageRouter createRouterPrototype(Settings s) {
+		if (this.contactsOnly) {
+			return new PassiveRouter(s);
+		}
+
+		WarmupSnapshot.pauseRecording(); // routers are not part of snapshots
+		try {
+			MessageRouter mRouterProto = 
+				(MessageRouter)s.createIntializedObject(ROUTING_PACKAGE + 
+						s.getSetting(ROUTER_S));
+			int appCount;
+
 			// setup applications
 			if (s.contains(APPCOUNT_S)) {
 				appCount = s.getInt(APPCOUNT_S);
@@ -395,22 +459,52 @@ public class SimScenario implements Serializable {
 				}
 			}
 
-			if (mmProto instanceof MapBasedMovement) {
-				this.simMap = ((MapBasedMovement)mmProto).getMap();
-			}
+			return mRouterProto;
+		}
+		finally {
+			WarmupSnapshot.resumeRecording();
+		}
+	}
 
-			// creates hosts of ith group
-			for (int j=0; j<nrofHosts; j++) {
-				ModuleCommunicationBus comBus = new ModuleCommunicationBus();
+	/**
+	 * Reads the name of the scenario from the settings. The name (and the
+	 * settings its value fill place holders refer to) is not part of 
+	 * warm-up snapshots, so it is read again after a snapshot is taken in
+	 * use.
+	 * @see WarmupSnapshot
+	 */
+	void readName() {
+		WarmupSnapshot.pauseRecording();
+		try {
+			Settings s = new Settings(SCENARIO_NS);
+			this.name = s.valueFillString(s.getSetting(NAME_S));
+		}
+		finally {
+			WarmupSnapshot.resumeRecording();
+		}
+	}
 
-				// prototypes are given to new DTNHost which replicates
-				// new instances of movement model and message router
-				DTNHost host = new DTNHost(this.messageListeners, 
-						this.movementListeners,	gid, mmNetInterfaces, comBus, 
-						mmProto, mRouterProto);
-				hosts.add(host);
+	/**
+	 * Gives every host a new router created from the current settings and
+	 * initializes the routers like {@link #createHosts()} does. Used after
+	 * the hosts have been taken from a warm-up snapshot of a run whose
+	 * router settings may have been different.
+	 * @see WarmupSnapshot
+	 */
+	void recreateRouters() {
+		int hostIndex = 0;
+		for (int i=1; i<=nrofGroups; i++) {
+			Settings s = new Settings(GROUP_NS+i);
+			s.setSecondaryNamespace(GROUP_NS);
+			int nrofHosts = s.getInt(NROF_HOSTS_S);
+			MessageRouter mRouterProto = createRouterPrototype(s);
+
+			for (int j=0; j<nrofHosts; j++) {
+				hosts.get(hostIndex++).replaceRouter(mRouterProto);
 			}
 		}
+
+		postHostInitHook();
 	}
 
 	/**
@@ -0,0 +1,432 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <P>Updates the hosts after an external event when only the affected hosts
+ * should be updated (see {@link World#UPDATE_TOUCHED_ONLY_S}). The affected
+ * hosts are the hosts the event touched and the hosts whose routers want an
+ * update (see {@link routing.MessageRouter#nextUpdateTime()}). They are
+ * updated in the same order as in a full update of all hosts.</P>
+ * <P>The wake-up times the routers ask for are kept in a heap, so finding
+ * the hosts that want an update takes time only for those hosts instead of
+ * asking every router. The wake-up time of a host is refreshed after every
+ * full update, after the host is updated or checked and after a host it is
+ * connected to is updated. A host that is connected to an updated host and
+ * comes later in the update order is also checked in the same event,
+ * because the update may have given it something to do (e.g., a finished
+ * transfer).</P>
+ * <P>The update order is shuffled before every event like in full updates,
+ * but the shuffles are applied to the order only before the next full
+ * update or when the seed changes. Until then the positions of the hosts
+ * are looked up from the cycles of the shuffle's permutation, which takes
+ * constant time however many times the order was shuffled with the same
+ * seed.</P>
+ * <P>The results are the same as when all routers are asked as long as a
+ * router's wake-up time only changes when its host or a host connected to
+ * it is updated or touched. State that routers share in some other way is
+ * noticed at the next full update.</P>
+ */
+class TouchedHostUpdater implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private final World world;
+	private final List<DTNHost> hosts;
+	/** the update order (null if the order is not randomized) */
+	private final List<DTNHost> order;
+	/** positions of the hosts in the update order when no shuffles are
+	 * pending */
+	private final int[] positions;
+	/** seed of the pending shuffles */
+	private int shuffleSeed;
+	/** number of the shuffles not yet applied to the update order */
+	private int nrofShuffles;
+	/** the positions of the shuffle's permutation listed cycle by cycle */
+	private int[] cycles;
+	/** start index of each position's cycle in cycles */
+	private int[] cycleStarts;
+	/** length of each position's cycle */
+	private int[] cycleLengths;
+	/** index of each position in its cycle */
+	private int[] cycleIndexes;
+
+	/** wake-up times of the hosts (by address) */
+	private final double[] wakeTimes;
+	/** addresses of the hosts with a wake-up time, in heap order */
+	private final int[] wakeHeap;
+	/** positions of the hosts in wakeHeap (-1 if not in the heap) */
+	private final int[] wakeIndex;
+	private int nrofWakeups;
+	/** have the wake-up times been read from the routers */
+	private boolean initialized;
+
+	/** addresses of the hosts to check in the current event, in heap order
+	 * of their update order positions */
+	private final int[] candidates;
+	private final int[] candidatePositions;
+	private int nrofCandidates;
+	/** hosts whose wake-up times are refreshed after the current event */
+	private final int[] refreshed;
+	private int nrofRefreshed;
+	/** stamps of the current event for the hosts that were touched, added
+	 * as candidates or to be refreshed */
+	private final int[] touchedStamps;
+	private final int[] candidateStamps;
+	private final int[] refreshStamps;
+	private int stamp;
+
+	/**
+	 * Creates an updater for the hosts of a world
+	 * @param world The world whose hosts are updated
+	 * @param hosts The hosts (indexed by their addresses)
+	 * @param order The update order of the hosts or null if the hosts are
+	 * updated in the address order
+	 */
+	TouchedHostUpdater(World world, List<DTNHost> hosts,
+			List<DTNHost> order) {
+		int n = hosts.size();
+		this.world = world;
+		this.hosts = hosts;
+		this.order = order;
+		this.positions = new int[n];
+		for (int i=0; i < n; i++) {
+			this.positions[(order != null ? order : hosts).get(i).getAddress()]
+				= i;
+		}
+		this.wakeTimes = new double[n];
+		this.wakeHeap = new int[n];
+		this.wakeIndex = new int[n];
+		Arrays.fill(this.wakeIndex, -1);
+		this.candidates = new int[n];
+		this.candidatePositions = new int[n];
+		this.refreshed = new int[n];
+		this.touchedStamps = new int[n];
+		this.candidateStamps = new int[n];
+		this.refreshStamps = new int[n];
+		this.initialized = false;
+	}
+
+	/**
+	 * Updates the hosts an event touched and the hosts whose routers want
+	 * an update now
+	 * @param touched Addresses of the hosts the event touched
+	 */
+	void update(int[] touched) {
+		if (!this.initialized) {
+			refreshAll();
+		}
+		double now = SimClock.getTime();
+		nextStamp();
+
+		for (int address : touched) {
+			this.touchedStamps[address] = this.stamp;
+			addCandidate(address);
+		}
+		while (this.nrofWakeups > 0 &&
+				this.wakeTimes[this.wakeHeap[0]] <= now) {
+			addCandidate(this.wakeHeap[0]);
+			removeWakeup(this.wakeHeap[0]);
+		}
+
+		while (this.nrofCandidates > 0 && !this.world.isCancelled()) {
+			int position = this.candidatePositions[0];
+			DTNHost host = this.hosts.get(pollCandidate());
+			int address = host.getAddress();
+			markRefreshed(address);
+			if (this.touchedStamps[address] != this.stamp &&
+					host.getRouter().nextUpdateTime() > now) {
+				continue;
+			}
+			host.update(false);
+			for (Connection con : host.getConnections()) {
+				int other = con.getOtherNode(host).getAddress();
+				if (position(other) > position) {
+					addCandidate(other);
+				}
+				markRefreshed(other);
+			}
+		}
+		refreshMarked();
+	}
+
+	/**
+	 * Refreshes the wake-up times of the hosts a transfer completion
+	 * updated and of the hosts connected to them
+	 * @param touched Addresses of the updated hosts
+	 */
+	void updated(int[] touched) {
+		if (!this.initialized) {
+			return; // all are read at the first use
+		}
+		nextStamp();
+		for (int address : touched) {
+			markRefreshed(address);
+			DTNHost host = this.hosts.get(address);
+			for (Connection con : host.getConnections()) {
+				markRefreshed(con.getOtherNode(host).getAddress());
+			}
+		}
+		refreshMarked();
+	}
+
+	/**
+	 * Reads the wake-up times of all the hosts' routers. Should be called
+	 * after all hosts have been updated.
+	 */
+	void refreshAll() {
+		for (int address = 0, n = hosts.size(); address < n; address++) {
+			setWakeup(address, hosts.get(address).getRouter().nextUpdateTime());
+		}
+		this.initialized = true;
+	}
+
+	/**
+	 * Shuffles the update order like {@link java.util.Collections#shuffle}
+	 * with a new random number generator using the given seed. The shuffle
+	 * is applied to the order later (see {@link #applyShuffles()}).
+	 * @param seed The seed of the shuffle
+	 */
+	void shuffle(int seed) {
+		if (this.nrofShuffles > 0 && seed != this.shuffleSeed) {
+			applyShuffles();
+		}
+		if (this.cycles == null || seed != this.shuffleSeed) {
+			initCycles(seed);
+		}
+		this.nrofShuffles++;
+	}
+
+	/**
+	 * Applies the pending shuffles to the update order
+	 */
+	void applyShuffles() {
+		if (this.nrofShuffles == 0) {
+			return;
+		}
+		for (int address = 0, n = hosts.size(); address < n; address++) {
+			this.positions[address] = position(address);
+		}
+		this.nrofShuffles = 0;
+		for (int address = 0, n = hosts.size(); address < n; address++) {
+			this.order.set(this.positions[address], this.hosts.get(address));
+		}
+	}
+
+	/**
+	 * Reads the positions of the hosts from the update order after the
+	 * order was changed from outside. There must not be pending shuffles.
+	 */
+	void orderChanged() {
+		assert this.nrofShuffles == 0 : "Shuffles pending";
+		for (int i=0, n = hosts.size(); i < n; i++) {
+			this.positions[this.order.get(i).getAddress()] = i;
+		}
+	}
+
+	/**
+	 * Returns the current position of a host in the update order
+	 * @param address Address of the host
+	 * @return The position of the host
+	 */
+	private int position(int address) {
+		int position = this.positions[address];
+		if (this.nrofShuffles == 0) {
+			return position;
+		}
+		int length = this.cycleLengths[position];
+		return this.cycles[this.cycleStarts[position] +
+			(int)((this.cycleIndexes[position] + (long)this.nrofShuffles) %
+					length)];
+	}
+
+	/**
+	 * Finds the cycles of the permutation a shuffle with the given seed
+	 * does. The shuffle swaps the elements the same way as
+	 * {@link java.util.Collections#shuffle(List, Random)}.
+	 * @param seed The seed of the shuffle
+	 */
+	private void initCycles(int seed) {
+		int n = this.hosts.size();
+		int[] elements = new int[n];
+		for (int i=0; i < n; i++) {
+			elements[i] = i;
+		}
+		UpdateOrderShuffle.shuffle(elements, seed);
+		int[] moves = new int[n]; // new positions by the old positions
+		for (int i=0; i < n; i++) {
+			moves[elements[i]] = i;
+		}
+
+		if (this.cycles == null) {
+			this.cycles = new int[n];
+			this.cycleStarts = new int[n];
+			this.cycleLengths = new int[n];
+			this.cycleIndexes = new int[n];
+		}
+		Arrays.fill(this.cycleLengths, 0);
+		int next = 0;
+		for (int i=0; i < n; i++) {
+			if (this.cycleLengths[i] > 0) {
+				continue; // already in a cycle
+			}
+			int start = next;
+			int position = i;
+			do {
+				this.cycleStarts[position] = start;
+				this.cycleIndexes[position] = next - start;
+				this.cycles[next++] = position;
+				position = moves[position];
+			} while (position != i);
+			for (int j = start; j < next; j++) {
+				this.cycleLengths[this.cycles[j]] = next - start;
+			}
+		}
+		this.shuffleSeed = seed;
+	}
+
+	private void nextStamp() {
+		this.stamp++;
+		this.nrofRefreshed = 0;
+		this.nrofCandidates = 0;
+	}
+
+	private void markRefreshed(int address) {
+		if (this.refreshStamps[address] != this.stamp) {
+			this.refreshStamps[address] = this.stamp;
+			this.refreshed[this.nrofRefreshed++] = address;
+		}
+	}
+
+	private void refreshMarked() {
+		for (int i=0; i < this.nrofRefreshed; i++) {
+			int address = this.refreshed[i];
+			setWakeup(address, hosts.get(address).getRouter().nextUpdateTime());
+		}
+	}
+
+	/**
+	 * Adds a host to the hosts to check in the current event
+	 * @param address Address of the host
+	 */
+	private void addCandidate(int address) {
+		if (this.candidateStamps[address] == this.stamp) {
+			return;
+		}
+		this.candidateStamps[address] = this.stamp;
+		int position = position(address);
+		int index = this.nrofCandidates++;
+		while (index > 0) {
+			int parent = (index - 1) / 2;
+			if (this.candidatePositions[parent] <= position) {
+				break;
+			}
+			this.candidates[index] = this.candidates[parent];
+			this.candidatePositions[index] = this.candidatePositions[parent];
+			index = parent;
+		}
+		this.candidates[index] = address;
+		this.candidatePositions[index] = position;
+	}
+
+	/**
+	 * Removes the candidate that is first in the update order
+	 * @return Address of the candidate
+	 */
+	private int pollCandidate() {
+		int first = this.candidates[0];
+		int size = --this.nrofCandidates;
+		int address = this.candidates[size];
+		int position = this.candidatePositions[size];
+		int index = 0;
+		while (index < size / 2) {
+			int child = 2 * index + 1;
+			if (child + 1 < size && this.candidatePositions[child + 1] <
+					this.candidatePositions[child]) {
+				child++;
+			}
+			if (position <= this.candidatePositions[child]) {
+				break;
+			}
+			this.candidates[index] = this.candidates[child];
+			this.candidatePositions[index] = this.candidatePositions[child];
+			index = child;
+		}
+		this.candidates[index] = address;
+		this.candidatePositions[index] = position;
+		return first;
+	}
+
+	/**
+	 * Sets the wake-up time of a host; Double.MAX_VALUE removes it
+	 * @param address Address of the host
+	 * @param time The wake-up time
+	 */
+	private void setWakeup(int address, double time) {
+		if (time == Double.MAX_VALUE) {
+			removeWakeup(address);
+			return;
+		}
+		int index = this.wakeIndex[address];
+		this.wakeTimes[address] = time;
+		if (index < 0) {
+			index = this.nrofWakeups++;
+		}
+		siftWakeupUp(index, address);
+		siftWakeupDown(this.wakeIndex[address], address);
+	}
+
+	private void removeWakeup(int address) {
+		int index = this.wakeIndex[address];
+		if (index < 0) {
+			return;
+		}
+		this.wakeIndex[address] = -1;
+		int last = this.wakeHeap[--this.nrofWakeups];
+		if (index < this.nrofWakeups) {
+			siftWakeupUp(index, last);
+			siftWakeupDown(this.wakeIndex[last], last);
+		}
+	}
+
+	private void siftWakeupUp(int index, int address) {
+		double time = this.wakeTimes[address];
+		while (index > 0) {
+			int parent = (index - 1) / 2;
+			if (this.wakeTimes[this.wakeHeap[parent]] <= time) {
+				break;
+			}
+			placeWakeup(index, this.wakeHeap[parent]);
+			index = parent;
+		}
+		placeWakeup(index, address);
+	}
+
+	private void siftWakeupDown(int index, int address) {
+		double time = this.wakeTimes[address];
+		while (index < this.nrofWakeups / 2) {
+			int child = 2 * index + 1;
+			if (child + 1 < this.nrofWakeups &&
+					this.wakeTimes[this.wakeHeap[child + 1]] <
+					this.wakeTimes[this.wakeHeap[child]]) {
+				child++;
+			}
+			if (time <= this.wakeTimes[this.wakeHeap[child]]) {
+				break;
+			}
+			placeWakeup(index, this.wakeHeap[child]);
+			index = child;
+		}
+		placeWakeup(index, address);
+	}
+
+	private void placeWakeup(int index, int address) {
+		this.wakeHeap[index] = address;
+		this.wakeIndex[address] = index;
+	}
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import input.EventQueue;
+import input.ExternalEvent;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Event queue of the times when the ongoing constant bit-rate transfers
+ * of a world finish. {@link CBRConnection#startTransfer(DTNHost, Message)}
+ * adds the transfer's finish time here (if the interface of the
+ * connection has a queue) and when that time comes, the routers of the
+ * sending and the receiving host are updated so the transfer is
+ * finalized exactly at its finish time instead of at the next update
+ * interval. The connection reports the transfer done only after its
+ * finish event, so the routers don't need to check the bytes left at
+ * every update. Transfers that are aborted, whose connection goes down
+ * or whose finish time has changed are skipped when their time comes.
+ */
+final class TransferCompletions implements EventQueue, Serializable {
+	private static final long serialVersionUID = 1L;
+
+	/** initial capacity of the heap */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/** finish times in heap order */
+	private double[] times;
+	/** order of addition of the entries (for ties) */
+	private long[] seqs;
+	private CBRConnection[] cons;
+	/** the transferred message of each entry */
+	private Message[] msgs;
+	private int size;
+	private long nextSeq;
+
+	/**
+	 * Creates an empty queue
+	 */
+	TransferCompletions() {
+		this.times = new double[INITIAL_CAPACITY];
+		this.seqs = new long[INITIAL_CAPACITY];
+		this.cons = new CBRConnection[INITIAL_CAPACITY];
+		this.msgs = new Message[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Adds a started transfer to the queue
+	 * @param con The connection transferring the message
+	 * @param time The time when the transfer finishes
+	 */
+	void add(CBRConnection con, double time) {
+		if (this.size == this.times.length) {
+			int capacity = 2 * this.size;
+			this.times = Arrays.copyOf(this.times, capacity);
+			this.seqs = Arrays.copyOf(this.seqs, capacity);
+			this.cons = Arrays.copyOf(this.cons, capacity);
+			this.msgs = Arrays.copyOf(this.msgs, capacity);
+		}
+		int index = this.size++;
+		long seq = this.nextSeq++;
+		while (index > 0) {
+			int parent = (index - 1) / 2;
+			if (!isBefore(time, seq, parent)) {
+				break;
+			}
+			move(parent, index);
+			index = parent;
+		}
+		set(index, time, seq, con, con.msgOnFly);
+	}
+
+	public double nextEventsTime() {
+		return this.size == 0 ? Double.MAX_VALUE : this.times[0];
+	}
+
+	public ExternalEvent nextEvent() {
+		if (this.size == 0) {
+			return new ExternalEvent(Double.MAX_VALUE);
+		}
+		Completion c = new Completion(this.times[0], this.cons[0],
+				this.msgs[0]);
+
+		int last = --this.size;
+		double time = this.times[last];
+		long seq = this.seqs[last];
+		CBRConnection con = this.cons[last];
+		Message msg = this.msgs[last];
+		this.cons[last] = null;
+		this.msgs[last] = null;
+
+		int index = 0;
+		int half = this.size / 2;
+		while (index < half) {
+			int child = 2 * index + 1;
+			if (child + 1 < this.size && isBefore(this.times[child + 1],
+					this.seqs[child + 1], child)) {
+				child++;
+			}
+			if (!isBefore(this.times[child], this.seqs[child], time, seq)) {
+				break;
+			}
+			move(child, index);
+			index = child;
+		}
+		if (this.size > 0) {
+			set(index, time, seq, con, msg);
+		}
+		return c;
+	}
+
+	private boolean isBefore(double time, long seq, int index) {
+		return isBefore(time, seq, this.times[index], this.seqs[index]);
+	}
+
+	private static boolean isBefore(double time, long seq, double otherTime,
+			long otherSeq) {
+		return time < otherTime || (time == otherTime && seq < otherSeq);
+	}
+
+	private void move(int from, int to) {
+		set(to, this.times[from], this.seqs[from], this.cons[from],
+				this.msgs[from]);
+	}
+
+	private void set(int index, double time, long seq, CBRConnection con,
+			Message msg) {
+		this.times[index] = time;
+		this.seqs[index] = seq;
+		this.cons[index] = con;
+		this.msgs[index] = msg;
+	}
+
+	/**
+	 * Finish of a transfer. Marks the transfer done and updates the
+	 * routers of the hosts at both ends of the transfer if the transfer is
+	 * still going on and finishes at this time.
+	 */
+	static class Completion extends ExternalEvent {
+		private static final long serialVersionUID = 1L;
+
+		private final CBRConnection con;
+		private final Message msg;
+
+		private Completion(double time, CBRConnection con, Message msg) {
+			super(time);
+			this.con = con;
+			this.msg = msg;
+		}
+
+		@Override
+		public void processEvent(World world) {
+			/* the message check comes first since an aborted transfer's
+			 * connection may have been released to a connection pool */
+			if (this.con.msgOnFly != this.msg || !this.con.isUp() ||
+					this.con.getTransferDoneTime() != this.time) {
+				return;
+			}
+			this.con.finishTransfer();
+			DTNHost from = this.con.msgFromNode;
+			DTNHost to = this.con.getOtherNode(from);
+			from.update(false);
+			to.update(false);
+		}
+
+		@Override
+		public int[] getTouchedHosts() {
+			return new int[] {this.con.fromNode.getAddress(),
+					this.con.toNode.getAddress()};
+		}
+
+		@Override
+		public String toString() {
+			return "Transfer of " + this.msg + " done @" + this.time;
+		}
+	}
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+/**
+ * Shuffles arrays exactly like {@link java.util.Collections#shuffle(
+ * java.util.List, java.util.Random)} shuffles a random access list with a
+ * new {@link java.util.Random} created with the same seed. The random
+ * numbers are computed in place with the algorithms the documentation of
+ * Random specifies, which is a lot faster when an order is shuffled with
+ * many seeds one after another (e.g., the update orders of skipped update
+ * intervals).
+ */
+public final class UpdateOrderShuffle {
+	private static final long MULTIPLIER = 0x5DEECE66DL;
+	private static final long ADDEND = 0xBL;
+	private static final long MASK = (1L << 48) - 1;
+
+	private UpdateOrderShuffle() {}
+
+	/**
+	 * Shuffles the elements of an array
+	 * @param elements The elements to shuffle
+	 * @param seed The seed of the random number generator
+	 */
+	public static void shuffle(int[] elements, long seed) {
+		long state = (seed ^ MULTIPLIER) & MASK;
+		for (int i = elements.length; i > 1; i--) {
+			/* Random.nextInt(i) */
+			state = (state * MULTIPLIER + ADDEND) & MASK;
+			int r = (int)(state >>> 17);
+			int m = i - 1;
+			if ((i & m) == 0) {
+				r = (int)((i * (long)r) >> 31);
+			}
+			else {
+				for (int u = r; u - (r = u % i) + m < 0; ) {
+					state = (state * MULTIPLIER + ADDEND) & MASK;
+					u = (int)(state >>> 17);
+				}
+			}
+
+			int tmp = elements[i-1];
+			elements[i-1] = elements[r];
+			elements[r] = tmp;
+		}
+	}
+}
@@ -11,6 +11,8 @@ import routing.MessageRouter;
  * is updated every round from the end point transmission speeds
  */
 public class VBRConnection extends Connection {
+	private static final long serialVersionUID = 1L;
+
 	private int msgsize;
 	private int msgsent;
 	private int currentspeed = 0;
@@ -28,6 +30,19 @@ public class VBRConnection extends Connection {
 	    super(fromNode, fromInterface, toNode, toInterface);
 		this.msgsent = 0;
 	}
+
+	/**
+	 * Reinitializes a released connection for a new pair of nodes
+	 * @see #VBRConnection(DTNHost, NetworkInterface, DTNHost, 
+	 * NetworkInterface)
+	 */
+	void reuse(DTNHost fromNode, NetworkInterface fromInterface, 
+			DTNHost toNode, NetworkInterface toInterface) {
+		init(fromNode, fromInterface, toNode, toInterface);
+		this.msgsize = 0;
+		this.msgsent = 0;
+		this.currentspeed = 0;
+	}
 	
 	/**
 	 * Sets a message that this connection is currently transferring. If message
@@ -54,6 +69,7 @@ public class VBRConnection extends Connection {
 			this.msgOnFly = newMessage;
 			this.msgsize = m.getSize();
 			this.msgsent = 0;
+			notifyTransferStarted();
 		}
 
 		return retVal;
@@ -0,0 +1,414 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Snapshot of the state of a simulation run right after the movement model
+ * warm-up: the scenario with its world and hosts (locations, movement
+ * models and interfaces), the simulation time, the address and ID counters
+ * and the state of the movement modules. Runs that only differ by their
+ * router settings (e.g., the buffer size or the parameters of the router)
+ * can share one snapshot and skip the warm-up and the creation of the
+ * hosts.
+ * <P>While a snapshot is recorded, all settings read outside the creation
+ * of the routers and the scenario name are recorded with their values (the
+ * reports are created only after the recording). A snapshot is used by a
+ * later run only if all those settings have the same values in that run.
+ * The snapshot files are named by a hash of the recorded settings and
+ * their values. The names of the recorded settings are stored in a
+ * separate, small file (named by a hash of the names), so a run finds its
+ * snapshot by computing the hash of those settings' values in the run and
+ * reading only the snapshot file with that name.
+ * Changes in the input files (e.g., map files) are not detected, so the
+ * snapshot directory must be cleared if those change.</P>
+ * <P>When a snapshot is taken in use, the scenario gets its name and every
+ * host a new router from the settings of the current run. The reports are
+ * added after the warm-up, whether the snapshot was recorded or used by
+ * the run. Only movement is simulated during the warm-up, so this makes a
+ * difference only to the reports that listen to movement; runs with such
+ * reports don't use snapshots (see ui.DTNSimUI).</P>
+ */
+public class WarmupSnapshot implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	/** Warm-up snapshot settings namespace ({@value}) */
+	public static final String SNAPSHOT_NS = "WarmupSnapshot";
+	/** Use warm-up snapshots -setting id ({@value}). Boolean. If true,
+	 * the post warm-up state of a run is stored to the snapshot directory
+	 * or read from there if a run with matching settings has stored it.
+	 * Default is false. */
+	public static final String ENABLED_S = "enabled";
+	/** Snapshot directory -setting id ({@value}). Where the snapshot files
+	 * are stored. Default is {@value #DEF_DIR}. */
+	public static final String DIR_S = "dir";
+
+	/** default value for the snapshot directory */
+	public static final String DEF_DIR = "snapshots/";
+	/** file name extension of the snapshot files ({@value}) */
+	public static final String SNAPSHOT_EXT = ".snap";
+	/** file name extension of the files that list the names of the
+	 * recorded settings ({@value}) */
+	public static final String KEYS_EXT = ".keys";
+
+	/** settings read while the state was created (full name -> value of
+	 * the run, or null if the setting wasn't found) */
+	private final TreeMap<String, String> settings;
+	/** keys of the module state and counters set while recording */
+	private final Set<Object> stateKeys;
+	/** context of the run after the warm-up */
+	private SimContext context;
+	/** how many times the recording is currently paused */
+	private transient int pauseCount;
+
+	/**
+	 * Creates a new, empty snapshot for recording
+	 */
+	private WarmupSnapshot() {
+		this.settings = new TreeMap<String, String>();
+		this.stateKeys = new HashSet<Object>();
+	}
+
+	/**
+	 * Returns true if warm-up snapshots are enabled in the settings
+	 * @return true if warm-up snapshots are enabled
+	 */
+	public static boolean isEnabled() {
+		Settings s = new Settings(SNAPSHOT_NS);
+		return s.contains(ENABLED_S) && s.getBoolean(ENABLED_S);
+	}
+
+	/**
+	 * Starts recording a snapshot of the current run. The scenario should
+	 * be created and the movement model warmed up after this call.
+	 * @see #save()
+	 */
+	public static void startRecording() {
+		SimContext.current().warmupRecording = new WarmupSnapshot();
+	}
+
+	/**
+	 * Stops the recording of the current run's snapshot and stores the
+	 * snapshot to the snapshot directory.
+	 * @throws SimError if writing the snapshot failed
+	 */
+	public static void save() {
+		final SimContext current = SimContext.current();
+		final WarmupSnapshot snapshot = current.warmupRecording;
+		if (snapshot == null) {
+			throw new SimError("No warm-up snapshot is being recorded");
+		}
+		current.warmupRecording = null;
+		snapshot.context = current;
+
+		final File dir = getDir();
+		Checkpoint.runWithLargeStack(new Runnable() {
+			public void run() {
+				snapshot.write(new File(dir, hash(snapshot.settings) +
+						SNAPSHOT_EXT));
+			}
+		});
+		snapshot.context = null;
+		snapshot.writeKeys(dir);
+	}
+
+	/**
+	 * Looks for a snapshot whose settings match the settings of the current
+	 * run and, if one is found, makes its state the state of the current
+	 * run and creates new routers for the hosts. For each set of recorded
+	 * setting names in the snapshot directory, only the snapshot named by
+	 * the hash of those settings' values in the current run is read.
+	 * @return true if a snapshot was taken in use, false if there was no
+	 * matching snapshot
+	 * @throws SimError if reading a snapshot failed
+	 */
+	public static boolean restore() {
+		File dir = getDir();
+		File[] files = dir.listFiles();
+		if (files == null) {
+			return false;
+		}
+
+		for (File keys : files) {
+			if (!keys.getName().endsWith(KEYS_EXT)) {
+				continue;
+			}
+			TreeMap<String, String> runSettings =
+				new TreeMap<String, String>();
+			for (String name : readKeys(keys)) {
+				runSettings.put(name, Settings.getRunProperty(name));
+			}
+			final File f = new File(dir, hash(runSettings) + SNAPSHOT_EXT);
+			if (!f.exists()) {
+				continue;
+			}
+			final WarmupSnapshot[] snapshot = new WarmupSnapshot[1];
+			Checkpoint.runWithLargeStack(new Runnable() {
+				public void run() {
+					snapshot[0] = read(f);
+				}
+			});
+			if (snapshot[0] != null) {
+				SimContext.current().adoptWarmupState(snapshot[0].context,
+						snapshot[0].stateKeys);
+				SimScenario.getInstance().readName();
+				SimScenario.getInstance().recreateRouters();
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Records a setting that was read in the current run
+	 * @param fullPropName Full name of the setting
+	 * @param value Value of the setting or null if it wasn't found
+	 */
+	static void settingRead(String fullPropName, String value) {
+		WarmupSnapshot snapshot = SimContext.current().warmupRecording;
+		if (snapshot == null) {
+			return;
+		}
+		synchronized (snapshot) {
+			if (snapshot.pauseCount == 0) {
+				snapshot.settings.put(fullPropName, value);
+			}
+		}
+	}
+
+	/**
+	 * Records the key of a module state or counter that was set
+	 * @param key The key
+	 */
+	synchronized void stateSet(Object key) {
+		if (this.pauseCount == 0) {
+			this.stateKeys.add(key);
+		}
+	}
+
+	/**
+	 * Pauses the recording of the current run's snapshot (if any). Settings
+	 * and state used while paused (e.g., by the routers) are not part of
+	 * the snapshot. Every call must be followed by
+	 * {@link #resumeRecording()}.
+	 */
+	static void pauseRecording() {
+		WarmupSnapshot snapshot = SimContext.current().warmupRecording;
+		if (snapshot != null) {
+			synchronized (snapshot) {
+				snapshot.pauseCount++;
+			}
+		}
+	}
+
+	/**
+	 * Resumes the recording paused by {@link #pauseRecording()}
+	 */
+	static void resumeRecording() {
+		WarmupSnapshot snapshot = SimContext.current().warmupRecording;
+		if (snapshot != null) {
+			synchronized (snapshot) {
+				snapshot.pauseCount--;
+			}
+		}
+	}
+
+	/**
+	 * Returns the snapshot directory based on the settings
+	 * @return the snapshot directory
+	 */
+	private static File getDir() {
+		Settings s = new Settings(SNAPSHOT_NS);
+		String dir = DEF_DIR;
+		if (s.contains(DIR_S)) {
+			dir = s.valueFillString(s.getSetting(DIR_S));
+		}
+		return new File(dir);
+	}
+
+	/**
+	 * Returns true if the recorded settings have the same values in the
+	 * current run
+	 * @return true if the recorded settings match the current run
+	 */
+	private boolean matchesSettings() {
+		for (Map.Entry<String, String> e : this.settings.entrySet()) {
+			String value = Settings.getRunProperty(e.getKey());
+			if (value == null ? e.getValue() != null :
+					!value.equals(e.getValue())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns a hash of settings and their values as a hex string
+	 * @param settings The settings (name -> value or null)
+	 * @return a hash of the settings
+	 */
+	private static String hash(Map<String, String> settings) {
+		StringBuilder text = new StringBuilder();
+		for (Map.Entry<String, String> e : settings.entrySet()) {
+			text.append(e.getKey() + "=" + e.getValue() + "\n");
+		}
+		return hash(text.toString());
+	}
+
+	/**
+	 * Returns a hash of a string as a hex string
+	 * @param text The string
+	 * @return a hash of the string
+	 */
+	private static String hash(String text) {
+		try {
+			MessageDigest md = MessageDigest.getInstance("SHA-1");
+			md.update(text.getBytes(StandardCharsets.UTF_8));
+			StringBuilder hash = new StringBuilder();
+			for (byte b : md.digest()) {
+				hash.append(String.format("%02x", b));
+			}
+			return hash.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new SimError(e);
+		}
+	}
+
+	/**
+	 * Writes the names of the recorded settings to the snapshot directory,
+	 * unless a snapshot with the same setting names has already written
+	 * them
+	 * @param dir The snapshot directory
+	 */
+	private void writeKeys(File dir) {
+		StringBuilder names = new StringBuilder();
+		for (String name : this.settings.keySet()) {
+			names.append(name).append('\n');
+		}
+		File file = new File(dir, hash(names.toString()) + KEYS_EXT);
+		if (file.exists()) {
+			return;
+		}
+
+		try {
+			File tmpFile = File.createTempFile(file.getName(), ".tmp", dir);
+			Files.write(tmpFile.toPath(),
+					names.toString().getBytes(StandardCharsets.UTF_8));
+			Files.move(tmpFile.toPath(), file.toPath(),
+					StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			throw new SimError("Couldn't write warm-up snapshot settings '" +
+					file + "': " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Reads the names of recorded settings from a file
+	 * @param file The file to read the names from
+	 * @return The names of the settings
+	 */
+	private static List<String> readKeys(File file) {
+		try {
+			return Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			throw new SimError("Couldn't read warm-up snapshot settings '" +
+					file + "': " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Writes the snapshot to a file. The recorded settings are written
+	 * first so that they can be checked without reading the whole state.
+	 * Concurrent runs may write the same snapshot, so the file is replaced
+	 * only after the whole snapshot has been written.
+	 * @param file The file where to write the snapshot
+	 */
+	private void write(File file) {
+		File dir = file.getAbsoluteFile().getParentFile();
+		if (!dir.exists() && !dir.mkdirs()) {
+			throw new SimError("Couldn't create snapshot directory '" +
+					dir + "'");
+		}
+
+		try {
+			File tmpFile = File.createTempFile(file.getName(), ".tmp", dir);
+			ObjectOutputStream out = new ObjectOutputStream(
+					new BufferedOutputStream(new GZIPOutputStream(
+							new FileOutputStream(tmpFile))));
+			try {
+				out.writeObject(this.settings);
+				out.writeObject(this);
+			}
+			finally {
+				out.close();
+			}
+			Files.move(tmpFile.toPath(), file.toPath(),
+					StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			throw new SimError("Couldn't write warm-up snapshot '" + file +
+					"': " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Reads a snapshot from a file if its settings match the settings of
+	 * the current run
+	 * @param file The file to read the snapshot from
+	 * @return The snapshot or null if the settings didn't match
+	 */
+	@SuppressWarnings("unchecked")
+	private static WarmupSnapshot read(File file) {
+		WarmupSnapshot snapshot = new WarmupSnapshot();
+
+		try {
+			ObjectInputStream in = new ObjectInputStream(
+					new BufferedInputStream(new GZIPInputStream(
+							new FileInputStream(file))));
+			try {
+				snapshot.settings.putAll(
+						(TreeMap<String, String>)in.readObject());
+				if (!snapshot.matchesSettings()) {
+					return null;
+				}
+				snapshot = (WarmupSnapshot)in.readObject();
+			}
+			finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			throw new SimError("Couldn't read warm-up snapshot '" + file +
+					"': " + e.getMessage(), e);
+		} catch (ClassNotFoundException e) {
+			throw new SimError("Invalid warm-up snapshot '" + file + "': " +
+					e.getMessage(), e);
+		}
+
+		return snapshot;
+	}
+}
@@ -5,20 +5,33 @@
 package core;
 
 import input.EventQueue;
+import input.EventQueueMerger;
 import input.ExternalEvent;
 import input.ScheduledUpdatesQueue;
 import interfaces.ConnectivityGrid;
 
+import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import movement.MovementModel;
 
 /**
  * World contains all the nodes and is responsible for updating their
  * location and connections.
  */
-public class World {
+public class World implements Serializable {
+	private static final long serialVersionUID = 1L;
+
 	/** namespace of optimization settings ({@value})*/
 	public static final String SETTINGS_NS = "Optimization";
 	/**
@@ -31,25 +44,180 @@ public class World {
 	 * @see ConnectivityGrid
 	 */
 	public static final String CELL_SIZE_MULT_S = "cellSizeMult";
+	/**
+	 * Connectivity optimizer -setting id ({@value}). Name of the 
+	 * {@link interfaces.ConnectivityOptimizer} used for finding the 
+	 * interfaces that may be in range: <CODE>ConnectivityGrid</CODE> (the 
+	 * cell grid), <CODE>SweepAndPrune</CODE> (sort and sweep on the x
+	 * axis, for very large or very unevenly distributed host sets) or
+	 * <CODE>HierarchicalGrid</CODE> (grid levels for different ranges).
+	 * Default is {@value #DEF_CON_OPTIMIZER}.
+	 * @see interfaces.SweepAndPrune
+	 * @see interfaces.HierarchicalGrid
+	 */
+	public static final String CON_OPTIMIZER_S = "connectivityOptimizer";
 	/**
 	 * Should the order of node updates be different (random) within every 
 	 * update step -setting id ({@value}). Boolean (true/false) variable. 
 	 * Default is @link {@link #DEF_RANDOMIZE_UPDATES}.
 	 */
 	public static final String RANDOMIZE_UPDATES_S = "randomizeUpdateOrder";
+	/**
+	 * Should update intervals where nothing can happen be skipped 
+	 * -setting id ({@value}). Boolean (true/false) variable. If enabled, 
+	 * the simulation clock is advanced straight to the next interval where
+	 * an external event, a movement or a router update is due. Only 
+	 * effective when connections are not simulated (e.g., trace driven
+	 * runs) and no update listeners are registered. Routers with an energy
+	 * model (e.g., ContextAwareRLRouter, whose initialEnergy setting
+	 * enables it) want an update at every interval because scanning energy
+	 * is charged per update.
+	 * Default is {@link #DEF_NEXT_EVENT_ADVANCE}.
+	 */
+	public static final String NEXT_EVENT_ADVANCE_S = "nextEventTimeAdvance";
+	/**
+	 * Number of threads used for moving the hosts -setting id ({@value}).
+	 * Values bigger than one move the hosts in parallel, which requires
+	 * per host rngs for the movement models (see 
+	 * {@link MovementModel#PER_HOST_RNG_S}). The results are the same 
+	 * with any number of threads. If some host's movement model does not
+	 * support concurrent movement, the hosts are moved one by one.
+	 * Default is {@link #DEF_MOVEMENT_THREADS}.
+	 */
+	public static final String MOVEMENT_THREADS_S = "movementThreads";
+	/**
+	 * Should the connectivity be updated in two phases -setting id 
+	 * ({@value}). Boolean (true/false) variable. If enabled, the link 
+	 * changes of all interfaces are first found from the current locations
+	 * (using {@link #CONNECTIVITY_THREADS_S} threads) and then applied 
+	 * interface by interface in the host address order before the routers
+	 * are updated. The results are the same with any number of threads, 
+	 * but differ from the default update where each host's links are 
+	 * updated just before its router. Only used if connections are 
+	 * simulated and all interfaces support it.
+	 * Default is {@link #DEF_TWO_PHASE_CONNECTIVITY}.
+	 * @see NetworkInterface#supportsTwoPhaseUpdate()
+	 */
+	public static final String TWO_PHASE_CONNECTIVITY_S = 
+		"twoPhaseConnectivity";
+	/**
+	 * Number of threads used for finding the link changes in the two phase
+	 * connectivity update -setting id ({@value}).
+	 * Default is {@link #DEF_CONNECTIVITY_THREADS}.
+	 */
+	public static final String CONNECTIVITY_THREADS_S = "connectivityThreads";
+	/**
+	 * Should the connectivity be updated kinetically -setting id ({@value}).
+	 * Boolean (true/false) variable. If enabled, the times when the hosts
+	 * moving on straight path segments get in or out of range are 
+	 * predicted and only those links are checked instead of all links on
+	 * every update. The contacts are the same as with the two phase
+	 * update (see {@link #TWO_PHASE_CONNECTIVITY_S}). Only used if 
+	 * connections are simulated and all interfaces support the two phase
+	 * update and don't use scan intervals. Most useful with short update
+	 * intervals.
+	 * Default is {@link #DEF_KINETIC_CONNECTIVITY}.
+	 * @see KineticConnectivity
+	 */
+	public static final String KINETIC_CONNECTIVITY_S = "kineticConnectivity";
+	/**
+	 * Should only the affected hosts be updated after an external event 
+	 * -setting id ({@value}). Boolean (true/false) variable. If enabled, 
+	 * only the hosts the event touched (see 
+	 * {@link ExternalEvent#getTouchedHosts()}) and the hosts whose routers
+	 * want an update (see {@link routing.MessageRouter#nextUpdateTime()})
+	 * are updated after an event. All hosts are still updated at every 
+	 * update interval. The results are the same as without the option.
+	 * Only effective when connections are not simulated (e.g., trace 
+	 * driven runs).
+	 * Default is {@link #DEF_UPDATE_TOUCHED_ONLY}.
+	 */
+	public static final String UPDATE_TOUCHED_ONLY_S = 
+		"updateTouchedHostsOnly";
+	/**
+	 * Should torn down connections be reused -setting id ({@value}). 
+	 * Boolean (true/false) variable. If enabled, the connections of the
+	 * interfaces are recycled one update after they were torn down (see 
+	 * {@link ConnectionPool}). Modules must not use a connection after 
+	 * the update following its tear down.
+	 * Default is {@link #DEF_CONNECTION_POOLING}.
+	 */
+	public static final String CONNECTION_POOLING_S = "connectionPooling";
+	/**
+	 * Should the connection pool check for use of released connections
+	 * -setting id ({@value}). Boolean (true/false) variable. If enabled 
+	 * (together with {@link #CONNECTION_POOLING_S}), released connections
+	 * are not reused but any use of them stops the simulation with an 
+	 * error. For debugging the modules that keep connection references.
+	 * Default is {@link #DEF_CONNECTION_POOL_CHECKS}.
+	 */
+	public static final String CONNECTION_POOL_CHECKS_S = 
+		"connectionPoolChecks";
+	/**
+	 * Should the transfers be finished at their exact finish times 
+	 * -setting id ({@value}). Boolean (true/false) variable. If enabled, 
+	 * the finish times of the constant bit-rate transfers are queued as 
+	 * events and at each finish time the routers of the transfer's hosts 
+	 * are updated, so the transfer is finalized (and the next one may
+	 * start) at that time instead of at the next update interval. The 
+	 * routers don't check these transfers for completion at the update
+	 * intervals.
+	 * Default is {@link #DEF_EXACT_TRANSFER_TIMES}.
+	 * @see TransferCompletions
+	 */
+	public static final String EXACT_TRANSFER_TIMES_S = "exactTransferTimes";
+	/**
+	 * Should the interfaces check only the links to the changed neighbors
+	 * -setting id ({@value}). Boolean (true/false) variable. If enabled, 
+	 * the changes of the hosts (movement, activity, range and link 
+	 * changes) are tracked and the interfaces that support it skip the 
+	 * neighbors that have not changed since their previous update, or the
+	 * whole update if nothing has changed around them. The results are the
+	 * same as without the tracking. Most useful when most hosts are 
+	 * stationary. Not used with the two phase or kinetic connectivity 
+	 * update.
+	 * Default is {@link #DEF_NEIGHBOR_DIFF}.
+	 * @see NeighborDiff
+	 */
+	public static final String NEIGHBOR_DIFF_S = "neighborDiff";
 	/** default value for cell size multiplier ({@value}) */
 	public static final int DEF_CON_CELL_SIZE_MULT = 5;
+	/** default value for the connectivity optimizer ({@value}) */
+	public static final String DEF_CON_OPTIMIZER = "ConnectivityGrid";
 	/** should the update order of nodes be randomized -setting's default value
 	 * ({@value}) */
 	public static final boolean DEF_RANDOMIZE_UPDATES = true;
+	/** should idle update intervals be skipped -setting's default value
+	 * ({@value}) */
+	public static final boolean DEF_NEXT_EVENT_ADVANCE = false;
+	/** number of movement threads -setting's default value ({@value}) */
+	public static final int DEF_MOVEMENT_THREADS = 1;
+	/** two phase connectivity update -setting's default value ({@value}) */
+	public static final boolean DEF_TWO_PHASE_CONNECTIVITY = false;
+	/** number of connectivity threads -setting's default value ({@value}) */
+	public static final int DEF_CONNECTIVITY_THREADS = 1;
+	/** kinetic connectivity update -setting's default value ({@value}) */
+	public static final boolean DEF_KINETIC_CONNECTIVITY = false;
+	/** connection pooling -setting's default value ({@value}) */
+	public static final boolean DEF_CONNECTION_POOLING = false;
+	/** connection pool checks -setting's default value ({@value}) */
+	public static final boolean DEF_CONNECTION_POOL_CHECKS = false;
+	/** exact transfer times -setting's default value ({@value}) */
+	public static final boolean DEF_EXACT_TRANSFER_TIMES = false;
+	/** neighbor change tracking -setting's default value ({@value}) */
+	public static final boolean DEF_NEIGHBOR_DIFF = false;
+	/** should only the affected hosts be updated after events -setting's
+	 * default value ({@value}) */
+	public static final boolean DEF_UPDATE_TOUCHED_ONLY = false;
 
 	private final int sizeX;
 	private final int sizeY;
-	private final List<EventQueue> eventQueues;
 	private final double updateInterval;
-	private final SimClock simClock;
-	private double nextQueueEventTime;
-	private EventQueue nextEventQueue;
+	/** context of the run of this world; the clock is read from it
+	 * directly instead of from the context of the current thread */
+	private SimContext context;
+	/** all event queues merged in time order */
+	private final EventQueueMerger events;
 	/** list of nodes; nodes are indexed by their network address */
 	private final List<DTNHost> hosts;
 	private final boolean simulateConnections;
@@ -61,9 +229,68 @@ public class World {
 	private final List<UpdateListener> updateListeners;
 	/** Queue of scheduled update requests */
 	private final ScheduledUpdatesQueue scheduledUpdates;
+	/** Queue of the finish times of the transfers */
+	private final TransferCompletions transferCompletions;
+	/** are the transfers finished at their exact finish times */
+	private boolean exactTransferTimes;
 
 	/** single ConnectivityCell's size is biggest radio range times this */
 	private int conCellSizeMult;
+	/** are idle update intervals skipped */
+	private boolean nextEventAdvance;
+	/** number of threads moving the hosts */
+	private int movementThreads;
+	/** are the hosts moved in parallel */
+	private boolean parallelMovement;
+	/** is the connectivity updated in two phases */
+	private boolean twoPhaseConnectivity;
+	/** number of threads finding the link changes */
+	private int connectivityThreads;
+	/** activity of the hosts in the two phase connectivity update */
+	private boolean[] linkActive;
+	/** grid cells and indexes of the hosts whose link changes are found
+	 * in the two phase connectivity update, in the cell order */
+	private long[] linkOrder;
+	/** kinetic connectivity update (null if not in use) */
+	private KineticConnectivity kinetic;
+	/** pool of the connections (null if connections are not pooled) */
+	private ConnectionPool connectionPool;
+	/** neighbor change tracking (null if not in use) */
+	private NeighborDiff neighborDiff;
+	/** executor for the parallel work (null if not created yet) */
+	private transient ThreadPoolExecutor executor;
+	/** updater of the affected hosts after events (null if all hosts are
+	 * updated after events) */
+	private TouchedHostUpdater touchedUpdater;
+	/** replayed link changes waiting for the next update of all hosts, by
+	 * the address of the host that made the change (null if none have
+	 * been replayed) */
+	private transient LinkFeed[] replayedLinks;
+	/** number of replayed link changes waiting for the next update */
+	private int nrofReplayedLinks;
+	/** replayed link changes waiting for the update at the end of the
+	 * update interval (null if none have been replayed) */
+	private transient LinkFeed[] replayedEndLinks;
+	/** number of replayed link changes waiting for the interval's end */
+	private int nrofReplayedEndLinks;
+	/** end time of the first skipped update interval whose update order
+	 * shuffle has not been applied yet */
+	private double skippedShuffleTime;
+	/** number of the skipped update intervals whose update order shuffles
+	 * have not been applied yet */
+	private long nrofSkippedShuffles;
+	/** time at the end of the current update interval */
+	private double updateEndTime;
+	/** are the replayed link changes applied before updating any host
+	 * (instead of right before the update of the host that made them) */
+	private boolean replayLinksFirst;
+	/** world whose host locations and link changes this world follows 
+	 * (null if this world moves its hosts and updates the links itself) */
+	private transient World lead;
+	/** link changes of the lead world to apply in the next update */
+	private transient LinkFeed leadLinks;
+	/** does this world only compute the movement and the contacts */
+	private boolean contactsOnly;
 
 	/**
 	 * Constructor.
@@ -77,13 +304,19 @@ public class World {
 		this.updateInterval = updateInterval;
 		this.updateListeners = updateListeners;
 		this.simulateConnections = simulateConnections;
-		this.eventQueues = eventQueues;
 		
-		this.simClock = SimClock.getInstance();
+		this.context = SimContext.current();
 		this.scheduledUpdates = new ScheduledUpdatesQueue();
+		this.transferCompletions = new TransferCompletions();
 		this.isCancelled = false;		
 
-		setNextEventQueue();
+		/* scheduled updates go first of the events happening at same time,
+		 * then the transfers that finish */
+		List<EventQueue> queues = new ArrayList<EventQueue>();
+		queues.add(this.scheduledUpdates);
+		queues.add(this.transferCompletions);
+		queues.addAll(eventQueues);
+		this.events = new EventQueueMerger(queues);
 		initSettings();
 	}
 
@@ -105,6 +338,106 @@ public class World {
 			this.updateOrder = null;
 		}
 
+		if (s.contains(NEXT_EVENT_ADVANCE_S)) {
+			nextEventAdvance = s.getBoolean(NEXT_EVENT_ADVANCE_S);
+		}
+		else {
+			nextEventAdvance = DEF_NEXT_EVENT_ADVANCE;
+		}
+
+		if (s.contains(MOVEMENT_THREADS_S)) {
+			movementThreads = s.getInt(MOVEMENT_THREADS_S);
+		}
+		else {
+			movementThreads = DEF_MOVEMENT_THREADS;
+		}
+		if (movementThreads > 1) {
+			initParallelMovement();
+		}
+
+		if (s.contains(TWO_PHASE_CONNECTIVITY_S)) {
+			twoPhaseConnectivity = s.getBoolean(TWO_PHASE_CONNECTIVITY_S);
+		}
+		else {
+			twoPhaseConnectivity = DEF_TWO_PHASE_CONNECTIVITY;
+		}
+		if (s.contains(CONNECTIVITY_THREADS_S)) {
+			connectivityThreads = s.getInt(CONNECTIVITY_THREADS_S);
+		}
+		else {
+			connectivityThreads = DEF_CONNECTIVITY_THREADS;
+		}
+		if (twoPhaseConnectivity) {
+			twoPhaseConnectivity = supportsTwoPhaseUpdate();
+		}
+		boolean kineticConnectivity = DEF_KINETIC_CONNECTIVITY;
+		if (s.contains(KINETIC_CONNECTIVITY_S)) {
+			kineticConnectivity = s.getBoolean(KINETIC_CONNECTIVITY_S);
+		}
+		kineticConnectivity = kineticConnectivity &&
+			KineticConnectivity.supports(hosts);
+		/* replayed links are applied like the recording run made them */
+		this.replayLinksFirst = twoPhaseConnectivity || kineticConnectivity;
+		twoPhaseConnectivity = twoPhaseConnectivity && simulateConnections;
+		if (kineticConnectivity && simulateConnections) {
+			this.kinetic = new KineticConnectivity(hosts, sizeX, sizeY);
+		}
+
+		boolean connectionPooling = DEF_CONNECTION_POOLING;
+		if (s.contains(CONNECTION_POOLING_S)) {
+			connectionPooling = s.getBoolean(CONNECTION_POOLING_S);
+		}
+		if (connectionPooling) {
+			boolean checks = DEF_CONNECTION_POOL_CHECKS;
+			if (s.contains(CONNECTION_POOL_CHECKS_S)) {
+				checks = s.getBoolean(CONNECTION_POOL_CHECKS_S);
+			}
+			this.connectionPool = new ConnectionPool(checks);
+			for (DTNHost host : hosts) {
+				for (NetworkInterface ni : host.getInterfaces()) {
+					ni.connectionPool = this.connectionPool;
+				}
+			}
+		}
+
+		if (s.contains(EXACT_TRANSFER_TIMES_S)) {
+			exactTransferTimes = s.getBoolean(EXACT_TRANSFER_TIMES_S);
+		}
+		else {
+			exactTransferTimes = DEF_EXACT_TRANSFER_TIMES;
+		}
+		if (exactTransferTimes) {
+			for (DTNHost host : hosts) {
+				for (NetworkInterface ni : host.getInterfaces()) {
+					ni.transferCompletions = this.transferCompletions;
+				}
+			}
+		}
+
+		boolean neighborDiff = DEF_NEIGHBOR_DIFF;
+		if (s.contains(NEIGHBOR_DIFF_S)) {
+			neighborDiff = s.getBoolean(NEIGHBOR_DIFF_S);
+		}
+		if (neighborDiff && simulateConnections && !twoPhaseConnectivity &&
+				this.kinetic == null) {
+			this.neighborDiff = new NeighborDiff(hosts, sizeX, sizeY);
+			for (DTNHost host : hosts) {
+				for (NetworkInterface ni : host.getInterfaces()) {
+					ni.neighborDiff = this.neighborDiff;
+				}
+			}
+		}
+
+		boolean updateTouchedOnly = DEF_UPDATE_TOUCHED_ONLY;
+		if (s.contains(UPDATE_TOUCHED_ONLY_S)) {
+			updateTouchedOnly = s.getBoolean(UPDATE_TOUCHED_ONLY_S);
+		}
+		// with simulated connections all interfaces are updated every time
+		if (updateTouchedOnly && !simulateConnections) {
+			this.touchedUpdater = new TouchedHostUpdater(this, this.hosts,
+					this.updateOrder);
+		}
+
 		if (s.contains(CELL_SIZE_MULT_S)) {
 			conCellSizeMult = s.getInt(CELL_SIZE_MULT_S);
 		}
@@ -119,6 +452,47 @@ public class World {
 		}
 	}
 
+	/**
+	 * Enables moving the hosts in parallel if all the hosts' movement models
+	 * support it
+	 */
+	private void initParallelMovement() {
+		Settings mms = new Settings(MovementModel.MOVEMENT_MODEL_NS);
+		if (!mms.contains(MovementModel.PER_HOST_RNG_S) ||
+				!mms.getBoolean(MovementModel.PER_HOST_RNG_S)) {
+			throw new SettingsError(SETTINGS_NS + "." + MOVEMENT_THREADS_S +
+					" > 1 requires " + MovementModel.MOVEMENT_MODEL_NS + "." +
+					MovementModel.PER_HOST_RNG_S + " = true");
+		}
+
+		for (DTNHost host : hosts) {
+			if (!host.canMoveConcurrently()) {
+				return; // move hosts one by one
+			}
+		}
+
+		this.parallelMovement = true;
+		for (DTNHost host : hosts) {
+			host.setDeferMovementEvents(true);
+		}
+	}
+
+	/**
+	 * Returns true if all the hosts' interfaces support the two phase
+	 * connectivity update
+	 * @return true if the two phase update can be used
+	 */
+	private boolean supportsTwoPhaseUpdate() {
+		for (DTNHost host : hosts) {
+			for (NetworkInterface ni : host.getInterfaces()) {
+				if (!ni.supportsTwoPhaseUpdate()) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
 	/**
 	 * Moves hosts in the world for the time given time initialize host 
 	 * positions properly. SimClock must be set to <CODE>-time</CODE> before
@@ -130,35 +504,24 @@ public class World {
 			return;
 		}
 
-		while(SimClock.getTime() < -updateInterval) {
+		while(this.context.clockTime < -updateInterval) {
 			moveHosts(updateInterval);
-			simClock.advance(updateInterval);
+			this.context.clockTime += updateInterval;
 		}
 
-		double finalStep = -SimClock.getTime();
+		double finalStep = -this.context.clockTime;
 
 		moveHosts(finalStep);
-		simClock.setTime(0);	
+		this.context.clockTime = 0;	
 	}
 
 	/**
-	 * Goes through all event Queues and sets the 
-	 * event queue that has the next event.
+	 * Goes through all event Queues and re-reads the times of their
+	 * next events. Needed only if the queues can change without events
+	 * being taken from them (e.g., events fed in from outside).
 	 */
 	public void setNextEventQueue() {
-		EventQueue nextQueue = scheduledUpdates;
-		double earliest = nextQueue.nextEventsTime();
-
-		/* find the queue that has the next event */
-		for (EventQueue eq : eventQueues) {
-			if (eq.nextEventsTime() < earliest){
-				nextQueue = eq;	
-				earliest = eq.nextEventsTime();
-			}
-		}
-
-		this.nextEventQueue = nextQueue;
-		this.nextQueueEventTime = earliest;
+		this.events.updateAll();
 	}
 
 	/** 
@@ -167,23 +530,46 @@ public class World {
 	 * this method is called and after one update interval.
 	 */
 	public void update () {
-		double runUntil = SimClock.getTime() + this.updateInterval;
+		double runUntil = this.context.clockTime + this.updateInterval;
+		this.updateEndTime = runUntil;
 
 		setNextEventQueue();
 
 		/* process all events that are due until next interval update */
-		while (this.nextQueueEventTime <= runUntil) {
-			simClock.setTime(this.nextQueueEventTime);
-			ExternalEvent ee = this.nextEventQueue.nextEvent();
+		while (this.events.nextEventsTime() <= runUntil) {
+			this.context.clockTime = this.events.nextEventsTime();
+			ExternalEvent ee = this.events.nextEvent();
+			if (this.contactsOnly) {
+				continue; // only the time of the event matters
+			}
 			ee.processEvent(this);
-			updateHosts(); // update all hosts after every event
-			setNextEventQueue();
+			if (!(ee instanceof TransferCompletions.Completion)) {
+				updateHostsAfter(ee); // update hosts after every event
+			}
+			else if (this.touchedUpdater != null) {
+				/* the transfer's hosts were updated by the event */
+				this.touchedUpdater.updated(ee.getTouchedHosts());
+			}
+			if (this.exactTransferTimes) {
+				/* the updates may have started new transfers */
+				this.events.update(this.transferCompletions);
+			}
 		}
 
-		moveHosts(this.updateInterval);
-		simClock.setTime(runUntil);
+		if (this.lead != null) {
+			followLead();
+			this.context.clockTime = runUntil;
+			this.leadLinks.applyTo(this);
+		}
+		else {
+			moveHosts(this.updateInterval);
+			this.context.clockTime = runUntil;
+		}
 
-		updateHosts();
+		updateHosts(true);
+		if (this.connectionPool != null) {
+			this.connectionPool.endUpdate();
+		}
 
 		/* inform all update listeners */
 		for (UpdateListener ul : this.updateListeners) {
@@ -191,32 +577,464 @@ public class World {
 		}
 	}
 
+	/**
+	 * Makes this world follow the movement and connectivity of another 
+	 * world that has the same hosts and interfaces (e.g., a world created
+	 * from the same scenario settings with different routers). The lead
+	 * world must be updated before every update of this world. In the 
+	 * update, this world's hosts are placed at the lead world's host 
+	 * locations and the link changes the lead world recorded in the given
+	 * feed are applied before the routers are updated. This world's own
+	 * movement models and interfaces are not used; the external events 
+	 * are still processed.
+	 * @param lead The world to follow
+	 * @param links Feed where the link changes of the lead world's last
+	 * update are recorded
+	 */
+	public void follow(World lead, LinkFeed links) {
+		if (lead.hosts.size() != this.hosts.size()) {
+			throw new SimError("Can't follow a world with " + 
+					lead.hosts.size() + " hosts (this world has " + 
+					this.hosts.size() + ")");
+		}
+		this.lead = lead;
+		this.leadLinks = links;
+		this.twoPhaseConnectivity = false;
+		this.kinetic = null;
+		followLead();
+	}
+
+	/**
+	 * Makes this world only compute the movement and the contacts of the
+	 * hosts for other worlds that {@link #follow(World, LinkFeed)} it. The
+	 * external events are not processed, but the clock still stops at 
+	 * their times: the hosts are moved at the time of the interval's last
+	 * event, and the movement models use that time for the hosts' next 
+	 * move times, so skipping it would change the movement.
+	 */
+	void setContactsOnly() {
+		this.contactsOnly = true;
+	}
+
+	/**
+	 * Places the hosts at the locations of the lead world's hosts
+	 */
+	private void followLead() {
+		for (int i=0, n = hosts.size(); i < n; i++) {
+			hosts.get(i).setLocation(lead.hosts.get(i).getLocation());
+		}
+	}
+
+	/**
+	 * Advances the simulation clock over the update intervals in which 
+	 * nothing can change: no external event is due, no host is moving and
+	 * no router has anything to do. The clock jumps straight to the start
+	 * of the first interval that is not idle. The time is the same that 
+	 * stepping over the interval boundaries like {@link #update()} does 
+	 * would give, so the following updates happen at exactly the same 
+	 * times as without skipping. The update order shuffles of the skipped
+	 * intervals are applied when the order is used next. Does nothing 
+	 * unless {@link #NEXT_EVENT_ADVANCE_S} is set.
+	 * @param endTime The simulation end time; the last interval before 
+	 * it is never skipped
+	 */
+	public void skipIdleIntervals(double endTime) {
+		if (!this.nextEventAdvance || this.simulateConnections ||
+				this.updateListeners.size() > 0 || this.isCancelled) {
+			return;
+		}
+
+		setNextEventQueue();
+		double now = this.context.clockTime;
+		double runUntil = now + this.updateInterval;
+		double nextEventTime = this.events.nextEventsTime();
+		if (nextEventTime <= runUntil || runUntil >= endTime) {
+			return; /* next interval is not idle */
+		}
+
+		/* nothing changes host or router state while skipping so the
+		 * earliest move and router update times stay valid */
+		double nextMove = Double.MAX_VALUE;
+		double nextRouterUpdate = Double.MAX_VALUE;
+		for (int i=0, n = hosts.size(); i < n; i++) {
+			DTNHost host = hosts.get(i);
+			nextMove = Math.min(nextMove, host.getNextTimeToMove());
+			nextRouterUpdate = Math.min(nextRouterUpdate,
+					host.getRouter().nextUpdateTime());
+		}
+		if (now >= nextMove) {
+			return;
+		}
+
+		/* an interval is idle if it ends before anything is due and no
+		 * host moves before it starts */
+		double dueTime = Math.min(Math.min(nextEventTime, nextRouterUpdate),
+				endTime);
+		long skipped = intervalsBefore(now, dueTime, Long.MAX_VALUE);
+		if (skipped > 0) {
+			skipped = Math.min(skipped,
+					intervalsBefore(now, nextMove, skipped - 1) + 1);
+		}
+		if (skipped == 0) {
+			return;
+		}
+
+		if (this.updateOrder != null) {
+			applySkippedShuffles();
+			/* keep the update order identical to non-skipping runs; the
+			 * shuffles are applied when the order is used next */
+			this.skippedShuffleTime = now + this.updateInterval;
+			this.nrofSkippedShuffles = skipped;
+		}
+		this.context.clockTime = intervalTime(now, skipped);
+	}
+
+	/**
+	 * Returns how many update intervals can be added to a time before the
+	 * result reaches a limit. The intervals are added one at a time like
+	 * {@link #update()} adds them to the clock.
+	 * @param time The time to start from
+	 * @param limit The limit
+	 * @param max The largest number of intervals to return
+	 * @return The number of intervals (at most max)
+	 */
+	private long intervalsBefore(double time, double limit, long max) {
+		double interval = this.updateInterval;
+		if (exactIntervalSums(time, Math.min(limit, 
+				time + (max + 1.0) * interval))) {
+			long k = (long)Math.min(max, Math.ceil((limit - time) / interval));
+			while (k > 0 && time + k * interval >= limit) {
+				k--;
+			}
+			while (k < max && time + (k + 1) * interval < limit) {
+				k++;
+			}
+			return k;
+		}
+
+		long k = 0;
+		for (double t = time + interval; k < max && t < limit; 
+				t += interval) {
+			k++;
+		}
+		return k;
+	}
+
+	/**
+	 * Returns the time after the given number of update intervals have been
+	 * added to a time one at a time
+	 * @param time The time to start from
+	 * @param nrofIntervals The number of intervals
+	 * @return The time after the intervals
+	 */
+	private double intervalTime(double time, long nrofIntervals) {
+		double end = time + nrofIntervals * this.updateInterval;
+		if (exactIntervalSums(time, end)) {
+			return end;
+		}
+		for (long k=0; k < nrofIntervals; k++) {
+			time += this.updateInterval;
+		}
+		return time;
+	}
+
+	/**
+	 * Returns true if adding update intervals to a time one at a time 
+	 * gives exactly the time plus the number of intervals times the 
+	 * interval, up to (and one interval past) the given end time. This is
+	 * the case if the time and the interval are multiples of the interval's
+	 * lowest bit and all the sums fit in the precision of a double.
+	 * @param time The time to start from
+	 * @param end The time up to which the sums are needed
+	 * @return true if the sums can be computed by multiplying
+	 */
+	private boolean exactIntervalSums(double time, double end) {
+		double interval = this.updateInterval;
+		long bits = Double.doubleToLongBits(interval);
+		int exponent = (int)((bits >> 52) & 0x7ff);
+		if (interval <= 0 || exponent == 0 || exponent == 0x7ff) {
+			return false; // not a positive normal number
+		}
+		long mantissa = (bits & 0xfffffffffffffL) | 0x10000000000000L;
+		double unit = Math.scalb(1.0, exponent - 1075 + 
+				Long.numberOfTrailingZeros(mantissa));
+		double units = time / unit;
+		return units == Math.rint(units) && 
+			Math.max(Math.abs(time), Math.abs(end) + interval) < 
+			Math.scalb(unit, 53);
+	}
+
+	/**
+	 * Applies the update order shuffles of the skipped update intervals
+	 * (see {@link #skipIdleIntervals(double)}), each with the seed of its
+	 * interval's end time like in the intervals' updates
+	 */
+	private void applySkippedShuffles() {
+		if (this.nrofSkippedShuffles == 0) {
+			return;
+		}
+		if (this.touchedUpdater != null) {
+			this.touchedUpdater.applyShuffles(); // the earlier ones first
+		}
+
+		int n = this.updateOrder.size();
+		int[] order = new int[n];
+		for (int i=0; i < n; i++) {
+			order[i] = this.updateOrder.get(i).getAddress();
+		}
+		double time = this.skippedShuffleTime;
+		for (long k=0; k < this.nrofSkippedShuffles; k++) {
+			UpdateOrderShuffle.shuffle(order, (int)Math.round(time));
+			time += this.updateInterval;
+		}
+		for (int i=0; i < n; i++) {
+			this.updateOrder.set(i, this.hosts.get(order[i]));
+		}
+		this.nrofSkippedShuffles = 0;
+
+		if (this.touchedUpdater != null) {
+			this.touchedUpdater.orderChanged();
+		}
+	}
+
 	/**
 	 * Updates all hosts (calls update for every one of them). If update
 	 * order randomizing is on (updateOrder array is defined), the calls
 	 * are made in random order.
+	 * @param intervalEnd True if this is the update at the end of the 
+	 * update interval, false if this is an update after an event
 	 */
-	private void updateHosts() {
+	private void updateHosts(boolean intervalEnd) {
+		boolean updateInterfaces = simulateConnections && lead == null;
+		if (kinetic != null) {
+			kinetic.update();
+			updateInterfaces = false; // already up to date
+		}
+		else if (twoPhaseConnectivity) {
+			updateConnectivity();
+			updateInterfaces = false; // already up to date
+		}
+		else if (updateInterfaces && neighborDiff != null) {
+			neighborDiff.findChanges();
+		}
+
+		boolean replayLinks = this.nrofReplayedLinks > 0 ||
+			(intervalEnd && this.nrofReplayedEndLinks > 0);
+		if (replayLinks && this.replayLinksFirst) {
+			for (int i=0, n = hosts.size(); i < n; i++) {
+				applyReplayedLinks(i, intervalEnd);
+			}
+			replayLinks = false;
+		}
+
 		if (this.updateOrder == null) { // randomizing is off
 			for (int i=0, n = hosts.size();i < n; i++) {
 				if (this.isCancelled) {
 					break;
 				}
-				hosts.get(i).update(simulateConnections);
+				if (replayLinks) {
+					applyReplayedLinks(i, intervalEnd);
+				}
+				hosts.get(i).update(updateInterfaces);
 			}
 		}
 		else { // update order randomizing is on
 			assert this.updateOrder.size() == this.hosts.size() : 
 				"Nrof hosts has changed unexpectedly";
-			Random rng = new Random(SimClock.getIntTime());
-			Collections.shuffle(this.updateOrder, rng); 
+			shuffleUpdateOrder();
+			if (this.touchedUpdater != null) {
+				this.touchedUpdater.applyShuffles();
+			}
 			for (int i=0, n = hosts.size();i < n; i++) {
 				if (this.isCancelled) {
 					break;
 				}
-				this.updateOrder.get(i).update(simulateConnections);
+				DTNHost host = this.updateOrder.get(i);
+				if (replayLinks) {
+					applyReplayedLinks(host.getAddress(), intervalEnd);
+				}
+				host.update(updateInterfaces);
 			}			
 		}
+		this.nrofReplayedLinks = 0;
+		if (intervalEnd) {
+			this.nrofReplayedEndLinks = 0;
+		}
+
+		if (this.touchedUpdater != null) {
+			this.touchedUpdater.refreshAll();
+		}
+	}
+
+	/**
+	 * Updates the hosts after an external event. Either all hosts are 
+	 * updated or, if only the affected hosts should be updated, the hosts
+	 * the event touched and the hosts whose routers want an update now
+	 * (see {@link TouchedHostUpdater}). The other hosts' router updates 
+	 * would not do anything, so skipping them does not change the results.
+	 * @param ee The processed event
+	 */
+	private void updateHostsAfter(ExternalEvent ee) {
+		int[] touched = ee.getTouchedHosts();
+		if (touched != null && touched.length == 0) {
+			return; // nothing changed yet (e.g., a replayed link change)
+		}
+		if (this.touchedUpdater == null || touched == null ||
+				this.nrofReplayedLinks > 0) {
+			updateHosts(false);
+			return;
+		}
+
+		if (this.updateOrder != null) {
+			shuffleUpdateOrder(); // keep the same order as in full updates
+		}
+		this.touchedUpdater.update(touched);
+	}
+
+	/**
+	 * Replays a recorded link change at the update of all hosts where it
+	 * was made: at the end of the current update interval if the change
+	 * was made then, otherwise at the next update. The change is applied
+	 * right before the host that made it is updated or, if the two phase
+	 * or kinetic connectivity update is enabled, before any host is 
+	 * updated. This way the routers see the links in the same order as in
+	 * the run where the changes were recorded (with the same hosts, events
+	 * and update order). Used when the connections are not simulated.
+	 * @param up True for a connection up, false for down
+	 * @param fromAddr Address of the host that made the change
+	 * @param fromIface Index of the interface in that host
+	 * @param toAddr Address of the host at the other end
+	 * @param toIface Index of the interface in the other host
+	 * @param time The recorded time of the change
+	 * @param tolerance How much the recorded time may differ from the
+	 * time when the change was made (e.g., because of rounding)
+	 * @see input.ContactPlanQueue
+	 */
+	public void replayLinkChange(boolean up, int fromAddr, int fromIface,
+			int toAddr, int toIface, double time, double tolerance) {
+		getNodeByAddress(fromAddr); // checks the addresses
+		getNodeByAddress(toAddr);
+		if (this.replayedLinks == null) {
+			this.replayedLinks = new LinkFeed[hosts.size()];
+			this.replayedEndLinks = new LinkFeed[hosts.size()];
+		}
+
+		LinkFeed[] feeds = this.replayedLinks;
+		if (Math.abs(time - this.updateEndTime) <= tolerance) {
+			feeds = this.replayedEndLinks;
+			this.nrofReplayedEndLinks++;
+		}
+		else {
+			this.nrofReplayedLinks++;
+		}
+		if (feeds[fromAddr] == null) {
+			feeds[fromAddr] = new LinkFeed();
+		}
+		feeds[fromAddr].add(up, fromAddr, fromIface, toAddr, toIface);
+	}
+
+	/**
+	 * Applies the replayed link changes a host made
+	 * @param address Address of the host
+	 * @param intervalEnd If true, also the changes made at the end of the
+	 * update interval are applied
+	 */
+	private void applyReplayedLinks(int address, boolean intervalEnd) {
+		applyLinks(this.replayedLinks[address]);
+		if (intervalEnd) {
+			applyLinks(this.replayedEndLinks[address]);
+		}
+	}
+
+	/**
+	 * Applies and clears the link changes of a feed
+	 * @param feed The feed (may be null)
+	 */
+	private void applyLinks(LinkFeed feed) {
+		if (feed != null && feed.size() > 0) {
+			feed.applyTo(this);
+			feed.clear();
+		}
+	}
+
+	/**
+	 * Returns true if the simulation has been cancelled
+	 * @return true if the simulation has been cancelled
+	 */
+	boolean isCancelled() {
+		return this.isCancelled;
+	}
+
+	/**
+	 * Updates the connectivity of all active hosts in two phases. First the
+	 * link changes of all interfaces are found in parallel and then they
+	 * are applied in the host address order. The hosts are handed to the
+	 * threads in the order of their connectivity grid cells, so every
+	 * thread checks hosts that are near each other.
+	 */
+	private void updateConnectivity() {
+		int n = hosts.size();
+		if (this.linkActive == null || this.linkActive.length != n) {
+			this.linkActive = new boolean[n];
+			this.linkOrder = new long[n];
+		}
+		final boolean[] active = this.linkActive;
+		final long[] order = this.linkOrder;
+		int nrofActive = 0;
+
+		for (int i=0; i<n; i++) {
+			DTNHost host = hosts.get(i);
+			active[i] = host.isActive();
+			if (!active[i]) {
+				continue;
+			}
+			List<NetworkInterface> net = host.getInterfaces();
+			for (int j=0, m = net.size(); j<m; j++) {
+				net.get(j).updateOptimizerLocation();
+			}
+			/* grid cell in the high bits, host index in the low bits */
+			long cell = net.size() > 0 ? net.get(0).getOptimizerCell() : 0;
+			order[nrofActive++] = (cell << 32) | i;
+		}
+		Arrays.sort(order, 0, nrofActive);
+
+		forEachRange(nrofActive, connectivityThreads, new HostRangeTask() {
+			public void run(int first, int last) {
+				for (int k=first; k<last; k++) {
+					List<NetworkInterface> net = 
+						hosts.get((int)order[k]).getInterfaces();
+					for (int j=0, m = net.size(); j<m; j++) {
+						net.get(j).findLinkChanges();
+					}
+				}
+			}
+		});
+
+		for (int i=0; i<n; i++) {
+			if (!active[i]) {
+				continue;
+			}
+			List<NetworkInterface> net = hosts.get(i).getInterfaces();
+			for (int j=0, m = net.size(); j<m; j++) {
+				net.get(j).applyLinkChanges();
+			}
+		}
+	}
+
+	/**
+	 * Shuffles the host update order using the current simulation time
+	 * as the seed (after the pending shuffles of skipped intervals)
+	 */
+	private void shuffleUpdateOrder() {
+		applySkippedShuffles();
+		int seed = (int)Math.round(this.context.clockTime);
+		if (this.touchedUpdater != null) {
+			/* applied to the order before the next full update */
+			this.touchedUpdater.shuffle(seed);
+			return;
+		}
+		Random rng = new Random(seed);
+		Collections.shuffle(this.updateOrder, rng); 
 	}
 
 	/**
@@ -224,12 +1042,128 @@ public class World {
 	 * @param timeIncrement The time how long all nodes should move
 	 */
 	private void moveHosts(double timeIncrement) {
+		if (parallelMovement) {
+			moveHostsInParallel(timeIncrement);
+			return;
+		}
+
 		for (int i=0,n = hosts.size(); i<n; i++) {
 			DTNHost host = hosts.get(i);
 			host.move(timeIncrement);			
 		}		
 	}
 
+	/**
+	 * Moves all hosts in the world for a given amount of time using the
+	 * movement threads. The movement listeners are informed afterwards in 
+	 * the host order.
+	 * @param timeIncrement The time how long all nodes should move
+	 */
+	private void moveHostsInParallel(final double timeIncrement) {
+		forEachHostRange(movementThreads, new HostRangeTask() {
+			public void run(int first, int last) {
+				for (int i=first; i<last; i++) {
+					hosts.get(i).move(timeIncrement);
+				}
+			}
+		});
+
+		for (int i=0, n = hosts.size(); i<n; i++) {
+			hosts.get(i).flushMovementEvents();
+		}
+	}
+
+	/**
+	 * Splits the hosts into contiguous index ranges and runs a task for
+	 * every range using the worker threads. Returns when all the tasks
+	 * are done.
+	 * @param nrofTasks Number of ranges (and concurrently run tasks)
+	 * @param task The task to run
+	 */
+	private void forEachHostRange(int nrofTasks, HostRangeTask task) {
+		forEachRange(hosts.size(), nrofTasks, task);
+	}
+
+	/**
+	 * Splits the indexes <CODE>0...n-1</CODE> into contiguous ranges and 
+	 * runs a task for every range using the worker threads. Returns when
+	 * all the tasks are done.
+	 * @param n Number of indexes
+	 * @param nrofTasks Number of ranges (and concurrently run tasks)
+	 * @param task The task to run
+	 */
+	private void forEachRange(int n, int nrofTasks, final HostRangeTask task) {
+		if (nrofTasks <= 1) {
+			task.run(0, n);
+			return;
+		}
+
+		List<Future<?>> futures = new ArrayList<Future<?>>(nrofTasks);
+		for (int t=0; t<nrofTasks; t++) {
+			final int first = (int)((long)n * t / nrofTasks);
+			final int last = (int)((long)n * (t+1) / nrofTasks);
+			futures.add(getExecutor().submit(new Runnable() {
+				public void run() {
+					SimContext.enter(World.this.context); // this run's state
+					task.run(first, last);
+				}
+			}));
+		}
+
+		for (Future<?> future : futures) {
+			try {
+				future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new SimError("Interrupted while updating hosts");
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException)cause;
+				}
+				if (cause instanceof Error) {
+					throw (Error)cause;
+				}
+				throw new SimError((Exception)cause);
+			}
+		}
+	}
+
+	/**
+	 * Returns the executor for the parallel work. The executor is created
+	 * on the first call and its threads die when they have been idle for
+	 * a while.
+	 * @return The executor
+	 */
+	private ThreadPoolExecutor getExecutor() {
+		if (this.executor == null) {
+			int nrofThreads = Math.max(movementThreads, connectivityThreads);
+			this.executor = new ThreadPoolExecutor(nrofThreads, nrofThreads,
+					1, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+					new ThreadFactory() {
+						public Thread newThread(Runnable r) {
+							Thread t = new Thread(r, "world-worker");
+							t.setDaemon(true); // don't keep the JVM alive
+							return t;
+						}
+					});
+			this.executor.allowCoreThreadTimeOut(true);
+		}
+		return this.executor;
+	}
+
+	/**
+	 * Task that handles a contiguous range of hosts (or indexes)
+	 */
+	private interface HostRangeTask {
+		/**
+		 * Handles the hosts of a range
+		 * @param first Index of the first host of the range
+		 * @param last Index after the last host of the range
+		 */
+		public void run(int first, int last);
+	}
+
 	/**
 	 * Asynchronously cancels the currently running simulation
 	 */
@@ -237,6 +1171,18 @@ public class World {
 		this.isCancelled = true;
 	}
 
+	/**
+	 * Moves the world and its hosts to another context (e.g., when the
+	 * state of a warm-up snapshot is taken in use)
+	 * @param context The new context of the run
+	 */
+	void setContext(SimContext context) {
+		this.context = context;
+		for (DTNHost host : this.hosts) {
+			host.setContext(context);
+		}
+	}
+
 	/**
 	 * Returns the hosts in a list
 	 * @return the hosts in a list
@@ -286,5 +1232,6 @@ public class World {
 	 */
 	public void scheduleUpdate(double simTime) {
 		scheduledUpdates.addUpdate(simTime);
+		this.events.update(scheduledUpdates);
 	}
 }
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import core.World;
+
+/**
+ * A link up/down event of a compiled contact plan. Unlike
+ * {@link ConnectionEvent}, the interfaces are identified by their indexes
+ * in the hosts' interface lists.
+ */
+public class ContactPlanEvent extends ExternalEvent {
+	private static final long serialVersionUID = 1L;
+
+	/** address of the node the (dis)connection is from */
+	private final int fromAddr;
+	/** index of the interface the (dis)connection is from */
+	private final int fromIface;
+	/** address of the node the (dis)connection is to */
+	private final int toAddr;
+	/** index of the interface the (dis)connection is to */
+	private final int toIface;
+	/** Is this a "connection up" event */
+	private final boolean isUp;
+	/** time when the change was recorded */
+	private final double recordedTime;
+	/** how much the recorded time may differ from the time of the change */
+	private final double tolerance;
+
+	/**
+	 * Creates a new contact plan event
+	 * @param fromAddr Address of the host that initiated the change
+	 * @param fromIface Index of the interface in the from host
+	 * @param toAddr Address of the host at the other end
+	 * @param toIface Index of the interface in the to host
+	 * @param up If true, this is a "connection up" event, if false, this
+	 * is a "connection down" event
+	 * @param time Time when the event occurs
+	 * @param recordedTime The recorded time of the change
+	 * @param tolerance How much the recorded time may differ from the time
+	 * when the change was made (e.g., half of the plan's time resolution)
+	 */
+	public ContactPlanEvent(int fromAddr, int fromIface, int toAddr,
+			int toIface, boolean up, double time, double recordedTime,
+			double tolerance) {
+		super(time);
+		this.fromAddr = fromAddr;
+		this.fromIface = fromIface;
+		this.toAddr = toAddr;
+		this.toIface = toIface;
+		this.isUp = up;
+		this.recordedTime = recordedTime;
+		this.tolerance = tolerance;
+	}
+
+	/**
+	 * Replays the link change at the update of the hosts where it was
+	 * made, when the host that made the change is updated (see
+	 * {@link World#replayLinkChange(boolean, int, int, int, int, double,
+	 * double)})
+	 */
+	@Override
+	public void processEvent(World world) {
+		world.replayLinkChange(this.isUp, this.fromAddr, this.fromIface,
+				this.toAddr, this.toIface, this.recordedTime, this.tolerance);
+	}
+
+	/**
+	 * Returns an empty array: the change is applied in the next update of
+	 * the hosts, so no host needs an update after the event
+	 */
+	@Override
+	public int[] getTouchedHosts() {
+		return new int[0];
+	}
+
+	@Override
+	public String toString() {
+		return "PLAN " + (isUp ? "up" : "down") + " @" + this.time + " " +
+				this.fromAddr + ":" + this.fromIface + "<->" + this.toAddr +
+				":" + this.toIface;
+	}
+}
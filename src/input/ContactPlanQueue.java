@@ -0,0 +1,103 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+
+import core.Settings;
+
+/**
+ * Event queue that replays the link changes of a compiled contact plan
+ * (see {@link report.ContactPlanReport}). With
+ * <CODE>Scenario.simulateConnections = false</CODE> the connectivity of
+ * a recorded run can be replayed without computing it again, e.g.,
+ * for running several router configurations over an expensive
+ * (map based) scenario. The replaying run must have the same hosts and
+ * interfaces as the recorded run. Configured like event generators:<BR>
+ * <CODE>Events1.class = ContactPlanQueue</CODE><BR>
+ * <CODE>Events1.planFile = reports/scenario_ContactPlanReport.cplan</CODE>
+ * <P>Each change is applied at the update of the hosts where it was
+ * recorded, right before the host that made it is updated (see
+ * {@link core.World#replayLinkChange(boolean, int, int, int, int, double,
+ * double)}), so with the same hosts, events, routers and update order
+ * the replaying run gives the same results as the recorded run.
+ * Changes made outside the host updates (e.g., by events) are applied at
+ * the next update and changes made within half a time resolution of the
+ * end of an update interval are applied at the interval's end, so those
+ * may be seen one update later or earlier than in the recorded run.</P>
+ * <P>When the queue is serialized, only the position in the plan is stored;
+ * the plan file is re-opened when the queue is read back.</P>
+ */
+public class ContactPlanQueue implements EventQueue, Serializable {
+	private static final long serialVersionUID = 1L;
+
+	/** Contact plan file path -setting id ({@value}). Supports value
+	 * filling. */
+	public static final String PLAN_FILE_S = "planFile";
+
+	private final File planFile;
+	private transient ContactPlanReader reader;
+	/** number of changes read from the plan so far */
+	private int position;
+
+	/**
+	 * Creates a new queue based on the given settings
+	 * ({@link #PLAN_FILE_S}).
+	 * @param s The settings
+	 */
+	public ContactPlanQueue(Settings s) {
+		this(new File(s.valueFillString(s.getSetting(PLAN_FILE_S))));
+	}
+
+	/**
+	 * Creates a new queue that replays a contact plan file
+	 * @param planFile The contact plan file
+	 */
+	public ContactPlanQueue(File planFile) {
+		this.planFile = planFile;
+		this.reader = new ContactPlanReader(planFile);
+		this.position = 0;
+	}
+
+	/**
+	 * Re-opens the plan file after deserialization and continues from the
+	 * change where the queue was when it was serialized.
+	 */
+	private void readObject(ObjectInputStream in)
+			throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		this.reader = new ContactPlanReader(planFile);
+		reader.seekChange(position);
+	}
+
+	/**
+	 * Returns the next link change event or ExternalEvent with time of
+	 * Double.MAX_VALUE if there are no changes left
+	 * @return The next event
+	 */
+	public ExternalEvent nextEvent() {
+		if (!reader.hasNext()) {
+			return new ExternalEvent(Double.MAX_VALUE);
+		}
+		this.position++;
+		ExternalEvent ee = reader.next();
+		if (!reader.hasNext()) {
+			reader.close();
+		}
+		return ee;
+	}
+
+	/**
+	 * Returns next link change's time or Double.MAX_VALUE if there are no
+	 * changes left
+	 * @return Next change's time
+	 */
+	public double nextEventsTime() {
+		return reader.nextTime();
+	}
+}
@@ -0,0 +1,294 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+import core.SimError;
+
+/**
+ * <P>Reads link up and down changes from a compiled contact plan file. The
+ * plans are created with {@link ContactPlanWriter} (e.g., by
+ * {@link report.ContactPlanReport}) and replayed with
+ * {@link ContactPlanQueue}.</P>
+ * <P>File format: a header (magic number, version and time resolution),
+ * blocks of up to {@link #BLOCK_SIZE} changes, an index of the blocks and
+ * the file offset of the index as the last 8 bytes. Times are stored as
+ * ticks of the time resolution. Each block stores its changes in columns:
+ * the tick of the first change, the tick deltas as variable length
+ * integers, the from host addresses, the to host addresses and one byte
+ * per change with the up flag and the interface indexes. The index has the
+ * first tick, the first change number and the file offset of every block,
+ * so reading can start from any change or time without decoding the
+ * earlier blocks.</P>
+ */
+public class ContactPlanReader {
+	/** Extension of contact plan files ({@value}) */
+	public static final String PLAN_EXT = ".cplan";
+	/** Maximum number of changes in one block */
+	public static final int BLOCK_SIZE = 4096;
+	/** Maximum number of interfaces per host in a contact plan */
+	public static final int MAX_INTERFACES = 8;
+
+	/** magic number in the beginning of contact plan files ("CPLN") */
+	static final int MAGIC = 0x43504c4e;
+	/** version of the file format */
+	static final int VERSION = 1;
+	/** size of the header (magic, version and resolution) in bytes */
+	static final int HEADER_SIZE = 4 + 4 + 8;
+
+	private final File file;
+	private final RandomAccessFile in;
+	/** length of one time tick (simulated seconds) */
+	private final double resolution;
+	/** total number of changes in the plan */
+	private final int nrofChanges;
+
+	/** first tick, first change number and file offset of every block,
+	 * and the file offset of the index after the last block */
+	private final long[] blockTicks;
+	private final int[] blockFirsts;
+	private final long[] blockOffsets;
+
+	/** index of the loaded block or -1 if no block is loaded */
+	private int block;
+	/** columns of the loaded block */
+	private final long[] ticks;
+	private final int[] froms;
+	private final int[] tos;
+	private final byte[] links;
+	/** number of changes in the loaded block */
+	private int blockSize;
+	/** number of the next change in the plan */
+	private int position;
+
+	/**
+	 * Opens a contact plan file and reads its index. Reading starts from
+	 * the first change.
+	 * @param file The contact plan file
+	 * @throws SimError if the file can't be read or is not a contact plan
+	 */
+	public ContactPlanReader(File file) {
+		this.file = file;
+		this.ticks = new long[BLOCK_SIZE];
+		this.froms = new int[BLOCK_SIZE];
+		this.tos = new int[BLOCK_SIZE];
+		this.links = new byte[BLOCK_SIZE];
+
+		try {
+			this.in = new RandomAccessFile(file, "r");
+			if (in.length() < HEADER_SIZE + 8 || in.readInt() != MAGIC) {
+				throw new SimError("Not a contact plan file: " + file);
+			}
+			int version = in.readInt();
+			if (version != VERSION) {
+				throw new SimError("Unsupported contact plan version " +
+						version + " in " + file);
+			}
+			this.resolution = in.readDouble();
+
+			in.seek(in.length() - 8);
+			long indexOffset = in.readLong();
+			in.seek(indexOffset);
+			int nrofBlocks = in.readInt();
+			this.nrofChanges = in.readInt();
+			this.blockTicks = new long[nrofBlocks];
+			this.blockFirsts = new int[nrofBlocks];
+			this.blockOffsets = new long[nrofBlocks + 1];
+			for (int i=0; i < nrofBlocks; i++) {
+				blockTicks[i] = in.readLong();
+				blockFirsts[i] = in.readInt();
+				blockOffsets[i] = in.readLong();
+			}
+			blockOffsets[nrofBlocks] = indexOffset;
+		} catch (IOException e) {
+			throw new SimError("Couldn't read contact plan " + file + ": " +
+					e.getMessage(), e);
+		}
+
+		this.block = -1;
+		seekChange(0);
+	}
+
+	/**
+	 * Checks if the given file is a contact plan file
+	 * @param file The file to check
+	 * @return True if the file name has the contact plan extension
+	 */
+	public static boolean isContactPlanFile(File file) {
+		return file.getName().endsWith(PLAN_EXT);
+	}
+
+	/**
+	 * Returns the total number of changes in the plan
+	 * @return the total number of changes in the plan
+	 */
+	public int size() {
+		return this.nrofChanges;
+	}
+
+	/**
+	 * Returns the time resolution of the plan
+	 * @return the length of one time tick in simulated seconds
+	 */
+	public double getResolution() {
+		return this.resolution;
+	}
+
+	/**
+	 * Returns the number of the next change (i.e., how many changes have
+	 * been read)
+	 * @return the number of the next change
+	 */
+	public int getPosition() {
+		return this.position;
+	}
+
+	/**
+	 * Returns true if there are changes left
+	 * @return true if there are changes left
+	 */
+	public boolean hasNext() {
+		return this.position < this.nrofChanges;
+	}
+
+	/**
+	 * Returns the replay time of the next change or Double.MAX_VALUE if
+	 * there are no changes left. Changes are replayed half a tick before
+	 * their recorded tick, so that the rounding to ticks doesn't move them
+	 * past the end of the update interval where they were recorded.
+	 * @return the replay time of the next change
+	 */
+	public double nextTime() {
+		if (!hasNext()) {
+			return Double.MAX_VALUE;
+		}
+		return (ticks[position - blockFirsts[block]] - 0.5) * resolution;
+	}
+
+	/**
+	 * Reads the next change
+	 * @return The next change as an event
+	 * @throws SimError if there are no changes left
+	 */
+	public ContactPlanEvent next() {
+		if (!hasNext()) {
+			throw new SimError("No changes left in contact plan " + file);
+		}
+		double time = nextTime();
+		int i = position - blockFirsts[block];
+		byte link = links[i];
+		ContactPlanEvent event = new ContactPlanEvent(froms[i],
+				(link >> 1) & (MAX_INTERFACES - 1), tos[i],
+				(link >> 4) & (MAX_INTERFACES - 1), (link & 1) == 1, time,
+				ticks[i] * resolution, resolution / 2);
+		seekChange(position + 1);
+		return event;
+	}
+
+	/**
+	 * Moves the reading position to the given change
+	 * @param change Number of the change to read next
+	 */
+	public void seekChange(int change) {
+		this.position = Math.min(change, nrofChanges);
+		if (position >= nrofChanges) {
+			return;
+		}
+		int b = this.block;
+		if (b < 0 || position < blockFirsts[b] ||
+				position >= blockFirsts[b] + blockSize) {
+			b = Arrays.binarySearch(blockFirsts, position);
+			if (b < 0) {
+				b = -b - 2; // the block where the change is
+			}
+			loadBlock(b);
+		}
+	}
+
+	/**
+	 * Moves the reading position to the first change that was recorded at
+	 * or after the given time (rounded to the plan's resolution)
+	 * @param time The time
+	 */
+	public void seekTime(double time) {
+		long tick = Math.round(time / resolution);
+		int b = 0; // first block that may contain changes at or after tick
+		while (b + 1 < blockTicks.length && blockTicks[b + 1] < tick) {
+			b++;
+		}
+		seekChange(b < blockFirsts.length ? blockFirsts[b] : nrofChanges);
+		while (hasNext() && ticks[position - blockFirsts[block]] < tick) {
+			seekChange(position + 1);
+		}
+	}
+
+	/**
+	 * Closes the contact plan file
+	 */
+	public void close() {
+		try {
+			in.close();
+		} catch (IOException e) {
+			throw new SimError(e);
+		}
+	}
+
+	/**
+	 * Reads and decodes a block
+	 * @param b Index of the block
+	 */
+	private void loadBlock(int b) {
+		int length = (int)(blockOffsets[b + 1] - blockOffsets[b]);
+		byte[] bytes = new byte[length];
+		try {
+			in.seek(blockOffsets[b]);
+			in.readFully(bytes);
+			DataInputStream data = new DataInputStream(
+					new ByteArrayInputStream(bytes));
+			int n = data.readInt();
+			long tick = data.readLong();
+			for (int i=0; i < n; i++) {
+				tick += readVarLong(data);
+				ticks[i] = tick;
+			}
+			for (int i=0; i < n; i++) {
+				froms[i] = data.readInt();
+			}
+			for (int i=0; i < n; i++) {
+				tos[i] = data.readInt();
+			}
+			data.readFully(links, 0, n);
+			this.blockSize = n;
+			this.block = b;
+		} catch (IOException e) {
+			throw new SimError("Couldn't read contact plan " + file + ": " +
+					e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Reads an unsigned variable length integer (7 bits per byte, lowest
+	 * bits first)
+	 * @param data The stream to read from
+	 * @return The read value
+	 */
+	private static long readVarLong(DataInputStream data) throws IOException {
+		long value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = data.readByte();
+			value |= (long)(b & 0x7f) << shift;
+			shift += 7;
+		} while (b < 0);
+		return value;
+	}
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.util.Arrays;
+
+import core.SimError;
+
+/**
+ * Writes link up and down changes to a compiled contact plan file. The
+ * changes must be added in the order of their times. See
+ * {@link ContactPlanReader} for the file format.
+ * <P>When the writer is serialized, the written blocks are flushed to the
+ * file. When it is read back, anything written to the file after that is
+ * removed and the writing continues from that point.</P>
+ */
+public class ContactPlanWriter implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private final File file;
+	private transient DataOutputStream out;
+	/** length of one time tick (simulated seconds) */
+	private final double resolution;
+
+	/** columns of the block that is being filled */
+	private final long[] ticks;
+	private final int[] froms;
+	private final int[] tos;
+	private final byte[] links;
+	/** number of changes in the block that is being filled */
+	private int blockSize;
+
+	/** index: first tick, first change number and offset of every block */
+	private long[] indexTicks;
+	private int[] indexFirsts;
+	private long[] indexOffsets;
+	private int nrofBlocks;
+	/** number of changes written to the file */
+	private int nrofChanges;
+	/** number of bytes written to the file */
+	private long offset;
+	/** tick of the latest added change */
+	private long lastTick;
+
+	/**
+	 * Creates a new contact plan file
+	 * @param file The file to write to
+	 * @param resolution Length of one time tick (simulated seconds). The
+	 * times of the changes are rounded to the nearest tick.
+	 * @throws SimError if the file can't be created
+	 */
+	public ContactPlanWriter(File file, double resolution) {
+		if (resolution <= 0) {
+			throw new SimError("Invalid contact plan resolution " +
+					resolution);
+		}
+		this.file = file;
+		this.resolution = resolution;
+		this.ticks = new long[ContactPlanReader.BLOCK_SIZE];
+		this.froms = new int[ContactPlanReader.BLOCK_SIZE];
+		this.tos = new int[ContactPlanReader.BLOCK_SIZE];
+		this.links = new byte[ContactPlanReader.BLOCK_SIZE];
+		this.indexTicks = new long[16];
+		this.indexFirsts = new int[16];
+		this.indexOffsets = new long[16];
+		this.lastTick = Long.MIN_VALUE;
+
+		try {
+			this.out = new DataOutputStream(new BufferedOutputStream(
+					new FileOutputStream(file)));
+			out.writeInt(ContactPlanReader.MAGIC);
+			out.writeInt(ContactPlanReader.VERSION);
+			out.writeDouble(resolution);
+		} catch (IOException e) {
+			throw new SimError("Couldn't create contact plan " + file + ": " +
+					e.getMessage(), e);
+		}
+		this.offset = ContactPlanReader.HEADER_SIZE;
+	}
+
+	/**
+	 * Adds a link change to the plan
+	 * @param time Time of the change
+	 * @param up True for a link up, false for a link down
+	 * @param fromAddr Address of the host that initiated the change
+	 * @param fromIface Index of the interface in the from host
+	 * @param toAddr Address of the host at the other end
+	 * @param toIface Index of the interface in the to host
+	 * @throws SimError if the change is older than the previous change or
+	 * an interface index is too large
+	 */
+	public void add(double time, boolean up, int fromAddr, int fromIface,
+			int toAddr, int toIface) {
+		long tick = Math.round(time / resolution);
+		if (tick < lastTick) {
+			throw new SimError("Contact plan changes must be added in time " +
+					"order (" + time + " after " + lastTick * resolution + ")");
+		}
+		if (fromIface >= ContactPlanReader.MAX_INTERFACES ||
+				toIface >= ContactPlanReader.MAX_INTERFACES) {
+			throw new SimError("Contact plans support only " +
+					ContactPlanReader.MAX_INTERFACES + " interfaces per host");
+		}
+		if (blockSize == ticks.length) {
+			writeBlock();
+		}
+		this.lastTick = tick;
+		ticks[blockSize] = tick;
+		froms[blockSize] = fromAddr;
+		tos[blockSize] = toAddr;
+		links[blockSize] = (byte)((up ? 1 : 0) | fromIface << 1 |
+				toIface << 4);
+		blockSize++;
+	}
+
+	/**
+	 * Writes the rest of the changes and the index, and closes the file
+	 * @throws SimError if writing failed
+	 */
+	public void close() {
+		if (blockSize > 0) {
+			writeBlock();
+		}
+		try {
+			out.writeInt(nrofBlocks);
+			out.writeInt(nrofChanges);
+			for (int i=0; i < nrofBlocks; i++) {
+				out.writeLong(indexTicks[i]);
+				out.writeInt(indexFirsts[i]);
+				out.writeLong(indexOffsets[i]);
+			}
+			out.writeLong(offset);
+			out.close();
+		} catch (IOException e) {
+			throw new SimError("Couldn't write contact plan " + file + ": " +
+					e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Writes the filled block to the file and adds it to the index
+	 */
+	private void writeBlock() {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(
+				blockSize * 10 + 12);
+		DataOutputStream data = new DataOutputStream(bytes);
+		try {
+			data.writeInt(blockSize);
+			data.writeLong(ticks[0]);
+			long prev = ticks[0];
+			for (int i=0; i < blockSize; i++) {
+				writeVarLong(data, ticks[i] - prev);
+				prev = ticks[i];
+			}
+			for (int i=0; i < blockSize; i++) {
+				data.writeInt(froms[i]);
+			}
+			for (int i=0; i < blockSize; i++) {
+				data.writeInt(tos[i]);
+			}
+			data.write(links, 0, blockSize);
+			bytes.writeTo(out);
+		} catch (IOException e) {
+			throw new SimError("Couldn't write contact plan " + file + ": " +
+					e.getMessage(), e);
+		}
+
+		if (nrofBlocks == indexTicks.length) {
+			indexTicks = Arrays.copyOf(indexTicks, 2 * nrofBlocks);
+			indexFirsts = Arrays.copyOf(indexFirsts, 2 * nrofBlocks);
+			indexOffsets = Arrays.copyOf(indexOffsets, 2 * nrofBlocks);
+		}
+		indexTicks[nrofBlocks] = ticks[0];
+		indexFirsts[nrofBlocks] = nrofChanges;
+		indexOffsets[nrofBlocks] = offset;
+		this.offset += bytes.size();
+		this.nrofChanges += blockSize;
+		this.nrofBlocks++;
+		this.blockSize = 0;
+	}
+
+	/**
+	 * Flushes the written blocks to the file
+	 */
+	private void writeObject(ObjectOutputStream oos) throws IOException {
+		out.flush();
+		oos.defaultWriteObject();
+	}
+
+	/**
+	 * Removes anything written to the file after serialization and
+	 * re-opens the file for writing
+	 */
+	private void readObject(ObjectInputStream ois)
+			throws IOException, ClassNotFoundException {
+		ois.defaultReadObject();
+		RandomAccessFile f = new RandomAccessFile(file, "rw");
+		try {
+			f.setLength(this.offset);
+		}
+		finally {
+			f.close();
+		}
+		this.out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(file, true)));
+	}
+
+	/**
+	 * Writes an unsigned variable length integer (7 bits per byte, lowest
+	 * bits first)
+	 * @param data The stream to write to
+	 * @param value The value to write (must not be negative)
+	 */
+	private static void writeVarLong(DataOutputStream data, long value)
+			throws IOException {
+		while ((value & ~0x7fL) != 0) {
+			data.writeByte((int)(value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		data.writeByte((int)value);
+	}
+}
@@ -0,0 +1,174 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package input;
+
+import java.io.Serializable;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Event queue that merges the events of several event queues in time 
+ * order. The queues are kept in an indexed binary heap keyed by their
+ * next events' times, so finding and taking the next event takes 
+ * O(log n) time for n queues. Of queues whose next events happen at the
+ * same time, the one given first to the constructor is served first.
+ * <P>The heap caches the next event times of the queues. The time of a
+ * queue is re-read when an event is taken from it and when 
+ * {@link #update(EventQueue)} or {@link #updateAll()} is called, so those
+ * must be called after a queue has been changed in any other way.</P>
+ */
+public class EventQueueMerger implements EventQueue, Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private final EventQueue[] queues;
+	/** cached next event times of the queues */
+	private final double[] times;
+	/** indices of the queues in heap order */
+	private final int[] heap;
+	/** positions of the queues in the heap */
+	private final int[] positions;
+	private final Map<EventQueue, Integer> indices;
+	/** has the heap been built */
+	private boolean initialized;
+
+	/**
+	 * Constructor.
+	 * @param queues The queues to merge
+	 */
+	public EventQueueMerger(List<? extends EventQueue> queues) {
+		int n = queues.size();
+		this.queues = queues.toArray(new EventQueue[n]);
+		this.times = new double[n];
+		this.heap = new int[n];
+		this.positions = new int[n];
+		this.indices = new IdentityHashMap<EventQueue, Integer>();
+		for (int i=0; i<n; i++) {
+			this.indices.put(this.queues[i], i);
+		}
+		updateAll();
+	}
+
+	/**
+	 * Returns the next event of the queue that has the earliest event
+	 * or an event with time Double.MAX_VALUE if there are no queues
+	 * @return The next event
+	 */
+	public ExternalEvent nextEvent() {
+		if (this.heap.length == 0) {
+			return new ExternalEvent(Double.MAX_VALUE);
+		}
+		int index = this.heap[0];
+		ExternalEvent ee = this.queues[index].nextEvent();
+		this.times[index] = this.queues[index].nextEventsTime();
+		siftDown(0);
+		return ee;
+	}
+
+	/**
+	 * Returns the time of the earliest event of all queues
+	 * @return The time of the earliest event
+	 */
+	public double nextEventsTime() {
+		if (this.heap.length == 0) {
+			return Double.MAX_VALUE;
+		}
+		return this.times[this.heap[0]];
+	}
+
+	/**
+	 * Re-reads the next event time of a queue after it has changed
+	 * @param queue The queue that has changed
+	 */
+	public void update(EventQueue queue) {
+		Integer index = this.indices.get(queue);
+		assert index != null : "Queue " + queue + " is not merged";
+
+		double old = this.times[index];
+		this.times[index] = queue.nextEventsTime();
+		if (this.times[index] < old) {
+			siftUp(this.positions[index]);
+		}
+		else {
+			siftDown(this.positions[index]);
+		}
+	}
+
+	/**
+	 * Re-reads the next event times of all queues. Must be used if queues 
+	 * can change without events being taken from them (e.g., when events 
+	 * are added to a queue from outside of the simulation).
+	 */
+	public void updateAll() {
+		int n = this.queues.length;
+		boolean changed = !this.initialized;
+		for (int i=0; i<n; i++) {
+			double time = this.queues[i].nextEventsTime();
+			if (time != this.times[i]) {
+				this.times[i] = time;
+				changed = true;
+			}
+		}
+		if (!changed) {
+			return; /* heap order is still valid */
+		}
+
+		for (int i=0; i<n; i++) {
+			place(i, i);
+		}
+		for (int i = n / 2 - 1; i >= 0; i--) {
+			siftDown(i);
+		}
+		this.initialized = true;
+	}
+
+	/**
+	 * Returns true if the queue with index a should be served before 
+	 * the queue with index b
+	 */
+	private boolean isBefore(int a, int b) {
+		return this.times[a] < this.times[b] || 
+			(this.times[a] == this.times[b] && a < b);
+	}
+
+	private void siftUp(int pos) {
+		int index = this.heap[pos];
+		while (pos > 0) {
+			int parent = (pos - 1) / 2;
+			if (!isBefore(index, this.heap[parent])) {
+				break;
+			}
+			place(this.heap[parent], pos);
+			pos = parent;
+		}
+		place(index, pos);
+	}
+
+	private void siftDown(int pos) {
+		int index = this.heap[pos];
+		int n = this.heap.length;
+		while (2 * pos + 1 < n) {
+			int child = 2 * pos + 1;
+			if (child + 1 < n && isBefore(this.heap[child + 1], 
+					this.heap[child])) {
+				child++;
+			}
+			if (!isBefore(this.heap[child], index)) {
+				break;
+			}
+			place(this.heap[child], pos);
+			pos = child;
+		}
+		place(index, pos);
+	}
+
+	/**
+	 * Puts a queue to a position in the heap
+	 */
+	private void place(int index, int pos) {
+		this.heap[pos] = index;
+		this.positions[index] = pos;
+	}
+}
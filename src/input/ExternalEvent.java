@@ -29,6 +29,18 @@ public class ExternalEvent implements Comparable<ExternalEvent>, Serializable {
 		// this is just a dummy event
 	}
 
+	/**
+	 * Returns the addresses of the hosts this event touches, i.e., the hosts
+	 * whose state processing the event may change directly. This 
+	 * implementation returns null, which means that the event may concern 
+	 * any host (e.g., a plain update request). An empty array means that
+	 * no host needs to be updated after the event.
+	 * @return The addresses of the touched hosts or null for all hosts
+	 */
+	public int[] getTouchedHosts() {
+		return null;
+	}
+
 	/**
 	 * Returns the time when this event should happen.
 	 * @return Event's time
@@ -5,6 +5,9 @@
 package input;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -12,9 +15,13 @@ import core.Settings;
 
 /**
  * Queue of external events. This class also takes care of buffering
- * the events and preloading only a proper amount of them.
+ * the events and preloading only a proper amount of them. When the queue
+ * is serialized, only the position in the events file is stored with the
+ * buffered events; the file is re-opened when the queue is read back.
  */
-public class ExternalEventsQueue implements EventQueue {
+public class ExternalEventsQueue implements EventQueue, Serializable {
+	private static final long serialVersionUID = 1L;
+
 	/** ExternalEvents namespace ({@value})*/
 	public static final String SETTINGS_NAMESPACE = "ExternalEvents";
 	/** number of event to preload -setting id ({@value})*/
@@ -26,7 +33,9 @@ public class ExternalEventsQueue implements EventQueue {
 	public static final int DEFAULT_NROF_PRELOAD = 500;
 	
 	private File eventsFile;
-	private ExternalEventsReader reader;
+	private transient ExternalEventsReader reader;
+	/** number of events read from the file so far */
+	private int nrofEventsRead;
 	private int nextEventIndex;
 	private int nrofPreload;
 	private List<ExternalEvent> queue;
@@ -76,16 +85,47 @@ public class ExternalEventsQueue implements EventQueue {
 	
 	private void init(String eeFilePath) {
 		this.eventsFile = new File(eeFilePath);
+		this.nrofEventsRead = 0;
+		openReader();
 		
+		this.queue = readEvents(nrofPreload);
+		this.nextEventIndex = 0;
+	}
+
+	/**
+	 * Opens the reader for the events file
+	 */
+	private void openReader() {
 		if (BinaryEventsReader.isBinaryEeFile(eventsFile)) {
 			this.reader = new BinaryEventsReader(eventsFile);
 		}
 		else {
 			this.reader = new StandardEventsReader(eventsFile);
 		}
-		
-		this.queue = readEvents(nrofPreload);
-		this.nextEventIndex = 0;
+	}
+
+	/**
+	 * Re-opens the events file after deserialization and skips the events
+	 * that were already read before the queue was serialized.
+	 */
+	private void readObject(ObjectInputStream in) 
+			throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		if (allEventsRead) {
+			return;
+		}
+
+		openReader();
+		int toSkip = this.nrofEventsRead;
+		while (toSkip > 0) {
+			int skipped = reader.readEvents(
+					Math.min(toSkip, nrofPreload)).size();
+			if (skipped == 0) {
+				throw new IOException("Events file " + eventsFile + 
+						" has less events than were read from it");
+			}
+			toSkip -= skipped;
+		}
 	}
 	
 	/**
@@ -151,6 +191,7 @@ public class ExternalEventsQueue implements EventQueue {
 		}
 		
 		List<ExternalEvent> events = reader.readEvents(nrof);
+		this.nrofEventsRead += events.size();
 		
 		if (nrof > 0 && events.size() == 0) {
 			reader.close();
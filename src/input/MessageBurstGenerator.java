@@ -16,6 +16,8 @@ import core.Settings;
  * @see MessageEventGenerator
  */
 public class MessageBurstGenerator extends MessageEventGenerator {
+	private static final long serialVersionUID = 1L;
+
 	/** next index to use from the "from" range */
 	private int nextFromOffset;
 	private int nextToOffset;
@@ -46,6 +46,11 @@ public class MessageCreateEvent extends MessageEvent {
 		from.createNewMessage(m);
 	}
 	
+	@Override
+	public int[] getTouchedHosts() {
+		return new int[] {this.fromAddr};
+	}
+	
 	@Override
 	public String toString() {
 		return super.toString() + " [" + fromAddr + "->" + toAddr + "] " +
@@ -61,6 +61,11 @@ public class MessageRelayEvent extends MessageEvent {
 		}
 	}
 	
+	@Override
+	public int[] getTouchedHosts() {
+		return new int[] {this.fromAddr, this.toAddr};
+	}
+	
 	@Override
 	public String toString() {
 		return super.toString() + " [" + fromAddr + "->" + toAddr + "] " + 
@@ -23,6 +23,8 @@ import core.SettingsError;
  * @see MessageEventGenerator
  */
 public class OneToEachMessageGenerator extends MessageEventGenerator {
+	private static final long serialVersionUID = 1L;
+
 	private final List<Integer> toIds;
 	
 	public OneToEachMessageGenerator(Settings s) {
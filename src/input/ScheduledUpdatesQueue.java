@@ -4,25 +4,32 @@
  */
 package input;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.Serializable;
+import java.util.Arrays;
 
 /**
  * Event queue where simulation objects can request an update to happen
  * at the specified simulation time. Multiple updates at the same time 
- * are merged to a single update.
+ * are merged to a single update. The update times are kept in a binary
+ * heap so adding and taking an update takes O(log n) time. Duplicate
+ * times are kept in the heap and merged when the update is taken.
  */
-public class ScheduledUpdatesQueue implements EventQueue {
-	/** Time of the event (simulated seconds) */
-	private ExternalEvent nextEvent;
-	private final List<ExternalEvent> updates;
+public class ScheduledUpdatesQueue implements EventQueue, Serializable {
+	private static final long serialVersionUID = 1L;
+
+	/** initial capacity of the heap */
+	private static final int INITIAL_CAPACITY = 16;
+	/** Times of the updates (simulated seconds) in heap order */
+	private double[] heap;
+	/** number of updates in the heap */
+	private int size;
 	
 	/**
 	 * Constructor. Creates an empty update queue.
 	 */
 	public ScheduledUpdatesQueue(){
-		this.nextEvent = new ExternalEvent(Double.MAX_VALUE);
-		this.updates = new ArrayList<ExternalEvent>();
+		this.heap = new double[INITIAL_CAPACITY];
+		this.size = 0;
 	}
 	
 	/**
@@ -31,16 +38,19 @@ public class ScheduledUpdatesQueue implements EventQueue {
 	 * @return the next scheduled event
 	 */
 	public ExternalEvent nextEvent() {
-		ExternalEvent event = this.nextEvent;
-		
-		if (this.updates.size() == 0) {
-			this.nextEvent = new ExternalEvent(Double.MAX_VALUE);
-		}
-		else {
-			this.nextEvent = this.updates.remove(0);
+		if (this.size == 0) {
+			return new ExternalEvent(Double.MAX_VALUE);
 		}
+
+		double time = this.heap[0];
+		do { /* removes also the duplicates of the time */
+			this.size--;
+			if (this.size > 0) {
+				siftDown(this.heap[this.size]);
+			}
+		} while (this.size > 0 && this.heap[0] == time);
 		
-		return event;
+		return new ExternalEvent(time);
 	}
 	
 	/**
@@ -49,7 +59,7 @@ public class ScheduledUpdatesQueue implements EventQueue {
 	 * @return the next scheduled event's time
 	 */
 	public double nextEventsTime() {
-		return this.nextEvent.getTime();
+		return this.size == 0 ? Double.MAX_VALUE : this.heap[0];
 	}
 
 	/**
@@ -57,46 +67,69 @@ public class ScheduledUpdatesQueue implements EventQueue {
 	 * @param simTime The time when the update should happen
 	 */
 	public void addUpdate(double simTime) {
-		ExternalEvent ee = new ExternalEvent(simTime);
-
-		if (ee.compareTo(nextEvent) == 0) { // this event is already next
-        }
-		else if (this.nextEvent.getTime() > simTime) { // new nextEvent
-			putToQueue(this.nextEvent); // put the old nextEvent back to q
-			this.nextEvent = ee;
+		simTime += 0.0; // -0.0 and 0.0 are the same time
+		if (this.size > 0 && this.heap[0] == simTime) {
+			return; // the next update is at the given time -> no need for new
 		}
-		else { // given event happens later..
-			putToQueue(ee);
+		
+		if (this.size == this.heap.length) {
+			this.heap = Arrays.copyOf(this.heap, this.size * 2);
 		}
+		this.size++;
+		siftUp(this.size - 1, simTime);
 	}
-	
+
 	/**
-	 * Puts a event to the queue in the right place
-	 * @param ee The event to put to the queue
+	 * Moves a time up in the heap, starting from the given position,
+	 * until its parent is not later than it
+	 * @param index The position where to start
+	 * @param time The time to put to the heap
 	 */
-	private void putToQueue(ExternalEvent ee) {
-		double eeTime = ee.getTime();
-		
-		for (int i=0, n=this.updates.size(); i<n; i++) {
-			double time = updates.get(i).getTime();
-			if (time == eeTime) {
-				return; // update with the given time exists -> no need for new
+	private void siftUp(int index, double time) {
+		while (index > 0) {
+			int parent = (index - 1) / 2;
+			if (this.heap[parent] <= time) {
+				break;
 			}
-			else if (eeTime < time) {
-				this.updates.add(i, ee);
-				return;
+			this.heap[index] = this.heap[parent];
+			index = parent;
+		}
+		this.heap[index] = time;
+	}
+
+	/**
+	 * Puts a time to the root of the heap and moves it down until neither
+	 * of its children is earlier than it
+	 * @param time The time to put to the heap
+	 */
+	private void siftDown(double time) {
+		int index = 0;
+		int half = this.size / 2;
+		while (index < half) {
+			int child = 2 * index + 1;
+			if (child + 1 < this.size && 
+					this.heap[child + 1] < this.heap[child]) {
+				child++;
+			}
+			if (time <= this.heap[child]) {
+				break;
 			}
+			this.heap[index] = this.heap[child];
+			index = child;
 		}
-		
-		/* all existing updates are earlier -> add to the end of the list */
-		this.updates.add(ee);  
+		this.heap[index] = time;
 	}
 	
 	public String toString() {
-		String times = "updates @ " + this.nextEvent.getTime();
+		double[] sorted = Arrays.copyOf(this.heap, this.size);
+		Arrays.sort(sorted);
+		String times = "updates @ " + (this.size == 0 ? 
+				Double.MAX_VALUE : sorted[0]);
 		
-		for (ExternalEvent ee : this.updates) {
-			times += ", " + ee.getTime();
+		for (int i=1; i<sorted.length; i++) {
+			if (sorted[i] != sorted[i-1]) {
+				times += ", " + sorted[i];
+			}
 		}
 		
 		return times;
@@ -4,8 +4,11 @@
  */
 package interfaces;
 
+import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 
 import movement.MovementModel;
@@ -14,6 +17,7 @@ import core.Coord;
 import core.DTNSim;
 import core.NetworkInterface;
 import core.Settings;
+import core.SimContext;
 
 /**
  * <P>
@@ -32,21 +36,38 @@ import core.Settings;
  * connection. Then only that subset of interfaces is checked for possible
  * connectivity. 
  * </P>
+ * <P>The cells are stored in flat arrays that hold the addresses of the 
+ * interfaces in the cells, so finding the neighbors with
+ * {@link #findNearInterfaces(NetworkInterface, NeighborCursor)} and 
+ * updating the locations don't create any objects.
+ * </P>
  * <P>
  * <strong>Note:</strong> this class does NOT support negative
  * coordinates. Also, it makes sense to normalize the coordinates to start
  * from zero to conserve memory. 
  */
 public class ConnectivityGrid extends ConnectivityOptimizer {
-	private final GridCell[][] cells;
-	private final HashMap<NetworkInterface,GridCell> ginterfaces;
+	private static final long serialVersionUID = 1L;
+
+	/** how large array is initially chosen for a cell's interfaces */
+	private static final int EXPECTED_INTERFACE_COUNT = 5;
+	/** cell index of interfaces that are not in the grid */
+	private static final int NO_CELL = -1;
+
+	/** addresses of the interfaces in every cell, in the order they were
+	 * added to the cell (cell index = row * (cols + 2) + col) */
+	private final int[][] cellMembers;
+	/** number of interfaces in every cell */
+	private final int[] cellCounts;
+	/** interfaces of the grid by their address */
+	private NetworkInterface[] interfaces;
+	/** cell index of every interface by its address (or NO_CELL) */
+	private int[] cellOf;
+	/** all interfaces of the grid */
+	private final ArrayList<NetworkInterface> allInterfaces;
 	private final int cellSize;
 	private final int rows;
 	private final int cols;
-	private static int worldSizeX;
-	private static int worldSizeY;
-
-	static HashMap<Integer,ConnectivityGrid> gridobjects;
 
 	static {
 		DTNSim.registerForReset(ConnectivityGrid.class.getCanonicalName());
@@ -54,12 +75,23 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	}
 	
 	public static void reset() {
-		gridobjects = new HashMap<Integer,ConnectivityGrid>();
+		SimContext.current().setState(ConnectivityGrid.class, null);
+	}
 
-		Settings s = new Settings(MovementModel.MOVEMENT_MODEL_NS);
-		int [] worldSize = s.getCsvInts(MovementModel.WORLD_SIZE,2);
-		worldSizeX = worldSize[0];
-		worldSizeY = worldSize[1];
+	/**
+	 * Returns the grid state of the current simulation run. The state is
+	 * created on the first call of a run.
+	 * @return the grid state of the current run
+	 */
+	private static GridRunState getRunState() {
+		SimContext context = SimContext.current();
+		GridRunState state = 
+			(GridRunState)context.getState(ConnectivityGrid.class);
+		if (state == null) {
+			state = new GridRunState();
+			context.setState(ConnectivityGrid.class, state);
+		}
+		return state;
 	}
 
 	/**
@@ -69,18 +101,18 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	 * 	radio coverage's diameter)
 	 */
 	private ConnectivityGrid(int cellSize) {
-		this.rows = worldSizeY/cellSize + 1;
-		this.cols = worldSizeX/cellSize + 1;
-		// leave empty cells on both sides to make neighbor search easier 
-		this.cells = new GridCell[rows+2][cols+2];
+		GridRunState state = getRunState();
+		this.rows = state.worldSizeY/cellSize + 1;
+		this.cols = state.worldSizeX/cellSize + 1;
 		this.cellSize = cellSize;
-
-		for (int i=0; i<rows+2; i++) {
-			for (int j=0; j<cols+2; j++) {
-				this.cells[i][j] = new GridCell();
-			}
-		}
-		ginterfaces = new HashMap<NetworkInterface,GridCell>();
+		// leave empty cells on both sides to make neighbor search easier 
+		int nrofCells = (rows+2) * (cols+2);
+		this.cellMembers = new int[nrofCells][];
+		this.cellCounts = new int[nrofCells];
+		this.interfaces = new NetworkInterface[EXPECTED_INTERFACE_COUNT];
+		this.cellOf = new int[EXPECTED_INTERFACE_COUNT];
+		Arrays.fill(this.cellOf, NO_CELL);
+		this.allInterfaces = new ArrayList<NetworkInterface>();
 	}
 
 	/**
@@ -92,6 +124,8 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	 */
 	public static ConnectivityGrid ConnectivityGridFactory(int key, 
 			double cellSize) {
+		HashMap<Integer,ConnectivityGrid> gridobjects = 
+			getRunState().gridobjects;
 		if (gridobjects.containsKey(key)) {
 			return gridobjects.get(key);
 		} else {
@@ -107,9 +141,24 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	 * @param ni The new network interface
 	 */
 	public void addInterface(NetworkInterface ni) {
-		GridCell c = cellFromCoord(ni.getLocation());
-		c.addInterface(ni);
-		ginterfaces.put(ni,c);
+		int addr = ni.getAddress();
+		if (addr >= this.interfaces.length) {
+			int newLength = Math.max(addr + 1, 2 * this.interfaces.length);
+			this.interfaces = Arrays.copyOf(this.interfaces, newLength);
+			int oldLength = this.cellOf.length;
+			this.cellOf = Arrays.copyOf(this.cellOf, newLength);
+			Arrays.fill(this.cellOf, oldLength, newLength, NO_CELL);
+		}
+		if (this.cellOf[addr] != NO_CELL) {
+			removeFromCell(addr, this.cellOf[addr]);
+		}
+		else {
+			this.allInterfaces.add(ni);
+		}
+		this.interfaces[addr] = ni;
+		int cell = cellFromCoord(ni.getLocation());
+		addToCell(addr, cell);
+		this.cellOf[addr] = cell;
 	}
 
 	/** 
@@ -117,11 +166,14 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	 * @param ni The interface to be removed
 	 */
 	public void removeInterface(NetworkInterface ni) {
-		GridCell c = ginterfaces.get(ni);
-		if (c != null) {
-			c.removeInterface(ni);
+		int addr = ni.getAddress();
+		if (addr >= this.cellOf.length || this.cellOf[addr] == NO_CELL) {
+			return;
 		}
-		ginterfaces.remove(ni);
+		removeFromCell(addr, this.cellOf[addr]);
+		this.cellOf[addr] = NO_CELL;
+		this.interfaces[addr] = null;
+		this.allInterfaces.remove(ni);
 	}
 
 	/**
@@ -139,48 +191,70 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	 * @param ni The interface to update
 	 */
 	public void updateLocation(NetworkInterface ni) {
-		GridCell oldCell = ginterfaces.get(ni);
-		GridCell newCell = cellFromCoord(ni.getLocation());
+		int addr = ni.getAddress();
+		int oldCell = this.cellOf[addr];
+		int newCell = cellFromCoord(ni.getLocation());
 
 		if (newCell != oldCell) {
-			oldCell.moveInterface(ni, newCell);
-			ginterfaces.put(ni,newCell);
+			addToCell(addr, newCell);
+			removeFromCell(addr, oldCell);
+			this.cellOf[addr] = newCell;
 		}
 	}
 
+	@Override
+	public int getCellIndex(NetworkInterface ni) {
+		int addr = ni.getAddress();
+		return addr < this.cellOf.length ? this.cellOf[addr] : NO_CELL;
+	}
+
 	/**
-	 * Finds all neighboring cells and the cell itself based on the coordinates
-	 * @param c The coordinates
-	 * @return Array of neighboring cells 
+	 * Adds an interface to the end of a cell's interfaces
+	 * @param addr Address of the interface
+	 * @param cell Index of the cell
 	 */
-	private GridCell[] getNeighborCellsByCoord(Coord c) {
-		// +1 due empty cells on both sides of the matrix
-		int row = (int)(c.getY()/cellSize) + 1;
-		int col = (int)(c.getX()/cellSize) + 1;
-		return getNeighborCells(row,col);
+	private void addToCell(int addr, int cell) {
+		int[] members = this.cellMembers[cell];
+		int count = this.cellCounts[cell];
+		if (members == null) {
+			members = new int[EXPECTED_INTERFACE_COUNT];
+			this.cellMembers[cell] = members;
+		}
+		else if (count == members.length) {
+			members = Arrays.copyOf(members, 2 * count);
+			this.cellMembers[cell] = members;
+		}
+		members[count] = addr;
+		this.cellCounts[cell] = count + 1;
 	}
 
 	/**
-	 * Returns an array of Cells that contains the neighbors of a certain
-	 * cell and the cell itself.
-	 * @param row Row index of the cell
-	 * @param col Column index of the cell
-	 * @return Array of neighboring Cells
+	 * Removes an interface from a cell. The order of the other interfaces
+	 * of the cell is preserved, so the neighbors are always found in the 
+	 * same order.
+	 * @param addr Address of the interface
+	 * @param cell Index of the cell
 	 */
-	private GridCell[] getNeighborCells(int row, int col) {
-		return new GridCell[] {
-			cells[row-1][col-1],cells[row-1][col],cells[row-1][col+1],//1st row
-			cells[row][col-1],cells[row][col],cells[row][col+1],//2nd row
-			cells[row+1][col-1],cells[row+1][col],cells[row+1][col+1]//3rd row
-		};
+	private void removeFromCell(int addr, int cell) {
+		int[] members = this.cellMembers[cell];
+		int count = this.cellCounts[cell];
+		for (int i=0; i < count; i++) {
+			if (members[i] == addr) {
+				System.arraycopy(members, i + 1, members, i, count - i - 1);
+				this.cellCounts[cell] = count - 1;
+				return;
+			}
+		}
+		assert false : "interface " + interfaces[addr] + 
+			" not found from cell " + cell;
 	}
 
 	/**
-	 * Get the cell having the specific coordinates
+	 * Get the index of the cell having the specific coordinates
 	 * @param c Coordinates
-	 * @return The cell
+	 * @return The cell's index
 	 */
-	private GridCell cellFromCoord(Coord c) {
+	private int cellFromCoord(Coord c) {
 		// +1 due empty cells on both sides of the matrix
 		int row = (int)(c.getY()/cellSize) + 1; 
 		int col = (int)(c.getX()/cellSize) + 1;
@@ -188,14 +262,14 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 		assert row > 0 && row <= rows && col > 0 && col <= cols : "Location " + 
 		c + " is out of world's bounds";
 		
-		return this.cells[row][col];
+		return row * (cols+2) + col;
 	}
 
 	/**
 	 * Returns all interfaces that use the same technology and channel
 	 */
 	public Collection<NetworkInterface> getAllInterfaces() {
-		return ginterfaces.keySet();
+		return Collections.unmodifiableList(this.allInterfaces);
 	}
 
 	/**
@@ -204,20 +278,46 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	 */
 	public Collection<NetworkInterface> getNearInterfaces(
 			NetworkInterface netinterf) {
-		ArrayList<NetworkInterface> ni = new ArrayList<NetworkInterface>();
-		ni.clear();
-
-		GridCell loc = ginterfaces.get(netinterf);
-		if (loc != null) {	
-			GridCell[] neighbors = 
-				getNeighborCellsByCoord(netinterf.getLocation());
-			for (int i=0; i < neighbors.length; i++) {
-				ni.addAll(neighbors[i].getInterfaces());
-			}
+		NeighborCursor cursor = new NeighborCursor();
+		findNearInterfaces(netinterf, cursor);
+		ArrayList<NetworkInterface> ni = 
+			new ArrayList<NetworkInterface>(cursor.size());
+		for (int i=0, n = cursor.size(); i < n; i++) {
+			ni.add(cursor.get(i));
 		}
 		return ni;
 	}
 
+	/**
+	 * Finds all interfaces using the same technology and channel that are in
+	 * the cell of the interface or in the neighboring cells. Doesn't create
+	 * any objects (unless the cursor has to grow).
+	 */
+	@Override
+	public void findNearInterfaces(NetworkInterface netinterf, 
+			NeighborCursor cursor) {
+		cursor.clear();
+		int addr = netinterf.getAddress();
+		if (addr >= this.cellOf.length || this.cellOf[addr] == NO_CELL) {
+			return;
+		}
+
+		// +1 due empty cells on both sides of the matrix
+		Coord c = netinterf.getLocation();
+		int row = (int)(c.getY()/cellSize) + 1;
+		int col = (int)(c.getX()/cellSize) + 1;
+		int rowLength = cols + 2;
+		for (int r = row - 1; r <= row + 1; r++) {
+			int rowStart = r * rowLength;
+			for (int cell = rowStart + col - 1; cell <= rowStart + col + 1; 
+					cell++) {
+				int[] members = this.cellMembers[cell];
+				for (int i=0, n = this.cellCounts[cell]; i < n; i++) {
+					cursor.add(this.interfaces[members[i]]);
+				}
+			}
+		}
+	}
 
 	/**
 	 * Returns a string representation of the ConnectivityCells object
@@ -229,63 +329,22 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	}
 
 	/**
-	 * A single cell in the cell grid. Contains the interfaces that are 
-	 * currently in that part of the grid.
+	 * Grid objects and world size of a simulation run
 	 */
-	public class GridCell {
-		// how large array is initially chosen
-		private static final int EXPECTED_INTERFACE_COUNT = 5;
-		private final ArrayList<NetworkInterface> interfaces;
-
-		private GridCell() {
-			this.interfaces = new ArrayList<NetworkInterface>(
-					EXPECTED_INTERFACE_COUNT);
-		}
-
-		/**
-		 * Returns a list of of interfaces in this cell
-		 * @return a list of of interfaces in this cell
-		 */
-		public ArrayList<NetworkInterface> getInterfaces() {
-			return this.interfaces;
-		}
-
-		/**
-		 * Adds an interface to this cell
-		 * @param ni The interface to add
-		 */
-		public void addInterface(NetworkInterface ni) {
-			this.interfaces.add(ni);
-		}
-
-		/**
-		 * Removes an interface from this cell
-		 * @param ni The interface to remove
-		 */
-		public void removeInterface(NetworkInterface ni) {
-			this.interfaces.remove(ni);
-		}
+	private static class GridRunState implements Serializable {
+		private static final long serialVersionUID = 1L;
 
-		/**
-		 * Moves a interface in a Cell to another Cell
-		 * @param ni The interface to move
-		 * @param to The cell where the interface should be moved to
-		 */
-		public void moveInterface(NetworkInterface ni, GridCell to) {
-			to.addInterface(ni);
-			boolean removeOk = this.interfaces.remove(ni); 
-			assert removeOk : "interface " + ni + 
-				" not found from cell with " + interfaces;
-		}
+		private final HashMap<Integer,ConnectivityGrid> gridobjects;
+		private final int worldSizeX;
+		private final int worldSizeY;
 
-		/**
-		 * Returns a string representation of the cell
-		 * @return a string representation of the cell
-		 */
-		public String toString() {
-			return getClass().getSimpleName() + " with " + 
-				this.interfaces.size() + " interfaces :" + this.interfaces;
+		private GridRunState() {
+			this.gridobjects = new HashMap<Integer,ConnectivityGrid>();
+			Settings s = new Settings(MovementModel.MOVEMENT_MODEL_NS);
+			int [] worldSize = s.getCsvInts(MovementModel.WORLD_SIZE,2);
+			this.worldSizeX = worldSize[0];
+			this.worldSizeY = worldSize[1];
 		}
 	}
-	
-}
\ No newline at end of file
+
+}
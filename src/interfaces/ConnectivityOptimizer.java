@@ -4,15 +4,50 @@
  */
 package interfaces;
 
+import java.io.Serializable;
 import java.util.Collection;
 
 import core.NetworkInterface;
+import core.Settings;
+import core.SettingsError;
+import core.World;
 
 /**
  * A superclass for schemes for optimizing the location of possible contacts
  * with network interfaces of a specific range
  */
-abstract public class ConnectivityOptimizer {
+abstract public class ConnectivityOptimizer implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Returns the connectivity optimizer of the current simulation run for
+	 * interfaces of a specific type. The type of the optimizer is chosen
+	 * with the {@link World#CON_OPTIMIZER_S} setting.
+	 * @param key A hash value that separates different interfaces from
+	 * each other
+	 * @param range Range of the interfaces using the optimizer
+	 * @return The optimizer for a specific interface
+	 * @throws SettingsError if the optimizer setting has an unknown value
+	 */
+	public static ConnectivityOptimizer getOptimizer(int key, double range) {
+		Settings s = new Settings(World.SETTINGS_NS);
+		String type = World.DEF_CON_OPTIMIZER;
+		if (s.contains(World.CON_OPTIMIZER_S)) {
+			type = s.getSetting(World.CON_OPTIMIZER_S);
+		}
+
+		if (type.equals(ConnectivityGrid.class.getSimpleName())) {
+			return ConnectivityGrid.ConnectivityGridFactory(key, range);
+		}
+		else if (type.equals(SweepAndPrune.class.getSimpleName())) {
+			return SweepAndPrune.SweepAndPruneFactory(key, range);
+		}
+		else if (type.equals(HierarchicalGrid.class.getSimpleName())) {
+			return HierarchicalGrid.HierarchicalGridFactory(key, range);
+		}
+		throw new SettingsError("Unknown connectivity optimizer '" + type +
+				"' for " + World.SETTINGS_NS + "." + World.CON_OPTIMIZER_S);
+	}
 
 	/**
 	 * Adds a network interface to the optimizer (unless it is already present)
@@ -40,6 +75,38 @@ abstract public class ConnectivityOptimizer {
 	abstract public Collection<NetworkInterface> getNearInterfaces(
 			NetworkInterface ni);
 
+	/**
+	 * Finds all network interfaces that might be located so that they can be
+	 * connected with the network interface, like 
+	 * {@link #getNearInterfaces(NetworkInterface)}, but stores them to a
+	 * reusable cursor. This implementation copies the result of 
+	 * getNearInterfaces; optimizers should override this to search without
+	 * creating any objects.
+	 * @param ni network interface that needs to be connected
+	 * @param cursor The cursor where the found interfaces are stored (the
+	 * old content of the cursor is cleared)
+	 */
+	public void findNearInterfaces(NetworkInterface ni, 
+			NeighborCursor cursor) {
+		cursor.clear();
+		for (NetworkInterface near : getNearInterfaces(ni)) {
+			cursor.add(near);
+		}
+	}
+
+	/**
+	 * Returns the index of the cell (or other area) where the optimizer
+	 * keeps a network interface. Interfaces in the same or nearby cells
+	 * are checked against each other, so handling the interfaces in the
+	 * cell order keeps the checked interfaces close in memory. This
+	 * implementation returns 0 for all interfaces.
+	 * @param ni The network interface
+	 * @return Index of the interface's cell
+	 */
+	public int getCellIndex(NetworkInterface ni) {
+		return 0;
+	}
+
 	/**
 	 * Finds all other interfaces that are registered to the
 	 * ConnectivityOptimizer
@@ -0,0 +1,437 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package interfaces;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+
+import movement.MovementModel;
+
+import core.Coord;
+import core.DTNSim;
+import core.NetworkInterface;
+import core.Settings;
+import core.SimContext;
+
+/**
+ * <P>Multi-resolution version of the {@link ConnectivityGrid} for
+ * interfaces with different ranges. The grid has levels whose cell sizes
+ * are the range of the first interface multiplied by powers of two, and
+ * every interface is stored on the level with the smallest cells that are
+ * still at least as large as its range. The levels are created when the
+ * first interface with a matching range is added.</P>
+ * <P>Two interfaces can be connected only if they are within the smaller
+ * of their ranges. An interface on a level is always within one cell
+ * from its neighbors, so a search for an interface with range
+ * <CODE>r</CODE> checks on every level only the cells that are within
+ * <CODE>min(r, cell size)</CODE> from it: at most 3x3 small cells on the
+ * levels of the shorter ranges and usually one or two large cells on the
+ * levels of the longer ranges. Short range interfaces don't have to look
+ * through the large cells of the long range interfaces and vice versa.</P>
+ * <P>Range changes of the interfaces are noticed on location updates and
+ * the interfaces are moved to the right level. When all interfaces have
+ * the same range, there is only one level and the neighbors are found in
+ * the same order as with the {@link ConnectivityGrid}.</P>
+ * <P><strong>Note:</strong> this class does NOT support negative
+ * coordinates.</P>
+ */
+public class HierarchicalGrid extends ConnectivityOptimizer {
+	private static final long serialVersionUID = 1L;
+
+	/** level index of interfaces that are not in the grid */
+	private static final int NO_LEVEL = -1;
+	/** initial capacity of the per interface arrays */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/** cell size of the level with exponent zero */
+	private final double baseCellSize;
+	/** levels of the grid in the order of their cell sizes */
+	private Level[] levels;
+	/** interfaces of the grid by their address */
+	private NetworkInterface[] interfaces;
+	/** level index and cell index of every interface by its address */
+	private int[] levelOf;
+	private int[] cellOf;
+	/** range of every interface on its latest update by its address */
+	private double[] rangeOf;
+	/** all interfaces of the grid */
+	private final ArrayList<NetworkInterface> allInterfaces;
+	private final int worldSizeX;
+	private final int worldSizeY;
+
+	static {
+		DTNSim.registerForReset(HierarchicalGrid.class.getCanonicalName());
+		reset();
+	}
+
+	public static void reset() {
+		SimContext.current().setState(HierarchicalGrid.class, null);
+	}
+
+	/**
+	 * Creates a new grid without any levels
+	 * @param baseCellSize Cell size of the level with exponent zero
+	 */
+	private HierarchicalGrid(double baseCellSize) {
+		Settings s = new Settings(MovementModel.MOVEMENT_MODEL_NS);
+		int [] worldSize = s.getCsvInts(MovementModel.WORLD_SIZE,2);
+		this.worldSizeX = worldSize[0];
+		this.worldSizeY = worldSize[1];
+		this.baseCellSize = baseCellSize;
+		this.levels = new Level[0];
+		this.interfaces = new NetworkInterface[INITIAL_CAPACITY];
+		this.levelOf = new int[INITIAL_CAPACITY];
+		Arrays.fill(this.levelOf, NO_LEVEL);
+		this.cellOf = new int[INITIAL_CAPACITY];
+		this.rangeOf = new double[INITIAL_CAPACITY];
+		this.allInterfaces = new ArrayList<NetworkInterface>();
+	}
+
+	/**
+	 * Returns a hierarchical grid based on a hash value. The grids are
+	 * shared within a simulation run.
+	 * @param key A hash value that separates different interfaces from
+	 * each other
+	 * @param range Range of the first interface using the grid. The cell
+	 * sizes of the levels are this range multiplied by powers of two.
+	 * @return The grid for a specific interface
+	 */
+	@SuppressWarnings("unchecked")
+	public static HierarchicalGrid HierarchicalGridFactory(int key,
+			double range) {
+		SimContext context = SimContext.current();
+		HashMap<Integer, HierarchicalGrid> grids =
+			(HashMap<Integer, HierarchicalGrid>)context.getState(
+					HierarchicalGrid.class);
+		if (grids == null) {
+			grids = new HashMap<Integer, HierarchicalGrid>();
+			context.setState(HierarchicalGrid.class, grids);
+		}
+
+		HierarchicalGrid grid = grids.get(key);
+		if (grid == null) {
+			grid = new HierarchicalGrid(range > 0 ? Math.ceil(range) : 1);
+			grids.put(key, grid);
+		}
+		return grid;
+	}
+
+	/**
+	 * Adds a network interface to the grid (or moves it to the right
+	 * place if it is already present)
+	 * @param ni The new network interface
+	 */
+	public void addInterface(NetworkInterface ni) {
+		int addr = ni.getAddress();
+		if (addr >= this.interfaces.length) {
+			int oldLength = this.interfaces.length;
+			int newLength = Math.max(addr + 1, 2 * oldLength);
+			this.interfaces = Arrays.copyOf(this.interfaces, newLength);
+			this.levelOf = Arrays.copyOf(this.levelOf, newLength);
+			Arrays.fill(this.levelOf, oldLength, newLength, NO_LEVEL);
+			this.cellOf = Arrays.copyOf(this.cellOf, newLength);
+			this.rangeOf = Arrays.copyOf(this.rangeOf, newLength);
+		}
+		if (this.levelOf[addr] != NO_LEVEL) {
+			this.levels[this.levelOf[addr]].remove(addr, this.cellOf[addr]);
+		}
+		else {
+			this.allInterfaces.add(ni);
+		}
+		this.interfaces[addr] = ni;
+		place(addr, ni);
+	}
+
+	/**
+	 * Removes a network interface from the grid
+	 * @param ni The interface to be removed
+	 */
+	public void removeInterface(NetworkInterface ni) {
+		int addr = ni.getAddress();
+		if (addr >= this.levelOf.length || this.levelOf[addr] == NO_LEVEL) {
+			return;
+		}
+		this.levels[this.levelOf[addr]].remove(addr, this.cellOf[addr]);
+		this.levelOf[addr] = NO_LEVEL;
+		this.interfaces[addr] = null;
+		this.allInterfaces.remove(ni);
+	}
+
+	/**
+	 * Adds interfaces to the grid
+	 * @param interfaces Collection of interfaces to add
+	 */
+	public void addInterfaces(Collection<NetworkInterface> interfaces) {
+		for (NetworkInterface n : interfaces) {
+			addInterface(n);
+		}
+	}
+
+	/**
+	 * Checks and updates (if necessary) the interface's level and cell
+	 * @param ni The interface to update
+	 */
+	public void updateLocation(NetworkInterface ni) {
+		int addr = ni.getAddress();
+		Level level = this.levels[this.levelOf[addr]];
+		if (ni.getTransmitRange() != this.rangeOf[addr]) {
+			level.remove(addr, this.cellOf[addr]);
+			place(addr, ni);
+			return;
+		}
+
+		int oldCell = this.cellOf[addr];
+		int newCell = level.cellFromCoord(ni.getLocation());
+		if (newCell != oldCell) {
+			level.add(addr, newCell);
+			level.remove(addr, oldCell);
+			this.cellOf[addr] = newCell;
+		}
+	}
+
+	/**
+	 * Puts an interface to a cell on the level that matches its range
+	 * @param addr Address of the interface
+	 * @param ni The interface
+	 */
+	private void place(int addr, NetworkInterface ni) {
+		double range = ni.getTransmitRange();
+		int index = levelIndex(range);
+		Level level = this.levels[index];
+		int cell = level.cellFromCoord(ni.getLocation());
+		level.add(addr, cell);
+		this.levelOf[addr] = index;
+		this.cellOf[addr] = cell;
+		this.rangeOf[addr] = range;
+	}
+
+	/**
+	 * Returns the index of the level with the smallest cells that are at
+	 * least as large as the range. Creates the level if it doesn't exist.
+	 * @param range The range
+	 * @return Index of the level
+	 */
+	private int levelIndex(double range) {
+		int exponent = 0;
+		double cellSize = this.baseCellSize;
+		while (cellSize < range) {
+			exponent++;
+			cellSize *= 2;
+		}
+		while (range > 0 && cellSize / 2 >= range &&
+				exponent > Level.MIN_EXPONENT) {
+			exponent--;
+			cellSize /= 2;
+		}
+
+		int index = 0;
+		while (index < this.levels.length &&
+				this.levels[index].exponent < exponent) {
+			index++;
+		}
+		if (index < this.levels.length &&
+				this.levels[index].exponent == exponent) {
+			return index;
+		}
+
+		// new level; levels after it and interfaces on them move by one
+		Level[] newLevels = new Level[this.levels.length + 1];
+		System.arraycopy(this.levels, 0, newLevels, 0, index);
+		System.arraycopy(this.levels, index, newLevels, index + 1,
+				this.levels.length - index);
+		newLevels[index] = new Level(exponent, cellSize, worldSizeX,
+				worldSizeY);
+		this.levels = newLevels;
+		for (int i=0; i < this.levelOf.length; i++) {
+			if (this.levelOf[i] >= index) {
+				this.levelOf[i]++;
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Returns all interfaces that use the same technology and channel
+	 */
+	public Collection<NetworkInterface> getAllInterfaces() {
+		return Collections.unmodifiableList(this.allInterfaces);
+	}
+
+	/**
+	 * Returns all interfaces using the same technology and channel that
+	 * may be within the range of the interface
+	 */
+	public Collection<NetworkInterface> getNearInterfaces(
+			NetworkInterface ni) {
+		NeighborCursor cursor = new NeighborCursor();
+		findNearInterfaces(ni, cursor);
+		ArrayList<NetworkInterface> near =
+			new ArrayList<NetworkInterface>(cursor.size());
+		for (int i=0, n = cursor.size(); i < n; i++) {
+			near.add(cursor.get(i));
+		}
+		return near;
+	}
+
+	/**
+	 * Finds all interfaces using the same technology and channel that are
+	 * in the cells within the interface's range (but at most one cell away)
+	 * on every level. The levels are searched from the smallest cells to the
+	 * largest. Doesn't create any objects (unless the cursor has to grow).
+	 */
+	@Override
+	public void findNearInterfaces(NetworkInterface ni,
+			NeighborCursor cursor) {
+		cursor.clear();
+		int addr = ni.getAddress();
+		if (addr >= this.levelOf.length || this.levelOf[addr] == NO_LEVEL) {
+			return;
+		}
+
+		Coord c = ni.getLocation();
+		double range = ni.getTransmitRange();
+		for (Level level : this.levels) {
+			if (level.size == 0) {
+				continue;
+			}
+			double reach = Math.min(range, level.cellSize);
+			// +1 due empty cells on both sides of the matrix
+			int firstRow = Math.max(0,
+					(int)Math.floor((c.getY() - reach) / level.cellSize) + 1);
+			int lastRow = Math.min(level.rows + 1,
+					(int)((c.getY() + reach) / level.cellSize) + 1);
+			int firstCol = Math.max(0,
+					(int)Math.floor((c.getX() - reach) / level.cellSize) + 1);
+			int lastCol = Math.min(level.cols + 1,
+					(int)((c.getX() + reach) / level.cellSize) + 1);
+			int rowLength = level.cols + 2;
+
+			for (int r = firstRow; r <= lastRow; r++) {
+				int rowStart = r * rowLength;
+				for (int cell = rowStart + firstCol;
+						cell <= rowStart + lastCol; cell++) {
+					int[] members = level.cellMembers[cell];
+					for (int i=0, n = level.cellCounts[cell]; i < n; i++) {
+						cursor.add(this.interfaces[members[i]]);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns a string representation of the grid
+	 * @return a string representation of the grid
+	 */
+	public String toString() {
+		StringBuilder sb = new StringBuilder(getClass().getSimpleName());
+		sb.append(" with cell sizes");
+		for (Level level : this.levels) {
+			sb.append(" " + level.cellSize + "(" + level.size + ")");
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * One level of the grid. The cells are stored like in the
+	 * {@link ConnectivityGrid}.
+	 */
+	private static class Level implements Serializable {
+		private static final long serialVersionUID = 1L;
+
+		/** smallest exponent of the cell sizes */
+		private static final int MIN_EXPONENT = -30;
+		/** how large array is initially chosen for a cell's interfaces */
+		private static final int EXPECTED_INTERFACE_COUNT = 5;
+
+		/** cell size = base cell size * 2^exponent */
+		private final int exponent;
+		private final double cellSize;
+		private final int rows;
+		private final int cols;
+		/** addresses of the interfaces in every cell, in the order they were
+		 * added to the cell (cell index = row * (cols + 2) + col) */
+		private final int[][] cellMembers;
+		/** number of interfaces in every cell */
+		private final int[] cellCounts;
+		/** number of interfaces on the level */
+		private int size;
+
+		private Level(int exponent, double cellSize, int worldSizeX,
+				int worldSizeY) {
+			this.exponent = exponent;
+			this.cellSize = cellSize;
+			this.rows = (int)(worldSizeY / cellSize) + 1;
+			this.cols = (int)(worldSizeX / cellSize) + 1;
+			// leave empty cells on both sides to make neighbor search easier
+			int nrofCells = (rows+2) * (cols+2);
+			this.cellMembers = new int[nrofCells][];
+			this.cellCounts = new int[nrofCells];
+		}
+
+		/**
+		 * Get the index of the cell having the specific coordinates
+		 * @param c Coordinates
+		 * @return The cell's index
+		 */
+		private int cellFromCoord(Coord c) {
+			// +1 due empty cells on both sides of the matrix
+			int row = (int)(c.getY()/cellSize) + 1;
+			int col = (int)(c.getX()/cellSize) + 1;
+
+			assert row > 0 && row <= rows && col > 0 && col <= cols :
+				"Location " + c + " is out of world's bounds";
+
+			return row * (cols+2) + col;
+		}
+
+		/**
+		 * Adds an interface to the end of a cell's interfaces
+		 * @param addr Address of the interface
+		 * @param cell Index of the cell
+		 */
+		private void add(int addr, int cell) {
+			int[] members = this.cellMembers[cell];
+			int count = this.cellCounts[cell];
+			if (members == null) {
+				members = new int[EXPECTED_INTERFACE_COUNT];
+				this.cellMembers[cell] = members;
+			}
+			else if (count == members.length) {
+				members = Arrays.copyOf(members, 2 * count);
+				this.cellMembers[cell] = members;
+			}
+			members[count] = addr;
+			this.cellCounts[cell] = count + 1;
+			this.size++;
+		}
+
+		/**
+		 * Removes an interface from a cell preserving the order of the other
+		 * interfaces of the cell
+		 * @param addr Address of the interface
+		 * @param cell Index of the cell
+		 */
+		private void remove(int addr, int cell) {
+			int[] members = this.cellMembers[cell];
+			int count = this.cellCounts[cell];
+			for (int i=0; i < count; i++) {
+				if (members[i] == addr) {
+					System.arraycopy(members, i + 1, members, i,
+							count - i - 1);
+					this.cellCounts[cell] = count - 1;
+					this.size--;
+					return;
+				}
+			}
+			assert false : "interface " + addr + " not found from cell " +
+				cell;
+		}
+	}
+}
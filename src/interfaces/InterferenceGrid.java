@@ -0,0 +1,209 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package interfaces;
+
+import java.io.Serializable;
+import java.util.HashMap;
+
+import movement.MovementModel;
+
+import core.Coord;
+import core.DTNSim;
+import core.Settings;
+import core.SimContext;
+
+/**
+ * <P>
+ * Overlay grid of the world that keeps count of the transmitting interfaces
+ * in every cell. Used by the cell-local interference model of
+ * {@link InterferenceLimitedInterface}: the number of transmitters that
+ * interfere with an interface is the number of transmitters in its own and
+ * the eight neighboring cells. The cell size is the transmit range of the
+ * interfaces, so every transmitter within range is counted.</P>
+ * <P>
+ * The counts are updated only when a transfer starts or ends and when a
+ * transmitting interface moves to another cell. Every change also stamps
+ * the cells whose neighborhood it touches, so an interface can tell in
+ * constant time whether the number of transmitters around it may have
+ * changed since it last computed its speed.</P>
+ * <P>
+ * Coordinates outside the world are counted in the nearest cell.</P>
+ */
+public class InterferenceGrid implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	/** the cell of nothing */
+	public static final int NO_CELL = -1;
+
+	/** number of transmitters in every cell
+	 * (cell index = (row + 1) * (cols + 2) + col + 1) */
+	private final int[] counts;
+	/** number of the last change that touched every cell's neighborhood */
+	private final long[] stamps;
+	private long nrofChanges;
+	private final double cellSize;
+	private final int rows;
+	private final int cols;
+
+	static {
+		DTNSim.registerForReset(InterferenceGrid.class.getCanonicalName());
+		reset();
+	}
+
+	public static void reset() {
+		SimContext.current().setState(InterferenceGrid.class, null);
+	}
+
+	/**
+	 * Returns the grid state of the current simulation run. The state is
+	 * created on the first call of a run.
+	 * @return the grid state of the current run
+	 */
+	private static GridRunState getRunState() {
+		SimContext context = SimContext.current();
+		GridRunState state =
+			(GridRunState)context.getState(InterferenceGrid.class);
+		if (state == null) {
+			state = new GridRunState();
+			context.setState(InterferenceGrid.class, state);
+		}
+		return state;
+	}
+
+	/**
+	 * Creates a new interference grid
+	 * @param cellSize Cell's edge's length
+	 */
+	private InterferenceGrid(double cellSize) {
+		GridRunState state = getRunState();
+		this.cellSize = cellSize;
+		this.rows = (int)(state.worldSizeY / cellSize) + 1;
+		this.cols = (int)(state.worldSizeX / cellSize) + 1;
+		// empty cells on both sides so every cell has eight neighbors
+		int nrofCells = (this.rows + 2) * (this.cols + 2);
+		this.counts = new int[nrofCells];
+		this.stamps = new long[nrofCells];
+	}
+
+	/**
+	 * Returns the interference grid of a type of interfaces
+	 * @param key A hash value that separates different interfaces from
+	 * each other
+	 * @param cellSize Cell's edge's length (the transmit range of the
+	 * interfaces)
+	 * @return The interference grid for the interface type
+	 */
+	public static InterferenceGrid getGrid(int key, double cellSize) {
+		HashMap<Integer,InterferenceGrid> grids = getRunState().grids;
+		InterferenceGrid grid = grids.get(key);
+		if (grid == null) {
+			grid = new InterferenceGrid(cellSize);
+			grids.put(key, grid);
+		}
+		return grid;
+	}
+
+	/**
+	 * Returns the index of the cell of a location
+	 * @param c The location
+	 * @return The cell index
+	 */
+	public int cellOf(Coord c) {
+		int row = (int)(c.getY() / this.cellSize);
+		int col = (int)(c.getX() / this.cellSize);
+		row = Math.max(0, Math.min(this.rows - 1, row));
+		col = Math.max(0, Math.min(this.cols - 1, col));
+		return (row + 1) * (this.cols + 2) + col + 1;
+	}
+
+	/**
+	 * Adds a transmitter to a cell
+	 * @param cell Index of the cell
+	 */
+	public void addTransmitter(int cell) {
+		this.counts[cell]++;
+		changed(cell);
+	}
+
+	/**
+	 * Removes a transmitter from a cell
+	 * @param cell Index of the cell
+	 */
+	public void removeTransmitter(int cell) {
+		assert this.counts[cell] > 0 : "No transmitters in cell " + cell;
+		this.counts[cell]--;
+		changed(cell);
+	}
+
+	/**
+	 * Moves a transmitter from a cell to another
+	 * @param from Index of the old cell
+	 * @param to Index of the new cell
+	 */
+	public void moveTransmitter(int from, int to) {
+		if (from != to) {
+			removeTransmitter(from);
+			addTransmitter(to);
+		}
+	}
+
+	/**
+	 * Returns the number of transmitters in a cell and its neighbors
+	 * @param cell Index of the cell
+	 * @return The number of transmitters around the cell
+	 */
+	public int getTransmittersAround(int cell) {
+		int w = this.cols + 2;
+		int sum = 0;
+		for (int row = cell - w; row <= cell + w; row += w) {
+			sum += this.counts[row - 1] + this.counts[row] +
+				this.counts[row + 1];
+		}
+		return sum;
+	}
+
+	/**
+	 * Returns the number of the last change of transmitters around a cell.
+	 * If the number is the same as on a previous call, the result of
+	 * {@link #getTransmittersAround(int)} has not changed either.
+	 * @param cell Index of the cell
+	 * @return The stamp of the cell
+	 */
+	public long getStamp(int cell) {
+		return this.stamps[cell];
+	}
+
+	/**
+	 * Stamps the cells that have the changed cell in their neighborhood
+	 */
+	private void changed(int cell) {
+		long stamp = ++this.nrofChanges;
+		int w = this.cols + 2;
+		for (int row = cell - w; row <= cell + w; row += w) {
+			this.stamps[row - 1] = stamp;
+			this.stamps[row] = stamp;
+			this.stamps[row + 1] = stamp;
+		}
+	}
+
+	/**
+	 * Interference grids of one simulation run
+	 */
+	private static class GridRunState implements Serializable {
+		private static final long serialVersionUID = 1L;
+
+		private final HashMap<Integer,InterferenceGrid> grids;
+		private final int worldSizeX;
+		private final int worldSizeY;
+
+		private GridRunState() {
+			this.grids = new HashMap<Integer,InterferenceGrid>();
+			Settings s = new Settings(MovementModel.MOVEMENT_MODEL_NS);
+			int [] worldSize = s.getCsvInts(MovementModel.WORLD_SIZE,2);
+			this.worldSizeX = worldSize[0];
+			this.worldSizeY = worldSize[1];
+		}
+	}
+}
@@ -4,13 +4,11 @@
  */
 package interfaces;
 
-import java.util.Collection;
-
 import core.Connection;
 import core.DTNHost;
 import core.NetworkInterface;
 import core.Settings;
-import core.VBRConnection;
+import core.SettingsError;
 
 /**
  * A simple Network Interface that provides a variable bit-rate service, where
@@ -19,13 +17,49 @@ import core.VBRConnection;
  * transmissions. The configured transmit speed is the maximum obtainable speed.
  */
 public class InterferenceLimitedInterface extends NetworkInterface {
+	private static final long serialVersionUID = 1L;
+
+	/** Interference model -setting id ({@value}). Which stations are
+	 * counted as interfering: <CODE>neighbors</CODE> (the connected 
+	 * stations that are transmitting, counted on every update) or 
+	 * <CODE>cells</CODE> (the transmitting stations in the same and the 
+	 * neighboring cells of a grid whose cell size is the transmit range, see
+	 * {@link InterferenceGrid}). With <CODE>cells</CODE> the counts are 
+	 * kept up to date as transfers start and end, and the speed is 
+	 * recomputed only when the count around the station changes. 
+	 * Default=neighbors. */
+	public static final String INTERFERENCE_MODEL_S = "interferenceModel";
+
 	protected int currentTransmitSpeed;
 	protected int numberOfTransmissions;
+	/** is the cell-local interference model used */
+	private boolean cellInterference;
+	/** transmitter counts of the cell-local model (or null) */
+	private InterferenceGrid interference;
+	/** number of the ongoing transfers of the connections */
+	private int activeTransfers;
+	/** cell where this interface is counted as a transmitter (or NO_CELL) */
+	private int transmitterCell = InterferenceGrid.NO_CELL;
+	/** cell of the last speed computation */
+	private int speedCell = InterferenceGrid.NO_CELL;
+	/** stamp of the cell on the last speed computation */
+	private long speedStamp;
 
 	public InterferenceLimitedInterface(Settings s) {
 		super(s);
 		this.currentTransmitSpeed = 0;
 		this.numberOfTransmissions = 0;
+		if (s.contains(INTERFERENCE_MODEL_S)) {
+			String model = s.getSetting(INTERFERENCE_MODEL_S);
+			if (model.equals("cells")) {
+				this.cellInterference = true;
+			}
+			else if (!model.equals("neighbors")) {
+				throw new SettingsError("Unknown interference model '" + 
+						model + "' for " + 
+						s.getFullPropertyName(INTERFERENCE_MODEL_S));
+			}
+		}
 	}
 
 	/**
@@ -38,6 +72,7 @@ public class InterferenceLimitedInterface extends NetworkInterface {
 		this.transmitSpeed = ni.transmitSpeed;
 		this.currentTransmitSpeed = 0;
 		this.numberOfTransmissions = 0;
+		this.cellInterference = ni.cellInterference;
 	}
 
 	
@@ -45,6 +80,15 @@ public class InterferenceLimitedInterface extends NetworkInterface {
 		return new InterferenceLimitedInterface(this);
 	}
 
+	@Override
+	public void setHost(DTNHost host) {
+		super.setHost(host);
+		if (this.cellInterference) {
+			this.interference = InterferenceGrid.getGrid(
+					this.interfacetype.hashCode(), this.transmitRange);
+		}
+	}
+
 	/**
 	 * Returns the transmit speed of this network layer
 	 * @return the transmit speed
@@ -67,8 +111,7 @@ public class InterferenceLimitedInterface extends NetworkInterface {
 				&& (this != anotherInterface)) {
 			// new contact within range
 
-			Connection con = new VBRConnection(this.host, this,
-					anotherInterface.getHost(), anotherInterface);
+			Connection con = newVBRConnection(anotherInterface);
 			connect(con, anotherInterface);
 		}
 	}
@@ -95,10 +138,18 @@ public class InterferenceLimitedInterface extends NetworkInterface {
 			}
 		}
 		// Then find new possible connections
-		Collection<NetworkInterface> interfaces = 
-			optimizer.getNearInterfaces(this);
-		for (NetworkInterface i : interfaces) 
-			connect(i);
+		optimizer.findNearInterfaces(this, this.nearInterfaces);
+		for (int i=0, n = this.nearInterfaces.size(); i < n; i++) {
+			connect(this.nearInterfaces.get(i));
+		}
+
+		if (this.interference != null) {
+			updateCellSpeed();
+			for (int i=0, n = this.connections.size(); i < n; i++) {
+				this.connections.get(i).update();
+			}
+			return;
+		}
 
 		// Find the current number of transmissions
 		// (to calculate the current transmission speed
@@ -114,6 +165,19 @@ public class InterferenceLimitedInterface extends NetworkInterface {
 			}
 		}
 
+		setSpeed(numberOfActive);
+		
+		for (Connection con : getConnections()) {
+			con.update();
+		}
+	}
+
+	/**
+	 * Sets the current transmit speed
+	 * @param numberOfActive Number of active stations within range, 
+	 * including this one
+	 */
+	private void setSpeed(int numberOfActive) {
 		int ntrans = numberOfTransmissions;
 		if ( numberOfTransmissions < 1) ntrans = 1;
 		if ( numberOfActive <2 ) numberOfActive = 2;
@@ -124,9 +188,51 @@ public class InterferenceLimitedInterface extends NetworkInterface {
 				(Math.sqrt((1.0*numberOfActive) *
 						Math.log(1.0*numberOfActive))) /
 							ntrans );
-		
-		for (Connection con : getConnections()) {
-			con.update();
+	}
+
+	/**
+	 * Moves this interface's transmitter count to its current cell and 
+	 * recomputes the transmit speed if the number of transmitters around 
+	 * the cell or the number of own transmissions has changed
+	 */
+	private void updateCellSpeed() {
+		int cell = this.interference.cellOf(getLocation());
+		if (this.transmitterCell != InterferenceGrid.NO_CELL) {
+			this.interference.moveTransmitter(this.transmitterCell, cell);
+			this.transmitterCell = cell;
+		}
+		long stamp = this.interference.getStamp(cell);
+		if (cell == this.speedCell && stamp == this.speedStamp &&
+				this.activeTransfers == this.numberOfTransmissions) {
+			return; // nothing that affects the speed has changed
+		}
+		this.speedCell = cell;
+		this.speedStamp = stamp;
+		this.numberOfTransmissions = this.activeTransfers;
+
+		int numberOfActive = 1 + 
+			this.interference.getTransmittersAround(cell);
+		if (this.transmitterCell != InterferenceGrid.NO_CELL) {
+			numberOfActive--; // this interface was counted already
+		}
+		setSpeed(numberOfActive);
+	}
+
+	@Override
+	protected void transferStarted(Connection con) {
+		this.activeTransfers++;
+		if (this.interference != null && this.activeTransfers == 1) {
+			this.transmitterCell = this.interference.cellOf(getLocation());
+			this.interference.addTransmitter(this.transmitterCell);
+		}
+	}
+
+	@Override
+	protected void transferEnded(Connection con) {
+		this.activeTransfers--;
+		if (this.interference != null && this.activeTransfers == 0) {
+			this.interference.removeTransmitter(this.transmitterCell);
+			this.transmitterCell = InterferenceGrid.NO_CELL;
 		}
 	}
 
@@ -139,8 +245,7 @@ public class InterferenceLimitedInterface extends NetworkInterface {
 		if (!isConnected(anotherInterface) && (this != anotherInterface)) {
 			// new contact within range
 
-			Connection con = new VBRConnection(this.host, this, 
-					anotherInterface.getHost(), anotherInterface);
+			Connection con = newVBRConnection(anotherInterface);
 			connect(con,anotherInterface);
 		}
 	}
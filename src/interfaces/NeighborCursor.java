@@ -0,0 +1,78 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package interfaces;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import core.NetworkInterface;
+
+/**
+ * Reusable result of a neighbor search of a {@link ConnectivityOptimizer}.
+ * Every network interface has a cursor of its own that it passes to
+ * {@link ConnectivityOptimizer#findNearInterfaces(NetworkInterface,
+ * NeighborCursor)} on every update, so no objects are created while
+ * searching for the neighbors. The found interfaces are read by index:
+ * <PRE>
+ * optimizer.findNearInterfaces(this, cursor);
+ * for (int i=0, n = cursor.size(); i &lt; n; i++) {
+ *     connect(cursor.get(i));
+ * }
+ * </PRE>
+ */
+public class NeighborCursor implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	/** initial capacity of the cursor */
+	private static final int INITIAL_CAPACITY = 16;
+
+	private NetworkInterface[] found;
+	private int size;
+
+	/**
+	 * Creates a new, empty cursor
+	 */
+	public NeighborCursor() {
+		this.found = new NetworkInterface[INITIAL_CAPACITY];
+		this.size = 0;
+	}
+
+	/**
+	 * Returns the number of interfaces found by the latest search
+	 * @return the number of found interfaces
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns a found interface
+	 * @param index Index of the interface (0 -- size()-1)
+	 * @return The interface
+	 */
+	public NetworkInterface get(int index) {
+		return this.found[index];
+	}
+
+	/**
+	 * Removes all found interfaces. Called by the optimizers before a new
+	 * search. The references are not cleared since the interfaces live as
+	 * long as the cursor.
+	 */
+	public void clear() {
+		this.size = 0;
+	}
+
+	/**
+	 * Adds a found interface. Called by the optimizers.
+	 * @param ni The interface
+	 */
+	public void add(NetworkInterface ni) {
+		if (this.size == this.found.length) {
+			this.found = Arrays.copyOf(this.found, 2 * this.size);
+		}
+		this.found[this.size++] = ni;
+	}
+}
@@ -4,9 +4,6 @@
  */
 package interfaces;
 
-import java.util.Collection;
-
-import core.CBRConnection;
 import core.Connection;
 import core.DTNHost;
 import core.NetworkInterface;
@@ -17,6 +14,8 @@ import core.Settings;
  * one transmission can be on at a time.
  */
 public class SimpleBroadcastInterface extends NetworkInterface {
+	private static final long serialVersionUID = 1L;
+
 	/**
 	 * Reads the interface settings from the Settings file
 	 *  
@@ -55,19 +54,22 @@ public class SimpleBroadcastInterface extends NetworkInterface {
 				conSpeed = this.transmitSpeed; 
 			}
 
-			Connection con = new CBRConnection(this.host, this, 
-					anotherInterface.getHost(), anotherInterface, conSpeed);
+			Connection con = newCBRConnection(anotherInterface, conSpeed);
 			connect(con,anotherInterface);
 		}
 	}
 
 	/**
 	 * Updates the state of current connections (ie tears down connections
-	 * that are out of range).
+	 * that are out of range). If the neighbor changes are tracked, only
+	 * the links to the changed neighbors are checked.
 	 */
 	public void update() {
-		// First break the old ones
 		optimizer.updateLocation(this);
+		if (isNeighborhoodUnchanged()) {
+			return;
+		}
+		// First break the old ones
 		for (int i=0; i<this.connections.size(); ) {
 			Connection con = this.connections.get(i);
 			NetworkInterface anotherInterface = con.getOtherInterface(this);
@@ -75,7 +77,8 @@ public class SimpleBroadcastInterface extends NetworkInterface {
 			// all connections should be up at this stage
 			assert con.isUp() : "Connection " + con + " was down!";
 
-			if (!isWithinRange(anotherInterface)) {
+			if (hasChangedSinceUpdate(anotherInterface) &&
+					!isWithinRange(anotherInterface)) {
 				disconnect(con,anotherInterface);
 				connections.remove(i);
 			}
@@ -84,11 +87,19 @@ public class SimpleBroadcastInterface extends NetworkInterface {
 			}
 		}
 		// Then find new possible connections
-		Collection<NetworkInterface> interfaces =
-			optimizer.getNearInterfaces(this);
-		for (NetworkInterface i : interfaces) {
-			connect(i);
+		optimizer.findNearInterfaces(this, this.nearInterfaces);
+		for (int i=0, n = this.nearInterfaces.size(); i < n; i++) {
+			NetworkInterface anotherInterface = this.nearInterfaces.get(i);
+			if (hasChangedSinceUpdate(anotherInterface)) {
+				connect(anotherInterface);
+			}
 		}
+		neighborsUpdated();
+	}
+
+	@Override
+	public boolean supportsTwoPhaseUpdate() {
+		return true;
 	}
 
 	/** 
@@ -104,8 +115,7 @@ public class SimpleBroadcastInterface extends NetworkInterface {
 				conSpeed = this.transmitSpeed; 
 			}
 
-			Connection con = new CBRConnection(this.host, this, 
-					anotherInterface.getHost(), anotherInterface, conSpeed);
+			Connection con = newCBRConnection(anotherInterface, conSpeed);
 			connect(con,anotherInterface);
 		}
 	}
@@ -0,0 +1,444 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package interfaces;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+
+import core.Coord;
+import core.DTNSim;
+import core.NetworkInterface;
+import core.SimContext;
+
+/**
+ * <P>Sort and sweep connectivity optimizer. The world is divided to 
+ * horizontal strips whose height is the range of the interfaces, and the
+ * interfaces are kept in one array sorted by their strip and x 
+ * coordinate. The interfaces that may be in range of an interface are 
+ * found from its own and the neighboring strips: a binary search finds the
+ * start of the range on the x axis and a sweep goes to the end of the 
+ * range, skipping the interfaces that are out of range on the y axis. 
+ * Sweeping only the strips (instead of the whole height of the world) 
+ * keeps the sweeps short also in crowded areas.</P>
+ * <P>When an interface moves, it is moved to its new place in the sorted
+ * array by shifting the interfaces between the old and the new place. 
+ * Interfaces move only a little between two updates, so the array stays 
+ * almost sorted and the updates are cheap. Memory use depends only on the
+ * number of interfaces, not on the size of the world, so this is an
+ * alternative to the {@link ConnectivityGrid} for very large worlds and
+ * host sets.</P>
+ * <P>Interfaces are added before their hosts have their initial locations,
+ * so new interfaces are only appended to the array and the next location
+ * update sorts the whole array once.</P>
+ * <P>The neighbors are found in the order of their strips and x 
+ * coordinates, so the connections are created in a different order than
+ * with the grid and the results differ from runs that use the grid.</P>
+ */
+public class SweepAndPrune extends ConnectivityOptimizer {
+	private static final long serialVersionUID = 1L;
+
+	/** initial capacity of the arrays */
+	private static final int INITIAL_CAPACITY = 16;
+	/** position of interfaces that are not in the optimizer */
+	private static final int NO_POS = -1;
+
+	/** interfaces of the optimizer in the order of their strips and x
+	 * coordinates */
+	private NetworkInterface[] sorted;
+	/** addresses, strips and x and y coordinates of the sorted interfaces
+	 * (from their latest location update) */
+	private int[] addrs;
+	private int[] strips;
+	private double[] xs;
+	private double[] ys;
+	/** number of interfaces in the optimizer */
+	private int size;
+	/** position of every interface in the sorted array by its address */
+	private int[] posOf;
+	/** all interfaces in the order they were added */
+	private final ArrayList<NetworkInterface> allInterfaces;
+	/** largest range of the interfaces */
+	private double range;
+	/** height of the strips */
+	private final double stripHeight;
+	/** true if interfaces have been added after the latest full sort */
+	private boolean unsorted;
+
+	static {
+		DTNSim.registerForReset(SweepAndPrune.class.getCanonicalName());
+		reset();
+	}
+
+	public static void reset() {
+		SimContext.current().setState(SweepAndPrune.class, null);
+	}
+
+	/**
+	 * Creates a new, empty optimizer
+	 * @param range Range of the interfaces
+	 */
+	private SweepAndPrune(double range) {
+		this.sorted = new NetworkInterface[INITIAL_CAPACITY];
+		this.addrs = new int[INITIAL_CAPACITY];
+		this.strips = new int[INITIAL_CAPACITY];
+		this.xs = new double[INITIAL_CAPACITY];
+		this.ys = new double[INITIAL_CAPACITY];
+		this.posOf = new int[INITIAL_CAPACITY];
+		Arrays.fill(this.posOf, NO_POS);
+		this.allInterfaces = new ArrayList<NetworkInterface>();
+		this.range = range;
+		this.stripHeight = range > 0 ? range : 1;
+	}
+
+	/**
+	 * Returns a sort and sweep optimizer based on a hash value. The
+	 * optimizers are shared within a simulation run.
+	 * @param key A hash value that separates different interfaces from
+	 * each other
+	 * @param range Range of the interfaces using the optimizer. If the
+	 * optimizer already exists, it uses the largest range it was asked for.
+	 * @return The optimizer for a specific interface
+	 */
+	@SuppressWarnings("unchecked")
+	public static SweepAndPrune SweepAndPruneFactory(int key, double range) {
+		SimContext context = SimContext.current();
+		HashMap<Integer, SweepAndPrune> optimizers =
+			(HashMap<Integer, SweepAndPrune>)context.getState(
+					SweepAndPrune.class);
+		if (optimizers == null) {
+			optimizers = new HashMap<Integer, SweepAndPrune>();
+			context.setState(SweepAndPrune.class, optimizers);
+		}
+
+		SweepAndPrune sap = optimizers.get(key);
+		if (sap == null) {
+			sap = new SweepAndPrune(range);
+			optimizers.put(key, sap);
+		}
+		else if (range > sap.range) {
+			sap.range = range;
+		}
+		return sap;
+	}
+
+	/**
+	 * Adds a network interface to the optimizer (unless it is already
+	 * present)
+	 * @param ni The new network interface
+	 */
+	public void addInterface(NetworkInterface ni) {
+		int addr = ni.getAddress();
+		if (addr >= this.posOf.length) {
+			int oldLength = this.posOf.length;
+			int newLength = Math.max(addr + 1, 2 * oldLength);
+			this.posOf = Arrays.copyOf(this.posOf, newLength);
+			Arrays.fill(this.posOf, oldLength, newLength, NO_POS);
+		}
+		if (this.posOf[addr] != NO_POS) {
+			return;
+		}
+		if (this.size == this.sorted.length) {
+			int newLength = 2 * this.size;
+			this.sorted = Arrays.copyOf(this.sorted, newLength);
+			this.addrs = Arrays.copyOf(this.addrs, newLength);
+			this.strips = Arrays.copyOf(this.strips, newLength);
+			this.xs = Arrays.copyOf(this.xs, newLength);
+			this.ys = Arrays.copyOf(this.ys, newLength);
+		}
+
+		Coord c = ni.getLocation();
+		int pos = this.size++;
+		this.sorted[pos] = ni;
+		this.addrs[pos] = addr;
+		setLocation(pos, c);
+		this.posOf[addr] = pos;
+		this.allInterfaces.add(ni);
+		this.unsorted = true;
+	}
+
+	/**
+	 * Removes a network interface from the optimizer
+	 * @param ni The interface to be removed
+	 */
+	public void removeInterface(NetworkInterface ni) {
+		int addr = ni.getAddress();
+		if (addr >= this.posOf.length || this.posOf[addr] == NO_POS) {
+			return;
+		}
+		int pos = this.posOf[addr];
+		int tail = this.size - pos - 1;
+		System.arraycopy(this.sorted, pos + 1, this.sorted, pos, tail);
+		System.arraycopy(this.addrs, pos + 1, this.addrs, pos, tail);
+		System.arraycopy(this.strips, pos + 1, this.strips, pos, tail);
+		System.arraycopy(this.xs, pos + 1, this.xs, pos, tail);
+		System.arraycopy(this.ys, pos + 1, this.ys, pos, tail);
+		this.size--;
+		this.sorted[this.size] = null;
+		for (int i=pos; i < this.size; i++) {
+			this.posOf[this.addrs[i]] = i;
+		}
+		this.posOf[addr] = NO_POS;
+		this.allInterfaces.remove(ni);
+	}
+
+	/**
+	 * Adds interfaces to the optimizer
+	 * @param interfaces Collection of interfaces to add
+	 */
+	public void addInterfaces(Collection<NetworkInterface> interfaces) {
+		for (NetworkInterface n : interfaces) {
+			addInterface(n);
+		}
+	}
+
+	/**
+	 * Updates the interface's coordinates and moves it to its place in the
+	 * sorted order. If interfaces have been added since the latest update,
+	 * all interfaces are sorted by their current locations.
+	 * @param ni The interface to update
+	 */
+	public void updateLocation(NetworkInterface ni) {
+		if (this.unsorted) {
+			sortAll();
+			return;
+		}
+		int pos = this.posOf[ni.getAddress()];
+		setLocation(pos, ni.getLocation());
+		resort(pos);
+	}
+
+	/**
+	 * Sets the strip and coordinates of the interface at a position
+	 * @param pos The position
+	 * @param c The location of the interface
+	 */
+	private void setLocation(int pos, Coord c) {
+		this.strips[pos] = (int)Math.floor(c.getY() / this.stripHeight);
+		this.xs[pos] = c.getX();
+		this.ys[pos] = c.getY();
+	}
+
+	/**
+	 * Returns true if the interface at position a is before the given
+	 * strip and x coordinate in the sorted order
+	 */
+	private boolean isBefore(int a, int strip, double x) {
+		return this.strips[a] < strip ||
+			(this.strips[a] == strip && this.xs[a] < x);
+	}
+
+	/**
+	 * Returns true if the interface at position a is after the given
+	 * strip and x coordinate in the sorted order
+	 */
+	private boolean isAfter(int a, int strip, double x) {
+		return this.strips[a] > strip ||
+			(this.strips[a] == strip && this.xs[a] > x);
+	}
+
+	/**
+	 * Moves an interface whose location has changed to its place in the
+	 * sorted arrays. Usually the interface is still in its place or close
+	 * to it; the new place is found with a binary search and the
+	 * interfaces in between are shifted by one.
+	 * @param pos The current position of the interface
+	 */
+	private void resort(int pos) {
+		int strip = this.strips[pos];
+		double x = this.xs[pos];
+		int newPos;
+
+		if (pos > 0 && isAfter(pos - 1, strip, x)) {
+			// first position in [0, pos) that is after the interface
+			int low = 0;
+			int high = pos - 1;
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if (isAfter(mid, strip, x)) {
+					high = mid;
+				}
+				else {
+					low = mid + 1;
+				}
+			}
+			newPos = low;
+		}
+		else if (pos < this.size - 1 && isBefore(pos + 1, strip, x)) {
+			// last position in (pos, size) that is before the interface
+			int low = pos + 1;
+			int high = this.size - 1;
+			while (low < high) {
+				int mid = (low + high + 1) >>> 1;
+				if (isBefore(mid, strip, x)) {
+					low = mid;
+				}
+				else {
+					high = mid - 1;
+				}
+			}
+			newPos = low;
+		}
+		else {
+			return; // still in its place
+		}
+
+		NetworkInterface ni = this.sorted[pos];
+		int addr = this.addrs[pos];
+		double y = this.ys[pos];
+		int from = Math.min(pos, newPos);
+		int to = Math.max(pos, newPos);
+		int src = newPos < pos ? newPos : pos + 1;
+		int dst = newPos < pos ? newPos + 1 : pos;
+		int length = to - from;
+		System.arraycopy(this.sorted, src, this.sorted, dst, length);
+		System.arraycopy(this.addrs, src, this.addrs, dst, length);
+		System.arraycopy(this.strips, src, this.strips, dst, length);
+		System.arraycopy(this.xs, src, this.xs, dst, length);
+		System.arraycopy(this.ys, src, this.ys, dst, length);
+
+		this.sorted[newPos] = ni;
+		this.addrs[newPos] = addr;
+		this.strips[newPos] = strip;
+		this.xs[newPos] = x;
+		this.ys[newPos] = y;
+		for (int i=from; i <= to; i++) {
+			this.posOf[this.addrs[i]] = i;
+		}
+	}
+
+	/**
+	 * Updates the coordinates of all interfaces and sorts the arrays
+	 */
+	private void sortAll() {
+		Integer[] order = new Integer[this.size];
+		for (int i=0; i < this.size; i++) {
+			setLocation(i, this.sorted[i].getLocation());
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				int diff = strips[a] - strips[b];
+				return diff != 0 ? diff : Double.compare(xs[a], xs[b]);
+			}
+		});
+
+		NetworkInterface[] newSorted = new NetworkInterface[sorted.length];
+		int[] newAddrs = new int[addrs.length];
+		int[] newStrips = new int[strips.length];
+		double[] newXs = new double[xs.length];
+		double[] newYs = new double[ys.length];
+		for (int i=0; i < this.size; i++) {
+			int old = order[i];
+			newSorted[i] = this.sorted[old];
+			newAddrs[i] = this.addrs[old];
+			newStrips[i] = this.strips[old];
+			newXs[i] = this.xs[old];
+			newYs[i] = this.ys[old];
+			this.posOf[newAddrs[i]] = i;
+		}
+		this.sorted = newSorted;
+		this.addrs = newAddrs;
+		this.strips = newStrips;
+		this.xs = newXs;
+		this.ys = newYs;
+		this.unsorted = false;
+	}
+
+	/**
+	 * Returns all interfaces that use the same technology and channel
+	 */
+	public Collection<NetworkInterface> getAllInterfaces() {
+		return Collections.unmodifiableList(this.allInterfaces);
+	}
+
+	/**
+	 * Returns all interfaces using the same technology and channel that
+	 * are within the range of the interface on both axes
+	 */
+	public Collection<NetworkInterface> getNearInterfaces(
+			NetworkInterface ni) {
+		NeighborCursor cursor = new NeighborCursor();
+		findNearInterfaces(ni, cursor);
+		ArrayList<NetworkInterface> near =
+			new ArrayList<NetworkInterface>(cursor.size());
+		for (int i=0, n = cursor.size(); i < n; i++) {
+			near.add(cursor.get(i));
+		}
+		return near;
+	}
+
+	/**
+	 * Finds all interfaces using the same technology and channel that are
+	 * within the range of the interface on both axes, in the order of
+	 * their strips and x coordinates. Doesn't create any objects (unless 
+	 * the cursor has to grow).
+	 */
+	@Override
+	public void findNearInterfaces(NetworkInterface ni,
+			NeighborCursor cursor) {
+		cursor.clear();
+		int addr = ni.getAddress();
+		if (addr >= this.posOf.length || this.posOf[addr] == NO_POS) {
+			return;
+		}
+
+		Coord c = ni.getLocation();
+		double minX = c.getX() - this.range;
+		double maxX = c.getX() + this.range;
+		double minY = c.getY() - this.range;
+		double maxY = c.getY() + this.range;
+
+		if (this.unsorted) { // not sorted yet, check all interfaces
+			for (int i=0; i < this.size; i++) {
+				Coord other = this.sorted[i].getLocation();
+				if (other.getX() >= minX && other.getX() <= maxX &&
+						other.getY() >= minY && other.getY() <= maxY &&
+						this.sorted[i] != ni) {
+					cursor.add(this.sorted[i]);
+				}
+			}
+			return;
+		}
+
+		int lastStrip = (int)Math.floor(maxY / this.stripHeight);
+		for (int strip = (int)Math.floor(minY / this.stripHeight);
+				strip <= lastStrip; strip++) {
+			// binary search for the first interface at or after minX
+			int low = 0;
+			int high = this.size;
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if (isBefore(mid, strip, minX)) {
+					low = mid + 1;
+				}
+				else {
+					high = mid;
+				}
+			}
+
+			for (int i=low; i < this.size && this.strips[i] == strip &&
+					this.xs[i] <= maxX; i++) {
+				double y = this.ys[i];
+				if (y >= minY && y <= maxY && this.sorted[i] != ni) {
+					cursor.add(this.sorted[i]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns a string representation of the optimizer
+	 * @return a string representation of the optimizer
+	 */
+	public String toString() {
+		return getClass().getSimpleName() + " with " + this.size +
+			" interfaces, range=" + this.range;
+	}
+}
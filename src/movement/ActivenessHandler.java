@@ -4,6 +4,7 @@
  */
 package movement;
 
+import java.io.Serializable;
 import java.util.LinkedList;
 import java.util.Queue;
 
@@ -15,7 +16,9 @@ import core.SimClock;
  * Object of this class tell the movement models when a node belonging
  * to a certain group is active and when not.
  */
-public class ActivenessHandler {
+public class ActivenessHandler implements Serializable {
+	private static final long serialVersionUID = 1L;
+
 	/** 
 	 * Active times -setting id ({@value}).<BR>
 	 * Syntax: <CODE>start, end</CODE><BR>
@@ -73,7 +76,7 @@ public class ActivenessHandler {
 	 * Returns true if node should be active at the moment
 	 * @return true if node should be active at the moment
 	 */
-	public boolean isActive() {
+	public synchronized boolean isActive() {
 		if (this.activeTimes == null) {
 			return true; // no inactive times 
 		}
@@ -4,6 +4,7 @@
  */
 package movement;
 
+import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -11,6 +12,7 @@ import java.util.List;
 import movement.map.SimMap;
 import core.Coord;
 import core.DTNSim;
+import core.SimContext;
 
 /**
  * This class controls busses and passengers that can use the bus. 
@@ -19,11 +21,11 @@ import core.DTNSim;
  * 
  * @author Frans Ekman
  */
-public class BusControlSystem {
+public class BusControlSystem implements Serializable {
+	private static final long serialVersionUID = 1L;
+
 	public static final String BUS_CONTROL_SYSTEM_NR = "busControlSystemNr";
 	
-	private static HashMap<Integer, BusControlSystem> systems;
-	
 	private final HashMap<Integer, BusMovement> busses;
 	private final HashMap<Integer, BusTravellerMovement> travellers;
 	private List<Coord> busStops;
@@ -32,7 +34,6 @@ public class BusControlSystem {
 	
 	static {
 		DTNSim.registerForReset(BusControlSystem.class.getCanonicalName());
-		reset();
 	}
 	
 	/**
@@ -46,7 +47,7 @@ public class BusControlSystem {
 	}
 	
 	public static void reset() {
-		systems = new HashMap<Integer, BusControlSystem>();
+		SimContext.current().setState(BusControlSystem.class, null);
 	}
 	
 	/**
@@ -82,8 +83,17 @@ public class BusControlSystem {
 	 * @param systemID unique ID of the system
 	 * @return The bus control system with the provided ID
 	 */
+	@SuppressWarnings("unchecked")
 	public static BusControlSystem getBusControlSystem(int systemID) {
 		Integer id = Integer.valueOf(systemID);
+		SimContext context = SimContext.current();
+		HashMap<Integer, BusControlSystem> systems = 
+			(HashMap<Integer, BusControlSystem>)context.getState(
+					BusControlSystem.class);
+		if (systems == null) { // first system of this run
+			systems = new HashMap<Integer, BusControlSystem>();
+			context.setState(BusControlSystem.class, systems);
+		}
 		
 		if (systems.containsKey(id)) {
 			return systems.get(id);
@@ -10,6 +10,7 @@ import java.util.List;
 import movement.map.MapNode;
 import core.Coord;
 import core.Settings;
+import core.SimContext;
 
 /**
  * This class controls the movement of busses. It informs the bus control system
@@ -18,10 +19,10 @@ import core.Settings;
  * @author Frans Ekman
  */
 public class BusMovement extends MapRouteMovement {
+	private static final long serialVersionUID = 1L;
 	
 	private final BusControlSystem controlSystem;
 	private final int id;
-	private static int nextID = 0;
 	private boolean startMode;
 	private List<Coord> stops;
 	
@@ -34,7 +35,8 @@ public class BusMovement extends MapRouteMovement {
 		int bcs = settings.getInt(BusControlSystem.BUS_CONTROL_SYSTEM_NR);
 		controlSystem = BusControlSystem.getBusControlSystem(bcs);
 		controlSystem.setMap(super.getMap());
-		this.id = nextID++;
+		this.id = SimContext.current().nextCounterValue(
+				BusMovement.class);
 		controlSystem.registerBus(this);
 		startMode = true;
 		stops = new LinkedList<Coord>();
@@ -52,7 +54,8 @@ public class BusMovement extends MapRouteMovement {
 	public BusMovement(BusMovement proto) {
 		super(proto);
 		this.controlSystem = proto.controlSystem;
-		this.id = nextID++;
+		this.id = SimContext.current().nextCounterValue(
+				BusMovement.class);
 		controlSystem.registerBus(this);
 		startMode = true;
 	}
@@ -73,6 +76,11 @@ public class BusMovement extends MapRouteMovement {
 		return path;
 	}
 
+	@Override
+	public boolean canMoveConcurrently() {
+		return false; // replicas share the bus control system
+	}
+	
 	@Override
 	public BusMovement replicate() {
 		return new BusMovement(this);
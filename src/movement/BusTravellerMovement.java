@@ -12,6 +12,7 @@ import movement.map.MapNode;
 import movement.map.SimMap;
 import core.Coord;
 import core.Settings;
+import core.SimContext;
 
 /**
  * 
@@ -27,6 +28,7 @@ import core.Settings;
  */
 public class BusTravellerMovement extends MapBasedMovement implements 
 	SwitchableMovement, TransportMovement {
+	private static final long serialVersionUID = 1L;
 
 	public static final String PROBABILITIES_STRING = "probs";
 	public static final String PROBABILITY_TAKE_OTHER_BUS = "probTakeOtherBus";
@@ -52,7 +54,6 @@ public class BusTravellerMovement extends MapBasedMovement implements
 	
 	private boolean takeBus;
 	
-	private static int nextID = 0;
 	
 	/**
 	 * Creates a BusTravellerModel 
@@ -62,7 +63,8 @@ public class BusTravellerMovement extends MapBasedMovement implements
 		super(settings);
 		int bcs = settings.getInt(BusControlSystem.BUS_CONTROL_SYSTEM_NR);
 		controlSystem = BusControlSystem.getBusControlSystem(bcs);
-		id = nextID++;
+		id = SimContext.current().nextCounterValue(
+				BusTravellerMovement.class);
 		controlSystem.registerTraveller(this);
 		nextPath = new Path();
 		state = STATE_WALKING_ELSEWHERE;
@@ -72,7 +74,7 @@ public class BusTravellerMovement extends MapBasedMovement implements
 		if (settings.contains(PROBABILITY_TAKE_OTHER_BUS)) {
 			probTakeOtherBus = settings.getDouble(PROBABILITY_TAKE_OTHER_BUS);
 		}
-		cbtd = new ContinueBusTripDecider(rng, probabilities);
+		cbtd = new ContinueBusTripDecider(getRng(), probabilities);
 		pathFinder = new DijkstraPathFinder(null);
 		takeBus = true;
 	}
@@ -89,10 +91,11 @@ public class BusTravellerMovement extends MapBasedMovement implements
 			location = proto.location.clone();
 		}
 		nextPath = proto.nextPath;
-		id = nextID++;
+		id = SimContext.current().nextCounterValue(
+				BusTravellerMovement.class);
 		controlSystem.registerTraveller(this);
 		probabilities = proto.probabilities;
-		cbtd = new ContinueBusTripDecider(rng, probabilities);
+		cbtd = new ContinueBusTripDecider(getRng(), probabilities);
 		pathFinder = proto.pathFinder;
 		this.probTakeOtherBus = proto.probTakeOtherBus;
 		takeBus = true;
@@ -103,7 +106,7 @@ public class BusTravellerMovement extends MapBasedMovement implements
 		
 		MapNode[] mapNodes = getMap().getNodes().
 			toArray(new MapNode[0]);
-		int index = rng.nextInt(mapNodes.length - 1);
+		int index = getRng().nextInt(mapNodes.length - 1);
 		location = mapNodes[index].getLocation().clone();
 		
 		List<Coord> allStops = controlSystem.getBusStops();
@@ -162,6 +165,11 @@ public class BusTravellerMovement extends MapBasedMovement implements
 		return 0;
 	}
 	
+	@Override
+	public boolean canMoveConcurrently() {
+		return false; // replicas share the bus control system
+	}
+	
 	@Override
 	public MapBasedMovement replicate() {
 		return new BusTravellerMovement(this);
@@ -205,7 +213,7 @@ public class BusTravellerMovement extends MapBasedMovement implements
 			this.nextPath = null;
 			/* It might decide not to start walking somewhere and wait 
 			   for the next bus */
-			if (rng.nextDouble() > probTakeOtherBus) {
+			if (getRng().nextDouble() > probTakeOtherBus) {
 				state = STATE_WALKING_ELSEWHERE;
 				latestBusStop = location.clone();
 			}
@@ -343,7 +351,7 @@ public class BusTravellerMovement extends MapBasedMovement implements
 	}
 	
 	public static void reset() {
-		nextID = 0;
+		SimContext.current().resetCounter(BusTravellerMovement.class);
 	}
 	
 }
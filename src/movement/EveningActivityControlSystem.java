@@ -4,12 +4,14 @@
  */
 package movement;
 
+import java.io.Serializable;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Random;
 
 import core.Coord;
 import core.DTNSim;
+import core.SimContext;
 
 /**
  * This class controls the group mobility of the people meeting their friends in
@@ -17,7 +19,8 @@ import core.DTNSim;
  * 
  * @author Frans Ekman
  */
-public class EveningActivityControlSystem {
+public class EveningActivityControlSystem implements Serializable {
+	private static final long serialVersionUID = 1L;
 
 	private final HashMap<Integer, EveningActivityMovement> eveningActivityNodes;
 	private List<Coord> meetingSpots;
@@ -25,13 +28,9 @@ public class EveningActivityControlSystem {
 	
 	private Random rng;
 	
-	private static HashMap<Integer, EveningActivityControlSystem> 
-		controlSystems;
-	
 	static {
 		DTNSim.registerForReset(EveningActivityControlSystem.class.
 				getCanonicalName());
-		reset();
 	}
 	
 	/**
@@ -44,7 +43,8 @@ public class EveningActivityControlSystem {
 	}
 
 	public static void reset() {
-		controlSystems = new HashMap<Integer, EveningActivityControlSystem>();
+		SimContext.current().setState(EveningActivityControlSystem.class, 
+				null);
 	}
 	
 	/**
@@ -125,8 +125,19 @@ public class EveningActivityControlSystem {
 	 * @param id unique ID of the EveningActivityControlSystem
 	 * @return The EveningActivityControlSystem with the provided ID
 	 */
+	@SuppressWarnings("unchecked")
 	public static EveningActivityControlSystem getEveningActivityControlSystem(
 			int id) {
+		SimContext context = SimContext.current();
+		HashMap<Integer, EveningActivityControlSystem> controlSystems = 
+			(HashMap<Integer, EveningActivityControlSystem>)context.getState(
+					EveningActivityControlSystem.class);
+		if (controlSystems == null) { // first system of this run
+			controlSystems = 
+				new HashMap<Integer, EveningActivityControlSystem>();
+			context.setState(EveningActivityControlSystem.class, 
+					controlSystems);
+		}
 		if (controlSystems.containsKey(Integer.valueOf(id))) {
 			return controlSystems.get(Integer.valueOf(id));
 		} else {
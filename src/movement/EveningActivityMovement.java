@@ -15,6 +15,7 @@ import movement.map.MapNode;
 import movement.map.SimMap;
 import core.Coord;
 import core.Settings;
+import core.SimContext;
 
 /**
  * A Class to model movement when people are out shopping or doing other 
@@ -26,6 +27,7 @@ import core.Settings;
  */
 public class EveningActivityMovement extends MapBasedMovement 
 	implements SwitchableMovement {
+	private static final long serialVersionUID = 1L;
 
 	private static final int WALKING_TO_MEETING_SPOT_MODE = 0;
 	private static final int EVENING_ACTIVITY_MODE = 1;
@@ -44,8 +46,6 @@ public class EveningActivityMovement extends MapBasedMovement
 	public static final String MAX_WAIT_TIME_SETTING = 
 		"maxAfterShoppingStopTime";
 	
-	private static int nrOfMeetingSpots = 10;
-	
 	private int mode;
 	private boolean ready;
 	private final DijkstraPathFinder pathFinder;
@@ -60,8 +60,6 @@ public class EveningActivityMovement extends MapBasedMovement
 	
 	private final int id;
 	
-	private static int nextID = 0;
-	
 	private int minGroupSize;
 	private int maxGroupSize;
 	
@@ -75,7 +73,7 @@ public class EveningActivityMovement extends MapBasedMovement
 		pathFinder = new DijkstraPathFinder(null);
 		mode = WALKING_TO_MEETING_SPOT_MODE;
 		
-		nrOfMeetingSpots = settings.getInt(NR_OF_MEETING_SPOTS_SETTING);
+		int nrOfMeetingSpots = settings.getInt(NR_OF_MEETING_SPOTS_SETTING);
 		
 		minGroupSize = settings.getInt(MIN_GROUP_SIZE_SETTING);
 		maxGroupSize = settings.getInt(MAX_GROUP_SIZE_SETTING);
@@ -120,12 +118,13 @@ public class EveningActivityMovement extends MapBasedMovement
 			}
 		}
 		
-		this.id = nextID++;
+		this.id = SimContext.current().nextCounterValue(
+				EveningActivityMovement.class);
 		
 		int scsID = settings.getInt(EVENING_ACTIVITY_CONTROL_SYSTEM_NR_SETTING);
 		
 		scs = EveningActivityControlSystem.getEveningActivityControlSystem(scsID);
-		scs.setRandomNumberGenerator(rng);
+		scs.setRandomNumberGenerator(getRng());
 		scs.addEveningActivityNode(this);
 		scs.setMeetingSpots(meetingSpotLocations);
 		
@@ -144,7 +143,8 @@ public class EveningActivityMovement extends MapBasedMovement
 		super(proto);
 		this.pathFinder = proto.pathFinder;
 		this.mode = proto.mode;
-		this.id = nextID++;
+		this.id = SimContext.current().nextCounterValue(
+				EveningActivityMovement.class);
 		scs = proto.scs;
 		scs.addEveningActivityNode(this);
 		this.setMinGroupSize(proto.getMinGroupSize());
@@ -163,7 +163,7 @@ public class EveningActivityMovement extends MapBasedMovement
 		
 		MapNode[] mapNodes = getMap().getNodes().
 			toArray(new MapNode[0]);
-		int index = rng.nextInt(mapNodes.length - 1);
+		int index = getRng().nextInt(mapNodes.length - 1);
 		lastWaypoint = mapNodes[index].getLocation().clone();
 		return lastWaypoint.clone();
 	}
@@ -199,7 +199,7 @@ public class EveningActivityMovement extends MapBasedMovement
 					lastWaypoint = super.lastMapNode.getLocation();
 					trip.setPath(path);
 					double waitTimeAtEnd = (maxWaitTime - minWaitTime) * 
-						rng.nextDouble() + minWaitTime;
+						getRng().nextDouble() + minWaitTime;
 					trip.setWaitTimeAtEnd(waitTimeAtEnd);
 					trip.setDestination(lastWaypoint);
 				} 
@@ -222,6 +222,11 @@ public class EveningActivityMovement extends MapBasedMovement
 		}
 	}
 	
+	@Override
+	public boolean canMoveConcurrently() {
+		return false; // replicas share the evening activity control system
+	}
+	
 	@Override
 	public MapBasedMovement replicate() {
 		return new EveningActivityMovement(this);
@@ -277,7 +282,7 @@ public class EveningActivityMovement extends MapBasedMovement
 	}
 
 	public static void reset() {
-		nextID = 0;
+		SimContext.current().resetCounter(EveningActivityMovement.class);
 	}
 
 	public int getMinGroupSize() {
@@ -16,12 +16,15 @@ import core.Coord;
 import core.DTNSim;
 import core.Settings;
 import core.SimClock;
+import core.SimContext;
 import core.Tuple;
 
 /**
  * Movement model that uses external data of node locations.
  */
 public class ExternalMovement extends MovementModel {
+	private static final long serialVersionUID = 1L;
+
 	/** Namespace for settings */
 	public static final String EXTERNAL_MOVEMENT_NS = "ExternalMovement";
 	/** external locations file's path -setting id ({@value})*/
@@ -31,24 +34,11 @@ public class ExternalMovement extends MovementModel {
 	
 	/** default initial location for excess nodes */
 	private static final Coord DEF_INIT_LOC = new Coord(0,0);
-	private static ExternalMovementReader reader;
-	private static String inputFileName;
-	
-	/** mapping of external id to movement model */
-	private static Map<String, ExternalMovement> idMapping;
-	/** initial locations for nodes */
-	private static List<Tuple<String, Coord>> initLocations;
-	/** time of the very first location data */
-	private static double initTime;
-	/** sampling interval (seconds) of the location data */
-	private static double samplingInterval;
-	/** last read time stamp after preloading */
-	private static double lastPreloadTime;
-	/** how many time intervals to load on every preload run */
-	private static double nrofPreload = 10;
 	/** minimum number intervals that should be preloaded ahead of sim time */
 	private static final double MIN_AHEAD_INTERVALS = 2;
-		
+	
+	/** location data shared by all the nodes of the run */
+	private final RunState runState;
 	/** the very first location of the node */
 	private Coord intialLocation;
 	/** queue of path-start-time, path tuples */
@@ -66,7 +56,6 @@ public class ExternalMovement extends MovementModel {
 	
 	static {
 		DTNSim.registerForReset(ExternalMovement.class.getCanonicalName());
-		reset();
 	}
 	
 	/**
@@ -76,26 +65,14 @@ public class ExternalMovement extends MovementModel {
 	public ExternalMovement(Settings settings) {
 		super(settings);
 		
-		if (idMapping == null) {
+		SimContext context = SimContext.current();
+		RunState state = (RunState)context.getState(ExternalMovement.class);
+		if (state == null) {
 			// run these the first time object is created or after reset call
-			Settings s = new Settings(EXTERNAL_MOVEMENT_NS);
-			idMapping = new HashMap<String, ExternalMovement>();
-			inputFileName = s.getSetting(MOVEMENT_FILE_S);
-			reader = new ExternalMovementReader(inputFileName);
-			
-			initLocations = reader.readNextMovements();
-			initTime = reader.getLastTimeStamp();
-			samplingInterval = -1;
-			lastPreloadTime = -1;
-			
-			s.setNameSpace(EXTERNAL_MOVEMENT_NS);
-			if (s.contains(NROF_PRELOAD_S)) {
-				nrofPreload = s.getInt(NROF_PRELOAD_S);
-				if (nrofPreload <= 0) {
-					nrofPreload = 1;
-				}
-			}
+			state = new RunState();
+			context.setState(ExternalMovement.class, state);
 		}
+		this.runState = state;
 	}
 	
 	/** 
@@ -106,6 +83,8 @@ public class ExternalMovement extends MovementModel {
 	private ExternalMovement(MovementModel mm) {
 		super(mm);
 		
+		this.runState = ((ExternalMovement)mm).runState;
+		List<Tuple<String, Coord>> initLocations = runState.initLocations;
 		pathQueue = new LinkedList<Tuple<Double, Path>>();
 		latestPath = null;
 		
@@ -113,10 +92,10 @@ public class ExternalMovement extends MovementModel {
 			// gets a new location from the list
 			Tuple<String, Coord> initLoc = initLocations.remove(0); 
 			this.intialLocation = this.latestLocation = initLoc.getValue();
-			this.latestPathStartTime = initTime;
+			this.latestPathStartTime = runState.initTime;
 			
 			// puts the new model to model map for later updates
-			idMapping.put(initLoc.getKey(), this);
+			runState.idMapping.put(initLoc.getKey(), this);
 			isActive = true;
 		}
 		else {
@@ -126,24 +105,6 @@ public class ExternalMovement extends MovementModel {
 		}		
 	}
 	
-	/**
-	 * Checks if more paths should be preloaded and preloads them if
-	 * needed.
-	 */
-	private static void checkPathNeed() {
-		if (samplingInterval == -1) { // first preload
-			lastPreloadTime = readMorePaths();
-		}
-		
-		if (lastPreloadTime != Double.NaN && SimClock.getTime() >= 
-				lastPreloadTime - (samplingInterval * MIN_AHEAD_INTERVALS) ) {
-			for (int i=0; i < nrofPreload && 
-					lastPreloadTime != Double.NaN; i++) {
-				lastPreloadTime = readMorePaths();
-			}
-		}
-	}
-	
 	@Override
 	public Coord getInitialLocation() {
 		return this.intialLocation;
@@ -162,6 +123,7 @@ public class ExternalMovement extends MovementModel {
 	 * @param time When should the node be there
 	 */
 	private void addLocation(Coord loc, double time) {
+		double samplingInterval = runState.samplingInterval;
 		assert samplingInterval > 0 : "Non-positive sampling interval!";
 		
 		if (loc.equals(latestLocation)) { // node didn't move
@@ -204,7 +166,7 @@ public class ExternalMovement extends MovementModel {
 	public Path getPath() {
 		Path p;
 		
-		checkPathNeed(); // check if we should preload more paths		
+		runState.checkPathNeed(); // check if we should preload more paths		
 		
 		if (SimClock.getTime() < this.nextPathAvailable()) {
 			return null;
@@ -223,11 +185,13 @@ public class ExternalMovement extends MovementModel {
 	
 	@Override
 	public int getMaxX() {
+		ExternalMovementReader reader = runState.reader;
 		return (int)(reader.getMaxX() - reader.getMinX()) + 1;
 	}
 
 	@Override
 	public int getMaxY() {
+		ExternalMovementReader reader = runState.reader;
 		return (int)(reader.getMaxY() - reader.getMinY()) + 1;
 	}
 
@@ -238,39 +202,96 @@ public class ExternalMovement extends MovementModel {
 	}
 	
 	/**
-	 * Reads paths for the next time instance from the reader
-	 * @return The time stamp of the reading or Double.NaN if no movements
-	 * were read.
+	 * Reset state so that next instance will have a fresh state
 	 */
-	private static double readMorePaths() {
-		List<Tuple<String, Coord>> list = reader.readNextMovements();
-		double time = reader.getLastTimeStamp();
-		
-		if (samplingInterval == -1) {
-			samplingInterval = time - initTime;
-		}
-		
-		for (Tuple<String, Coord> t : list) {
-			ExternalMovement em = idMapping.get(t.getKey());
-			if (em != null) { // skip unknown IDs, i.e. IDs not mentioned in...
-				// ...init phase or if there are more IDs than nodes
-				em.addLocation(t.getValue(), time);
+	public static void reset() {
+		SimContext.current().setState(ExternalMovement.class, null);
+	}
+
+	/**
+	 * The external location data of a simulation run
+	 */
+	private static class RunState {
+		private final ExternalMovementReader reader;
+		/** mapping of external id to movement model */
+		private final Map<String, ExternalMovement> idMapping;
+		/** initial locations for nodes */
+		private final List<Tuple<String, Coord>> initLocations;
+		/** time of the very first location data */
+		private final double initTime;
+		/** sampling interval (seconds) of the location data */
+		private double samplingInterval;
+		/** last read time stamp after preloading */
+		private double lastPreloadTime;
+		/** how many time intervals to load on every preload run */
+		private double nrofPreload = 10;
+
+		private RunState() {
+			Settings s = new Settings(EXTERNAL_MOVEMENT_NS);
+			idMapping = new HashMap<String, ExternalMovement>();
+			String inputFileName = s.getSetting(MOVEMENT_FILE_S);
+			reader = new ExternalMovementReader(inputFileName);
+			
+			initLocations = reader.readNextMovements();
+			initTime = reader.getLastTimeStamp();
+			samplingInterval = -1;
+			lastPreloadTime = -1;
+			
+			s.setNameSpace(EXTERNAL_MOVEMENT_NS);
+			if (s.contains(NROF_PRELOAD_S)) {
+				nrofPreload = s.getInt(NROF_PRELOAD_S);
+				if (nrofPreload <= 0) {
+					nrofPreload = 1;
+				}
 			}
 		}
-		
-		if (list.size() > 0) {
-			return time;
+
+		/**
+		 * Checks if more paths should be preloaded and preloads them if
+		 * needed.
+		 */
+		private void checkPathNeed() {
+			if (samplingInterval == -1) { // first preload
+				lastPreloadTime = readMorePaths();
+			}
+			
+			if (lastPreloadTime != Double.NaN && SimClock.getTime() >= 
+					lastPreloadTime - (samplingInterval * MIN_AHEAD_INTERVALS) ) {
+				for (int i=0; i < nrofPreload && 
+						lastPreloadTime != Double.NaN; i++) {
+					lastPreloadTime = readMorePaths();
+				}
+			}
 		}
-		else {
-			return Double.NaN;
+
+		/**
+		 * Reads paths for the next time instance from the reader
+		 * @return The time stamp of the reading or Double.NaN if no movements
+		 * were read.
+		 */
+		private double readMorePaths() {
+			List<Tuple<String, Coord>> list = reader.readNextMovements();
+			double time = reader.getLastTimeStamp();
+			
+			if (samplingInterval == -1) {
+				samplingInterval = time - initTime;
+			}
+			
+			for (Tuple<String, Coord> t : list) {
+				ExternalMovement em = idMapping.get(t.getKey());
+				if (em != null) { // skip unknown IDs, i.e. IDs not mentioned in...
+					// ...init phase or if there are more IDs than nodes
+					em.addLocation(t.getValue(), time);
+				}
+			}
+			
+			if (list.size() > 0) {
+				return time;
+			}
+			else {
+				return Double.NaN;
+			}
 		}
 	}
-	
-	/**
-	 * Reset state so that next instance will have a fresh state
-	 */
-	public static void reset() {
-		idMapping = null;
-	}
 
 }
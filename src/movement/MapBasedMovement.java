@@ -29,6 +29,8 @@ import core.SimError;
  * roads of a SimMap. 
  */
 public class MapBasedMovement extends MovementModel implements SwitchableMovement {
+	private static final long serialVersionUID = 1L;
+
 	/** sim map for the model */
 	private SimMap map = null;
 	/** node where the last path ended or node next to initial placement */
@@ -144,15 +146,15 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 		MapNode n,n2;
 		Coord n2Location, nLocation, placement;
 		double dx, dy;
-		double rnd = rng.nextDouble();
+		double rnd = getRng().nextDouble();
 		
 		// choose a random node (from OK types if such are defined)
 		do {
-			n = nodes.get(rng.nextInt(nodes.size()));
+			n = nodes.get(getRng().nextInt(nodes.size()));
 		} while (okMapNodeTypes != null && !n.isType(okMapNodeTypes));
 		
 		// choose a random neighbor of the selected node
-		n2 = n.getNeighbors().get(rng.nextInt(n.getNeighbors().size())); 
+		n2 = n.getNeighbors().get(getRng().nextInt(n.getNeighbors().size())); 
 		
 		nLocation = n.getLocation();
 		n2Location = n2.getLocation();
@@ -191,7 +193,7 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 		// start paths from current node 
 		p.addWaypoint(curNode.getLocation());
 		
-		int pathLength = rng.nextInt(maxPathLength-minPathLength) + 
+		int pathLength = getRng().nextInt(maxPathLength-minPathLength) + 
 			minPathLength;
 
 		for (int i=0; i<pathLength; i++) {
@@ -216,7 +218,7 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 				nextNode = prevNode;
 			}
 			else { // choose a random node from remaining neighbors
-				nextNode = n2.get(rng.nextInt(n2.size()));
+				nextNode = n2.get(getRng().nextInt(n2.size()));
 			}
 			
 			prevNode = curNode;
@@ -243,7 +245,7 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 	protected MapNode selectRandomOkNode(List<MapNode> nodes) {
 		MapNode n;
 		do {
-			n = nodes.get(rng.nextInt(nodes.size()));
+			n = nodes.get(getRng().nextInt(nodes.size()));
 		} while (okMapNodeTypes != null && !n.isType(okMapNodeTypes));
 
 		return n;
@@ -259,54 +261,58 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 	
 	/**
 	 * Reads a sim map from location set to the settings, mirrors the map and
-	 * moves its upper left corner to origo.
+	 * moves its upper left corner to origo. The map cache is shared by
+	 * all (concurrent) simulation runs; the cached maps are not modified
+	 * after reading.
 	 * @return A new SimMap based on the settings
 	 */
 	private SimMap readMap() {
-		SimMap simMap;
-		Settings settings = new Settings(MAP_BASE_MOVEMENT_NS);
-		WKTMapReader r = new WKTMapReader(true);
+		synchronized (MapBasedMovement.class) { // cache is shared by runs
+			SimMap simMap;
+			Settings settings = new Settings(MAP_BASE_MOVEMENT_NS);
+			WKTMapReader r = new WKTMapReader(true);
 		
-		if (cachedMap == null) {
-			cachedMapFiles = new ArrayList<String>(); // no cache present
-		}
-		else { // something in cache
-			// check out if previously asked map was asked again
-			SimMap cached = checkCache(settings);
-			if (cached != null) {
-				nrofMapFilesRead = cachedMapFiles.size();
-				return cached; // we had right map cached -> return it
+			if (cachedMap == null) {
+				cachedMapFiles = new ArrayList<String>(); // no cache present
 			}
-			else { // no hit -> reset cache
-				cachedMapFiles = new ArrayList<String>();
-				cachedMap = null;
+			else { // something in cache
+				// check out if previously asked map was asked again
+				SimMap cached = checkCache(settings);
+				if (cached != null) {
+					nrofMapFilesRead = cachedMapFiles.size();
+					return cached; // we had right map cached -> return it
+				}
+				else { // no hit -> reset cache
+					cachedMapFiles = new ArrayList<String>();
+					cachedMap = null;
+				}
 			}
-		}
 
-		try {
-			int nrofMapFiles = settings.getInt(NROF_FILES_S);
+			try {
+				int nrofMapFiles = settings.getInt(NROF_FILES_S);
 
-			for (int i = 1; i <= nrofMapFiles; i++ ) {
-				String pathFile = settings.getSetting(FILE_S + i);
-				cachedMapFiles.add(pathFile);
-				r.addPaths(new File(pathFile), i);
-			}
+				for (int i = 1; i <= nrofMapFiles; i++ ) {
+					String pathFile = settings.getSetting(FILE_S + i);
+					cachedMapFiles.add(pathFile);
+					r.addPaths(new File(pathFile), i);
+				}
 			
-			nrofMapFilesRead = nrofMapFiles;
-		} catch (IOException e) {
-			throw new SimError(e.toString(),e);
-		}
+				nrofMapFilesRead = nrofMapFiles;
+			} catch (IOException e) {
+				throw new SimError(e.toString(),e);
+			}
 
-		simMap = r.getMap();
-		checkMapConnectedness(simMap.getNodes());
-		// mirrors the map (y' = -y) and moves its upper left corner to origo
-		simMap.mirror();
-		Coord offset = simMap.getMinBound().clone();		
-		simMap.translate(-offset.getX(), -offset.getY());
-		checkCoordValidity(simMap.getNodes());
+			simMap = r.getMap();
+			checkMapConnectedness(simMap.getNodes());
+			// mirrors the map (y' = -y) and moves its upper left corner to origo
+			simMap.mirror();
+			Coord offset = simMap.getMinBound().clone();		
+			simMap.translate(-offset.getX(), -offset.getY());
+			checkCoordValidity(simMap.getNodes());
 		
-		cachedMap = simMap;
-		return simMap;
+			cachedMap = simMap;
+			return simMap;
+		}
 	}
 	
 	/**
@@ -396,6 +402,11 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 		return cachedMap;
 	}
 	
+	@Override
+	public boolean canMoveConcurrently() {
+		return true;
+	}
+	
 	@Override
 	public MapBasedMovement replicate() {
 		return new MapBasedMovement(this);
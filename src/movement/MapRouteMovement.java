@@ -21,6 +21,7 @@ import core.Settings;
  */
 public class MapRouteMovement extends MapBasedMovement implements 
 	SwitchableMovement {
+	private static final long serialVersionUID = 1L;
 	
 	/** Per node group setting used for selecting a route file ({@value}) */
 	public static final String ROUTE_FILE_S = "routeFile";
@@ -88,7 +89,7 @@ public class MapRouteMovement extends MapBasedMovement implements
 		
 		if (firstStopIndex < 0) {
 			/* set a random starting position on the route */
-			this.route.setNextIndex(rng.nextInt(route.getNrofStops()-1));
+			this.route.setNextIndex(getRng().nextInt(route.getNrofStops()-1));
 		} else {
 			/* use the one defined in the config file */
 			this.route.setNextIndex(this.firstStopIndex);
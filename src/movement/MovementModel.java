@@ -4,6 +4,7 @@
  */
 package movement;
 
+import java.io.Serializable;
 import java.util.Random;
 
 import core.Coord;
@@ -11,6 +12,7 @@ import core.DTNSim;
 import core.ModuleCommunicationBus;
 import core.Settings;
 import core.SimClock;
+import core.SimContext;
 import core.SimError;
 
 /**
@@ -23,7 +25,9 @@ import core.SimError;
  * {@link #getInitialLocation()} and {@link #getPath()} are worthwhile to 
  * override.</P>
  */
-public abstract class MovementModel {
+public abstract class MovementModel implements Serializable {
+	private static final long serialVersionUID = 1L;
+
 	/** node's speed CSV (min, max) -setting id ({@value})*/
 	public static final String SPEED = "speed";
 	/** node's wait time CSV (min, max) -setting id ({@value})*/
@@ -41,9 +45,21 @@ public abstract class MovementModel {
 	public static final String WORLD_SIZE = "worldSize";
 	/** movement models' rng seed -setting id ({@value})*/
 	public static final String RNG_SEED = "rngSeed";
+	/** 
+	 * Should every node have its own rng stream -setting id ({@value}).
+	 * Boolean (true/false) variable. If true, the random numbers a node's 
+	 * movement model draws do not depend on the other nodes, which is 
+	 * required for moving nodes concurrently. The streams are seeded from
+	 * the {@link #RNG_SEED} setting. Default is {@link #DEF_PER_HOST_RNG}.
+	 */
+	public static final String PER_HOST_RNG_S = "perHostRng";
+	/** default value for the per host rng setting ({@value}) */
+	public static final boolean DEF_PER_HOST_RNG = false;
 	
-	/** common rng for all movement models in the simulation */
-	protected static Random rng; 
+	/** key of the per host rng streams' seed rng in the run's context (a 
+	 * string so that the key stays valid in stored run states) */
+	private static final Object STREAM_SEEDER_KEY = 
+		MovementModel.class.getName() + ".streamSeeder";
 	
 	private ActivenessHandler ah;
 		
@@ -57,10 +73,13 @@ public abstract class MovementModel {
 	
 	protected ModuleCommunicationBus comBus;
 
-	// static initialization of all movement models' random number generator
+	/** does every replica have its own rng stream */
+	private boolean perHostRng;
+	/** the rng stream of this model (or null if the common rng is used) */
+	private Random rng;
+
 	static {
 		DTNSim.registerForReset(MovementModel.class.getCanonicalName());				
-		reset();
 	}
 	
 	/**
@@ -125,6 +144,8 @@ public abstract class MovementModel {
 		int [] worldSize = settings.getCsvInts(WORLD_SIZE,2);
 		this.maxX = worldSize[0];
 		this.maxY = worldSize[1];
+		this.perHostRng = settings.contains(PER_HOST_RNG_S) ?
+				settings.getBoolean(PER_HOST_RNG_S) : DEF_PER_HOST_RNG;
 
 		settings.restoreNameSpace();
 	}
@@ -143,6 +164,12 @@ public abstract class MovementModel {
 		this.maxY = mm.maxY;
 		this.ah = mm.ah;
 		this.comBus = null;
+		this.perHostRng = mm.perHostRng;
+		if (this.perHostRng) {
+			/* replicas are created in the same order in every run, so each
+			 * node gets the same stream every time */
+			this.rng = new Random(getStreamSeeder().nextLong());
+		}
 	}
 		
 	/**
@@ -168,10 +195,7 @@ public abstract class MovementModel {
 	 * @return A new speed between min and max values 
 	 */
 	protected double generateSpeed() {
-		if (rng == null) {
-			return 1;
-		}
-		return (maxSpeed - minSpeed) * rng.nextDouble() + minSpeed;
+		return (maxSpeed - minSpeed) * getRng().nextDouble() + minSpeed;
 	}
 	
 	/**
@@ -181,10 +205,7 @@ public abstract class MovementModel {
 	 * @return The time as a double
 	 */
 	protected double generateWaitTime() {
-		if (rng == null) {
-			return 0;
-		}
-		return (maxWaitTime - minWaitTime) * rng.nextDouble() + 
+		return (maxWaitTime - minWaitTime) * getRng().nextDouble() + 
 			minWaitTime;
 	}
 
@@ -236,6 +257,19 @@ public abstract class MovementModel {
 		return this.comBus;		
 	}
 	
+	/**
+	 * Returns true if the {@link #getPath()}, {@link #nextPathAvailable()} 
+	 * and {@link #isActive()} methods of different replicas of this model
+	 * can be called concurrently, i.e., if the replicas don't modify any 
+	 * state they share. Concurrently moved models must also use a per host
+	 * rng (see {@link #PER_HOST_RNG_S}) to keep the results deterministic.
+	 * This implementation returns false.
+	 * @return true if the model supports concurrent movement
+	 */
+	public boolean canMoveConcurrently() {
+		return false;
+	}
+	
 	/**
 	 * Returns simply the name of the movement model class
 	 * @return the name of the movement model class
@@ -251,17 +285,55 @@ public abstract class MovementModel {
 	public abstract MovementModel replicate();
 	
 	/**
-	 * Resets all static fields to default values
+	 * Returns the rng of this movement model. This is the model's own rng 
+	 * stream if per host rngs are used, or the common rng for all movement
+	 * models of the current simulation run otherwise.
+	 * @return The rng of this movement model
 	 */
-	public static void reset() {
-		Settings s = new Settings(MOVEMENT_MODEL_NS);
-		if (s.contains(RNG_SEED)) {
-			int seed = s.getInt(RNG_SEED);
-			rng = new Random(seed);
+	protected Random getRng() {
+		if (this.rng != null) {
+			return this.rng;
 		}
-		else {
-			rng = new Random(0);
+		return getSharedRng(MovementModel.class);
+	}
+
+	/**
+	 * Returns the per host rng streams' seed rng of the current run
+	 * @return The seed rng of the current run
+	 */
+	private static Random getStreamSeeder() {
+		return getSharedRng(STREAM_SEEDER_KEY);
+	}
+	
+	/**
+	 * Returns a rng stored in the context of the current simulation run. 
+	 * The rng is created (and seeded) on the first call of a run.
+	 * @param key The key of the rng in the context
+	 * @return The rng of the current run
+	 */
+	private static Random getSharedRng(Object key) {
+		SimContext context = SimContext.current();
+		Random rng = (Random)context.getState(key);
+		if (rng == null) {
+			Settings s = new Settings(MOVEMENT_MODEL_NS);
+			if (s.contains(RNG_SEED)) {
+				int seed = s.getInt(RNG_SEED);
+				rng = new Random(seed);
+			}
+			else {
+				rng = new Random(0);
+			}
+			rng = (Random)context.putStateIfAbsent(key, rng);
 		}
+		return rng;
+	}
+
+	/**
+	 * Resets all static fields to default values
+	 */
+	public static void reset() {
+		SimContext.current().setState(MovementModel.class, null);
+		SimContext.current().setState(STREAM_SEEDER_KEY, null);
 	}
 	
 }
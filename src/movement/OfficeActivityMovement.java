@@ -29,6 +29,7 @@ import core.SimClock;
  */
 public class OfficeActivityMovement extends MapBasedMovement implements 
 	SwitchableMovement {
+	private static final long serialVersionUID = 1L;
 
 	private static final int WALKING_TO_OFFICE_MODE = 0;
 	private static final int AT_OFFICE_MODE = 1;
@@ -46,7 +47,7 @@ public class OfficeActivityMovement extends MapBasedMovement implements
 	public static final String OFFICE_LOCATIONS_FILE_SETTING = 
 		"officeLocationsFile";
 	
-	private static int nrOfOffices = 50;
+	private int nrOfOffices = 50;
 	
 	private int mode;
 	private final int workDayLength;
@@ -100,7 +101,7 @@ public class OfficeActivityMovement extends MapBasedMovement implements
 		if (officeLocationsFile == null) {
 			MapNode[] mapNodes = getMap().getNodes().
 				toArray(new MapNode[0]);
-			int officeIndex = rng.nextInt(mapNodes.length - 1) /
+			int officeIndex = getRng().nextInt(mapNodes.length - 1) /
 				(mapNodes.length/nrOfOffices);
 			officeLocation = mapNodes[officeIndex].getLocation().clone();
 		} else {
@@ -119,14 +120,14 @@ public class OfficeActivityMovement extends MapBasedMovement implements
 					allOffices.add(coord);
 				}
 				officeLocation = allOffices.get(
-						rng.nextInt(allOffices.size())).clone();
+						getRng().nextInt(allOffices.size())).clone();
 			} catch (Exception e) {
 				e.printStackTrace();
 			}
 		}
 		
 		deskLocation = getRandomCoorinateInsideOffice();
-		paretoRNG = new ParetoRNG(rng, officeWaitTimeParetoCoeff, 
+		paretoRNG = new ParetoRNG(getRng(), officeWaitTimeParetoCoeff, 
 				officeMinWaitTime, officeMaxWaitTime);
 	}
 	
@@ -137,6 +138,7 @@ public class OfficeActivityMovement extends MapBasedMovement implements
 	public OfficeActivityMovement(OfficeActivityMovement proto) {
 		super(proto);
 		this.workDayLength = proto.workDayLength;
+		this.nrOfOffices = proto.nrOfOffices;
 		startedWorkingTime = -1;
 		this.distance = proto.distance;
 		this.pathFinder = proto.pathFinder;
@@ -145,13 +147,13 @@ public class OfficeActivityMovement extends MapBasedMovement implements
 		if (proto.allOffices == null) {
 			MapNode[] mapNodes = getMap().getNodes().
 				toArray(new MapNode[0]);
-			int officeIndex = rng.nextInt(mapNodes.length - 1) / 
+			int officeIndex = getRng().nextInt(mapNodes.length - 1) / 
 				(mapNodes.length/nrOfOffices);
 			officeLocation = mapNodes[officeIndex].getLocation().clone();
 		} else {
 			this.allOffices = proto.allOffices;
 			officeLocation = allOffices.get(
-					rng.nextInt(allOffices.size())).clone();
+					getRng().nextInt(allOffices.size())).clone();
 		}
 		
 		officeWaitTimeParetoCoeff = proto.officeWaitTimeParetoCoeff;
@@ -164,14 +166,14 @@ public class OfficeActivityMovement extends MapBasedMovement implements
 	
 	public Coord getRandomCoorinateInsideOffice() {
 		double x_coord = officeLocation.getX() + 
-			(0.5 - rng.nextDouble()) * distance;
+			(0.5 - getRng().nextDouble()) * distance;
 		if (x_coord > getMaxX()) {
 			x_coord = getMaxX();
 		} else if (x_coord < 0) {
 			x_coord = 0;
 		}
 		double y_coord = officeLocation.getY() + 
-			(0.5 - rng.nextDouble()) * distance;
+			(0.5 - getRng().nextDouble()) * distance;
 		if (y_coord > getMaxY()) {
 			y_coord = getMaxY();
 		} else if (y_coord < 0) {
@@ -182,8 +184,8 @@ public class OfficeActivityMovement extends MapBasedMovement implements
 	
 	@Override
 	public Coord getInitialLocation() {
-		double x = rng.nextDouble() * getMaxX();
-		double y = rng.nextDouble() * getMaxY();
+		double x = getRng().nextDouble() * getMaxX();
+		double y = getRng().nextDouble() * getMaxY();
 		Coord c = new Coord(x,y);
 
 		this.lastWaypoint = c;
@@ -246,6 +248,11 @@ public class OfficeActivityMovement extends MapBasedMovement implements
 		return waitTime;
 	}
 	
+	@Override
+	public boolean canMoveConcurrently() {
+		return false; // replicas share the pareto distributed wait time rng
+	}
+	
 	@Override
 	public MapBasedMovement replicate() {
 		return new OfficeActivityMovement(this);
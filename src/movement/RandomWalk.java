@@ -13,6 +13,7 @@ import core.Settings;
  * @author Frans Ekman
  */
 public class RandomWalk extends MovementModel implements SwitchableMovement {
+	private static final long serialVersionUID = 1L;
 
 	private Coord lastWaypoint;
 	private final double minDistance;
@@ -36,9 +37,9 @@ public class RandomWalk extends MovementModel implements SwitchableMovement {
 	 */
 	@Override
 	public Coord getInitialLocation() {
-		assert rng != null : "MovementModel not initialized!";
-		double x = rng.nextDouble() * getMaxX();
-		double y = rng.nextDouble() * getMaxY();
+		assert getRng() != null : "MovementModel not initialized!";
+		double x = getRng().nextDouble() * getMaxX();
+		double y = getRng().nextDouble() * getMaxY();
 		Coord c = new Coord(x,y);
 
 		this.lastWaypoint = c;
@@ -56,8 +57,8 @@ public class RandomWalk extends MovementModel implements SwitchableMovement {
 		Coord c = null;
 		while (true) {
 			
-			double angle = rng.nextDouble() * 2 * Math.PI;
-			double distance = minDistance + rng.nextDouble() * 
+			double angle = getRng().nextDouble() * 2 * Math.PI;
+			double distance = minDistance + getRng().nextDouble() * 
 				(maxDistance - minDistance);
 			
 			double x = lastWaypoint.getX() + distance * Math.cos(angle);
@@ -76,6 +77,11 @@ public class RandomWalk extends MovementModel implements SwitchableMovement {
 		return p;
 	}
 	
+	@Override
+	public boolean canMoveConcurrently() {
+		return true;
+	}
+	
 	@Override
 	public RandomWalk replicate() {
 		return new RandomWalk(this);
@@ -12,6 +12,8 @@ import core.Settings;
  * simulation area.
  */
 public class RandomWaypoint extends MovementModel {
+	private static final long serialVersionUID = 1L;
+
 	/** how many waypoints should there be per path */
 	private static final int PATH_LENGTH = 1;
 	private Coord lastWaypoint;
@@ -30,7 +32,7 @@ public class RandomWaypoint extends MovementModel {
 	 */
 	@Override
 	public Coord getInitialLocation() {
-		assert rng != null : "MovementModel not initialized!";
+		assert getRng() != null : "MovementModel not initialized!";
 		Coord c = randomCoord();
 
 		this.lastWaypoint = c;
@@ -53,13 +55,18 @@ public class RandomWaypoint extends MovementModel {
 		return p;
 	}
 	
+	@Override
+	public boolean canMoveConcurrently() {
+		return true;
+	}
+	
 	@Override
 	public RandomWaypoint replicate() {
 		return new RandomWaypoint(this);
 	}
 	
 	protected Coord randomCoord() {
-		return new Coord(rng.nextDouble() * getMaxX(),
-				rng.nextDouble() * getMaxY());
+		return new Coord(getRng().nextDouble() * getMaxX(),
+				getRng().nextDouble() * getMaxY());
 	}
 }
@@ -17,6 +17,8 @@ import core.Settings;
  */
 public class ShortestPathMapBasedMovement extends MapBasedMovement implements 
 	SwitchableMovement {
+	private static final long serialVersionUID = 1L;
+
 	/** the Dijkstra shortest path finder */
 	private final DijkstraPathFinder pathFinder;
 
@@ -31,7 +33,7 @@ public class ShortestPathMapBasedMovement extends MapBasedMovement implements
 		super(settings);
 		this.pathFinder = new DijkstraPathFinder(getOkMapNodeTypes());
 		this.pois = new PointsOfInterest(getMap(), getOkMapNodeTypes(),
-				settings, rng);
+				settings, getRng());
 	}
 	
 	/**
@@ -48,7 +50,7 @@ public class ShortestPathMapBasedMovement extends MapBasedMovement implements
 	@Override
 	public Path getPath() {
 		Path p = new Path(generateSpeed());
-		MapNode to = pois.selectDestination();
+		MapNode to = pois.selectDestination(getRng());
 		
 		List<MapNode> nodePath = pathFinder.getShortestPath(lastMapNode, to);
 		
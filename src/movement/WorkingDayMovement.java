@@ -17,6 +17,7 @@ import core.Settings;
  * @author Frans Ekman
  */
 public class WorkingDayMovement extends ExtendedMovementModel {
+	private static final long serialVersionUID = 1L;
 
 	public static final String PROBABILITY_TO_OWN_CAR_SETTING = "ownCarProb";
 	public static final String PROBABILITY_TO_GO_SHOPPING_SETTING = 
@@ -55,7 +56,7 @@ public class WorkingDayMovement extends ExtendedMovementModel {
 		eveningActivityMovement = new EveningActivityMovement(settings);
 		carMM = new CarMovement(settings);
 		ownCarProb = settings.getDouble(PROBABILITY_TO_OWN_CAR_SETTING);
-		if (rng.nextDouble() < ownCarProb) { 
+		if (getRng().nextDouble() < ownCarProb) { 
 			movementUsedForTransfers = carMM;
 		} else {
 			movementUsedForTransfers = busTravellerMM;
@@ -81,7 +82,7 @@ public class WorkingDayMovement extends ExtendedMovementModel {
 		carMM = new CarMovement(proto.carMM);
 		
 		ownCarProb = proto.ownCarProb;
-		if (rng.nextDouble() < ownCarProb) { 
+		if (getRng().nextDouble() < ownCarProb) { 
 			movementUsedForTransfers = carMM;
 		} else {
 			movementUsedForTransfers = busTravellerMM;
@@ -98,7 +99,7 @@ public class WorkingDayMovement extends ExtendedMovementModel {
 		case WORK_MODE:
 			if (workerMM.isReady()) {
 				setCurrentMovementModel(movementUsedForTransfers);
-				if (doEveningActivityProb > rng.nextDouble()) {
+				if (doEveningActivityProb > getRng().nextDouble()) {
 					movementUsedForTransfers.setNextRoute(
 							workerMM.getOfficeLocation(), 
 							eveningActivityMovement.
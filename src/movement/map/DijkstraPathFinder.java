@@ -4,6 +4,7 @@
  */
 package movement.map;
 
+import java.io.Serializable;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -15,23 +16,18 @@ import java.util.Queue;
 import java.util.Set;
 
 /**
- * Implementation of the Dijkstra's shortest path algorithm.
+ * Implementation of the Dijkstra's shortest path algorithm. The state of
+ * a search is kept in a per-call {@link Search} object, so the same path
+ * finder can be used by several threads at the same time.
  */
-public class DijkstraPathFinder {
+public class DijkstraPathFinder implements Serializable {
+	private static final long serialVersionUID = 1L;
+
 	/** Value for infinite distance  */
 	private static final Double INFINITY = Double.MAX_VALUE;
 	/** Initial size of the priority queue */
 	private static final int PQ_INIT_SIZE = 11;
 
-	/** Map of node distances from the source node */
-	private DistanceMap distances;
-	/** Set of already visited nodes (where the shortest path is known) */
-	private Set<MapNode> visited;
-	/** Priority queue of unvisited nodes discovered so far */
-	private Queue<MapNode> unvisited;
-	/** Map of previous nodes on the shortest path(s) */
-	private Map<MapNode, MapNode> prevNodes;
-
 	private final int [] okMapNodes;
 	
 	/**
@@ -44,25 +40,6 @@ public class DijkstraPathFinder {
 		this.okMapNodes = okMapNodes;
 	}
 
-	/**
-	 * Initializes a new search with a source node
-	 * @param node The path's source node
-	 */
-	private void initWith(MapNode node) {
-		assert (okMapNodes == null || node.isType(okMapNodes));
-		
-		// create needed data structures
-		this.unvisited = new PriorityQueue<MapNode>(PQ_INIT_SIZE, 
-				new DistanceComparator());
-		this.visited = new HashSet<MapNode>();
-		this.prevNodes = new HashMap<MapNode, MapNode>();
-		this.distances = new DistanceMap();
-		
-		// set distance to source 0 and initialize unvisited queue
-		this.distances.put(node, 0);
-		this.unvisited.add(node);
-	}
-	
 	/**
 	 * Finds and returns a shortest path between two map nodes
 	 * @param from The source of the path
@@ -78,26 +55,26 @@ public class DijkstraPathFinder {
 			return path;
 		}
 		
-		initWith(from);
+		Search search = new Search(from);
 		MapNode node = null;
 		
 		// always take the node with shortest distance
-		while ((node = unvisited.poll()) != null) {
+		while ((node = search.unvisited.poll()) != null) {
 			if (node == to) {
 				break; // we found the destination -> no need to search further
 			}
 			
-			visited.add(node); // mark the node as visited
-			relax(node); // add/update neighbor nodes' distances
+			search.visited.add(node); // mark the node as visited
+			search.relax(node); // add/update neighbor nodes' distances
 		}
 		
 		// now we either have the path or such path wasn't available
 		if (node == to) { // found a path
 			path.add(0,to); 
-			MapNode prev = prevNodes.get(to); 
+			MapNode prev = search.prevNodes.get(to); 
 			while (prev != from) { 
 				path.add(0, prev);	// always put previous node to beginning
-				prev = prevNodes.get(prev);
+				prev = search.prevNodes.get(prev);
 			}
 			
 			path.add(0, from); // finally put the source node to first node
@@ -107,39 +84,72 @@ public class DijkstraPathFinder {
 	}
 	
 	/**
-	 * Relaxes the neighbors of a node (updates the shortest distances).
-	 * @param node The node whose neighbors are relaxed
+	 * State of a single shortest path search
 	 */
-	private void relax(MapNode node) {
-		double nodeDist = distances.get(node);
-		for (MapNode n : node.getNeighbors()) {
-			if (visited.contains(n)) {
-				continue; // skip visited nodes
-			}
-			
-			if (okMapNodes != null && !n.isType(okMapNodes)) {
-				continue; // skip nodes that are not OK
-			}
+	private class Search {
+		/** Map of node distances from the source node */
+		private final DistanceMap distances;
+		/** Set of already visited nodes (where the shortest path is known) */
+		private final Set<MapNode> visited;
+		/** Priority queue of unvisited nodes discovered so far */
+		private final Queue<MapNode> unvisited;
+		/** Map of previous nodes on the shortest path(s) */
+		private final Map<MapNode, MapNode> prevNodes;
+
+		/**
+		 * Initializes a new search with a source node
+		 * @param node The path's source node
+		 */
+		public Search(MapNode node) {
+			assert (okMapNodes == null || node.isType(okMapNodes));
 			
-			// n node's distance from path's source node
-			double nDist = nodeDist + getDistance(node, n);
+			// create needed data structures
+			this.distances = new DistanceMap();
+			this.unvisited = new PriorityQueue<MapNode>(PQ_INIT_SIZE, 
+					new DistanceComparator(distances));
+			this.visited = new HashSet<MapNode>();
+			this.prevNodes = new HashMap<MapNode, MapNode>();
 			
-			if (distances.get(n) > nDist) { // stored distance > found dist?
-				prevNodes.put(n, node);
-				setDistance(n, nDist);
+			// set distance to source 0 and initialize unvisited queue
+			this.distances.put(node, 0);
+			this.unvisited.add(node);
+		}
+
+		/**
+		 * Relaxes the neighbors of a node (updates the shortest distances).
+		 * @param node The node whose neighbors are relaxed
+		 */
+		private void relax(MapNode node) {
+			double nodeDist = distances.get(node);
+			for (MapNode n : node.getNeighbors()) {
+				if (visited.contains(n)) {
+					continue; // skip visited nodes
+				}
+				
+				if (okMapNodes != null && !n.isType(okMapNodes)) {
+					continue; // skip nodes that are not OK
+				}
+				
+				// n node's distance from path's source node
+				double nDist = nodeDist + getDistance(node, n);
+				
+				if (distances.get(n) > nDist) { // stored distance > found dist?
+					prevNodes.put(n, node);
+					setDistance(n, nDist);
+				}
 			}
 		}
-	}
-	
-	/**
-	 * Sets the distance from source node to a node
-	 * @param n The node whose distance is set
-	 * @param distance The distance of the node from the source node
-	 */
-	private void setDistance(MapNode n, double distance) {
-		unvisited.remove(n); // remove node from old place in the queue
-		distances.put(n, distance); // update distance
-		unvisited.add(n); // insert node to the new place in the queue
+		
+		/**
+		 * Sets the distance from source node to a node
+		 * @param n The node whose distance is set
+		 * @param distance The distance of the node from the source node
+		 */
+		private void setDistance(MapNode n, double distance) {
+			unvisited.remove(n); // remove node from old place in the queue
+			distances.put(n, distance); // update distance
+			unvisited.add(n); // insert node to the new place in the queue
+		}
 	}
 	
 	/**
@@ -156,7 +166,16 @@ public class DijkstraPathFinder {
 	 * Comparator that compares two map nodes by their distance from
 	 * the source node.
 	 */
-	private class DistanceComparator implements Comparator<MapNode> {
+	private static class DistanceComparator implements Comparator<MapNode> {
+		private final DistanceMap distances;
+		
+		/**
+		 * Constructor.
+		 * @param distances The distances of the search
+		 */
+		public DistanceComparator(DistanceMap distances) {
+			this.distances = distances;
+		}
 		
 		/**
 		 * Compares two map nodes by their distance from the source node
@@ -182,7 +201,7 @@ public class DijkstraPathFinder {
 	/**
 	 * Simple Map implementation for storing distances. 
 	 */
-	private class DistanceMap {
+	private static class DistanceMap {
 		private final HashMap<MapNode, Double> map;
 		
 		/**
@@ -0,0 +1,285 @@
+package reinforcementLearning_ContextAware;
+
+import java.util.*;
+
+/**
+ * Q-table padat: tabel disimpan dalam array primitif yang diindeks dengan alamat host. Satu baris
+ * {@code double[]} per tujuan, dialokasikan saat tujuan tersebut pertama kali ditulis. Baris yang belum
+ * dialokasikan memakai nilai default per nextHop ({@link #defaults}), sehingga operasi yang sama untuk semua
+ * tujuan (inisialisasi, aging, sinkronisasi) cukup mengubah default tanpa mengalokasikan baris. {@code NaN}
+ * menandai aksi yang tidak ada di tabel.
+ */
+public class DenseQtable extends Qtable {
+    private static final long serialVersionUID = 1L;
+
+    // penanda aksi yang tidak ada di tabel
+    static final double NONE = Double.NaN;
+
+    // baris Q-value per alamat tujuan (null = belum dialokasikan, memakai defaults)
+    private double[][] rows;
+    // Q-value baris yang belum dialokasikan per alamat nextHop (NONE jika tidak ada)
+    private double[] defaults;
+    // tujuan yang diinisialisasi (punya aksi walaupun barisnya belum dialokasikan)
+    private boolean[] known;
+    // jumlah tujuan yang diinisialisasi tetapi barisnya belum dialokasikan
+    private int defaultRows;
+
+    // versi perubahan terakhir per baris tujuan dan untuk default
+    private long[] rowVersions;
+    private long defaultsVersion;
+
+    /**
+     * Konstruktor DenseQtable.
+     * @param ownerId ID dari node yang memiliki Q-table ini (alamat host).
+     */
+    public DenseQtable(String ownerId) {
+        super(ownerId);
+        this.rows = new double[0][];
+        this.defaults = new double[0];
+        this.known = new boolean[0];
+        this.rowVersions = new long[0];
+    }
+
+    /**
+     * Inisialisasi semua kombinasi tujuan dan nextHop (selain owner) ke nilai Q = 0.0.
+     * Baris tidak dialokasikan; nilainya diambil dari default.
+     * @param allNodeIds Set berisi semua ID node dalam jaringan.
+     */
+    @Override
+    public void initializeAllQvalues(Set<String> allNodeIds) {
+        List<Integer> ids = new ArrayList<>();
+        for (String id : allNodeIds) {
+            int address = Integer.parseInt(id);
+            if (address == getOwner()) continue;
+            ensureCapacity(address);
+            ids.add(address);
+        }
+        if (isEmpty()) {
+            // semua tujuan memakai baris default yang sama
+            for (int address : ids) {
+                defaults[address] = 0.0;
+                known[address] = true;
+            }
+            defaultRows = ids.size();
+            defaultsVersion = nextVersion();
+            return;
+        }
+        for (int destination : ids) {
+            double[] row = row(destination);
+            for (int nextHop : ids) {
+                row[nextHop] = 0.0;
+            }
+            rowVersions[destination] = nextVersion();
+        }
+    }
+
+    /**
+     * Apakah tabel belum berisi aksi apa pun.
+     */
+    private boolean isEmpty() {
+        if (defaultRows > 0) return false;
+        for (double[] row : rows) {
+            if (row != null) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public double getQvalue(int destination, int nextHop) {
+        double q = value(destination, nextHop);
+        return Double.isNaN(q) ? 0.0 : q;
+    }
+
+    @Override
+    public void updateQvalue(int destination, int nextHop, double qvalue) {
+        qvalue = Math.min(qvalue, 1.0);
+        ensureCapacity(Math.max(destination, nextHop));
+        double[] row = row(destination);
+        if (row[nextHop] != qvalue) {
+            row[nextHop] = qvalue;
+            rowVersions[destination] = nextVersion();
+        }
+    }
+
+    @Override
+    public boolean hasAction(int destination, int nextHop) {
+        return !Double.isNaN(value(destination, nextHop));
+    }
+
+    @Override
+    public Set<String> getAllDestinations() {
+        Set<String> destinations = new HashSet<>();
+        for (int dest = 0; dest < rows.length; dest++) {
+            if (hasState(dest)) destinations.add(String.valueOf(dest));
+        }
+        return destinations;
+    }
+
+    @Override
+    public Map<String, Map<String, Double>> getAllQvalues() {
+        Map<String, Map<String, Double>> all = new HashMap<>();
+        for (int dest = 0; dest < rows.length; dest++) {
+            if (hasState(dest)) all.put(String.valueOf(dest), getActionMap(dest));
+        }
+        return all;
+    }
+
+    @Override
+    public synchronized Map<String, Double> getActionMap(String destination) {
+        int dest = Integer.parseInt(destination);
+        return hasState(dest) ? getActionMap(dest) : null;
+    }
+
+    private Map<String, Double> getActionMap(int dest) {
+        Map<String, Double> actions = new HashMap<>();
+        for (int hop = 0; hop < defaults.length; hop++) {
+            double q = value(dest, hop);
+            if (!Double.isNaN(q)) actions.put(String.valueOf(hop), q);
+        }
+        return actions;
+    }
+
+    @Override
+    boolean ageNextHop(int nextHop, double decayFactor, double minQ) {
+        boolean updated = false;
+        for (int dest = 0; dest < rows.length; dest++) {
+            double[] row = rows[dest];
+            if (row != null && nextHop < row.length && !Double.isNaN(row[nextHop])) {
+                double agedQ = Math.min(Math.max(row[nextHop] * decayFactor, minQ), 1.0);
+                if (agedQ != row[nextHop]) {
+                    row[nextHop] = agedQ;
+                    rowVersions[dest] = nextVersion();
+                }
+                updated = true;
+            }
+        }
+        if (nextHop < defaults.length && !Double.isNaN(defaults[nextHop])) {
+            double agedQ = Math.min(Math.max(defaults[nextHop] * decayFactor, minQ), 1.0);
+            if (agedQ != defaults[nextHop]) {
+                defaults[nextHop] = agedQ;
+                defaultsVersion = nextVersion();
+            }
+            updated |= defaultRows > 0;
+        }
+        return updated;
+    }
+
+    /**
+     * Jumlah nilai Q yang disimpan di memori (termasuk nilai default).
+     */
+    @Override
+    public long getStoredEntries() {
+        long entries = defaults.length;
+        for (double[] row : rows) {
+            if (row != null) entries += row.length;
+        }
+        return entries;
+    }
+
+    // ===================== akses internal untuk sinkronisasi ===================== //
+
+    /**
+     * Versi perubahan terakhir baris tujuan (0 jika belum pernah berubah).
+     */
+    long rowVersion(int destination) {
+        if (isAllocated(destination)) return rowVersions[destination];
+        return isDefaultRow(destination) ? defaultsVersion : 0;
+    }
+
+    /**
+     * Versi perubahan terakhir nilai default.
+     */
+    long defaultsVersion() {
+        return defaultsVersion;
+    }
+
+    /**
+     * Nilai mentah (NONE jika aksi tidak ada).
+     */
+    double value(int destination, int nextHop) {
+        if (destination < 0 || nextHop < 0 || nextHop >= defaults.length) return NONE;
+        if (destination < rows.length && rows[destination] != null) {
+            double[] row = rows[destination];
+            return nextHop < row.length ? row[nextHop] : NONE;
+        }
+        return isDefaultRow(destination) ? defaults[nextHop] : NONE;
+    }
+
+    /**
+     * Apakah tujuan mempunyai baris (state) di tabel.
+     */
+    boolean hasState(int destination) {
+        if (destination < 0 || destination >= rows.length) return false;
+        if (rows[destination] == null) return isDefaultRow(destination);
+        for (double q : rows[destination]) {
+            if (!Double.isNaN(q)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Apakah baris tujuan dialokasikan.
+     */
+    boolean isAllocated(int destination) {
+        return destination < rows.length && rows[destination] != null;
+    }
+
+    /**
+     * Apakah baris tujuan belum dialokasikan dan memakai default.
+     */
+    boolean isDefaultRow(int destination) {
+        return destination < known.length && known[destination] && rows[destination] == null;
+    }
+
+    /**
+     * Jumlah alamat (tujuan dan nextHop) yang muat di tabel.
+     */
+    int width() {
+        return defaults.length;
+    }
+
+    /**
+     * Mengembalikan baris tujuan, dialokasikan dari default jika belum ada.
+     */
+    double[] row(int destination) {
+        ensureCapacity(destination);
+        double[] row = rows[destination];
+        if (row == null) {
+            row = new double[defaults.length];
+            if (isDefaultRow(destination)) {
+                System.arraycopy(defaults, 0, row, 0, defaults.length);
+                rowVersions[destination] = defaultsVersion;
+                defaultRows--;
+            } else {
+                Arrays.fill(row, NONE);
+            }
+            rows[destination] = row;
+        } else if (row.length < defaults.length) {
+            int oldLength = row.length;
+            row = Arrays.copyOf(row, defaults.length);
+            Arrays.fill(row, oldLength, row.length, NONE);
+            rows[destination] = row;
+        }
+        return row;
+    }
+
+    double getDefault(int nextHop) {
+        return defaults[nextHop];
+    }
+
+    void setDefault(int nextHop, double qvalue) {
+        defaults[nextHop] = Math.min(qvalue, 1.0);
+        defaultsVersion = nextVersion();
+    }
+
+    private void ensureCapacity(int address) {
+        if (address < defaults.length) return;
+        int oldLength = defaults.length;
+        int newLength = Math.max(address + 1, 2 * oldLength);
+        rows = Arrays.copyOf(rows, newLength);
+        known = Arrays.copyOf(known, newLength);
+        rowVersions = Arrays.copyOf(rowVersions, newLength);
+        defaults = Arrays.copyOf(defaults, newLength);
+        Arrays.fill(defaults, oldLength, newLength, NONE);
+    }
+}
@@ -37,22 +37,27 @@ public class QTableUpdateStrategy {
      * apakah destinationId ada dalam ENS miliknya.
      */
     public double calculateReward(EncounteredNodeSet ensNeighbor, String destinationId) {
-        return ensNeighbor.getAllNodeIds().contains(destinationId) ? 1.0 : 0.0;
+        return calculateReward(ensNeighbor, Integer.parseInt(destinationId));
+    }
+
+    /**
+     * Reward untuk tujuan berupa alamat host.
+     */
+    public double calculateReward(EncounteredNodeSet ensNeighbor, int destination) {
+        return ensNeighbor.containsNode(destination) ? 1.0 : 0.0;
     }
 
     /**
      * Strategi 1 - Pembaruan Q-value berdasarkan koneksi aktif.
      * Menggunakan reward, maxQ, dan faktor fuzzy opportunity.
      */
-    public void updateFirstStrategy(DTNHost host, DTNHost neighbor, String destinationId, String nextHop, double fuzzOpp) {
-        String hostId = String.valueOf(host.getAddress());
-        String neighborId = String.valueOf(neighbor.getAddress());
-        double qCurrent = qtable.getQvalue(destinationId, nextHop);
+    public void updateFirstStrategy(DTNHost host, DTNHost neighbor, int destination, int nextHop, double fuzzOpp) {
+        double qCurrent = qtable.getQvalue(destination, nextHop);
         EncounteredNodeSet ensNeighbor = ((ContextAwareRLRouter) neighbor.getRouter()).getEncounteredNodeSet();
-        double reward = calculateReward(ensNeighbor, destinationId);
-        double maxQ = qtable.getMaxQvalue(destinationId, ensNeighbor);
+        double reward = calculateReward(ensNeighbor, destination);
+        double maxQ = qtable.getMaxQvalue(destination, ensNeighbor);
         double newQ = ALPHA * (reward + GAMMA * fuzzOpp * maxQ) + (1 - ALPHA) * qCurrent;
-        qtable.updateQvalue(destinationId, nextHop, newQ);
+        qtable.updateQvalue(destination, nextHop, newQ);
     }
 
     /**
@@ -88,63 +93,166 @@ public class QTableUpdateStrategy {
      * untuk koneksi yang tidak aktif dalam waktu tertentu.
      */
     public boolean updateSecondStrategy(DTNHost host, DTNHost neighbor) {
-        String nexthop = String.valueOf(neighbor.getAddress());
         ConnectionDuration connection = ConnectionDuration.getConnection(host, neighbor);
         if (connection == null || connection.getEndTime() == -1) return false;
 
         double elapsedTime = SimClock.getTime() - connection.getEndTime();
         if (elapsedTime < MIN_ELAPSED_FOR_AGING) return false;
 
-        Map<String, Map<String, Double>> allQ = qtable.getAllQvalues();
-        boolean updated = false;
-
-        for (Map.Entry<String, Map<String, Double>> entry : allQ.entrySet()) {
-            String destinationId = entry.getKey();
-            Map<String, Double> actionMap = entry.getValue();
-            if (!actionMap.containsKey(nexthop)) continue;
-            double currentQ = actionMap.get(nexthop);
-            double decayFactor = Math.pow(AGING_CONSTANT, elapsedTime);
-            double agedQ = Math.max(currentQ * decayFactor, MIN_Q);
-            qtable.updateQvalue(destinationId, nexthop, agedQ);
-            updated = true;
-        }
-        return updated;
+        double decayFactor = Math.pow(AGING_CONSTANT, elapsedTime);
+        return qtable.ageNextHop(neighbor.getAddress(), decayFactor, MIN_Q);
     }
 
     /**
      * Strategi 3 - Sinkronisasi dua arah antar Q-table antara dua node.
+     * Hanya baris yang berubah sejak sinkronisasi terakhir kedua node yang dipertukarkan.
      */
     public static void updateThirdStrategy(Qtable senderQtable, Qtable receiverQtable, String sender, String receiver) {
-        syncQEntries(senderQtable, receiverQtable);
-        syncQEntries(receiverQtable, senderQtable);
+        int senderOwner = senderQtable.getOwner();
+        int receiverOwner = receiverQtable.getOwner();
+        long senderSynced = senderQtable.getSyncedVersion(receiverOwner);
+        long receiverSynced = receiverQtable.getSyncedVersion(senderOwner);
+        long toSender = syncQEntries(senderQtable, receiverQtable, senderSynced, receiverSynced);
+        long toReceiver = syncQEntries(receiverQtable, senderQtable, receiverSynced, senderSynced);
+        senderQtable.synced(receiverOwner, toSender);
+        receiverQtable.synced(senderOwner, toReceiver);
     }
 
     /**
-     * Sinkronisasi satu arah dari source ke target Q-table.
+     * Sinkronisasi satu arah dari source ke target Q-table. Untuk setiap aksi yang ada di kedua
+     * tabel dan bernilai bukan nol, nilai yang lebih kecil diganti dengan yang lebih besar.
+     * Setiap jenis penyimpanan disinkronkan dengan caranya sendiri.
+     * Baris yang versinya tidak lebih baru dari versi sinkronisasi terakhir di kedua tabel dilewati.
+     * @param targetSynced versi target pada akhir sinkronisasi terakhir dengan source.
+     * @param sourceSynced versi source pada akhir sinkronisasi terakhir dengan target.
+     * @return jumlah entri source yang dibandingkan (dikirim ke target).
      */
-    private static void syncQEntries(Qtable target, Qtable source) {
-        for (String state : source.getAllDestinations()) {
-            if (state.equals(target.getOwnerId())) continue;
-            Map<String, Double> sourceActions = source.getActionMap(state);
-            if (sourceActions == null) continue;
+    private static long syncQEntries(Qtable target, Qtable source, long targetSynced, long sourceSynced) {
+        if (target instanceof DenseQtable && source instanceof DenseQtable) {
+            return syncDenseEntries((DenseQtable) target, (DenseQtable) source, targetSynced, sourceSynced);
+        }
+        if (target instanceof SparseQtable && source instanceof SparseQtable) {
+            return SparseQtable.syncQEntries((SparseQtable) target, (SparseQtable) source,
+                    targetSynced, sourceSynced);
+        }
+        return syncMixedEntries(target, source);
+    }
 
-            for (Map.Entry<String, Double> entry : sourceActions.entrySet()) {
-                String nextHop = entry.getKey();
-                double sourceQ = entry.getValue();
+    /**
+     * Sinkronisasi satu arah antara dua tabel padat.
+     * Baris yang dialokasikan dibandingkan per entri; baris yang masih memakai default di kedua
+     * tabel nilainya sama untuk semua tujuan, sehingga cukup defaultnya yang dibandingkan.
+     * @return jumlah entri source yang dibandingkan (dikirim ke target).
+     */
+    private static long syncDenseEntries(DenseQtable target, DenseQtable source, long targetSynced,
+            long sourceSynced) {
+        int width = Math.max(target.width(), source.width());
+        int targetOwner = target.getOwner();
+        long entries = 0;
 
-                if (nextHop.equals(target.getOwnerId())) continue;
+        // 1. tujuan yang barisnya dialokasikan di salah satu tabel dan berubah sejak sinkronisasi terakhir
+        for (int state = 0; state < width; state++) {
+            if (state == targetOwner || !source.hasState(state)) continue;
+            if (!source.isAllocated(state) && !target.isAllocated(state)) continue;
+            if (target.rowVersion(state) <= targetSynced && source.rowVersion(state) <= sourceSynced) continue;
+            // baris default dialokasikan agar perubahan default di bawah tidak mengubahnya
+            if (target.isDefaultRow(state)) target.row(state);
+            if (source.isDefaultRow(state)) source.row(state);
+            for (int nextHop = 0; nextHop < width; nextHop++) {
+                if (syncEntry(target, source, state, nextHop)) entries++;
+            }
+        }
 
-                if (target.hasAction(state, nextHop)) {
-                    double targetQ = target.getQvalue(state, nextHop);
-                    if (targetQ != 0.0 && sourceQ != 0.0) {
-                        if (targetQ < sourceQ) {
-                            target.updateQvalue(state, nextHop, sourceQ);
-                        } else if (targetQ > sourceQ) {
-                            source.updateQvalue(state, nextHop, targetQ);
-                        }
+        // 2. tujuan yang memakai baris default di kedua tabel
+        if (target.defaultsVersion() <= targetSynced && source.defaultsVersion() <= sourceSynced) return entries;
+        boolean sharedDefaults = false;
+        for (int state = 0; state < width && !sharedDefaults; state++) {
+            sharedDefaults = target.isDefaultRow(state) && source.isDefaultRow(state);
+        }
+        if (!sharedDefaults) return entries;
+
+        boolean[] raiseTarget = new boolean[width];
+        boolean[] raiseSource = new boolean[width];
+        boolean changes = false;
+        for (int nextHop = 0; nextHop < width; nextHop++) {
+            if (nextHop == targetOwner) continue;
+            double targetQ = nextHop < target.width() ? target.getDefault(nextHop) : DenseQtable.NONE;
+            double sourceQ = nextHop < source.width() ? source.getDefault(nextHop) : DenseQtable.NONE;
+            if (!Double.isNaN(sourceQ)) entries++;
+            if (Double.isNaN(targetQ) || Double.isNaN(sourceQ) || targetQ == 0.0 || sourceQ == 0.0) {
+                continue;
+            }
+            raiseTarget[nextHop] = targetQ < sourceQ;
+            raiseSource[nextHop] = targetQ > sourceQ;
+            changes |= targetQ != sourceQ;
+        }
+        if (!changes) return entries;
+
+        // baris default yang bukan milik kedua tabel tidak boleh ikut berubah
+        for (int state = 0; state < width; state++) {
+            boolean targetDefault = target.isDefaultRow(state);
+            boolean sourceDefault = source.isDefaultRow(state);
+            if (targetDefault && !sourceDefault) target.row(state);
+            if (sourceDefault && !targetDefault) source.row(state);
+        }
+        for (int nextHop = 0; nextHop < width; nextHop++) {
+            if (raiseTarget[nextHop]) {
+                target.setDefault(nextHop, source.getDefault(nextHop));
+            } else if (raiseSource[nextHop]) {
+                source.setDefault(nextHop, target.getDefault(nextHop));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Sinkronisasi antara tabel dengan penyimpanan berbeda (mode Q-table host berbeda) melalui salinan
+     * aksi source; lebih lambat dan selalu penuh, tetapi hanya dipakai jika grup host memakai mode
+     * yang berbeda.
+     * @return jumlah entri source yang dibandingkan.
+     */
+    private static long syncMixedEntries(Qtable target, Qtable source) {
+        int targetOwner = target.getOwner();
+        long entries = 0;
+        for (String state : source.getAllDestinations()) {
+            int dest = Integer.parseInt(state);
+            if (dest == targetOwner) continue;
+            for (Map.Entry<String, Double> entry : source.getActionMap(state).entrySet()) {
+                int nextHop = Integer.parseInt(entry.getKey());
+                if (nextHop == targetOwner) continue;
+                entries++;
+                if (!target.hasAction(dest, nextHop)) continue;
+                double targetQ = target.getQvalue(dest, nextHop);
+                double sourceQ = entry.getValue();
+                if (targetQ != 0.0 && sourceQ != 0.0) {
+                    if (targetQ < sourceQ) {
+                        target.updateQvalue(dest, nextHop, sourceQ);
+                    } else if (targetQ > sourceQ) {
+                        source.updateQvalue(dest, nextHop, targetQ);
                     }
                 }
             }
         }
+        return entries;
+    }
+
+    /**
+     * Sinkronisasi satu entri (state, nextHop) antara dua Q-table.
+     * @return true jika entri ada di source (dikirim ke target).
+     */
+    private static boolean syncEntry(DenseQtable target, DenseQtable source, int state, int nextHop) {
+        if (nextHop == target.getOwner()) return false;
+        double sourceQ = source.value(state, nextHop);
+        if (Double.isNaN(sourceQ)) return false;
+        double targetQ = target.value(state, nextHop);
+        if (Double.isNaN(targetQ)) return true;
+        if (targetQ != 0.0 && sourceQ != 0.0) {
+            if (targetQ < sourceQ) {
+                target.updateQvalue(state, nextHop, sourceQ);
+            } else if (targetQ > sourceQ) {
+                source.updateQvalue(state, nextHop, targetQ);
+            }
+        }
+        return true;
     }
 }
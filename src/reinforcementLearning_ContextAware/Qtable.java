@@ -3,29 +3,47 @@ package reinforcementLearning_ContextAware;
 import routing.contextAware.ENS.EncounteredNodeSet;
 
 import java.io.FileWriter;
+import java.io.Serializable;
 import java.util.*;
 import java.io.IOException;
 
 /**
  * Kelas Qtable menyimpan dan mengelola nilai Q-learning untuk setiap kombinasi tujuan (destination) dan
- * tetangga (nextHop) dalam bentuk Map bersarang. Q-value menunjukkan nilai estimasi reward untuk memilih
- * nextHop tertentu guna mencapai destination.
+ * tetangga (nextHop). Q-value menunjukkan nilai estimasi reward untuk memilih nextHop tertentu guna
+ * mencapai destination.
+ * <p>
+ * Kelas ini adalah dasar bersama untuk cara penyimpanan tabel: {@link DenseQtable} (satu baris penuh per
+ * tujuan) dan {@link SparseQtable} (K nextHop terbaik per tujuan). Setiap implementasi memiliki
+ * penyimpanannya sendiri; kelas ini hanya menyimpan pemilik, versi tabel, dan catatan sinkronisasi.
+ * <p>
+ * Setiap perubahan baris diberi nomor versi tabel, dan tabel mencatat versinya pada akhir sinkronisasi
+ * terakhir dengan setiap peer. Sinkronisasi berikutnya dengan peer yang sama cukup memeriksa baris yang
+ * berubah sejak itu di salah satu tabel, karena baris lain sudah sama.
  */
-public class Qtable {
+public abstract class Qtable implements Serializable {
+    private static final long serialVersionUID = 1L;
 
     // ID dari node pemilik Q-table ini
     private String ownerId;
+    // alamat node pemilik
+    private final int owner;
 
-    // Struktur Q-table: Map<destinationId, Map<nextHopId, Q-value>>
-    private Map<String, Map<String, Double>> qtable;
+    // versi tabel, naik setiap ada perubahan nilai
+    private long version;
+    // versi tabel pada akhir sinkronisasi terakhir per alamat peer
+    private long[] syncedVersions;
+    // jumlah sinkronisasi dan entri yang diterima dari peer
+    private long syncs;
+    private long syncedEntries;
 
     /**
      * Konstruktor Qtable.
-     * @param ownerId ID dari node yang memiliki Q-table ini.
+     * @param ownerId ID dari node yang memiliki Q-table ini (alamat host).
      */
-    public Qtable(String ownerId) {
+    protected Qtable(String ownerId) {
         this.ownerId = ownerId;
-        this.qtable = new HashMap<>();
+        this.owner = Integer.parseInt(ownerId);
+        this.syncedVersions = new long[0];
     }
 
     /**
@@ -35,65 +53,74 @@ public class Qtable {
         return ownerId;
     }
 
+    /**
+     * Mengembalikan alamat pemilik Q-table.
+     */
+    public int getOwner() {
+        return owner;
+    }
+
     /**
      * Inisialisasi semua kombinasi tujuan dan nextHop (selain owner) ke nilai Q = 0.0.
      * @param allNodeIds Set berisi semua ID node dalam jaringan.
      */
-    public void initializeAllQvalues(Set<String> allNodeIds) {
-        for (String destinationId : allNodeIds) {
-            if (destinationId.equals(ownerId)) continue;
-            for (String nextHop : allNodeIds) {
-                if (nextHop.equals(ownerId)) continue;
-                updateQvalue(destinationId, nextHop, 0.0);
-            }
-        }
-    }
+    public abstract void initializeAllQvalues(Set<String> allNodeIds);
 
     /**
      * Mengambil nilai Q dari kombinasi (destinationId, nextHop).
      * @return Q-value atau 0.0 jika belum diinisialisasi.
      */
     public double getQvalue(String destinationId, String nextHop) {
-        Map<String, Double> nextHopMap = qtable.get(destinationId);
-        if (nextHopMap == null) return 0.0;
-        return nextHopMap.getOrDefault(nextHop, 0.0);
+        return getQvalue(Integer.parseInt(destinationId), Integer.parseInt(nextHop));
     }
 
+    /**
+     * Mengambil nilai Q dari kombinasi (destination, nextHop) berdasarkan alamat host.
+     * @return Q-value atau 0.0 jika belum diinisialisasi.
+     */
+    public abstract double getQvalue(int destination, int nextHop);
+
     /**
      * Memperbarui nilai Q untuk (destinationId, nextHop). Nilai dibatasi maksimal 1.0.
      */
     public void updateQvalue(String destinationId, String nextHop, double qvalue) {
-        qvalue = Math.min(qvalue, 1.0);
-        qtable.computeIfAbsent(destinationId, k -> new HashMap<>()).put(nextHop, qvalue);
+        updateQvalue(Integer.parseInt(destinationId), Integer.parseInt(nextHop), qvalue);
     }
 
+    /**
+     * Memperbarui nilai Q untuk (destination, nextHop) berdasarkan alamat host.
+     * Nilai dibatasi maksimal 1.0.
+     */
+    public abstract void updateQvalue(int destination, int nextHop, double qvalue);
+
     /**
      * Mengecek apakah kombinasi (destinationId, nextHop) sudah ada dalam Q-table.
      */
     public boolean hasAction(String destinationId, String nextHop) {
-        return qtable.containsKey(destinationId) && qtable.get(destinationId).containsKey(nextHop);
+        return hasAction(Integer.parseInt(destinationId), Integer.parseInt(nextHop));
     }
 
     /**
-     * Mengambil semua ID tujuan (state) yang telah disimpan dalam Q-table.
+     * Mengecek apakah kombinasi (destination, nextHop) sudah ada dalam Q-table.
      */
-    public Set<String> getAllDestinations() {
-        return qtable.keySet();
-    }
+    public abstract boolean hasAction(int destination, int nextHop);
 
     /**
-     * Mengembalikan seluruh struktur Q-table.
+     * Mengambil semua ID tujuan (state) yang telah disimpan dalam Q-table (salinan).
      */
-    public Map<String, Map<String, Double>> getAllQvalues() {
-        return this.qtable;
-    }
+    public abstract Set<String> getAllDestinations();
 
     /**
-     * Mengambil map aksi (nextHop) dan Q-value-nya untuk sebuah tujuan tertentu.
+     * Mengembalikan salinan seluruh Q-table dalam bentuk Map bersarang
+     * (Map&lt;destinationId, Map&lt;nextHopId, Q-value&gt;&gt;).
      */
-    public synchronized Map<String, Double> getActionMap(String destination) {
-        return qtable.get(destination);
-    }
+    public abstract Map<String, Map<String, Double>> getAllQvalues();
+
+    /**
+     * Mengambil salinan map aksi (nextHop) dan Q-value-nya untuk sebuah tujuan tertentu
+     * (null jika tujuan tidak ada).
+     */
+    public abstract Map<String, Double> getActionMap(String destination);
 
     /**
      * Menghitung Q-value maksimum ke tujuan tertentu dari semua node yang pernah ditemui (ENS).
@@ -102,19 +129,81 @@ public class Qtable {
      * @return Q-value maksimum atau 0.0 jika belum ada.
      */
     public double getMaxQvalue(String destinationId, EncounteredNodeSet ensNeighbor) {
+        return getMaxQvalue(Integer.parseInt(destinationId), ensNeighbor);
+    }
+
+    /**
+     * Menghitung Q-value maksimum ke tujuan (alamat host) dari semua node yang pernah ditemui (ENS).
+     * @return Q-value maksimum atau 0.0 jika belum ada.
+     */
+    public double getMaxQvalue(int destination, EncounteredNodeSet ensNeighbor) {
         double maxQvalue = Double.NEGATIVE_INFINITY;
-        for (String y : ensNeighbor.getAllNodeIds()) {
-            double q = getQvalue(destinationId, y);
+        for (int i = 0; i < ensNeighbor.size(); i++) {
+            double q = getQvalue(destination, ensNeighbor.getNodeAddress(i));
             maxQvalue = Math.max(maxQvalue, q);
         }
         return (maxQvalue == Double.NEGATIVE_INFINITY) ? 0.0 : maxQvalue;
     }
 
+    /**
+     * Menurunkan semua Q-value melalui satu nextHop: q = max(q * decayFactor, minQ).
+     * Versi baris hanya naik jika nilainya berubah.
+     * @return true jika ada Q-value nextHop di tabel yang diturunkan.
+     */
+    abstract boolean ageNextHop(int nextHop, double decayFactor, double minQ);
+
+    /**
+     * Jumlah nilai Q yang disimpan di memori.
+     */
+    public abstract long getStoredEntries();
+
+    /**
+     * Mengembalikan jumlah sinkronisasi Q-table yang sudah dilakukan.
+     */
+    public long getSyncCount() {
+        return syncs;
+    }
+
+    /**
+     * Mengembalikan jumlah entri yang diterima dari peer pada semua sinkronisasi.
+     */
+    public long getSyncedEntries() {
+        return syncedEntries;
+    }
+
+    // ===================== akses internal untuk sinkronisasi ===================== //
+
+    /**
+     * Nomor versi berikutnya untuk baris yang berubah.
+     */
+    long nextVersion() {
+        return ++version;
+    }
+
+    /**
+     * Versi tabel pada akhir sinkronisasi terakhir dengan peer (0 jika belum pernah).
+     */
+    long getSyncedVersion(int peer) {
+        return peer < syncedVersions.length ? syncedVersions[peer] : 0;
+    }
+
+    /**
+     * Mencatat akhir sinkronisasi dengan peer dan jumlah entri yang diterima darinya.
+     */
+    void synced(int peer, long entries) {
+        if (peer >= syncedVersions.length) {
+            syncedVersions = Arrays.copyOf(syncedVersions, Math.max(peer + 1, 2 * syncedVersions.length));
+        }
+        syncedVersions[peer] = version;
+        syncs++;
+        syncedEntries += entries;
+    }
+
     /**
      * Representasi string dari Q-table.
      */
     public String toString() {
-        return "Qtable milik" + ownerId + ":\n" + qtable.toString();
+        return "Qtable milik" + ownerId + ":\n" + getAllQvalues().toString();
     }
 
     /**
@@ -125,6 +214,7 @@ public class Qtable {
     public void exportToCSV(String filePath, boolean append) {
         System.out.println("Menulis ke file: " + filePath);
         int columnWidth = 12;
+        Map<String, Map<String, Double>> qtable = getAllQvalues();
         try (FileWriter writer = new FileWriter(filePath, append)) {
             Set<String> allNextHops = new TreeSet<>();
             for (Map<String, Double> map : qtable.values()) {
@@ -0,0 +1,409 @@
+package reinforcementLearning_ContextAware;
+
+import routing.contextAware.ENS.EncounteredNodeSet;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * Q-table jarang (sparse) dengan memori terbatas per host. Untuk setiap tujuan hanya K nextHop dengan
+ * Q-value terbesar yang disimpan, terurut menurun; nextHop lain memakai nilai default {@value #DEFAULT_Q}.
+ * Jika baris sudah penuh, nilai baru menggantikan entri terkecil hanya jika lebih besar darinya (eviction).
+ * Karena baris terurut, {@link #getMaxQvalue(int, EncounteredNodeSet)} berhenti pada entri pertama yang
+ * ada di ENS dan tidak bergantung pada jumlah node.
+ * <p>
+ * Berbeda dengan {@link DenseQtable}, tujuan yang ada di tabel mempunyai aksi untuk semua nextHop selain owner.
+ * Tujuan yang diinisialisasi tetapi belum ditulis memakai satu baris default bersama, sehingga memori per
+ * host sebanding dengan jumlah tujuan yang pernah ditulis dikali K.
+ */
+public class SparseQtable extends Qtable {
+    private static final long serialVersionUID = 1L;
+
+    // Q-value nextHop yang tidak disimpan di baris
+    static final double DEFAULT_Q = 0.0;
+
+    // jumlah maksimum nextHop yang disimpan per tujuan
+    private final int topK;
+    // baris per alamat tujuan (null = belum dialokasikan)
+    private Row[] rows;
+    // tujuan yang diinisialisasi (memakai defaultRow selama barisnya belum dialokasikan)
+    private boolean[] known;
+    // baris bersama untuk tujuan yang diinisialisasi tetapi belum dialokasikan
+    private Row defaultRow;
+    // jumlah tujuan yang memakai defaultRow
+    private int defaultRows;
+
+    /**
+     * Konstruktor SparseQtable.
+     * @param ownerId ID dari node yang memiliki Q-table ini (alamat host).
+     * @param topK Jumlah maksimum nextHop yang disimpan per tujuan (minimal 1).
+     */
+    public SparseQtable(String ownerId, int topK) {
+        super(ownerId);
+        if (topK < 1) {
+            throw new IllegalArgumentException("topK harus minimal 1: " + topK);
+        }
+        this.topK = topK;
+        this.rows = new Row[0];
+        this.known = new boolean[0];
+        this.defaultRow = new Row(topK);
+    }
+
+    /**
+     * Mengembalikan jumlah maksimum nextHop yang disimpan per tujuan.
+     */
+    public int getTopK() {
+        return topK;
+    }
+
+    /**
+     * Inisialisasi semua tujuan (selain owner) dengan Q = 0.0 untuk semua nextHop.
+     * Baris yang sudah dialokasikan dikosongkan; tujuan lain memakai baris default.
+     */
+    @Override
+    public void initializeAllQvalues(Set<String> allNodeIds) {
+        boolean newDefaults = false;
+        for (String id : allNodeIds) {
+            int address = Integer.parseInt(id);
+            if (address == getOwner()) continue;
+            ensureCapacity(address);
+            if (rows[address] != null) {
+                rows[address].size = 0;
+                rows[address].version = nextVersion();
+            } else if (!known[address]) {
+                known[address] = true;
+                defaultRows++;
+                newDefaults = true;
+            }
+        }
+        if (newDefaults) defaultRow.version = nextVersion();
+    }
+
+    @Override
+    public double getQvalue(int destination, int nextHop) {
+        Row row = rowOf(destination);
+        return row == null ? 0.0 : row.get(nextHop);
+    }
+
+    @Override
+    public void updateQvalue(int destination, int nextHop, double qvalue) {
+        Row row = writableRow(destination);
+        row.put(nextHop, Math.min(qvalue, 1.0));
+        row.version = nextVersion();
+    }
+
+    @Override
+    public boolean hasAction(int destination, int nextHop) {
+        Row row = rowOf(destination);
+        if (row == null || nextHop < 0) return false;
+        return nextHop != getOwner() || row.indexOf(nextHop) >= 0;
+    }
+
+    @Override
+    public Set<String> getAllDestinations() {
+        Set<String> destinations = new HashSet<>();
+        for (int dest = 0; dest < rows.length; dest++) {
+            if (rowOf(dest) != null) destinations.add(String.valueOf(dest));
+        }
+        return destinations;
+    }
+
+    /**
+     * Mengembalikan salinan Q-table; setiap tujuan hanya berisi nextHop yang disimpan.
+     */
+    @Override
+    public Map<String, Map<String, Double>> getAllQvalues() {
+        Map<String, Map<String, Double>> all = new HashMap<>();
+        for (int dest = 0; dest < rows.length; dest++) {
+            Row row = rowOf(dest);
+            if (row != null) all.put(String.valueOf(dest), row.toMap());
+        }
+        return all;
+    }
+
+    @Override
+    public synchronized Map<String, Double> getActionMap(String destination) {
+        Row row = rowOf(Integer.parseInt(destination));
+        return row == null ? null : row.toMap();
+    }
+
+    /**
+     * Q-value maksimum ke tujuan dari node di ENS. Baris terurut menurun, jadi entri pertama yang ada
+     * di ENS adalah maksimumnya; node ENS yang tidak disimpan bernilai default (Q tidak pernah negatif).
+     */
+    @Override
+    public double getMaxQvalue(int destination, EncounteredNodeSet ensNeighbor) {
+        Row row = rowOf(destination);
+        if (row == null) return 0.0;
+        for (int i = 0; i < row.size; i++) {
+            if (ensNeighbor.containsNode(row.hops[i])) {
+                return row.values[i];
+            }
+        }
+        return DEFAULT_Q;
+    }
+
+    /**
+     * Menurunkan Q-value nextHop di semua baris seperti tabel padat. Q-value yang tidak disimpan (nol)
+     * menjadi minQ jika masih muat di baris.
+     * @return true jika ada baris yang menyimpan Q-value nextHop setelah aging.
+     */
+    @Override
+    boolean ageNextHop(int nextHop, double decayFactor, double minQ) {
+        if (nextHop == getOwner()) return false;
+        boolean updated = false;
+        for (Row row : rows) {
+            if (row != null) {
+                updated |= ageEntry(row, nextHop, decayFactor, minQ);
+            }
+        }
+        if (defaultRows > 0) {
+            updated |= ageEntry(defaultRow, nextHop, decayFactor, minQ);
+        }
+        return updated;
+    }
+
+    /**
+     * Menurunkan Q-value nextHop di satu baris; versi baris hanya naik jika barisnya berubah.
+     * @return true jika baris menyimpan Q-value nextHop setelah aging.
+     */
+    private boolean ageEntry(Row row, int nextHop, double decayFactor, double minQ) {
+        double q = row.get(nextHop);
+        double agedQ = Math.min(Math.max(q * decayFactor, minQ), 1.0);
+        if (agedQ != q) {
+            row.put(nextHop, agedQ);
+            if (row.get(nextHop) != q) row.version = nextVersion();
+        }
+        return row.indexOf(nextHop) >= 0;
+    }
+
+    @Override
+    public long getStoredEntries() {
+        long entries = topK;
+        for (Row row : rows) {
+            if (row != null) entries += topK;
+        }
+        return entries;
+    }
+
+    /**
+     * Sinkronisasi satu arah dari source ke target, sama seperti tabel padat: untuk aksi yang bernilai
+     * bukan nol di kedua tabel, nilai yang lebih kecil diganti dengan yang lebih besar. Nilai yang tidak
+     * disimpan adalah nol, jadi cukup entri yang disimpan di kedua baris yang dibandingkan. Baris yang
+     * tidak berubah di kedua tabel sejak sinkronisasi terakhir dilewati.
+     * @return jumlah entri source yang dibandingkan (dikirim ke target).
+     */
+    static long syncQEntries(SparseQtable target, SparseQtable source, long targetSynced, long sourceSynced) {
+        int width = Math.max(target.rows.length, source.rows.length);
+        int targetOwner = target.getOwner();
+        long entries = 0;
+
+        // 1. tujuan yang barisnya dialokasikan di salah satu tabel dan berubah sejak sinkronisasi terakhir
+        for (int state = 0; state < width; state++) {
+            if (state == targetOwner || source.rowOf(state) == null || target.rowOf(state) == null) continue;
+            if (!source.isAllocatedRow(state) && !target.isAllocatedRow(state)) continue;
+            if (target.rowVersion(state) <= targetSynced && source.rowVersion(state) <= sourceSynced) continue;
+            entries += syncRows(target, target.writableRow(state), source, source.writableRow(state));
+        }
+
+        // 2. tujuan yang memakai baris default di kedua tabel
+        if (target.defaultRow.version <= targetSynced && source.defaultRow.version <= sourceSynced) return entries;
+        boolean sharedDefaults = false;
+        for (int state = 0; state < width && !sharedDefaults; state++) {
+            sharedDefaults = target.usesDefaultRow(state) && source.usesDefaultRow(state);
+        }
+        if (!sharedDefaults) return entries;
+        if (!differ(target.defaultRow, source.defaultRow, targetOwner)) return entries + source.defaultRow.size;
+
+        // baris default yang bukan milik kedua tabel tidak boleh ikut berubah
+        for (int state = 0; state < width; state++) {
+            boolean targetDefault = target.usesDefaultRow(state);
+            boolean sourceDefault = source.usesDefaultRow(state);
+            if (targetDefault && !sourceDefault) target.writableRow(state);
+            if (sourceDefault && !targetDefault) source.writableRow(state);
+        }
+        return entries + syncRows(target, target.defaultRow, source, source.defaultRow);
+    }
+
+    /**
+     * Menyamakan entri yang bernilai bukan nol di kedua baris ke nilai yang lebih besar.
+     * @return jumlah entri source yang dibandingkan.
+     */
+    private static long syncRows(SparseQtable target, Row targetRow, SparseQtable source, Row sourceRow) {
+        int targetOwner = target.getOwner();
+        int[] hops = Arrays.copyOf(sourceRow.hops, sourceRow.size);
+        double[] values = Arrays.copyOf(sourceRow.values, sourceRow.size);
+        long entries = 0;
+        for (int i = 0; i < hops.length; i++) {
+            if (hops[i] == targetOwner) continue;
+            entries++;
+            double targetQ = targetRow.get(hops[i]);
+            double sourceQ = values[i];
+            if (targetQ != 0.0 && sourceQ != 0.0) {
+                if (targetQ < sourceQ) {
+                    targetRow.put(hops[i], sourceQ);
+                    targetRow.version = target.nextVersion();
+                } else if (targetQ > sourceQ) {
+                    sourceRow.put(hops[i], targetQ);
+                    sourceRow.version = source.nextVersion();
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Apakah sinkronisasi kedua baris akan mengubah salah satunya.
+     */
+    private static boolean differ(Row target, Row source, int targetOwner) {
+        for (int i = 0; i < source.size; i++) {
+            if (source.hops[i] == targetOwner) continue;
+            double targetQ = target.get(source.hops[i]);
+            double sourceQ = source.values[i];
+            if (targetQ != 0.0 && sourceQ != 0.0 && targetQ != sourceQ) return true;
+        }
+        return false;
+    }
+
+    // ===================== akses baris ===================== //
+
+    /**
+     * Baris untuk dibaca: baris sendiri, baris default, atau null jika tujuan tidak ada.
+     */
+    private Row rowOf(int destination) {
+        if (destination < 0 || destination >= rows.length) return null;
+        if (rows[destination] != null) return rows[destination];
+        return known[destination] ? defaultRow : null;
+    }
+
+    /**
+     * Baris untuk ditulis, dialokasikan (dari baris default jika tujuan diinisialisasi) jika belum ada.
+     */
+    private Row writableRow(int destination) {
+        ensureCapacity(destination);
+        Row row = rows[destination];
+        if (row == null) {
+            if (known[destination]) {
+                row = new Row(defaultRow);
+                defaultRows--;
+            } else {
+                row = new Row(topK);
+            }
+            rows[destination] = row;
+        }
+        return row;
+    }
+
+    /**
+     * Versi perubahan terakhir baris tujuan (0 jika tujuan tidak ada).
+     */
+    long rowVersion(int destination) {
+        Row row = rowOf(destination);
+        return row == null ? 0 : row.version;
+    }
+
+    /**
+     * Versi perubahan terakhir baris default.
+     */
+    long defaultsVersion() {
+        return defaultRow.version;
+    }
+
+    private boolean isAllocatedRow(int destination) {
+        return destination < rows.length && rows[destination] != null;
+    }
+
+    private boolean usesDefaultRow(int destination) {
+        return destination < rows.length && known[destination] && rows[destination] == null;
+    }
+
+    private void ensureCapacity(int address) {
+        if (address < rows.length) return;
+        int newLength = Math.max(address + 1, 2 * rows.length);
+        rows = Arrays.copyOf(rows, newLength);
+        known = Arrays.copyOf(known, newLength);
+    }
+
+    /**
+     * Satu baris tujuan: paling banyak K pasangan (nextHop, Q-value) yang terurut menurun.
+     */
+    private static class Row implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        final int[] hops;
+        final double[] values;
+        int size;
+        // versi tabel saat baris terakhir berubah
+        long version;
+
+        Row(int capacity) {
+            this.hops = new int[capacity];
+            this.values = new double[capacity];
+        }
+
+        Row(Row other) {
+            this.hops = other.hops.clone();
+            this.values = other.values.clone();
+            this.size = other.size;
+            this.version = other.version;
+        }
+
+        int indexOf(int hop) {
+            for (int i = 0; i < size; i++) {
+                if (hops[i] == hop) return i;
+            }
+            return -1;
+        }
+
+        double get(int hop) {
+            int i = indexOf(hop);
+            return i < 0 ? DEFAULT_Q : values[i];
+        }
+
+        /**
+         * Menyimpan Q-value nextHop. Jika baris penuh, entri terkecil diganti hanya jika nilai baru
+         * lebih besar; jika tidak, nilai baru dibuang dan nextHop tetap memakai default.
+         */
+        void put(int hop, double qvalue) {
+            int i = indexOf(hop);
+            if (i < 0) {
+                if (qvalue <= DEFAULT_Q) return;
+                if (size < hops.length) {
+                    i = size++;
+                } else if (qvalue > values[size - 1]) {
+                    i = size - 1;
+                } else {
+                    return;
+                }
+                hops[i] = hop;
+            }
+            values[i] = qvalue;
+            // geser entri agar baris tetap terurut menurun
+            while (i > 0 && values[i - 1] < values[i]) {
+                swap(i - 1, i);
+                i--;
+            }
+            while (i < size - 1 && values[i + 1] > values[i]) {
+                swap(i, i + 1);
+                i++;
+            }
+        }
+
+        private void swap(int a, int b) {
+            int hop = hops[a];
+            hops[a] = hops[b];
+            hops[b] = hop;
+            double q = values[a];
+            values[a] = values[b];
+            values[b] = q;
+        }
+
+        Map<String, Double> toMap() {
+            Map<String, Double> actions = new HashMap<>();
+            for (int i = 0; i < size; i++) {
+                actions.put(String.valueOf(hops[i]), values[i]);
+            }
+            return actions;
+        }
+    }
+}
@@ -17,6 +17,7 @@ import routing.testContext.neighborInfo;
  * @author Pauwerfull
  */
 public class BufferCalculatorReport extends Report implements UpdateListener {
+    private static final long serialVersionUID = 1L;
 
     private double lastRecord = Double.MIN_VALUE;
     private final int interval;
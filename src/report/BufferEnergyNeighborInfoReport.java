@@ -20,6 +20,7 @@ import routing.EnergyAwareRouter;
  * @author Pauwerfull
  */
 public class BufferEnergyNeighborInfoReport extends Report implements UpdateListener {
+    private static final long serialVersionUID = 1L;
 
     private double lastRecord = Double.MIN_VALUE;
     private final int interval;
@@ -18,6 +18,8 @@ import routing.testContext.neighborInfo;
  * @author Pauwerfull
  */
 public class BufferNeighborInfoReport extends Report implements UpdateListener {
+    private static final long serialVersionUID = 1L;
+
     @Override
     public void updated(List<DTNHost> hosts) {
         if (isWarmup()) {
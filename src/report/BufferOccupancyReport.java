@@ -24,6 +24,8 @@ import core.SimClock;
 import core.UpdateListener;
 
 public class BufferOccupancyReport extends Report implements UpdateListener {
+	private static final long serialVersionUID = 1L;
+
 	/**
 	 * Record occupancy every nth second -setting id ({@value}). 
 	 * Defines the interval how often (seconds) a new snapshot of buffer
@@ -20,6 +20,7 @@ import routing.MessageRouter;
 import routing.RoutingDecisionEngine;
 
 public class ClosenessNodeTiapWaktuReport extends Report {
+    private static final long serialVersionUID = 1L;
 
     private Map<DTNHost, List<Double>> closenessCount;
     private Map<DTNHost, List<Double>> encounterData;
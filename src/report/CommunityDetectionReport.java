@@ -24,6 +24,7 @@ import routing.community.CommunityDetectionEngine;
  * @author PJ Dillon, University of Pittsburgh
  */
 public class CommunityDetectionReport extends Report {
+    private static final long serialVersionUID = 1L;
 
     public CommunityDetectionReport() {
         init();
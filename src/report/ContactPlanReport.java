@@ -0,0 +1,94 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import input.ContactPlanReader;
+import input.ContactPlanWriter;
+
+import java.io.File;
+
+import core.DTNHost;
+import core.LinkFeed;
+import core.LinkListener;
+import core.NetworkInterface;
+import core.Settings;
+
+/**
+ * Records all link up and down changes of the interfaces to a compiled
+ * contact plan file that can be replayed with {@link input.ContactPlanQueue}.
+ * The plan is written to the report's output file with the
+ * {@link ContactPlanReader#PLAN_EXT} extension instead of
+ * {@value Report#OUT_SUFFIX}. All changes are recorded, also during the
+ * warm up period, so that the replayed connectivity is complete.
+ */
+public class ContactPlanReport extends Report implements LinkListener {
+	private static final long serialVersionUID = 1L;
+
+	/** Time resolution -setting id ({@value}). The times of the link
+	 * changes are rounded to multiples of this (seconds). Default is
+	 * {@value #DEF_RESOLUTION}. */
+	public static final String RESOLUTION_S = "timeResolution";
+	/** Default time resolution */
+	public static final double DEF_RESOLUTION = 0.001;
+
+	private final ContactPlanWriter plan;
+
+	/**
+	 * Constructor.
+	 */
+	public ContactPlanReport() {
+		Settings s = getSettings();
+		double resolution = DEF_RESOLUTION;
+		if (s.contains(RESOLUTION_S)) {
+			resolution = s.getDouble(RESOLUTION_S);
+		}
+
+		String planFile = getOutFileName();
+		if (planFile.endsWith(OUT_SUFFIX)) {
+			planFile = planFile.substring(0,
+					planFile.length() - OUT_SUFFIX.length());
+		}
+		this.plan = new ContactPlanWriter(new File(planFile +
+				ContactPlanReader.PLAN_EXT), resolution);
+	}
+
+	public void interfacesConnected(NetworkInterface from,
+			NetworkInterface to) {
+		add(true, from, to);
+	}
+
+	public void interfacesDisconnected(NetworkInterface from,
+			NetworkInterface to) {
+		add(false, from, to);
+	}
+
+	/**
+	 * Not used; link listeners are informed about the interfaces
+	 */
+	public void hostsConnected(DTNHost host1, DTNHost host2) {}
+
+	/**
+	 * Not used; link listeners are informed about the interfaces
+	 */
+	public void hostsDisconnected(DTNHost host1, DTNHost host2) {}
+
+	/**
+	 * Adds a link change to the plan
+	 * @param up True for a connection up, false for down
+	 * @param from Interface that initiated the change
+	 * @param to Interface at the other end
+	 */
+	private void add(boolean up, NetworkInterface from, NetworkInterface to) {
+		plan.add(getSimTime(), up, from.getHost().getAddress(),
+				LinkFeed.indexOf(from), to.getHost().getAddress(),
+				LinkFeed.indexOf(to));
+	}
+
+	@Override
+	public void done() {
+		plan.close();
+		super.done();
+	}
+}
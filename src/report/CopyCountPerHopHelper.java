@@ -5,11 +5,14 @@
  */
 package report;
 
+import java.io.Serializable;
+
 /**
  *
  * @author Afra Rian
  */
-public class CopyCountPerHopHelper {
+public class CopyCountPerHopHelper implements Serializable {
+    private static final long serialVersionUID = 1L;
     
     public int hopCount;
     
@@ -18,6 +18,8 @@ import fi.tkk.netlab.dtn.ecla.CLAParser;
  * @author teemuk
  */
 public class DTN2Reporter extends Report implements MessageListener {
+	private static final long serialVersionUID = 1L;
+
 	/**
 	 * Creates a new reporter object.
 	 */
@@ -17,6 +17,7 @@ import java.util.Map;
 
 
 public class LatencyPerContactReport_1 extends Report implements MessageListener, ConnectionListener {
+    private static final long serialVersionUID = 1L;
 
     public static final String TOTAL_CONTACT_INTERVAL = "perTotalContact";
     public static final int DEFAULT_CONTACT_COUNT = 500;
@@ -20,6 +20,7 @@ import java.util.Map;
  * @author BramChandra
  */
 public class MessageDeleteReport extends Report implements MessageListener {
+    private static final long serialVersionUID = 1L;
 
     private Map<DTNHost, Integer> deleteMessage;
     private int nrofDropped;
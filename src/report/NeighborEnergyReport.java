@@ -18,6 +18,8 @@ import core.UpdateListener;
  * @author LENOVO
  */
 public class NeighborEnergyReport extends Report implements UpdateListener{
+    private static final long serialVersionUID = 1L;
+
     public static final String GRANULARITY = "granularity";
     protected final int granularity;
     protected double lastUpdate;
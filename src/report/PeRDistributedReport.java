@@ -21,6 +21,7 @@ import java.util.Map;
  * @author LENOVO
  */
 public class PeRDistributedReport extends Report {
+    private static final long serialVersionUID = 1L;
 
     private final Map<DTNHost, Double> nodeRanks;
 
@@ -22,6 +22,7 @@ import java.util.Map;
  * @author Pauwerfull
  */
 public class PeopleRankDistributedReport extends Report {
+    private static final long serialVersionUID = 1L;
 
     private final Map<DTNHost, Double> nodeRanks;
     private final List<DTNHost> nodeListSelfish;
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.util.List;
+
+import reinforcementLearning_ContextAware.Qtable;
+import routing.contextAware.ContextAwareRLRouter;
+import core.ConnectionListener;
+import core.DTNHost;
+import core.SimScenario;
+
+/**
+ * Reports how many Q-table entries the hosts with ContextAwareRLRouter
+ * exchange in the Q-table synchronizations: per host and in total, per
+ * synchronization and per contact. The synchronizations are delta-based,
+ * so only the rows changed since the previous synchronization of the same
+ * hosts are exchanged.
+ */
+public class QtableSyncReport extends Report implements ConnectionListener {
+	private static final long serialVersionUID = 1L;
+
+	private int nrofContacts;
+
+	public QtableSyncReport() {
+		init();
+	}
+
+	@Override
+	protected void init() {
+		super.init();
+		this.nrofContacts = 0;
+	}
+
+	public void hostsConnected(DTNHost host1, DTNHost host2) {
+		if (isWarmup()) {
+			return;
+		}
+		nrofContacts++;
+	}
+
+	public void hostsDisconnected(DTNHost host1, DTNHost host2) {}
+
+	@Override
+	public void done() {
+		List<DTNHost> hosts = SimScenario.getInstance().getHosts();
+		long syncs = 0;
+		long entries = 0;
+
+		write("host\tsyncs\tentries\tentries/sync");
+		for (DTNHost host : hosts) {
+			if (!(host.getRouter() instanceof ContextAwareRLRouter)) {
+				continue;
+			}
+			Qtable qtable = ((ContextAwareRLRouter)host.getRouter()).getQtable();
+			write(host + "\t" + qtable.getSyncCount() + "\t" +
+					qtable.getSyncedEntries() + "\t" +
+					format(ratio(qtable.getSyncedEntries(),
+							qtable.getSyncCount())));
+			syncs += qtable.getSyncCount();
+			entries += qtable.getSyncedEntries();
+		}
+
+		/* every synchronization is counted by both of the hosts */
+		write("\ncontacts: " + nrofContacts);
+		write("syncs: " + syncs / 2);
+		write("entries: " + entries);
+		write("entries_per_sync: " + format(ratio(entries, syncs / 2)));
+		write("entries_per_contact: " +
+				format(ratio(entries, nrofContacts)));
+		super.done();
+	}
+
+	private double ratio(long entries, long count) {
+		return count == 0 ? 0 : (double)entries / count;
+	}
+}
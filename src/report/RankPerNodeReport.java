@@ -20,6 +20,7 @@ import routing.RoutingDecisionEngine;
  * @author Afra Rian
  */
 public class RankPerNodeReport extends Report {
+    private static final long serialVersionUID = 1L;
 
     private List<Integer> nodeListSelfish;
     private final Map<String, Integer> nodeRank;
@@ -7,7 +7,11 @@ package report;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
@@ -26,7 +30,9 @@ import core.SimScenario;
  * the reports implement warm up feature ({@link #WARMUP_S}) but the
  * implementations are always report specific.
  */
-public abstract class Report {
+public abstract class Report implements Serializable {
+	private static final long serialVersionUID = 1L;
+
 	/** Name space of the settings that are common to all reports ({@value}). */ 
 	public static final String REPORT_NS = "Report";
 	/** The interval (simulated seconds) of creating new settings files 
@@ -54,7 +60,7 @@ public abstract class Report {
 	/** Suffix for reports that are created on n second intervals */
 	public static final String INTERVALLED_FORMAT ="%04d" + OUT_SUFFIX; 
 	/** The print writer used to write output. See {@link #write(String)} */
-	protected PrintWriter out;
+	protected transient PrintWriter out;
 	/** String value for values that could not be calculated */
 	public static final String NAN = "NaN";
 	private String prefix = "";
@@ -68,6 +74,10 @@ public abstract class Report {
 	private double lastReportTime;
 	private String outFileName;
 	private final String scenarioName;
+	/** name of the file that out writes to (null if not opened yet) */
+	private String currentOutFile;
+	/** length of the current output file when the report was serialized */
+	private long currentOutLength;
 	
 	/**
 	 * Constructor.
@@ -195,6 +205,43 @@ public abstract class Report {
 			throw new SimError("Couldn't open file '" + outFileName + 
 					"' for report output\n" + e.getMessage(), e);
 		}		
+		this.currentOutFile = outFileName;
+	}
+
+	/**
+	 * Flushes the output and stores the length of the output file so that
+	 * the output can be continued from the same point after the report 
+	 * has been read back.
+	 */
+	private void writeObject(ObjectOutputStream oos) throws IOException {
+		if (this.out != null) {
+			this.out.flush();
+			this.currentOutLength = new File(this.currentOutFile).length();
+		}
+		oos.defaultWriteObject();
+	}
+
+	/**
+	 * Re-opens the output file (if one was open when the report was
+	 * serialized). Anything written to the file after serialization is 
+	 * removed and the output continues from that point.
+	 */
+	private void readObject(ObjectInputStream ois) 
+			throws IOException, ClassNotFoundException {
+		ois.defaultReadObject();
+		if (this.currentOutFile == null) {
+			return;
+		}
+
+		RandomAccessFile file = new RandomAccessFile(this.currentOutFile, 
+				"rw");
+		try {
+			file.setLength(this.currentOutLength);
+		}
+		finally {
+			file.close();
+		}
+		this.out = new PrintWriter(new FileWriter(this.currentOutFile, true));
 	}
 	
 	/**
@@ -254,6 +301,15 @@ public abstract class Report {
 		this.prefix = txt;
 	}
 	
+	/**
+	 * Returns the name of the output file (without the number suffix of
+	 * intervalled reports)
+	 * @return the name of the output file
+	 */
+	protected String getOutFileName() {
+		return this.outFileName;
+	}
+
 	/**
 	 * Returns the name of the scenario as read from the settings
 	 * @return the name of the scenario as read from the settings
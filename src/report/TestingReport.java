@@ -33,6 +33,8 @@ import routing.community.Duration;
  * double values and zero for integer median(s).
  */
 public class TestingReport extends Report {
+	private static final long serialVersionUID = 1L;
+
 	// private Map<String, Double> creationTimes;
 	// private List<Double> latencies;
 	// private List<Integer> hopCounts;
@@ -23,6 +23,8 @@ import java.util.Map;
  * double values and zero for integer median(s).
  */
 public class TimedStatsMessageReport extends Report implements MessageListener {
+	private static final long serialVersionUID = 1L;
+
 	private Map<String, Double> creationTimes;
 	private List<Double> latencies;
 	private List<Integer> hopCounts;
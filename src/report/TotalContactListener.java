@@ -21,6 +21,7 @@ import java.util.Map;
  * @author BramChandra
  */
 public class TotalContactListener extends Report implements UpdateListener, ConnectionListener, MessageListener {
+    private static final long serialVersionUID = 1L;
     
     
     private Map<String, Double> creationTimes;
@@ -19,6 +19,7 @@ import java.util.Map;
  * @author Afra Rian
  */
 public class TotalContactReport extends Report implements ConnectionListener {
+    private static final long serialVersionUID = 1L;
 
     private final double lastRecord;
     private final int interval = 3600;
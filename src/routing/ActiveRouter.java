@@ -7,6 +7,7 @@ package routing;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Random;
 
@@ -19,6 +20,8 @@ import routing.util.EnergyModel;
  * {@link #update()}).
  */
 public abstract class ActiveRouter extends MessageRouter {
+	private static final long serialVersionUID = 1L;
+
 	/** Delete delivered messages -setting id ({@value}). Boolean valued.
 	 * If set to true and final recipient of a message rejects it because it
 	 * already has it, the message is deleted from buffer. Default=false. */
@@ -26,6 +29,23 @@ public abstract class ActiveRouter extends MessageRouter {
 	/** should messages that final recipient marks as delivered be deleted
 	 * from message buffer */
 	protected boolean deleteDelivered;
+	/** Concurrent transfers -setting id ({@value}). Integer valued. 
+	 * Maximum number of transfers a host can send at the same time (to 
+	 * different connections). With more than one transfer, the speed of
+	 * the host's interface is shared between the ongoing constant 
+	 * bit-rate transfers (see {@link #BANDWIDTH_SHARING_S}). Default=1. */
+	public static final String CONCURRENT_TRANSFERS_S = "concurrentTransfers";
+	/** Bandwidth sharing -setting id ({@value}). How concurrent transfers
+	 * share the speed of the sending interface: <CODE>fair</CODE> (equal 
+	 * shares; the share a slower connection can't use is divided between 
+	 * the others) or <CODE>weighted</CODE> (shares in proportion to the 
+	 * connection speeds). No transfer gets more than its connection speed.
+	 * Default=fair. */
+	public static final String BANDWIDTH_SHARING_S = "bandwidthSharing";
+	/** maximum number of concurrent outgoing transfers */
+	protected int concurrentTransfers;
+	/** is the bandwidth shared in proportion to the connection speeds */
+	private boolean weightedSharing;
 	
 	/** prefix of all response message IDs */
 	public static final String RESPONSE_PREFIX = "R_";
@@ -54,6 +74,29 @@ public abstract class ActiveRouter extends MessageRouter {
 			this.deleteDelivered = false;
 		}
 
+		if (s.contains(CONCURRENT_TRANSFERS_S)) {
+			this.concurrentTransfers = s.getInt(CONCURRENT_TRANSFERS_S);
+			if (this.concurrentTransfers < 1) {
+				throw new SettingsError("Invalid value for " + 
+						s.getFullPropertyName(CONCURRENT_TRANSFERS_S) + 
+						": " + this.concurrentTransfers);
+			}
+		}
+		else {
+			this.concurrentTransfers = 1;
+		}
+		if (s.contains(BANDWIDTH_SHARING_S)) {
+			String sharing = s.getSetting(BANDWIDTH_SHARING_S);
+			if (sharing.equals("weighted")) {
+				this.weightedSharing = true;
+			}
+			else if (!sharing.equals("fair")) {
+				throw new SettingsError("Unknown bandwidth sharing '" + 
+						sharing + "' for " + 
+						s.getFullPropertyName(BANDWIDTH_SHARING_S));
+			}
+		}
+
 		//Energy Model
 		if (s.contains(EnergyModel.INIT_ENERGY_S)) {
 			this.energy = new EnergyModel(s);
@@ -69,6 +112,8 @@ public abstract class ActiveRouter extends MessageRouter {
 	protected ActiveRouter(ActiveRouter r) {
 		super(r);
 		this.deleteDelivered = r.deleteDelivered;
+		this.concurrentTransfers = r.concurrentTransfers;
+		this.weightedSharing = r.weightedSharing;
 		//Energy Model
         this.energy = (r.energy != null ? r.energy.replicate() : null);
     }
@@ -157,10 +202,13 @@ public abstract class ActiveRouter extends MessageRouter {
 	
 	/**
 	 * Returns a list of connections this host currently has with other hosts.
+	 * The list is a read-only live view (see 
+	 * {@link DTNHost#getConnectionsView()}), so take a copy of it if 
+	 * connections may change while it is used.
 	 * @return a list of connections this host currently has with other hosts
 	 */
 	protected List<Connection> getConnections() {
-		return getHost().getConnections();
+		return getHost().getConnectionsView();
 	}
 
 
@@ -182,6 +230,9 @@ public abstract class ActiveRouter extends MessageRouter {
 		retVal = con.startTransfer(getHost(), m);
 		if (retVal == RCV_OK) { // started transfer
 			addToSendingConnections(con);
+			if (this.concurrentTransfers > 1) {
+				shareBandwidth();
+			}
 		}
 		else if (deleteDelivered && retVal == DENIED_OLD && 
 				m.getTo() == con.getOtherNode(this.getHost())) {
@@ -224,6 +275,10 @@ public abstract class ActiveRouter extends MessageRouter {
 		if ( hasMessage(m.getId()) || isDeliveredMessage(m) ){
 			return DENIED_OLD; // already seen this message -> reject it
 		}
+
+		if (this.concurrentTransfers > 1 && isReceiving(m.getId())) {
+			return TRY_LATER_BUSY; // coming through another connection
+		}
 		
 		if (m.getTtl() <= 0 && m.getTo() != getHost()) {
 			/* TTL has expired and this host is not the final recipient */
@@ -413,15 +468,21 @@ public abstract class ActiveRouter extends MessageRouter {
 	 */
 	protected Connection tryMessagesToConnections(List<Message> messages,
 			List<Connection> connections) {
+		Connection first = null;
 		for (int i=0, n=connections.size(); i<n; i++) {
 			Connection con = connections.get(i);
 			Message started = tryAllMessages(con, messages); 
 			if (started != null) { 
-				return con;
+				if (this.concurrentTransfers == 1 || isTransferring()) {
+					return first != null ? first : con;
+				}
+				if (first == null) {
+					first = con; // room for more concurrent transfers
+				}
 			}
 		}
 		
-		return null;
+		return first;
 	}
 	
 	/**
@@ -511,11 +572,15 @@ public abstract class ActiveRouter extends MessageRouter {
 	 * @return true if this router is transferring something
 	 */
 	public boolean isTransferring() {
+		if (this.concurrentTransfers > 1) {
+			return !canTransferMore();
+		}
+
 		if (this.sendingConnections.size() > 0) {
 			return true; // sending something
 		}
 		
-		if (this.getHost().getConnections().size() == 0) {
+		if (getConnections().size() == 0) {
 			return false; // not connected
 		}
 		
@@ -529,6 +594,111 @@ public abstract class ActiveRouter extends MessageRouter {
 		
 		return false;		
 	}
+
+	/**
+	 * Returns true if a host that can send several transfers at the same 
+	 * time has a free transfer slot and a connection that is ready for a 
+	 * new transfer (or no connections at all)
+	 * @return true if another transfer could be started
+	 */
+	private boolean canTransferMore() {
+		if (this.sendingConnections.size() >= this.concurrentTransfers) {
+			return false;
+		}
+
+		List<Connection> connections = getConnections();
+		if (connections.size() == 0) {
+			return true; // not connected
+		}
+		for (int i=0, n=connections.size(); i<n; i++) {
+			if (connections.get(i).isReadyForTransfer()) {
+				return true;
+			}
+		}
+		return false; // all connections are busy
+	}
+
+	/**
+	 * Returns true if a message is being transferred through any of the
+	 * host's connections. Used for hosts that can receive several 
+	 * transfers at the same time to receive a message only once.
+	 * @param id ID of the message
+	 * @return true if the message is on the fly
+	 */
+	private boolean isReceiving(String id) {
+		List<Connection> connections = getConnections();
+		for (int i=0, n=connections.size(); i<n; i++) {
+			Message m = connections.get(i).getMessage();
+			if (m != null && m.getId().equals(id)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Divides the speed of each of the host's interfaces between the
+	 * constant bit-rate transfers it is sending, either in equal shares
+	 * (the share a slower connection can't use goes to the others) or
+	 * in proportion to the connection speeds. No transfer gets more than
+	 * its connection speed. The receiving ends' speeds are not limited.
+	 */
+	protected void shareBandwidth() {
+		DTNHost host = getHost();
+		int n = this.sendingConnections.size();
+		boolean[] shared = new boolean[n];
+		for (int i=0; i < n; i++) {
+			if (shared[i]) {
+				continue;
+			}
+			/* transfers from the same interface as the i:th one */
+			NetworkInterface ni = this.sendingConnections.get(i).
+				getInterface(host);
+			List<CBRConnection> cons = new ArrayList<CBRConnection>(n);
+			for (int j=i; j < n; j++) {
+				Connection con = this.sendingConnections.get(j);
+				if (!shared[j] && con.getInterface(host) == ni) {
+					shared[j] = true;
+					if (con instanceof CBRConnection && 
+							con.getMessage() != null) {
+						cons.add((CBRConnection)con);
+					}
+				}
+			}
+			shareBandwidth(ni.getTransmitSpeed(), cons);
+		}
+	}
+
+	/**
+	 * Shares the given bandwidth between the transfers of connections
+	 * @param bandwidth The bandwidth to share (Bps)
+	 * @param cons The connections whose transfers share it
+	 */
+	private void shareBandwidth(double bandwidth, List<CBRConnection> cons) {
+		/* ascending connection speed; with fair sharing, the leftover of
+		 * the slower connections is divided between the faster ones */
+		Collections.sort(cons, new Comparator<CBRConnection>() {
+			public int compare(CBRConnection c1, CBRConnection c2) {
+				return Integer.compare(c1.getConnectionSpeed(), 
+						c2.getConnectionSpeed());
+			}
+		});
+		double totalWeight = 0;
+		for (CBRConnection con : cons) {
+			totalWeight += con.getConnectionSpeed();
+		}
+
+		double left = bandwidth;
+		for (int i=0, n = cons.size(); i < n; i++) {
+			CBRConnection con = cons.get(i);
+			double max = con.getConnectionSpeed();
+			double share = this.weightedSharing ? 
+					bandwidth * max / totalWeight : left / (n - i);
+			share = Math.min(share, max);
+			con.setTransferSpeed(share);
+			left -= share;
+		}
+	}
 	
 	/**
 	 * Returns true if this router is currently sending a message with 
@@ -573,8 +743,9 @@ public abstract class ActiveRouter extends MessageRouter {
 		
 		super.update();
 		
-		/* in theory we can have multiple sending connections even though
-		  currently all routers allow only one concurrent sending connection */
+		/* there can be several sending connections if concurrent transfers
+		 * are enabled */
+		boolean sharingChanged = false;
 		for (int i=0; i<this.sendingConnections.size(); ) {
 			boolean removeCurrent = false;
 			Connection con = sendingConnections.get(i);
@@ -603,12 +774,16 @@ public abstract class ActiveRouter extends MessageRouter {
 					this.makeRoomForMessage(0);
 				}
 				sendingConnections.remove(i);
+				sharingChanged = true;
 			}
 			else {
 				/* index increase needed only if nothing was removed */
 				i++;
 			}
 		}
+		if (sharingChanged && this.concurrentTransfers > 1) {
+			shareBandwidth(); // the others get the freed bandwidth
+		}
 		
 		/* time to do a TTL check and drop old messages? Only if not sending */
 		if (SimClock.getTime() - lastTtlCheck >= TTL_CHECK_INTERVAL && 
@@ -624,6 +799,38 @@ public abstract class ActiveRouter extends MessageRouter {
 		}
 	}
 	
+	/**
+	 * Returns the earliest time when {@link #update()} of an active router
+	 * that only reacts to its connections may do something: a transfer
+	 * becomes ready, a TTL check is due or a new transfer could be started
+	 * (in which case the current time is returned). Routers whose update
+	 * behaves like that can return this from {@link #nextUpdateTime()}.
+	 * @return The time when the router needs the next update
+	 */
+	protected double nextTransferUpdateTime() {
+		double now = SimClock.getTime();
+		if (this.energy != null || hasApplications()) {
+			return now; // state changes at every update
+		}
+
+		double next = SimClock.timeAfter(lastTtlCheck, TTL_CHECK_INTERVAL);
+		for (Connection con : this.sendingConnections) {
+			if (!(con instanceof CBRConnection) || !con.isUp() ||
+					con.getMessage() == null) {
+				return now;
+			}
+			next = Math.min(next, 
+					((CBRConnection)con).getTransferReadyTime());
+		}
+
+		if (this.sendingConnections.size() < this.concurrentTransfers && 
+				canStartTransfer() && !isTransferring()) {
+			return now; // would try to start a new transfer
+		}
+
+		return next;
+	}
+
 	/**
 	 * Method is called just before a transfer is aborted at {@link #update()} 
 	 * due connection going down. This happens on the sending host. 
@@ -5,6 +5,8 @@ import core.*;
 import rl.*;
 
 public class CCRouting extends ActiveRouter implements CongestionRate {
+	private static final long serialVersionUID = 1L;
+
 	private int msgReceived = 0;
 	private int msgTransferred = 0;
 
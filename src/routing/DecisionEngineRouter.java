@@ -80,6 +80,7 @@ import core.*;
  * @author PJ Dillon, University of Pittsburgh
  */
 public class DecisionEngineRouter extends ActiveRouter {
+    private static final long serialVersionUID = 1L;
 
     public static final String PUBSUB_NS = "DecisionEngineRouter";
     public static final String ENGINE_SETTING = "decisionEngine";
@@ -445,6 +446,12 @@ public class DecisionEngineRouter extends ActiveRouter {
         }
     }
 
+    @Override
+    public double nextUpdateTime() {
+        return Math.min(nextTransferUpdateTime(),
+                decider.nextUpdateTime(getHost()));
+    }
+
     public RoutingDecisionEngine getDecisionEngine() {
         return this.decider;
     }
@@ -18,6 +18,7 @@ import static routing.MessageRouter.TRY_LATER_BUSY;
  * @author Jarkom
  */
 public class DecisionEngineRouterImproved extends ActiveRouter {
+    private static final long serialVersionUID = 1L;
 
     public static final String PUBSUB_NS = "DecisionEngineRouterImproved";
     public static final String ENGINE_SETTING = "decisionEngineImproved";
@@ -10,6 +10,7 @@ import core.Settings;
  * Router that will deliver messages only to the final recipient.
  */
 public class DirectDeliveryRouter extends ActiveRouter {
+	private static final long serialVersionUID = 1L;
 
 	public DirectDeliveryRouter(Settings s) {
 		super(s);
@@ -31,6 +32,11 @@ public class DirectDeliveryRouter extends ActiveRouter {
             // started a transfer
         }
 	}
+
+	@Override
+	public double nextUpdateTime() {
+		return nextTransferUpdateTime();
+	}
 	
 	@Override
 	public DirectDeliveryRouter replicate() {
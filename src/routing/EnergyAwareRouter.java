@@ -12,6 +12,7 @@ import core.*;
  */
 public class EnergyAwareRouter extends ActiveRouter
         implements ModuleCommunicationListener {
+    private static final long serialVersionUID = 1L;
 
     /**
      * Initial units of energy -setting id ({@value}). Can be either a single
@@ -55,7 +56,6 @@ public class EnergyAwareRouter extends ActiveRouter
     private double lastUpdate;
     private final double scanInterval;
     private ModuleCommunicationBus comBus;
-    private static Random rng = null;
 
     /**
      * Constructor. Creates a new message router based on the settings in the
@@ -98,8 +98,11 @@ public class EnergyAwareRouter extends ActiveRouter
         if (range.length == 1) {
             this.currentEnergy = range[0];
         } else {
-            if (rng == null) {
+            SimContext context = SimContext.current();
+            Random rng = (Random)context.getState(EnergyAwareRouter.class);
+            if (rng == null) { // one rng per simulation run
                 rng = new Random((int) (range[0] + range[1]));
+                context.setState(EnergyAwareRouter.class, rng);
             }
             this.currentEnergy = range[0]
                     + rng.nextDouble() * (range[1] - range[0]);
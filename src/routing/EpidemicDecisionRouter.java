@@ -92,4 +92,9 @@ public class EpidemicDecisionRouter implements RoutingDecisionEngine{
     public void update(DTNHost thisHost) {
     }
 
+    @Override
+    public double nextUpdateTime(DTNHost thisHost) {
+        return Double.MAX_VALUE; // update does nothing
+    }
+
 }
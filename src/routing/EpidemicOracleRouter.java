@@ -18,13 +18,10 @@ import core.*;
  * <B>Note:</B> This router module also bypasses ActiveRouter.update()
  */
 public class EpidemicOracleRouter extends ActiveRouter {
+	private static final long serialVersionUID = 1L;
 	
-	/** List of all routers in this node group */
-	private static List<EpidemicOracleRouter> allRouters;
-
 	static {
 		DTNSim.registerForReset(EpidemicOracleRouter.class.getCanonicalName());
-		reset();
 	}
 	
 	/**
@@ -42,7 +39,7 @@ public class EpidemicOracleRouter extends ActiveRouter {
 	 */
 	protected EpidemicOracleRouter(EpidemicOracleRouter r) {
 		super(r);
-		allRouters.add(this);
+		getAllRouters().add(this);
 	}
 	
 	@Override
@@ -110,7 +107,7 @@ public class EpidemicOracleRouter extends ActiveRouter {
 		Message m = super.messageTransferred(id, from);
 
 		if (m.getTo() == this.getHost()) {
-			for (EpidemicOracleRouter r : allRouters) {
+			for (EpidemicOracleRouter r : getAllRouters()) {
 				if (r != this && r != from.getRouter()) {
 					r.removeDeliveredMessage(id);
 				}
@@ -170,11 +167,28 @@ public class EpidemicOracleRouter extends ActiveRouter {
 		return new EpidemicOracleRouter(this);
 	}
 	
+	/**
+	 * Returns the list of all routers in this node group in the current
+	 * simulation run
+	 * @return The list of all routers of the current run
+	 */
+	@SuppressWarnings("unchecked")
+	private static List<EpidemicOracleRouter> getAllRouters() {
+		SimContext context = SimContext.current();
+		List<EpidemicOracleRouter> allRouters = (List<EpidemicOracleRouter>)
+			context.getState(EpidemicOracleRouter.class);
+		if (allRouters == null) {
+			allRouters = new ArrayList<EpidemicOracleRouter>();
+			context.setState(EpidemicOracleRouter.class, allRouters);
+		}
+		return allRouters;
+	}
+
 	/**
 	 * Resets the static router list
 	 */
 	public static void reset() {
-		allRouters = new ArrayList<EpidemicOracleRouter>();
+		SimContext.current().setState(EpidemicOracleRouter.class, null);
 	}
 
 }
\ No newline at end of file
@@ -11,6 +11,7 @@ import core.Settings;
  * connections at a time.
  */
 public class EpidemicRouter extends ActiveRouter {
+	private static final long serialVersionUID = 1L;
 	
 	/**
 	 * Constructor. Creates a new message router based on the settings in
@@ -46,6 +47,11 @@ public class EpidemicRouter extends ActiveRouter {
 		// then try any/all message to any/all connection
 		this.tryAllMessagesToAllConnections();
 	}
+
+	@Override
+	public double nextUpdateTime() {
+		return nextTransferUpdateTime();
+	}
 	
 	
 	@Override
@@ -4,6 +4,7 @@
  */
 package routing;
 
+import java.io.Serializable;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -26,7 +27,8 @@ import core.Tuple;
 /**
  * Superclass for message routers.
  */
-public abstract class MessageRouter {
+public abstract class MessageRouter implements Serializable {
+    private static final long serialVersionUID = 1L;
 
     /**
      * Message buffer size -setting id ({@value}). Integer value in bytes.
@@ -221,6 +223,30 @@ public abstract class MessageRouter {
         }
     }
 
+    /**
+     * Returns the earliest simulation time when calling {@link #update()}
+     * may change the state of this router if nothing else (e.g., a
+     * connection or a new message) changes it before. Used for skipping
+     * update intervals where nothing happens. This implementation returns
+     * the current time, i.e., the router is updated at every interval.
+     * Routers whose updates are driven only by their transfers can override
+     * this.
+     *
+     * @return The time when the router needs the next update
+     */
+    public double nextUpdateTime() {
+        return SimClock.getTime();
+    }
+
+    /**
+     * Returns true if there are applications attached to this router
+     *
+     * @return true if there are applications attached to this router
+     */
+    protected boolean hasApplications() {
+        return !this.applications.isEmpty();
+    }
+
     /**
      * Informs the router about change in connections state.
      *
@@ -25,6 +25,7 @@ import core.SimClock;
  * Teknik forwarding masih kurang tepat
  */
 public class ModifiedSprayAndWaitRouter extends ActiveRouter {
+    private static final long serialVersionUID = 1L;
 
     /**
      * Identifier untuk pengaturan jumlah salinan awal ({@value})
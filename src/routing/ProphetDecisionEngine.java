@@ -195,4 +195,9 @@ public class ProphetDecisionEngine implements RoutingDecisionEngine {
 
     @Override
     public void update(DTNHost thisHost) {}
+
+    @Override
+    public double nextUpdateTime(DTNHost thisHost) {
+        return Double.MAX_VALUE; // update does nothing
+    }
 }
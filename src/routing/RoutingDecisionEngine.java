@@ -110,6 +110,21 @@ public interface RoutingDecisionEngine
     boolean shouldDeleteOldMessage(Message m, DTNHost hostReportingOld);
 	
         void update(DTNHost thisHost);
+
+	/**
+	 * Returns the earliest simulation time when {@link #update(DTNHost)} may
+	 * change the state of this decision engine (see
+	 * {@link MessageRouter#nextUpdateTime()}). This default asks for an update
+	 * at every update interval; engines whose update does nothing can return
+	 * Double.MAX_VALUE so that idle intervals can be skipped.
+	 *
+	 * @param thisHost The host this engine is attached to
+	 * @return The time when the engine needs the next update
+	 */
+    default double nextUpdateTime(DTNHost thisHost) {
+        return SimClock.getTime();
+    }
+
 	/**
 	 * Duplicates this decision engine.
 	 * 
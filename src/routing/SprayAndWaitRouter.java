@@ -19,6 +19,8 @@ import core.Settings;
  *
  */
 public class SprayAndWaitRouter extends ActiveRouter {
+	private static final long serialVersionUID = 1L;
+
 	/** identifier for the initial number of copies setting ({@value})*/ 
 	public static final String NROF_COPIES = "nrofCopies";
 	/** identifier for the binary-mode setting ({@value})*/ 
@@ -106,6 +108,11 @@ public class SprayAndWaitRouter extends ActiveRouter {
 			this.tryMessagesToConnections(copiesLeft, getConnections());
 		}
 	}
+
+	@Override
+	public double nextUpdateTime() {
+		return nextTransferUpdateTime();
+	}
 	
 	/**
 	 * Creates and returns a list of messages this router is currently
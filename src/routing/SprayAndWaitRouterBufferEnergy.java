@@ -20,6 +20,8 @@ import routing.testContext.EnergyManager;
  *
  */
 public class SprayAndWaitRouterBufferEnergy extends ActiveRouter {
+	private static final long serialVersionUID = 1L;
+
 	public static final String NROF_COPIES = "nrofCopies";
 	public static final String BINARY_MODE = "binaryMode";
 	public static final String SPRAYANDWAIT_NS = "SprayAndWaitRouter";
@@ -21,6 +21,7 @@ import routing.testContext.bufferCalculator;
  *
  */
 public class SprayAndWaitRouterBufferTest extends ActiveRouter {
+    private static final long serialVersionUID = 1L;
 
     /**
      * identifier for the initial number of copies setting ({@value})
@@ -255,4 +255,9 @@ public class DistributedBubbleRap implements RoutingDecisionEngine, CommunityDet
 
     @Override
     public void update(DTNHost thisHost) {}
+
+    @Override
+    public double nextUpdateTime(DTNHost thisHost) {
+        return Double.MAX_VALUE; // update does nothing
+    }
 }
\ No newline at end of file
@@ -3,7 +3,9 @@ package routing.contextAware;
 import core.Settings;
 import net.sourceforge.jFuzzyLogic.FIS;
 import reinforcementLearning_ContextAware.QTableUpdateStrategy;
+import reinforcementLearning_ContextAware.DenseQtable;
 import reinforcementLearning_ContextAware.Qtable;
+import reinforcementLearning_ContextAware.SparseQtable;
 import routing.ActiveRouter;
 import core.*;
 import routing.MessageRouter;
@@ -19,12 +21,15 @@ import routing.contextAware.SocialCharcteristic.*;
 import java.util.*;
 
 public class ContextAwareRLRouter extends ActiveRouter {
+    private static final long serialVersionUID = 1L;
 
 //    public static final String NROF_HOSTS = "nrofHosts";
     public static final String BUFFER_SIZE = "bufferSize";
     public static final String MSG_TTL = "msgTtl";
     public static final String INIT_ENERGY_S = "initialEnergy"; //Inisialisasi Energi
     public static final String ALPHA_POPULARITY = "alphaPopularity"; //Inisialisasi Alpha Popularity
+    /** Jumlah nextHop yang disimpan per tujuan di Q-table sparse; 0 = Q-table padat (default) */
+    public static final String QTABLE_TOP_K = "qtableTopK";
 
 //    public static final String FCL_Context = "fcl"; //FuzzyLogicController
 //    public static final String FCL_MSG = "fclmsg"; //FuzzyLogicController
@@ -34,6 +39,7 @@ public class ContextAwareRLRouter extends ActiveRouter {
     protected int msgTtl;
     protected int initialEnergy;
     protected double alphaPopularity;
+    protected int qtableTopK;
     protected FIS fclcontextaware; //FLC
     protected FIS fclcontextmsg;
     private double latestDensity;
@@ -66,6 +72,10 @@ public class ContextAwareRLRouter extends ActiveRouter {
         bufferSize = s.getInt(BUFFER_SIZE);
         msgTtl = s.getInt(MSG_TTL);
         initialEnergy = s.getInt(INIT_ENERGY_S); //Energi
+        qtableTopK = s.contains(QTABLE_TOP_K) ? s.getInt(QTABLE_TOP_K) : 0;
+        if (qtableTopK < 0) {
+            throw new SettingsError(QTABLE_TOP_K + " tidak boleh negatif: " + qtableTopK);
+        }
         latestDensity = -1;
         pendingAging = new HashMap<>();
 
@@ -90,6 +100,7 @@ public class ContextAwareRLRouter extends ActiveRouter {
         this.bufferSize = r.bufferSize;
         this.msgTtl = r.msgTtl;
         this.initialEnergy = r.initialEnergy;
+        this.qtableTopK = r.qtableTopK;
         this.latestDensity = r.latestDensity;
         this.pendingAging = r.pendingAging;
 
@@ -100,7 +111,8 @@ public class ContextAwareRLRouter extends ActiveRouter {
     public void init(DTNHost host, List<MessageListener> mListeners) {
 //        System.out.println("Inisialisasi router...");
         super.init(host, mListeners);
-        this.qtable = new Qtable(String.valueOf(this.getHost().getAddress()));
+        String ownerId = String.valueOf(this.getHost().getAddress());
+        this.qtable = qtableTopK > 0 ? new SparseQtable(ownerId, qtableTopK) : new DenseQtable(ownerId);
         this.messageListTable = new MessageListTable(this.getHost());
 
 
@@ -268,11 +280,12 @@ public class ContextAwareRLRouter extends ActiveRouter {
                 System.out.println("[SKIP] Neighbor adalah pengirim asli pesan → " + msg.getId());
                 continue;
             }
+            int destination = msg.getTo().getAddress();
             // Ambil nilai Q sebelum update
-            double oldQ = qtable.getQvalue(destinationId, nextHopId);
-            qtableUpdate.updateFirstStrategy(host, neighbor, destinationId, nextHopId, tfOpportunity);
+            double oldQ = qtable.getQvalue(destination, neighbor.getAddress());
+            qtableUpdate.updateFirstStrategy(host, neighbor, destination, neighbor.getAddress(), tfOpportunity);
             // Ambil nilai Q setelah update
-            double newQ = qtable.getQvalue(destinationId, nextHopId);
+            double newQ = qtable.getQvalue(destination, neighbor.getAddress());
 
 //            System.out.printf("[Q-CHANGE] dst = %s → via %s | Old Q = %.4f | New Q = %.4f%n",
 //                    destinationId, nextHopId, oldQ, newQ);
@@ -520,8 +533,8 @@ public class ContextAwareRLRouter extends ActiveRouter {
             double neighborPop  = popularity.getPopularity(neighbor);
             double neighborSocial = cripsContextAware.evaluateSelf(neighbor, neighborPop, tie);
 
-            double myQ = qtable.getQvalue(destinationId, neighborId);
-            double neighborQ = qtable.getQvalue(destinationId, hostId);
+            double myQ = qtable.getQvalue(destination.getAddress(), neighbor.getAddress());
+            double neighborQ = qtable.getQvalue(destination.getAddress(), host.getAddress());
 
             boolean socialBetter = neighborSocial > mySocial;
             boolean qValueBetter = neighborQ > myQ;
@@ -676,6 +689,27 @@ public class ContextAwareRLRouter extends ActiveRouter {
         this.tryAllMessagesToAllConnections();
     }
 
+    /**
+     * Selain transfer (lihat ActiveRouter.nextTransferUpdateTime), update() menjalankan aging
+     * tertunda MIN_ELAPSED_FOR_AGING detik setelah koneksi putus. Aging yang sudah jatuh tempo
+     * dicoba di setiap interval sampai berhasil, jadi router tetap di-update selama ada.
+     * Catatan: initialEnergy juga mengaktifkan model energi ActiveRouter, yang mengurangi energi
+     * scan di setiap update, sehingga dengan model energi interval tidak pernah dilewati.
+     */
+    @Override
+    public double nextUpdateTime() {
+        double next = nextTransferUpdateTime();
+        double now = SimClock.getTime();
+        for (double endTime : pendingAging.values()) {
+            double due = SimClock.timeAfter(endTime, QTableUpdateStrategy.MIN_ELAPSED_FOR_AGING);
+            if (due <= now) {
+                return now;
+            }
+            next = Math.min(next, due);
+        }
+        return next;
+    }
+
 //    // Memeriksa apakah node ini adalah penerima akhir dari pesan
 //    private boolean isFinalDest(Message m, DTNHost to) {
 //        return m.getTo() == to;  // Mengecek apakah penerima pesan adalah node ini
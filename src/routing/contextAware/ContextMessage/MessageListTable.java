@@ -3,6 +3,7 @@ package routing.contextAware.ContextMessage;
 import core.DTNHost;
 import core.Message;
 
+import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -11,7 +12,8 @@ import java.util.Map;
  * Kelas ini digunakan untuk menyimpan dan mengelola skor prioritas pesan untuk tiap host.
  * Setiap pesan diidentifikasi berdasarkan ID-nya dan diberikan skor prioritas (biasanya 0.0 atau 1.0).
  */
-public class MessageListTable {
+public class MessageListTable implements Serializable {
+    private static final long serialVersionUID = 1L;
 
     private DTNHost host;
     public final Map<String, Double> messagePriorityMap;
@@ -1,5 +1,7 @@
 package routing.contextAware.Crips;
 
+import java.io.Serializable;
+
 import core.DTNHost;
 
 /**
@@ -8,7 +10,8 @@ import core.DTNHost;
  * Digunakan untuk menentukan kelayakan melakukan forwarding pesan berdasarkan buffer, energi,
  * popularitas, dan tie strength.
  */
-public class CripsContextAware {
+public class CripsContextAware implements Serializable {
+    private static final long serialVersionUID = 1L;
 
     // ==============================
     // ENUM: Level Klasifikasi
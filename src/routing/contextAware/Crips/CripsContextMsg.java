@@ -1,5 +1,7 @@
 package routing.contextAware.Crips;
 
+import java.io.Serializable;
+
 import core.DTNHost;
 
 /**
@@ -7,7 +9,8 @@ import core.DTNHost;
  * Kelas ini mengevaluasi prioritas pesan dalam jaringan DTN berdasarkan
  * Time-To-Live (TTL) dan Hop Count secara diskrit (crisp rulebase).
  */
-public class CripsContextMsg {
+public class CripsContextMsg implements Serializable {
+    private static final long serialVersionUID = 1L;
 
     // Enumerasi level diskrit
     private enum Level { SMALL, MEDIUM, LARGE }
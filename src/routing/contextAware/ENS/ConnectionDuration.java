@@ -2,7 +2,9 @@ package routing.contextAware.ENS;
 
 import core.DTNHost;
 import core.SimClock;
+import core.SimContext;
 
+import java.io.Serializable;
 import java.util.*;
 
 /**
@@ -10,14 +12,17 @@ import java.util.*;
  * Merekam dan mengelola durasi koneksi antar node dalam DTN.
  * Digunakan untuk menghitung tie-strength dan mengupdate ENS.
  */
-public class ConnectionDuration {
+public class ConnectionDuration implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     private DTNHost fromNode;
     private DTNHost toNode;
     private double startTime;
     private double endTime;
     private double totalDuration;
 
-    private static Map<DTNHost, Map<DTNHost, ConnectionDuration>> connectionHistory = new HashMap<>();
+    /** Kunci state riwayat koneksi di dalam {@link SimContext} */
+    private static final Object HISTORY_KEY = ConnectionDuration.class;
 
     // ===== Constructor =====
     public ConnectionDuration(DTNHost fromNode, DTNHost toNode) {
@@ -28,8 +33,26 @@ public class ConnectionDuration {
         this.totalDuration = 0;
     }
 
+    // ===== Riwayat Koneksi per Run =====
+    /**
+     * Riwayat koneksi milik run simulasi yang sedang berjalan. Disimpan di
+     * {@link SimContext} agar beberapa run batch dapat berjalan bersamaan.
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<DTNHost, Map<DTNHost, ConnectionDuration>> history() {
+        SimContext context = SimContext.current();
+        Map<DTNHost, Map<DTNHost, ConnectionDuration>> history =
+                (Map<DTNHost, Map<DTNHost, ConnectionDuration>>) context.getState(HISTORY_KEY);
+        if (history == null) {
+            history = new HashMap<>();
+            context.setState(HISTORY_KEY, history);
+        }
+        return history;
+    }
+
     // ===== Start Connection =====
     public static ConnectionDuration startConnection(DTNHost fromNode, DTNHost toNode) {
+        Map<DTNHost, Map<DTNHost, ConnectionDuration>> connectionHistory = history();
         connectionHistory.putIfAbsent(fromNode, new HashMap<>());
 
         // Jika koneksi sudah pernah dibuat, lanjutkan
@@ -61,7 +84,7 @@ public class ConnectionDuration {
         encounteredNodeSet.updateConnectionDuration(toId, sessionDurationLong);
 
         // Simpan kembali total durasi ke connectionHistory
-        connectionHistory.get(fromNode).put(toNode, this);
+        history().get(fromNode).put(toNode, this);
     }
 
     // ===== Get Durasi Saat Ini =====
@@ -74,15 +97,17 @@ public class ConnectionDuration {
 
     // ===== Static Accessors =====
     public static ConnectionDuration getConnection(DTNHost from, DTNHost to) {
-        return connectionHistory.getOrDefault(from, new HashMap<>()).get(to);
+        return history().getOrDefault(from, new HashMap<>()).get(to);
     }
 
     public static List<ConnectionDuration> getConnectionsFromHost(DTNHost host) {
+        Map<DTNHost, Map<DTNHost, ConnectionDuration>> connectionHistory = history();
         if (!connectionHistory.containsKey(host)) return new ArrayList<>();
         return new ArrayList<>(connectionHistory.get(host).values());
     }
 
     public static double getTotalConnectionDuration(DTNHost nodeA, DTNHost nodeB) {
+        Map<DTNHost, Map<DTNHost, ConnectionDuration>> connectionHistory = history();
         if (connectionHistory.containsKey(nodeA)) {
             Map<DTNHost, ConnectionDuration> map = connectionHistory.get(nodeA);
             if (map.containsKey(nodeB)) {
@@ -93,6 +118,7 @@ public class ConnectionDuration {
     }
 
     public static void removeConnection(DTNHost fromNode, DTNHost toNode, double startTime) {
+        Map<DTNHost, Map<DTNHost, ConnectionDuration>> connectionHistory = history();
         if (connectionHistory.containsKey(fromNode)) {
             connectionHistory.get(fromNode).remove(toNode);
             if (connectionHistory.get(fromNode).isEmpty()) {
@@ -103,6 +129,7 @@ public class ConnectionDuration {
 
     // ===== Debug Tools =====
     public static void printConnectionHistory(DTNHost node) {
+        Map<DTNHost, Map<DTNHost, ConnectionDuration>> connectionHistory = history();
         if (connectionHistory.containsKey(node)) {
             for (Map.Entry<DTNHost, ConnectionDuration> entry : connectionHistory.get(node).entrySet()) {
                 System.out.println("[DEBUG] Koneksi dari " + node.getAddress() +
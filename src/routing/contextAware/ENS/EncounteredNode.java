@@ -1,5 +1,7 @@
 package routing.contextAware.ENS;
 
+import java.io.Serializable;
+
 import core.SimClock;
 
 /**
@@ -8,7 +10,8 @@ import core.SimClock;
  * menyimpan informasi seperti waktu encounter, energi, buffer, dan durasi koneksi.
  * Data ini digunakan untuk menghitung tie-strength, popularitas, dan validitas konteks sosial.
  */
-public class EncounteredNode {
+public class EncounteredNode implements Serializable {
+    private static final long serialVersionUID = 1L;
 
     private String nodeId;
     private long encounterTime;
@@ -57,7 +60,14 @@ public class EncounteredNode {
      * Mengecek apakah encounter sudah kadaluarsa berdasarkan TTL.
      */
     public boolean isExpired() {
-        return (SimClock.getTime() - this.encounterTime) > TTLENS;
+        return isExpired(this.encounterTime);
+    }
+
+    /**
+     * Mengecek apakah encounter pada waktu encounterTime sudah kadaluarsa berdasarkan TTL.
+     */
+    static boolean isExpired(long encounterTime) {
+        return (SimClock.getTime() - encounterTime) > TTLENS;
     }
 
     /**
@@ -3,16 +3,50 @@ package routing.contextAware.ENS;
 import core.DTNHost;
 import core.SimClock;
 
+import java.io.Serializable;
 import java.util.*;
 
 /**
  * EncounteredNodeSet
  * Menyimpan dan mengelola informasi node-node yang pernah ditemui (ENS).
  * Digunakan untuk mendukung evaluasi konteks sosial seperti tie-strength, popularitas, dan encounter frequency.
+ * Node disimpan per alamat host. Setiap perubahan mendapat versi dan dicatat di log perubahan,
+ * sehingga pertukaran ENS hanya membaca node yang berubah sejak pertukaran terakhir dengan peer yang sama,
+ * tanpa meng-clone seluruh ENS peer. Node kadaluarsa dibuang lewat heap kunci long yang terurut menurut waktu
+ * encounter.
  */
-public class EncounteredNodeSet {
+public class EncounteredNodeSet implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    // Kunci antrian kadaluarsa: encounterTime << ADDRESS_BITS | alamat (alamat < 2^ADDRESS_BITS)
+    private static final int ADDRESS_BITS = 24;
+    private static final long ADDRESS_MASK = (1L << ADDRESS_BITS) - 1;
+    private static final int INITIAL_LOG_SIZE = 16;
+    private static final int INITIAL_EXPIRY_SIZE = 16;
+
+    // Node per alamat (null jika tidak ada), alamat node yang ada, dan posisinya di members
+    private EncounteredNode[] nodes = new EncounteredNode[0];
+    private int[] members = new int[0];
+    private int[] positions = new int[0];
+    private int size = 0;
+
+    // Versi ENS, naik setiap node ditambah, diubah, atau dihapus; dan versi perubahan terakhir per alamat
+    private long version = 0;
+    private long[] changed = new long[0];
+    // Log perubahan (alamat dan versinya), terurut menurut versi
+    private int[] logAddresses = new int[INITIAL_LOG_SIZE];
+    private long[] logVersions = new long[INITIAL_LOG_SIZE];
+    private int logSize = 0;
+
+    // Per alamat peer: versi ENS peer dan versi ENS ini setelah pertukaran terakhir
+    private long[] peerVersions = new long[0];
+    private long[] exchangedVersions = new long[0];
+
+    // Antrian kadaluarsa: heap minimum kunci (encounterTime, alamat); kunci yang sudah tidak berlaku
+    // dilewati saat dibaca dan dibuang saat heap penuh
+    private long[] expiryHeap = new long[INITIAL_EXPIRY_SIZE];
+    private int expirySize = 0;
 
-    private final Map<String, EncounteredNode> ensTable = new HashMap<>();
     private final Map<String, Map<String, List<Double>>> pairWiseEncounter = new HashMap<>();
 
     // ===================== 1. UPDATE / INSERT ===================== //
@@ -24,15 +58,15 @@ public class EncounteredNodeSet {
         if (!nodeId.equals(myId)) {
             EncounteredNode newNode = new EncounteredNode(nodeId, encounterTime, remainingEnergy, bufferSize, connectionDuration);
             newNode.setPopularity(popularity);
-            updateOrInsert(nodeId, newNode, myId);
+            updateOrInsert(Integer.parseInt(nodeId), newNode);
         }
     }
 
-    private void updateOrInsert(String nodeId, EncounteredNode newNode, String myId) {
-        EncounteredNode existingNode = ensTable.get(nodeId);
+    private void updateOrInsert(int address, EncounteredNode newNode) {
+        EncounteredNode existingNode = getNode(address);
 
         if (existingNode == null) {
-            ensTable.put(nodeId, newNode);
+            put(address, newNode);
             newNode.incrementEncounterCount();
         } else {
             existingNode.incrementEncounterCount();
@@ -44,72 +78,320 @@ public class EncounteredNodeSet {
                 existingNode.setBufferSize(newNode.getBufferSize());
                 existingNode.setConnectionDuration(newNode.getConnectionDuration());
             }
+            markChanged(address);
+            addExpiry(existingNode.getEncounterTime(), address);
         }
     }
 
     public void updateConnectionDuration(String nodeId, long duration) {
-        EncounteredNode node = ensTable.get(nodeId);
-        if (node != null) node.updateConnectionDuration(duration);
+        int address = Integer.parseInt(nodeId);
+        EncounteredNode node = getNode(address);
+        if (node != null) {
+            node.updateConnectionDuration(duration);
+            markChanged(address);
+        }
     }
 
     // ===================== 2. MERGE & EXCHANGE ===================== //
 
     public void mergeENS(DTNHost host, EncounteredNodeSet otherENS, long currentTime, DTNHost neighbor) {
-        if (otherENS == null || otherENS.ensTable.isEmpty()) return;
-        String myId = String.valueOf(host.getAddress());
+        if (otherENS == null || otherENS.isEmpty()) return;
+        int myAddress = host.getAddress();
 
-        for (Map.Entry<String, EncounteredNode> entry : otherENS.ensTable.entrySet()) {
-            String nodeId = entry.getKey();
-            if (!nodeId.equals(myId)) {
-                ensTable.merge(nodeId, entry.getValue().clone(), (oldNode, newNode) -> {
-                    return newNode.isMoreRelevantThan(oldNode) ? newNode.clone() : oldNode;
-                });
-            }
+        for (int i = 0; i < otherENS.size; i++) {
+            mergeNode(otherENS, otherENS.members[i], myAddress, -1);
         }
     }
 
+    /**
+     * Menggabungkan ENS peer (tanpa node peer itu sendiri) ke ENS ini. ENS peer hanya dibaca, dan hanya
+     * node yang berubah di salah satu ENS sejak pertukaran terakhir dengan peer ini yang diperiksa:
+     * node lain sudah digabungkan sebelumnya, jadi hasilnya sama dengan penggabungan seluruh ENS.
+     */
     public void exchangeWith(EncounteredNodeSet otherENS, DTNHost self, DTNHost peer, long currentTime) {
-        EncounteredNodeSet otherClone = otherENS.clone();
-        otherClone.removeEncounter(String.valueOf(peer.getAddress()));
-        this.mergeENS(self, otherClone, currentTime, peer);
+        int myAddress = self.getAddress();
+        int peerAddress = peer.getAddress();
+        long peerVersion = peerAddress < peerVersions.length ? peerVersions[peerAddress] : 0;
+        long exchangedVersion = peerAddress < exchangedVersions.length ? exchangedVersions[peerAddress] : 0;
+
+        // Kumpulkan dulu kandidatnya; penggabungan menambah log ENS ini
+        int theirStart = otherENS.firstLogIndexAfter(peerVersion);
+        int ourStart = this.firstLogIndexAfter(exchangedVersion);
+        int[] candidates = new int[(otherENS.logSize - theirStart) + (this.logSize - ourStart)];
+        int count = otherENS.collectChanges(theirStart, candidates, 0);
+        count = this.collectChanges(ourStart, candidates, count);
+
+        for (int i = 0; i < count; i++) {
+            mergeNode(otherENS, candidates[i], myAddress, peerAddress);
+        }
+
+        if (peerAddress >= peerVersions.length) {
+            int length = Math.max(peerAddress + 1, peerVersions.length * 2);
+            peerVersions = Arrays.copyOf(peerVersions, length);
+            exchangedVersions = Arrays.copyOf(exchangedVersions, length);
+        }
+        peerVersions[peerAddress] = otherENS.version;
+        exchangedVersions[peerAddress] = this.version;
+    }
+
+    /**
+     * Menggabungkan node di alamat tertentu dari ENS lain: node disalin jika belum ada
+     * atau lebih relevan dari node di ENS ini.
+     */
+    private void mergeNode(EncounteredNodeSet otherENS, int address, int myAddress, int peerAddress) {
+        if (address == myAddress || address == peerAddress) return;
+        EncounteredNode otherNode = otherENS.getNode(address);
+        if (otherNode == null) return;
+
+        EncounteredNode node = getNode(address);
+        if (node == null || otherNode.isMoreRelevantThan(node)) {
+            put(address, otherNode.clone());
+        }
     }
 
     // ===================== 3. FILTER & REMOVAL ===================== //
 
     public void removeEncounter(String nodeId) {
-        ensTable.remove(nodeId);
+        remove(Integer.parseInt(nodeId));
     }
 
+    /**
+     * Membuang node yang kadaluarsa. Hanya entri di kepala antrian kadaluarsa yang diperiksa.
+     */
     public void removeOldEncounters() {
-        ensTable.entrySet().removeIf(entry -> entry.getValue().isExpired());
+        while (expirySize > 0) {
+            long key = expiryHeap[0];
+            long encounterTime = key >> ADDRESS_BITS;
+            if (!EncounteredNode.isExpired(encounterTime)) break;
+
+            pollExpiry();
+            int address = (int) (key & ADDRESS_MASK);
+            EncounteredNode node = getNode(address);
+            // encounterTime node tidak pernah turun; entri yang waktunya berbeda sudah tidak berlaku
+            if (node != null && node.getEncounterTime() == encounterTime) {
+                remove(address);
+            }
+        }
     }
 
     public boolean isEmpty() {
-        return ensTable.isEmpty();
+        return size == 0;
+    }
+
+    public boolean containsNode(String nodeId) {
+        return containsNode(Integer.parseInt(nodeId));
+    }
+
+    public boolean containsNode(int address) {
+        return getNode(address) != null;
+    }
+
+    /**
+     * Jumlah node di ENS.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Alamat node ke-index (0 &lt;= index &lt; size()), untuk iterasi tanpa menyalin ENS.
+     */
+    public int getNodeAddress(int index) {
+        return members[index];
     }
 
     // ===================== 4. ANALISIS SOSIAL ===================== //
 
     public int countRecentEncounters(double currentTime, double timeWindow) {
         int count = 0;
-        for (EncounteredNode node : ensTable.values()) {
-            if ((currentTime - node.getEncounterTime()) <= timeWindow) count++;
+        for (int i = 0; i < size; i++) {
+            if ((currentTime - nodes[members[i]].getEncounterTime()) <= timeWindow) count++;
         }
         return count;
     }
 
     public Set<String> getAllNodeIds() {
-        return new HashSet<>(ensTable.keySet());
+        Set<String> nodeIds = new HashSet<>();
+        for (int i = 0; i < size; i++) {
+            nodeIds.add(String.valueOf(members[i]));
+        }
+        return nodeIds;
     }
 
     public EncounteredNodeSet clone() {
         EncounteredNodeSet cloned = new EncounteredNodeSet();
-        for (Map.Entry<String, EncounteredNode> entry : ensTable.entrySet()) {
-            cloned.ensTable.put(entry.getKey(), entry.getValue().clone());
+        for (int i = 0; i < size; i++) {
+            cloned.put(members[i], nodes[members[i]].clone());
         }
         return cloned;
     }
 
+    // ===================== PENYIMPANAN & VERSI ===================== //
+
+    private EncounteredNode getNode(int address) {
+        return address >= 0 && address < nodes.length ? nodes[address] : null;
+    }
+
+    private void put(int address, EncounteredNode node) {
+        if (address < 0 || address > ADDRESS_MASK) {
+            throw new IllegalArgumentException("Invalid ENS node address " + address);
+        }
+        if (address >= nodes.length) {
+            int length = Math.max(address + 1, nodes.length * 2);
+            nodes = Arrays.copyOf(nodes, length);
+            members = Arrays.copyOf(members, length);
+            positions = Arrays.copyOf(positions, length);
+            changed = Arrays.copyOf(changed, length);
+        }
+        if (nodes[address] == null) {
+            positions[address] = size;
+            members[size++] = address;
+        }
+        nodes[address] = node;
+        markChanged(address);
+        addExpiry(node.getEncounterTime(), address);
+    }
+
+    private void remove(int address) {
+        if (getNode(address) == null) return;
+        int position = positions[address];
+        int last = members[--size];
+        members[position] = last;
+        positions[last] = position;
+        nodes[address] = null;
+        markChanged(address);
+    }
+
+    private static long expiryKey(long encounterTime, int address) {
+        return (encounterTime << ADDRESS_BITS) | address;
+    }
+
+    /**
+     * Menambah kunci (encounterTime, alamat) ke heap kadaluarsa. Setiap perubahan encounterTime node
+     * menambah kuncinya sendiri, jadi kunci lama tidak pernah diperlukan lagi.
+     */
+    private void addExpiry(long encounterTime, int address) {
+        if (expirySize == expiryHeap.length) {
+            compactExpiryHeap();
+        }
+        long key = expiryKey(encounterTime, address);
+        int i = expirySize++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (expiryHeap[parent] <= key) break;
+            expiryHeap[i] = expiryHeap[parent];
+            i = parent;
+        }
+        expiryHeap[i] = key;
+    }
+
+    /**
+     * Membuang kunci terkecil (kepala) dari heap kadaluarsa.
+     */
+    private void pollExpiry() {
+        long last = expiryHeap[--expirySize];
+        if (expirySize > 0) {
+            siftDown(0, last);
+        }
+    }
+
+    /**
+     * Menempatkan key di posisi i atau di bawahnya sehingga sifat heap terpenuhi.
+     */
+    private void siftDown(int i, long key) {
+        int half = expirySize >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < expirySize && expiryHeap[child + 1] < expiryHeap[child]) child++;
+            if (key <= expiryHeap[child]) break;
+            expiryHeap[i] = expiryHeap[child];
+            i = child;
+        }
+        expiryHeap[i] = key;
+    }
+
+    /**
+     * Membuang kunci yang sudah tidak berlaku (node sudah dihapus atau encounterTime-nya berubah),
+     * menyusun ulang heap, dan memperbesarnya jika masih lebih dari setengah penuh.
+     */
+    private void compactExpiryHeap() {
+        int kept = 0;
+        for (int i = 0; i < expirySize; i++) {
+            long key = expiryHeap[i];
+            EncounteredNode node = getNode((int) (key & ADDRESS_MASK));
+            if (node != null && node.getEncounterTime() == key >> ADDRESS_BITS) {
+                expiryHeap[kept++] = key;
+            }
+        }
+        expirySize = kept;
+        for (int i = (expirySize >>> 1) - 1; i >= 0; i--) {
+            siftDown(i, expiryHeap[i]);
+        }
+        if (expirySize * 2 > expiryHeap.length) {
+            expiryHeap = Arrays.copyOf(expiryHeap, expiryHeap.length * 2);
+        }
+    }
+
+    /**
+     * Memberi versi baru untuk perubahan node di alamat tertentu dan mencatatnya di log.
+     */
+    private void markChanged(int address) {
+        changed[address] = ++version;
+        if (logSize == logAddresses.length) {
+            compactLog();
+        }
+        logAddresses[logSize] = address;
+        logVersions[logSize] = version;
+        logSize++;
+    }
+
+    /**
+     * Membuang entri log yang sudah digantikan perubahan lebih baru di alamat yang sama,
+     * dan memperbesar log jika masih lebih dari setengah penuh.
+     */
+    private void compactLog() {
+        int kept = 0;
+        for (int i = 0; i < logSize; i++) {
+            if (changed[logAddresses[i]] == logVersions[i]) {
+                logAddresses[kept] = logAddresses[i];
+                logVersions[kept] = logVersions[i];
+                kept++;
+            }
+        }
+        logSize = kept;
+        if (logSize * 2 > logAddresses.length) {
+            logAddresses = Arrays.copyOf(logAddresses, logAddresses.length * 2);
+            logVersions = Arrays.copyOf(logVersions, logVersions.length * 2);
+        }
+    }
+
+    /**
+     * Indeks entri log pertama dengan versi lebih besar dari sinceVersion.
+     */
+    private int firstLogIndexAfter(long sinceVersion) {
+        int low = 0;
+        int high = logSize;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (logVersions[mid] <= sinceVersion) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * Menyalin alamat dari entri log mulai indeks start ke target (mulai offset), kecuali entri yang
+     * sudah digantikan perubahan lebih baru. Mengembalikan offset setelah alamat terakhir.
+     */
+    private int collectChanges(int start, int[] target, int offset) {
+        for (int i = start; i < logSize; i++) {
+            if (changed[logAddresses[i]] == logVersions[i]) {
+                target[offset++] = logAddresses[i];
+            }
+        }
+        return offset;
+    }
+
     // ===================== 5. ENCOUNTER FREQUENCY ===================== //
 
     public void recordEncounterBetween(DTNHost nodeA, DTNHost nodeB) {
@@ -139,10 +421,11 @@ public class EncounteredNodeSet {
     // ===================== 6. DEBUG & PRINT ===================== //
 
     public void printENS(String hostId) {
-        if (ensTable.isEmpty()) {
+        if (isEmpty()) {
             System.out.println("  (ENS KOSONG)");
         } else {
-            for (EncounteredNode node : ensTable.values()) {
+            for (int i = 0; i < size; i++) {
+                EncounteredNode node = nodes[members[i]];
                 System.out.printf("  NodeID: %-5s | Encounter: %-5d | Energy: %-5.1f | Buffer: %-5d | Duration: %-5ds\n",
                         node.getNodeId(),
                         node.getEncounterTime(),
@@ -166,11 +449,11 @@ public class EncounteredNodeSet {
 
     public void debugENS(DTNHost host) {
         System.out.println("[DEBUG] ENS Node: " + host.getAddress());
-        if (ensTable.isEmpty()) {
+        if (isEmpty()) {
             System.out.println("  (ENS kosong)");
         } else {
-            for (Map.Entry<String, EncounteredNode> entry : ensTable.entrySet()) {
-                System.out.println("  " + entry.getKey() + " -> " + entry.getValue());
+            for (int i = 0; i < size; i++) {
+                System.out.println("  " + members[i] + " -> " + nodes[members[i]]);
             }
         }
     }
@@ -4,6 +4,7 @@ import core.DTNHost;
 import core.SimClock;
 import routing.contextAware.ENS.EncounteredNodeSet;
 
+import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -14,7 +15,8 @@ import java.util.Map;
  *
  * Nilai berada dalam rentang [0, 1] dan dihitung menggunakan exponential smoothing.
  */
-public class Popularity {
+public class Popularity implements Serializable {
+    private static final long serialVersionUID = 1L;
 
     private final Map<DTNHost, Double> popularityMap = new HashMap<>();
     private final static int NUMth = 12;            // Threshold encounter untuk normalisasi
@@ -2,9 +2,11 @@ package routing.contextAware.SocialCharcteristic;
 
 import core.DTNHost;
 import core.SimClock;
+import core.SimContext;
 import routing.contextAware.ENS.ConnectionDuration;
 import routing.contextAware.ENS.EncounteredNodeSet;
 
+import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -17,9 +19,11 @@ import java.util.Map;
  *
  * Semua faktor dinormalisasi ke [0–1] dan diberi bobot, menghasilkan skor akhir ∈ [0–1].
  */
-public class TieStrength {
+public class TieStrength implements Serializable {
+    private static final long serialVersionUID = 1L;
 
-    private static final Map<DTNHost, Map<DTNHost, Double>> tieStrengthMap = new HashMap<>();
+    /** Kunci state tieStrength di dalam {@link SimContext} */
+    private static final Object TIE_STRENGTH_KEY = TieStrength.class;
 
     // Bobot komponen
     private static final double FREQUENCY_WEIGHT = 0.5;
@@ -31,6 +35,22 @@ public class TieStrength {
     private static final double MAX_CLOSENESS = 900.0; // 15 menit
     private static final double RECENCY_DECAY_SCALE = 1000.0; // semakin besar = decay lebih lambat
 
+    /**
+     * Map tieStrength milik run simulasi yang sedang berjalan. Disimpan di
+     * {@link SimContext} agar beberapa run batch dapat berjalan bersamaan.
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<DTNHost, Map<DTNHost, Double>> tieStrengthMap() {
+        SimContext context = SimContext.current();
+        Map<DTNHost, Map<DTNHost, Double>> map =
+                (Map<DTNHost, Map<DTNHost, Double>>) context.getState(TIE_STRENGTH_KEY);
+        if (map == null) {
+            map = new HashMap<>();
+            context.setState(TIE_STRENGTH_KEY, map);
+        }
+        return map;
+    }
+
     /**
      * Hitung frekuensi encounter dalam time window tertentu.
      */
@@ -82,7 +102,7 @@ public class TieStrength {
         finalScore = Math.max(0.0, Math.min(finalScore, 1.0));
 
         // Simpan
-        tieStrengthMap.computeIfAbsent(host, k -> new HashMap<>()).put(neighbor, finalScore);
+        tieStrengthMap().computeIfAbsent(host, k -> new HashMap<>()).put(neighbor, finalScore);
 
 //        System.out.printf("[TieStrength] %s -> %s | Freq: %d, Closeness: %.1f, Recency: %.1f, Final: %.3f\n",
 //                host.getAddress(), neighbor.getAddress(), freq, duration, recency, finalScore);
@@ -92,7 +112,7 @@ public class TieStrength {
      * Ambil nilai tieStrength jika sudah dihitung.
      */
     public double getTieStrength(DTNHost host, DTNHost neighbor) {
-        return tieStrengthMap.getOrDefault(host, new HashMap<>()).getOrDefault(neighbor, 0.0);
+        return tieStrengthMap().getOrDefault(host, new HashMap<>()).getOrDefault(neighbor, 0.0);
     }
 
     /**
@@ -212,4 +212,9 @@ public class FuzzyBasedRouter implements RoutingDecisionEngine{
     public void update(DTNHost thisHost){
     }    
 
+    @Override
+    public double nextUpdateTime(DTNHost thisHost) {
+        return Double.MAX_VALUE; // update does nothing
+    }
+
 }
@@ -17,6 +17,7 @@ import routing.EpidemicRouter;
  * @author L
  */
 public class BufferTest extends EpidemicRouter {
+    private static final long serialVersionUID = 1L;
 
 
     protected BufferTest(BufferTest r) {
@@ -38,4 +39,9 @@ public class BufferTest extends EpidemicRouter {
             bufferCalculator.neighborBuffers(hosts);
         }
     }
+
+    @Override
+    public double nextUpdateTime() {
+        return SimClock.getTime(); // buffer check is time driven
+    }
 }
@@ -11,6 +11,8 @@ import java.util.List;
 import net.sourceforge.jFuzzyLogic.FIS;
 
 public class ContextAwareRouterWithFuzzyEvaluate extends EnergyAwareRouter {
+    private static final long serialVersionUID = 1L;
+
     public static final String NROF_COPIES = "nrofCopies";
     public static final String BINARY_MODE = "binaryMode";
     public static final String SPRAYANDWAIT_NS = "SprayAndWaitRouter";
@@ -17,6 +17,7 @@ import java.util.Set;
  * connections at a time.
  */
 public class ContextEpidemicRouter extends ActiveRouter {
+	private static final long serialVersionUID = 1L;
 
 	public static final String BUFFER_SIZE = "bufferSize";
 
@@ -17,6 +17,8 @@ import java.util.*;
  * Anders Lindgren et al.
  */
 public class ContextProphetRouter extends ActiveRouter {
+	private static final long serialVersionUID = 1L;
+
 	/** delivery predictability initialization constant*/
 	public static final double P_INIT = 0.75;
 	/** delivery predictability transitivity scaling constant default value */
@@ -23,6 +23,8 @@ import java.util.*;
  *
  */
 public class ContextSprayAndWaitRouter extends ActiveRouter {
+	private static final long serialVersionUID = 1L;
+
 	/** identifier for the initial number of copies setting ({@value})*/
 	public static final String NROF_COPIES = "nrofCopies";
 	/** identifier for the binary-mode setting ({@value})*/
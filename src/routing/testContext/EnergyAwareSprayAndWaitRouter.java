@@ -7,6 +7,8 @@ import core.*;
 import routing.EnergyAwareRouter;
 
 public class EnergyAwareSprayAndWaitRouter extends EnergyAwareRouter {
+    private static final long serialVersionUID = 1L;
+
     public static final String NROF_COPIES = "nrofCopies";
     public static final String BINARY_MODE = "binaryMode";
     public static final String SPRAYANDWAIT_NS = "SprayAndWaitRouter";
@@ -14,6 +14,7 @@ import core.Settings;
 
 
 public class SprayAndWaitEnergyAware extends ActiveRouter {
+    private static final long serialVersionUID = 1L;
 
     public static final String NROF_COPIES = "nrofCopies";
     public static final String BINARY_MODE = "binaryMode";
@@ -1,5 +1,6 @@
 package routing.util;
 
+import java.io.Serializable;
 import java.util.Random;
 import core.*;
 
@@ -11,7 +12,8 @@ import core.ModuleCommunicationListener;
  * often than 1/s, constant scanning is assumed (and power consumption does not
  * increase from {@link #scanEnergy} value).
  */
-public class EnergyModel implements ModuleCommunicationListener {
+public class EnergyModel implements ModuleCommunicationListener, Serializable {
+    private static final long serialVersionUID = 1L;
 
     /** Initial units of energy -setting id ({@value}). Can be either a
      * single value, or a range of two values. In the latter case, the used
@@ -55,7 +57,6 @@ public class EnergyModel implements ModuleCommunicationListener {
     /** sim time of the last energy updated */
     private double lastUpdate;
     private ModuleCommunicationBus comBus;
-    private static Random rng = null;
 
     /**
      * Constructor. Creates a new message router based on the settings in
@@ -116,8 +117,11 @@ public class EnergyModel implements ModuleCommunicationListener {
             this.currentEnergy = range[0];
         }
         else {
-            if (rng == null) {
+            SimContext context = SimContext.current();
+            Random rng = (Random)context.getState(EnergyModel.class);
+            if (rng == null) { // one rng per simulation run
                 rng = new Random((int)(range[0] + range[1]));
+                context.setState(EnergyModel.class, rng);
             }
             this.currentEnergy = range[0] +
                     rng.nextDouble() * (range[1] - range[0]);
@@ -25,6 +25,8 @@ public class AllTests {
 		//$JUnit-BEGIN$
 		suite.addTestSuite(WorldTest.class);
 		suite.addTestSuite(ConnectionTest.class);
+		suite.addTestSuite(ConnectionPoolTest.class);
+		suite.addTestSuite(ExactTransferTimesTest.class);
 		suite.addTestSuite(ExternalMovementReaderTest.class);
 		suite.addTestSuite(ExternalMovementTest.class);
 		suite.addTestSuite(WKTReaderTest.class);
@@ -47,8 +49,30 @@ public class AllTests {
 		suite.addTestSuite(MaxPropDijkstraTest.class);
 		suite.addTestSuite(MaxPropRouterTest.class);
 		suite.addTestSuite(ScheduledUpdatesQueueTest.class);
+		suite.addTestSuite(EventQueueMergerTest.class);
 		suite.addTestSuite(MessageTest.class);
 		suite.addTestSuite(ModuleCommunicationBusTest.class);
+		suite.addTestSuite(SimContextTest.class);
+		suite.addTestSuite(ContactPlanTest.class);
+		suite.addTestSuite(ContactPlanReplayTest.class);
+		suite.addTestSuite(KineticConnectivityTest.class);
+		suite.addTestSuite(NeighborDiffTest.class);
+		suite.addTestSuite(QtableTest.class);
+		suite.addTestSuite(SparseQtableTest.class);
+		suite.addTestSuite(QtableSyncTest.class);
+		suite.addTestSuite(EncounteredNodeSetTest.class);
+		suite.addTestSuite(HierarchicalGridTest.class);
+		suite.addTestSuite(ConnectionTableTest.class);
+		suite.addTestSuite(ConcurrentTransfersTest.class);
+		suite.addTestSuite(InterferenceGridTest.class);
+		suite.addTestSuite(IdleIntervalSkipTest.class);
+		suite.addTestSuite(TouchedHostUpdateTest.class);
+		suite.addTestSuite(CheckpointTest.class);
+		suite.addTestSuite(WarmupSnapshotTest.class);
+		suite.addTestSuite(BatchRunTest.class);
+		suite.addTestSuite(RouterFanOutTest.class);
+		suite.addTestSuite(ParallelMovementTest.class);
+		suite.addTestSuite(TwoPhaseConnectivityTest.class);
 		//$JUnit-END$
 		return suite;
 	}
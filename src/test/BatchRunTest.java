@@ -0,0 +1,146 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Properties;
+
+import junit.framework.TestCase;
+import core.DTNSim;
+import core.Settings;
+
+/**
+ * Tests that batch runs executed concurrently produce the same reports and
+ * settings output as the same runs executed one by one.
+ */
+public class BatchRunTest extends TestCase {
+	private static final int NROF_RUNS = 3;
+
+	private File dir;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		dir = Files.createTempDirectory("batchRunTest").toFile();
+	}
+
+	protected void tearDown() throws Exception {
+		Settings.init(null); // closes the settings output
+		TestSettings.init(null);
+		delete(dir);
+		super.tearDown();
+	}
+
+	public void testSameOutputWithThreads() throws IOException {
+		File single = runBatch(1);
+		File concurrent = runBatch(NROF_RUNS);
+
+		String settings = read(new File(single, "settings.txt"));
+		int last = -1;
+		for (int i=1; i <= NROF_RUNS; i++) {
+			String header = "# Settings for run " + i;
+			int index = settings.indexOf(header);
+			assertTrue(header, index > last);
+			assertEquals(header, index, settings.lastIndexOf(header));
+			last = index;
+		}
+
+		String[] names = single.list();
+		Arrays.sort(names);
+		assertEquals(1 + NROF_RUNS * 2, names.length);
+		for (String name : names) {
+			assertEquals(name, read(new File(single, name)),
+					read(new File(concurrent, name)));
+		}
+	}
+
+	/**
+	 * Runs the batch runs of the test scenario
+	 * @param nrofThreads Number of threads to run the runs with
+	 * @return Directory of the reports and the settings output
+	 */
+	private File runBatch(int nrofThreads) throws IOException {
+		/* the output directory is in the settings output too */
+		File out = new File(dir, "out");
+		assertTrue(out.mkdir());
+
+		Properties p = new Properties();
+		p.setProperty("Settings.output",
+				new File(out, "settings.txt").getPath());
+		p.setProperty("Scenario.name", "batch_%%MovementModel.rngSeed%%");
+		p.setProperty("Scenario.simulateConnections", "true");
+		p.setProperty("Scenario.updateInterval", "1");
+		p.setProperty("Scenario.endTime", "3000");
+		p.setProperty("Scenario.nrofHostGroups", "1");
+		p.setProperty("Group.groupID", "n");
+		p.setProperty("Group.nrofHosts", "20");
+		p.setProperty("Group.movementModel", "RandomWaypoint");
+		p.setProperty("Group.router", "EpidemicRouter");
+		p.setProperty("Group.bufferSize", "1M");
+		p.setProperty("Group.waitTime", "0, 120");
+		p.setProperty("Group.speed", "0.5, 1.5");
+		p.setProperty("Group.nrofInterfaces", "1");
+		p.setProperty("Group.interface1", "btInterface");
+		p.setProperty("btInterface.type", "SimpleBroadcastInterface");
+		p.setProperty("btInterface.transmitSpeed", "250k");
+		p.setProperty("btInterface.transmitRange", "10");
+		p.setProperty("MovementModel.rngSeed", "[1; 2; 3]");
+		p.setProperty("MovementModel.worldSize", "500, 500");
+		p.setProperty("Events.nrof", "1");
+		p.setProperty("Events1.class", "MessageEventGenerator");
+		p.setProperty("Events1.interval", "25, 35");
+		p.setProperty("Events1.size", "50k, 500k");
+		p.setProperty("Events1.hosts", "0, 20");
+		p.setProperty("Events1.prefix", "M");
+		p.setProperty("Report.nrofReports", "2");
+		p.setProperty("Report.reportDir", out.getPath() + "/");
+		p.setProperty("Report.report1", "MessageStatsReport");
+		p.setProperty("Report.report2", "ContactTimesReport");
+
+		File conf = new File(dir, "settings" + nrofThreads + ".txt");
+		OutputStream confOut = new FileOutputStream(conf);
+		try {
+			p.store(confOut, null);
+		}
+		finally {
+			confOut.close();
+		}
+
+		PrintStream stdout = System.out;
+		System.setOut(new PrintStream(new OutputStream() {
+			public void write(int b) {}
+		}));
+		try {
+			Settings.init(conf.getPath());
+			DTNSim.runBatch(new int[] {0, NROF_RUNS}, nrofThreads);
+			Settings.init(null);
+		}
+		finally {
+			System.setOut(stdout);
+		}
+		File runDir = new File(dir, "threads" + nrofThreads);
+		assertTrue(out.renameTo(runDir));
+		return runDir;
+	}
+
+	private static String read(File file) throws IOException {
+		return new String(Files.readAllBytes(file.toPath()), "UTF-8");
+	}
+
+	private static void delete(File file) {
+		File[] files = file.listFiles();
+		if (files != null) {
+			for (File f : files) {
+				delete(f);
+			}
+		}
+		file.delete();
+	}
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+import movement.MovementModel;
+import report.Report;
+import ui.DTNSimTextUI;
+import ui.DTNSimUI;
+import core.Checkpoint;
+import core.DTNSim;
+import core.Settings;
+import core.SimContext;
+import core.SimScenario;
+
+/**
+ * Tests that a run resumed from a checkpoint writes the same reports as
+ * the uninterrupted run.
+ */
+public class CheckpointTest extends TestCase {
+	/** the reports of the distribution that work without extra modules
+	 * (all except DTN2Reporter) */
+	private static final String[] REPORTS = {"AdjacencyGraphvizReport",
+		"BufferOccupancyReport", "ConnectivityDtnsim2Report",
+		"ConnectivityONEReport", "ContactTimesReport",
+		"ContactsDuringAnICTReport", "ContactsPerHourReport",
+		"CreatedMessagesReport", "DeliveredMessagesReport",
+		"DistanceDelayReport", "EncountersVSUniqueEncountersReport",
+		"EnergyLevelReport", "EventLogReport", "InterContactTimesReport",
+		"MessageCopyCountReport", "MessageDelayReport",
+		"MessageDeliveryReport", "MessageGraphvizReport",
+		"MessageLocationReport", "MessageReport", "MessageStatsReport",
+		"MovementNs2Report", "PingAppReporter", "TotalContactTimeReport",
+		"TotalEncountersReport", "UniqueEncountersReport"};
+
+	private File dir;
+	private File reportDir;
+	private File checkpointDir;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		dir = Files.createTempDirectory("checkpointTest").toFile();
+		reportDir = new File(dir, "reports");
+		checkpointDir = new File(dir, "checkpoints");
+
+		TestSettings ts = new TestSettings();
+		String sns = SimScenario.SCENARIO_NS + ".";
+		String gns = SimScenario.GROUP_NS + ".";
+		ts.putSetting(sns + SimScenario.NAME_S, "checkpoint-scenario");
+		ts.putSetting(sns + SimScenario.END_TIME_S, "2000");
+		ts.putSetting(sns + SimScenario.UP_INT_S, "1");
+		ts.putSetting(sns + SimScenario.SIM_CON_S, "true");
+		ts.putSetting(sns + SimScenario.NROF_GROUPS_S, "1");
+		ts.putSetting(gns + SimScenario.GROUP_ID_S, "n");
+		ts.putSetting(gns + SimScenario.NROF_HOSTS_S, "20");
+		ts.putSetting(gns + SimScenario.MOVEMENT_MODEL_S, "RandomWaypoint");
+		ts.putSetting(gns + SimScenario.ROUTER_S, "EpidemicRouter");
+		ts.putSetting(gns + "speed", "0.5, 1.5");
+		ts.putSetting(gns + "waitTime", "0, 120");
+		ts.putSetting(gns + "bufferSize", "5M");
+		ts.putSetting(gns + "msgTtl", "300");
+		ts.putSetting(gns + "initialEnergy", "500");
+		ts.putSetting(gns + "scanEnergy", "0.1");
+		ts.putSetting(gns + "transmitEnergy", "0.2");
+		ts.putSetting(gns + "scanResponseEnergy", "0.1");
+		ts.putSetting(gns + SimScenario.NROF_INTERF_S, "1");
+		ts.putSetting(gns + SimScenario.INTERFACENAME_S + "1", "btInterface");
+		ts.putSetting("btInterface.type", "SimpleBroadcastInterface");
+		ts.putSetting("btInterface.transmitSpeed", "250k");
+		ts.putSetting("btInterface.transmitRange", "30");
+		ts.putSetting(MovementModel.MOVEMENT_MODEL_NS + "." +
+				MovementModel.WORLD_SIZE, "500, 500");
+		ts.putSetting("Events.nrof", "1");
+		ts.putSetting("Events1.class", "MessageEventGenerator");
+		ts.putSetting("Events1.interval", "25, 35");
+		ts.putSetting("Events1.size", "50k, 100k");
+		ts.putSetting("Events1.hosts", "0, 20");
+		ts.putSetting("Events1.prefix", "M");
+
+		ts.putSetting(Report.REPORTDIR_SETTING, reportDir.getPath());
+		ts.putSetting("Report.granularity", "100");
+		ts.putSetting("MessageLocationReport.messages", "M1, M5, M10");
+		ts.putSetting("BufferOccupancyReport.occupancyInterval", "100");
+		ts.putSetting(DTNSimUI.NROF_REPORT_S, String.valueOf(REPORTS.length));
+		for (int i=0; i < REPORTS.length; i++) {
+			ts.putSetting(DTNSimUI.REPORT_S + (i + 1), REPORTS[i]);
+		}
+		ts.putSetting(Checkpoint.CHECKPOINT_NS + "." + Checkpoint.INTERVAL_S,
+				"700");
+		ts.putSetting(Checkpoint.CHECKPOINT_NS + "." + Checkpoint.DIR_S,
+				checkpointDir.getPath());
+	}
+
+	protected void tearDown() throws Exception {
+		delete(dir);
+		super.tearDown();
+	}
+
+	public void testResumedRunWritesSameReports() throws IOException {
+		File checkpoint = runScenario(null);
+		assertEquals("checkpoint-scenario_0" + Checkpoint.CHECKPOINT_EXT,
+				checkpoint.getName());
+		assertTrue(checkpoint.exists());
+		assertEquals(1, checkpointDir.list().length); // no temporary files
+		Map<String, String> expected = readReports();
+		assertEquals(REPORTS.length, expected.size());
+
+		runScenario(checkpoint);
+		assertEquals(expected, readReports());
+	}
+
+	/**
+	 * Runs the scenario from the beginning or from a checkpoint
+	 * @param checkpoint The checkpoint to resume or null to start a new run
+	 * @return The checkpoint file of the run
+	 */
+	private File runScenario(File checkpoint) {
+		PrintStream out = System.out;
+		System.setOut(new PrintStream(new OutputStream() {
+			public void write(int b) {}
+		}));
+		SimContext.enter(new SimContext(0));
+		try {
+			DTNSimUI ui = new DTNSimTextUI();
+			if (checkpoint == null) {
+				Settings.setRunIndex(0);
+				DTNSim.resetForNextRun();
+				ui.start();
+			}
+			else {
+				ui.resume(checkpoint);
+			}
+			return Checkpoint.getFile();
+		}
+		finally {
+			SimContext.exit();
+			System.setOut(out);
+		}
+	}
+
+	private Map<String, String> readReports() throws IOException {
+		Map<String, String> reports = new HashMap<String, String>();
+		for (File f : reportDir.listFiles()) {
+			reports.put(f.getName(), new String(Files.readAllBytes(f.toPath()),
+					"UTF-8"));
+		}
+		return reports;
+	}
+
+	private static void delete(File f) {
+		File[] children = f.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		f.delete();
+	}
+}
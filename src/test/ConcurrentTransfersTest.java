@@ -0,0 +1,92 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import routing.ActiveRouter;
+import routing.EpidemicRouter;
+import routing.MessageRouter;
+import core.Message;
+
+/**
+ * Tests for concurrent transfers of active routers
+ */
+public class ConcurrentTransfersTest extends AbstractRouterTest {
+	private static final int MSG_SIZE = 10;
+
+	@Override
+	public void setUp() throws Exception {
+		ts.putSetting(MessageRouter.B_SIZE_S, ""+BUFFER_SIZE);
+		ts.putSetting(ActiveRouter.CONCURRENT_TRANSFERS_S, "2");
+		setRouterProto(new EpidemicRouter(ts));
+		super.setUp();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		ts.putSetting(ActiveRouter.CONCURRENT_TRANSFERS_S, "1");
+		super.tearDown();
+	}
+
+	public void testSharedBandwidth() {
+		h1.createNewMessage(new Message(h1, h4, msgId1, MSG_SIZE));
+		checkCreates(1);
+		h1.connect(h2);
+		h1.connect(h3);
+
+		h1.update(true);
+		checkTransferStart(h1, h2, msgId1);
+		checkTransferStart(h1, h3, msgId1);
+		assertFalse(mc.next());
+
+		/* both transfers get half of the speed */
+		clock.advance((1.0 * MSG_SIZE) / TRANSMIT_SPEED);
+		updateAllNodes();
+		assertFalse(mc.next());
+
+		clock.advance((1.0 * MSG_SIZE) / TRANSMIT_SPEED);
+		updateAllNodes();
+		checkDelivered(h1, h2, msgId1, false);
+		checkDelivered(h1, h3, msgId1, false);
+		assertFalse(mc.next());
+	}
+
+	public void testFreedBandwidth() {
+		h1.createNewMessage(new Message(h1, h2, msgId1, MSG_SIZE));
+		h1.createNewMessage(new Message(h1, h3, msgId2, 2 * MSG_SIZE));
+		// h2 has msgId2 already so h1 has nothing more to send to it
+		h2.createNewMessage(new Message(h1, h3, msgId2, 2 * MSG_SIZE));
+		checkCreates(3);
+		h1.connect(h2);
+		h1.connect(h3);
+		h1.update(true);
+		h1.update(true);
+		checkTransferStart(h1, h2, msgId1);
+		checkTransferStart(h1, h3, msgId2);
+
+		/* the shorter transfer finishes after 2 s, the other one has then
+		 * 10 bytes left and gets all of the speed */
+		clock.advance(2.0 * MSG_SIZE / TRANSMIT_SPEED);
+		h1.update(true);
+		checkDelivered(h1, h2, msgId1, false);
+		assertFalse(mc.next());
+
+		clock.advance((1.0 * MSG_SIZE) / TRANSMIT_SPEED);
+		h1.update(true);
+		checkDelivered(h1, h3, msgId2, false);
+	}
+
+	public void testNoParallelCopiesToSameHost() {
+		h1.createNewMessage(new Message(h1, h4, msgId1, MSG_SIZE));
+		h2.createNewMessage(new Message(h1, h4, msgId1, MSG_SIZE));
+		checkCreates(2);
+		h1.connect(h3);
+		h2.connect(h3);
+
+		h1.update(true);
+		h2.update(true);
+		checkTransferStart(h1, h3, msgId1);
+		assertFalse(mc.next()); // h3 is already receiving the message
+	}
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+import core.Connection;
+import core.DTNHost;
+import core.SimError;
+import core.UpdateListener;
+import core.World;
+
+/**
+ * Tests the recycling of torn down connections (connection pooling).
+ */
+public class ConnectionPoolTest extends TestCase {
+	private static final int NROF_HOSTS = 20;
+	private static final double END_TIME = 2000;
+
+	private TestSettings ts;
+	private ScenarioRunner runner;
+	private ConnectionTracker tracker;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		ts = new TestSettings();
+		ScenarioRunner.putMovingScenario(ts, NROF_HOSTS, END_TIME);
+		runner = new ScenarioRunner();
+		tracker = new ConnectionTracker();
+		runner.setUpdateListener(tracker);
+	}
+
+	private void setPooling(boolean pooling, boolean checks) {
+		ts.putSetting(World.SETTINGS_NS + "." + World.CONNECTION_POOLING_S,
+				String.valueOf(pooling));
+		ts.putSetting(World.SETTINGS_NS + "." +
+				World.CONNECTION_POOL_CHECKS_S, String.valueOf(checks));
+	}
+
+	public void testReleasedConnectionsAreReused() {
+		setPooling(false, false);
+		runner.run();
+		assertEquals(0, tracker.nrofReuses);
+		int unpooled = tracker.connections.size();
+
+		setPooling(true, false);
+		tracker = new ConnectionTracker();
+		runner.setUpdateListener(tracker);
+		runner.run();
+		assertTrue(tracker.nrofReuses > 0);
+		assertTrue(tracker.connections.size() < unpooled);
+	}
+
+	public void testSameEventsAsWithoutPooling() {
+		setPooling(false, false);
+		String expected = runner.run();
+		assertTrue(expected.contains(" relay "));
+
+		setPooling(true, false);
+		assertEquals(expected, runner.run());
+		setPooling(true, true);
+		assertEquals(expected, runner.run());
+	}
+
+	public void testUseAfterReleaseIsDetected() {
+		setPooling(true, true);
+		runner.run();
+		assertTrue(tracker.nrofUsesAfterRelease() > 0);
+	}
+
+	public void testNoDetectionWithoutChecks() {
+		setPooling(true, false);
+		runner.run();
+		assertEquals(0, tracker.nrofUsesAfterRelease());
+	}
+
+	/**
+	 * Keeps a reference to every connection it sees in the world updates,
+	 * like a module that doesn't drop its connection references
+	 */
+	private static class ConnectionTracker implements UpdateListener {
+		/** the connections and the host pairs they were last seen with */
+		private final Map<Connection, String> connections =
+			new IdentityHashMap<Connection, String>();
+		private int nrofReuses;
+
+		public void updated(List<DTNHost> hosts) {
+			for (DTNHost host : hosts) {
+				for (Connection con : host.getConnections()) {
+					DTNHost other = con.getOtherNode(host);
+					String pair = Math.min(host.getAddress(),
+							other.getAddress()) + "-" + Math.max(
+							host.getAddress(), other.getAddress());
+					String previous = connections.put(con, pair);
+					if (previous != null && !previous.equals(pair)) {
+						nrofReuses++;
+					}
+				}
+			}
+		}
+
+		/**
+		 * Uses all the seen connections and counts the uses that failed
+		 * because the connection was released
+		 * @return Number of connections used after their release
+		 */
+		private int nrofUsesAfterRelease() {
+			int count = 0;
+			for (Connection con : new ArrayList<Connection>(
+					connections.keySet())) {
+				try {
+					con.isUp();
+				} catch (SimError e) {
+					count++;
+				}
+			}
+			return count;
+		}
+	}
+}
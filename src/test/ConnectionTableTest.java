@@ -0,0 +1,87 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import core.Connection;
+import core.ConnectionListener;
+import core.Coord;
+import core.DTNHost;
+import core.MessageListener;
+import core.NetworkInterface;
+
+/**
+ * Tests for the indexed connection lists of network interfaces and the
+ * connection views of hosts
+ */
+public class ConnectionTableTest extends TestCase {
+	private static final int NROF_HOSTS = 50;
+
+	private DTNHost[] hosts;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		TestUtils utils = new TestUtils(new ArrayList<ConnectionListener>(),
+				new ArrayList<MessageListener>(), new TestSettings());
+		hosts = new DTNHost[NROF_HOSTS];
+		for (int i=0; i < NROF_HOSTS; i++) {
+			hosts[i] = utils.createHost(new Coord(0, 0));
+		}
+	}
+
+	private NetworkInterface ni(int host) {
+		return hosts[host].getInterfaces().get(0);
+	}
+
+	public void testConnectAndDisconnect() {
+		for (int i=1; i < NROF_HOSTS; i++) {
+			ni(0).createConnection(ni(i));
+		}
+		for (int i=1; i < NROF_HOSTS; i++) {
+			Connection con = ni(0).getConnection(ni(i));
+			assertNotNull(con);
+			assertSame(con, ni(i).getConnection(ni(0)));
+			assertNull(ni(1).getConnection(ni(i)));
+		}
+
+		/* tear down every other connection */
+		for (int i=1; i < NROF_HOSTS; i += 2) {
+			ni(i).destroyConnection(ni(0));
+		}
+		for (int i=1; i < NROF_HOSTS; i++) {
+			assertEquals(i % 2 == 0, ni(0).getConnection(ni(i)) != null);
+			assertEquals(i % 2 == 0, ni(i).getConnection(ni(0)) != null);
+		}
+
+		/* order of creation is kept */
+		List<Connection> cons = ni(0).getConnections();
+		assertEquals(NROF_HOSTS / 2 - 1, cons.size());
+		for (int i=0; i < cons.size(); i++) {
+			assertSame(hosts[2 * (i + 1)], cons.get(i).getOtherNode(hosts[0]));
+		}
+	}
+
+	public void testConnectionsView() {
+		List<Connection> view = hosts[0].getConnectionsView();
+		assertEquals(0, view.size());
+		ni(0).createConnection(ni(1));
+		ni(2).createConnection(ni(0));
+		assertEquals(hosts[0].getConnections(), view);
+
+		ni(0).destroyConnection(ni(1));
+		assertEquals(1, view.size());
+		assertSame(hosts[2], view.get(0).getOtherNode(hosts[0]));
+
+		try {
+			view.clear();
+			fail("View should be read-only");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+	}
+}
@@ -150,7 +150,29 @@ public class ConnectionTest extends TestCase {
 		assertTrue(c[1].isMessageTransferred());
 	}
 
-	
+	public void testGetTransferReadyTime() {
+		for (int i=0; i<this.conCount; i++) {
+			double ready = c[i].getTransferReadyTime();
+			assertTrue(ready <= c[i].getTransferDoneTime());
+			clock.setTime(Math.nextDown(ready));
+			assertFalse("index " + i, c[i].isMessageTransferred());
+			clock.setTime(ready);
+			assertTrue("index " + i, c[i].isMessageTransferred());
+		}
+	}
+
+	public void testTimeAfter() {
+		double[] starts = {0.0, 0.1, 10.3, 1234.567, 8490000.7};
+		double[] elapsed = {0.1, 60, 240, 0.3};
+		for (double start : starts) {
+			for (double e : elapsed) {
+				double time = SimClock.timeAfter(start, e);
+				assertTrue(time - start >= e);
+				assertTrue(Math.nextDown(time) - start < e);
+			}
+		}
+	}
+
 	public void testFinalizeTransfer() {
 		assertFalse(c[0].isMessageTransferred());
 		c[0].finalizeTransfer(); /* this doesn't check time */
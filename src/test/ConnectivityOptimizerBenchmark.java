@@ -0,0 +1,175 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import interfaces.ConnectivityOptimizer;
+import interfaces.NeighborCursor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import movement.MovementModel;
+import core.ConnectionListener;
+import core.Coord;
+import core.DTNHost;
+import core.MessageListener;
+import core.NetworkInterface;
+import core.SimContext;
+import core.World;
+
+/**
+ * Benchmark that compares the connectivity optimizers with 1k, 10k and 50k
+ * hosts. Most of the hosts are crowded in a "downtown" area and the rest
+ * are spread over a large world. Every tick the hosts take a small random
+ * step and the neighbors of all interfaces are searched, like in the
+ * connectivity update. The mixed range runs give a long range to some of
+ * the hosts. Not part of the test suite; run with<BR>
+ * <CODE>java -cp ... test.ConnectivityOptimizerBenchmark [ticks]</CODE>
+ */
+public class ConnectivityOptimizerBenchmark {
+	/** the compared optimizers */
+	private static final String[] OPTIMIZERS =
+		{"ConnectivityGrid", "SweepAndPrune", "HierarchicalGrid"};
+	/** the host counts */
+	private static final int[] HOST_COUNTS = {1000, 10000, 50000};
+	/** the host counts of the mixed range runs */
+	private static final int[] MIXED_HOST_COUNTS = {1000, 10000};
+	/** size of the (square) world and the downtown area (meters) */
+	private static final int WORLD_SIZE = 20000;
+	private static final int DOWNTOWN_SIZE = 1000;
+	/** share of the hosts in the downtown area */
+	private static final double DOWNTOWN_SHARE = 0.7;
+	/** range of the interfaces (meters) */
+	private static final double RANGE = 10;
+	/** range and share of the long range interfaces in mixed runs */
+	private static final double LONG_RANGE = 1000;
+	private static final double LONG_SHARE = 0.05;
+	/** longest step of a host per tick (meters) */
+	private static final double MAX_STEP = 1.5;
+	/** default number of measured ticks */
+	private static final int DEF_TICKS = 20;
+
+	public static void main(String[] args) {
+		int ticks = args.length > 0 ? Integer.parseInt(args[0]) : DEF_TICKS;
+		System.out.println("hosts\toptimizer\tsetup ms\tms/tick\t" +
+				"candidates/host\theap MB");
+		for (int nrofHosts : HOST_COUNTS) {
+			for (String optimizer : OPTIMIZERS) {
+				run(optimizer, nrofHosts, 0, ticks);
+			}
+		}
+		System.out.println("mixed ranges: " + (int)(LONG_SHARE * 100) +
+				"% of the hosts with " + LONG_RANGE + " m range");
+		for (int nrofHosts : MIXED_HOST_COUNTS) {
+			for (String optimizer : OPTIMIZERS) {
+				run(optimizer, nrofHosts, LONG_SHARE, ticks);
+			}
+		}
+	}
+
+	/**
+	 * Runs the benchmark for one optimizer and host count and prints the
+	 * results. The long range hosts are created first, so the optimizers
+	 * that use the range of the first interface are sized for them.
+	 */
+	private static void run(String optimizer, int nrofHosts,
+			double longShare, int ticks) {
+		SimContext.enter(new SimContext(0));
+		TestSettings ts = new TestSettings();
+		ts.putSetting(MovementModel.MOVEMENT_MODEL_NS + "." +
+				MovementModel.WORLD_SIZE, WORLD_SIZE + "," + WORLD_SIZE);
+		ts.putSetting(World.SETTINGS_NS + "." + World.CON_OPTIMIZER_S,
+				optimizer);
+		TestUtils longUtils = new TestUtils(
+				new ArrayList<ConnectionListener>(),
+				new ArrayList<MessageListener>(), ts);
+		longUtils.setTransmitRange(LONG_RANGE);
+		TestUtils utils = new TestUtils(new ArrayList<ConnectionListener>(),
+				new ArrayList<MessageListener>(), ts);
+		utils.setTransmitRange(RANGE);
+		Random rng = new Random(nrofHosts);
+
+		long start = System.nanoTime();
+		List<NetworkInterface> interfaces =
+			new ArrayList<NetworkInterface>(nrofHosts);
+		int nrofLong = (int)(nrofHosts * longShare);
+		for (int i=0; i < nrofHosts; i++) {
+			DTNHost host = (i < nrofLong ? longUtils : utils).createHost(
+					randomLocation(rng));
+			interfaces.add(host.getInterfaces().get(0));
+		}
+		/* the interfaces are added before the hosts get their locations,
+		 * so the first update is part of the setup */
+		NetworkInterface first = interfaces.get(0);
+		ConnectivityOptimizer opt = ConnectivityOptimizer.getOptimizer(
+				first.getInterfaceType().hashCode(),
+				first.getTransmitRange());
+		for (NetworkInterface ni : interfaces) {
+			opt.updateLocation(ni);
+		}
+		double setupMs = (System.nanoTime() - start) / 1e6;
+		long heap = usedHeap();
+
+		NeighborCursor cursor = new NeighborCursor();
+		long candidates = 0;
+		long moveTime = 0;
+		start = System.nanoTime();
+		for (int t=0; t < ticks; t++) {
+			long moveStart = System.nanoTime();
+			for (NetworkInterface ni : interfaces) {
+				step(ni.getHost(), rng);
+			}
+			moveTime += System.nanoTime() - moveStart;
+			for (NetworkInterface ni : interfaces) {
+				opt.updateLocation(ni);
+				opt.findNearInterfaces(ni, cursor);
+				candidates += cursor.size();
+			}
+		}
+		double tickMs = (System.nanoTime() - start - moveTime) / 1e6 / ticks;
+
+		System.out.println(String.format("%d\t%s\t%.1f\t%.2f\t%.1f\t%.1f",
+				nrofHosts, optimizer, setupMs, tickMs,
+				(double)candidates / ticks / nrofHosts, heap / 1e6));
+		SimContext.exit();
+	}
+
+	/**
+	 * Returns a random location: downtown for the most of the hosts and
+	 * anywhere in the world for the rest
+	 */
+	private static Coord randomLocation(Random rng) {
+		if (rng.nextDouble() < DOWNTOWN_SHARE) {
+			double offset = (WORLD_SIZE - DOWNTOWN_SIZE) / 2.0;
+			return new Coord(offset + rng.nextDouble() * DOWNTOWN_SIZE,
+					offset + rng.nextDouble() * DOWNTOWN_SIZE);
+		}
+		return new Coord(rng.nextDouble() * WORLD_SIZE,
+				rng.nextDouble() * WORLD_SIZE);
+	}
+
+	/**
+	 * Moves a host a small random step, staying inside the world
+	 */
+	private static void step(DTNHost host, Random rng) {
+		Coord c = host.getLocation();
+		double x = c.getX() + (rng.nextDouble() * 2 - 1) * MAX_STEP;
+		double y = c.getY() + (rng.nextDouble() * 2 - 1) * MAX_STEP;
+		c.setLocation(Math.min(Math.max(x, 0), WORLD_SIZE - 1),
+				Math.min(Math.max(y, 0), WORLD_SIZE - 1));
+	}
+
+	/**
+	 * Returns the heap use after garbage collection
+	 */
+	private static long usedHeap() {
+		Runtime rt = Runtime.getRuntime();
+		for (int i=0; i < 3; i++) {
+			rt.gc();
+		}
+		return rt.totalMemory() - rt.freeMemory();
+	}
+}
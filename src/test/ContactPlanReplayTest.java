@@ -0,0 +1,162 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.ContactPlanQueue;
+import input.ContactPlanReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+
+import junit.framework.TestCase;
+import movement.MovementModel;
+import report.Report;
+import ui.DTNSimTextUI;
+import ui.DTNSimUI;
+import core.DTNSim;
+import core.Settings;
+import core.SimContext;
+import core.SimScenario;
+import core.World;
+
+/**
+ * Tests that replaying a recorded contact plan gives the same routing
+ * results as the run where the plan was recorded.
+ */
+public class ContactPlanReplayTest extends TestCase {
+	private static final String RECORD = "record";
+	private static final String REPLAY = "replay";
+	private static final String[] REPORTS = {"MessageStatsReport",
+		"DeliveredMessagesReport"};
+
+	private File dir;
+	private TestSettings ts;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		dir = Files.createTempDirectory("contactPlanReplayTest").toFile();
+
+		ts = new TestSettings();
+		String sns = SimScenario.SCENARIO_NS + ".";
+		String gns = SimScenario.GROUP_NS + ".";
+		ts.putSetting(sns + SimScenario.END_TIME_S, "3000");
+		ts.putSetting(sns + SimScenario.UP_INT_S, "0.1");
+		ts.putSetting(sns + SimScenario.NROF_GROUPS_S, "1");
+		ts.putSetting(gns + SimScenario.GROUP_ID_S, "n");
+		ts.putSetting(gns + SimScenario.NROF_HOSTS_S, "40");
+		ts.putSetting(gns + SimScenario.MOVEMENT_MODEL_S, "RandomWaypoint");
+		ts.putSetting(gns + SimScenario.ROUTER_S, "EpidemicRouter");
+		ts.putSetting(gns + "speed", "0.5, 1.5");
+		ts.putSetting(gns + "waitTime", "0, 120");
+		ts.putSetting(gns + "bufferSize", "2M");
+		ts.putSetting(gns + "msgTtl", "300");
+		ts.putSetting(gns + SimScenario.NROF_INTERF_S, "1");
+		ts.putSetting(gns + SimScenario.INTERFACENAME_S + "1", "btInterface");
+		ts.putSetting("btInterface.type", "SimpleBroadcastInterface");
+		ts.putSetting("btInterface.transmitSpeed", "250k");
+		ts.putSetting("btInterface.transmitRange", "30");
+		ts.putSetting(MovementModel.MOVEMENT_MODEL_NS + "." +
+				MovementModel.WORLD_SIZE, "600, 600");
+		ts.putSetting("Events1.class", "MessageEventGenerator");
+		ts.putSetting("Events1.interval", "15, 25");
+		ts.putSetting("Events1.size", "100k, 500k");
+		ts.putSetting("Events1.hosts", "0, 40");
+		ts.putSetting("Events1.prefix", "M");
+		ts.putSetting(Report.REPORTDIR_SETTING, dir.getPath());
+	}
+
+	protected void tearDown() throws Exception {
+		delete(dir);
+		super.tearDown();
+	}
+
+	public void testReplayGivesSameResults() throws IOException {
+		assertSameResults();
+	}
+
+	public void testReplayWithTwoPhaseUpdate() throws IOException {
+		ts.putSetting(World.SETTINGS_NS + "." +
+				World.TWO_PHASE_CONNECTIVITY_S, "true");
+		assertSameResults();
+	}
+
+	public void testReplayWithKineticConnectivity() throws IOException {
+		ts.putSetting(World.SETTINGS_NS + "." +
+				World.TWO_PHASE_CONNECTIVITY_S, "true");
+		ts.putSetting(World.SETTINGS_NS + "." +
+				World.KINETIC_CONNECTIVITY_S, "true");
+		assertSameResults();
+	}
+
+	/**
+	 * Records the scenario's contact plan, replays it and checks that both
+	 * runs write the same reports
+	 */
+	private void assertSameResults() throws IOException {
+		String sns = SimScenario.SCENARIO_NS + ".";
+		ts.putSetting(sns + SimScenario.NAME_S, RECORD);
+		ts.putSetting(sns + SimScenario.SIM_CON_S, "true");
+		ts.putSetting("Events.nrof", "1");
+		ts.putSetting(DTNSimUI.NROF_REPORT_S, "" + (REPORTS.length + 1));
+		ts.putSetting(DTNSimUI.REPORT_S + (REPORTS.length + 1),
+				"ContactPlanReport");
+		for (int i=0; i < REPORTS.length; i++) {
+			ts.putSetting(DTNSimUI.REPORT_S + (i + 1), REPORTS[i]);
+		}
+		runScenario();
+
+		ts.putSetting(sns + SimScenario.NAME_S, REPLAY);
+		ts.putSetting(sns + SimScenario.SIM_CON_S, "false");
+		ts.putSetting("Events.nrof", "2");
+		ts.putSetting("Events2.class", "ContactPlanQueue");
+		ts.putSetting("Events2." + ContactPlanQueue.PLAN_FILE_S,
+				new File(dir, RECORD + "_ContactPlanReport" +
+						ContactPlanReader.PLAN_EXT).getPath());
+		ts.putSetting(DTNSimUI.NROF_REPORT_S, "" + REPORTS.length);
+		runScenario();
+
+		String stats = read(RECORD, REPORTS[0]);
+		assertFalse(stats.contains("delivered: 0\n"));
+		for (String report : REPORTS) {
+			assertEquals(report, read(RECORD, report),
+					read(REPLAY, report).replace(REPLAY, RECORD));
+		}
+	}
+
+	private void runScenario() {
+		PrintStream out = System.out;
+		System.setOut(new PrintStream(new OutputStream() {
+			public void write(int b) {}
+		}));
+		SimContext.enter(new SimContext(0));
+		try {
+			Settings.setRunIndex(0);
+			DTNSim.resetForNextRun();
+			new DTNSimTextUI().start();
+		}
+		finally {
+			SimContext.exit();
+			System.setOut(out);
+		}
+	}
+
+	private String read(String scenario, String report) throws IOException {
+		File f = new File(dir, scenario + "_" + report + Report.OUT_SUFFIX);
+		return new String(Files.readAllBytes(f.toPath()), "UTF-8");
+	}
+
+	private static void delete(File f) {
+		File[] children = f.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		f.delete();
+	}
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.ContactPlanEvent;
+import input.ContactPlanQueue;
+import input.ContactPlanReader;
+import input.ContactPlanWriter;
+import input.ExternalEvent;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for writing and replaying compiled contact plans
+ */
+public class ContactPlanTest extends TestCase {
+	private static final double RESOLUTION = 0.1;
+	/** more changes than fit in one block */
+	private static final int NROF_CHANGES =
+		ContactPlanReader.BLOCK_SIZE * 2 + 10;
+
+	private File planFile;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		planFile = File.createTempFile("planTest", ContactPlanReader.PLAN_EXT);
+		planFile.deleteOnExit();
+	}
+
+	protected void tearDown() throws Exception {
+		planFile.delete();
+		super.tearDown();
+	}
+
+	/** time of the i:th change: two changes per tick */
+	private static double time(int i) {
+		return (i / 2) * RESOLUTION;
+	}
+
+	private void writePlan(ContactPlanWriter w, int from, int to) {
+		for (int i=from; i < to; i++) {
+			w.add(time(i), i % 2 == 0, i, i % 3, i + 1, i % 8);
+		}
+	}
+
+	private void checkEvent(ExternalEvent ee, int i) {
+		assertTrue(ee instanceof ContactPlanEvent);
+		assertEquals((time(i) / RESOLUTION - 0.5) * RESOLUTION,
+				ee.getTime(), 1e-9);
+		String expected = "PLAN " + (i % 2 == 0 ? "up" : "down") + " @" +
+			ee.getTime() + " " + i + ":" + (i % 3) + "<->" + (i + 1) + ":" +
+			(i % 8);
+		assertEquals(expected, ee.toString());
+	}
+
+	public void testWriteAndReplay() {
+		ContactPlanWriter w = new ContactPlanWriter(planFile, RESOLUTION);
+		writePlan(w, 0, NROF_CHANGES);
+		w.close();
+
+		ContactPlanQueue q = new ContactPlanQueue(planFile);
+		for (int i=0; i < NROF_CHANGES; i++) {
+			assertTrue(q.nextEventsTime() <= time(i));
+			assertTrue(q.nextEventsTime() > time(i) - RESOLUTION);
+			checkEvent(q.nextEvent(), i);
+		}
+		assertEquals(Double.MAX_VALUE, q.nextEventsTime());
+		assertEquals(Double.MAX_VALUE, q.nextEvent().getTime());
+	}
+
+	public void testEmptyPlan() {
+		new ContactPlanWriter(planFile, RESOLUTION).close();
+		ContactPlanReader r = new ContactPlanReader(planFile);
+		assertEquals(0, r.size());
+		assertFalse(r.hasNext());
+		r.seekTime(10);
+		assertEquals(Double.MAX_VALUE, r.nextTime());
+		r.close();
+	}
+
+	public void testSeek() {
+		ContactPlanWriter w = new ContactPlanWriter(planFile, RESOLUTION);
+		writePlan(w, 0, NROF_CHANGES);
+		w.close();
+
+		ContactPlanReader r = new ContactPlanReader(planFile);
+		assertEquals(NROF_CHANGES, r.size());
+		int change = ContactPlanReader.BLOCK_SIZE + 7;
+		r.seekChange(change);
+		checkEvent(r.next(), change);
+
+		r.seekTime(time(change));
+		assertEquals(change - 1, r.getPosition()); // same tick as change
+		r.seekTime(0);
+		assertEquals(0, r.getPosition());
+		r.seekTime(time(NROF_CHANGES) + 1);
+		assertFalse(r.hasNext());
+		r.close();
+	}
+
+	public void testOutOfOrderChange() {
+		ContactPlanWriter w = new ContactPlanWriter(planFile, RESOLUTION);
+		w.add(10, true, 1, 0, 2, 0);
+		try {
+			w.add(5, false, 1, 0, 2, 0);
+			fail("Out of order change was accepted");
+		} catch (core.SimError e) {
+			// expected
+		}
+		w.close();
+	}
+
+	public void testSerialization() throws Exception {
+		ContactPlanWriter w = new ContactPlanWriter(planFile, RESOLUTION);
+		int half = ContactPlanReader.BLOCK_SIZE + 3;
+		writePlan(w, 0, half);
+		w = copy(w);
+		writePlan(w, half, NROF_CHANGES);
+		w.close();
+
+		ContactPlanQueue q = new ContactPlanQueue(planFile);
+		for (int i=0; i < half; i++) {
+			q.nextEvent();
+		}
+		ContactPlanQueue qCopy = copy(q);
+		for (int i=half; i < NROF_CHANGES; i++) {
+			checkEvent(qCopy.nextEvent(), i);
+		}
+		assertEquals(Double.MAX_VALUE, qCopy.nextEventsTime());
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T copy(T object) throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(object);
+		out.close();
+		ObjectInputStream in = new ObjectInputStream(
+				new ByteArrayInputStream(bytes.toByteArray()));
+		return (T)in.readObject();
+	}
+}
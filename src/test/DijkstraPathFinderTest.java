@@ -73,6 +73,32 @@ public class DijkstraPathFinderTest extends TestCase {
 		checkPath(getPath(n8,n4), n8, n7, n6, n5, n4);
 	}
 	
+	public void testConcurrentPathFinding() throws InterruptedException {
+		final boolean[] ok = new boolean[4];
+		Thread[] threads = new Thread[ok.length];
+		for (int i=0; i<threads.length; i++) {
+			final int index = i;
+			threads[i] = new Thread() {
+				public void run() {
+					for (int j=0; j<500; j++) {
+						List<MapNode> p1 = r.getShortestPath(n4, n8);
+						List<MapNode> p2 = r.getShortestPath(n3, n5);
+						if (p1.size() != 5 || p1.get(3) != n7 ||
+								p2.size() != 3 || p2.get(1) != n6) {
+							return;
+						}
+					}
+					ok[index] = true;
+				}
+			};
+			threads[i].start();
+		}
+		for (int i=0; i<threads.length; i++) {
+			threads[i].join();
+			assertTrue("Wrong path in thread " + i, ok[i]);
+		}
+	}
+	
 	private void checkPath(List<MapNode> path, MapNode ... nodes) {
 		assertEquals(nodes.length,path.size());
 		
@@ -0,0 +1,343 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import routing.contextAware.ENS.EncounteredNode;
+import routing.contextAware.ENS.EncounteredNodeSet;
+import core.DTNHost;
+import core.SimClock;
+import core.SimContext;
+
+/**
+ * Tests that the encountered node set stored by host address, with the
+ * expiry heap and the exchanges of changed nodes only, behaves like the
+ * earlier set stored in a map keyed by host ids.
+ */
+public class EncounteredNodeSetTest extends TestCase {
+	private static final int NROF_HOSTS = 8;
+	private static final int NROF_STEPS = 20000;
+	/** time to live of the encounters in the set */
+	private static final int TTL = 3600;
+
+	private List<DTNHost> hosts;
+	private Random rng;
+	private SimClock clock;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimContext.enter(new SimContext(0));
+		clock = SimClock.getInstance();
+		clock.setTime(0);
+		core.DTNHost.reset();
+		TestUtils utils = new TestUtils(null, null, new TestSettings());
+		hosts = new ArrayList<DTNHost>();
+		for (int i=0; i < NROF_HOSTS; i++) {
+			hosts.add(utils.createHost());
+		}
+		rng = new Random(5);
+	}
+
+	protected void tearDown() throws Exception {
+		SimContext.exit();
+		super.tearDown();
+	}
+
+	public void testExpiry() {
+		EncounteredNodeSet ens = new EncounteredNodeSet();
+		DTNHost host = hosts.get(0);
+		update(ens, 1, 0);
+		update(ens, 2, 100);
+		/* many refreshes of the same node fill the heap with old times */
+		for (int t = 200; t < 2200; t += 20) {
+			update(ens, 3, t);
+		}
+		update(ens, 3, 2500);
+
+		clock.setTime(TTL + 50);
+		ens.removeOldEncounters();
+		assertEquals(set("2", "3"), ens.getAllNodeIds());
+
+		clock.setTime(TTL + 2400);
+		ens.removeOldEncounters();
+		assertEquals(set("3"), ens.getAllNodeIds());
+
+		/* a node removed and added again expires by its new time */
+		ens.removeEncounter("3");
+		update(ens, 3, 5000);
+		clock.setTime(TTL + 4000);
+		ens.removeOldEncounters();
+		assertEquals(set("3"), ens.getAllNodeIds());
+		clock.setTime(TTL + 5001);
+		ens.removeOldEncounters();
+		assertTrue(ens.isEmpty());
+		assertFalse(ens.containsNode(host.getAddress()));
+	}
+
+	public void testExpiryAfterDroppingOldTimes() {
+		EncounteredNodeSet ens = new EncounteredNodeSet();
+		update(ens, 1, 0);
+		update(ens, 2, 900);
+		update(ens, 3, 100);
+		/* refreshes of node 1 until the old times of it are dropped */
+		for (int t = 1000; t < 1100; t++) {
+			update(ens, 1, t);
+		}
+		assertEquals(set("1", "2", "3"), ens.getAllNodeIds());
+
+		clock.setTime(TTL + 500);
+		ens.removeOldEncounters();
+		assertEquals(set("1", "2"), ens.getAllNodeIds());
+		clock.setTime(TTL + 1000);
+		ens.removeOldEncounters();
+		assertEquals(set("1"), ens.getAllNodeIds());
+	}
+
+	public void testSameAsMapSetWithRepeatedExchanges() {
+		EncounteredNodeSet[] sets = new EncounteredNodeSet[NROF_HOSTS];
+		MapENS[] expected = new MapENS[NROF_HOSTS];
+		for (int i=0; i < NROF_HOSTS; i++) {
+			sets[i] = new EncounteredNodeSet();
+			expected[i] = new MapENS();
+		}
+
+		for (int step = 0; step < NROF_STEPS; step++) {
+			/* most of the encounters are between the same few pairs */
+			int a = rng.nextInt(NROF_HOSTS);
+			int b = rng.nextInt(3) == 0 ? rng.nextInt(NROF_HOSTS) :
+				(a + 1 + rng.nextInt(2)) % NROF_HOSTS;
+			DTNHost ha = hosts.get(a);
+			DTNHost hb = hosts.get(b);
+			String ia = String.valueOf(ha.getAddress());
+			String ib = String.valueOf(hb.getAddress());
+			long now = SimClock.getIntTime();
+			int op = rng.nextInt(20);
+			if (op < 8) {
+				if (a == b) {
+					continue;
+				}
+				/* connection up: both sets are updated and exchanged */
+				sets[a].removeOldEncounters();
+				sets[b].removeOldEncounters();
+				expected[a].removeOldEncounters();
+				expected[b].removeOldEncounters();
+				double energy = rng.nextInt(3);
+				int buffer = rng.nextInt(3);
+				long duration = rng.nextInt(3);
+				double popularity = rng.nextDouble();
+				sets[a].updateENS(ha, hb, ib, now, energy, buffer, duration,
+						popularity);
+				sets[b].updateENS(hb, ha, ia, now, energy, buffer, duration,
+						popularity);
+				expected[a].updateENS(ha, ib, now, energy, buffer, duration,
+						popularity);
+				expected[b].updateENS(hb, ia, now, energy, buffer, duration,
+						popularity);
+				sets[a].exchangeWith(sets[b], ha, hb, now);
+				sets[b].exchangeWith(sets[a], hb, ha, now);
+				expected[a].exchangeWith(expected[b], ha, hb);
+				expected[b].exchangeWith(expected[a], hb, ha);
+			}
+			else if (op < 10) {
+				/* connection down */
+				sets[a].removeEncounter(ib);
+				sets[b].removeEncounter(ia);
+				expected[a].removeEncounter(ib);
+				expected[b].removeEncounter(ia);
+			}
+			else if (op < 11) {
+				long duration = rng.nextInt(5);
+				sets[a].updateConnectionDuration(ib, duration);
+				expected[a].updateConnectionDuration(ib, duration);
+			}
+			else if (op < 12) {
+				sets[a].mergeENS(ha, sets[b], now, hb);
+				expected[a].mergeENS(ha, expected[b]);
+			}
+			else if (op < 14) {
+				sets[a].removeOldEncounters();
+				expected[a].removeOldEncounters();
+			}
+			else {
+				clock.advance(rng.nextInt(10) == 0 ? rng.nextInt(2 * TTL) :
+					rng.nextInt(120));
+			}
+
+			if (step % 50 == 0) {
+				for (int i=0; i < NROF_HOSTS; i++) {
+					assertSameSet("step " + step, expected[i], sets[i]);
+				}
+			}
+		}
+	}
+
+	private void update(EncounteredNodeSet ens, int address, long time) {
+		clock.setTime(time);
+		ens.updateENS(hosts.get(0), hosts.get(address),
+				String.valueOf(address), time, 100, 1000, 10, 0.5);
+	}
+
+	private static Set<String> set(String... ids) {
+		Set<String> set = new HashSet<String>();
+		Collections.addAll(set, ids);
+		return set;
+	}
+
+	private void assertSameSet(String msg, MapENS expected,
+			EncounteredNodeSet ens) {
+		assertEquals(msg, expected.ensTable.keySet(), ens.getAllNodeIds());
+		assertEquals(msg, expected.ensTable.isEmpty(), ens.isEmpty());
+		assertEquals(msg, expected.ensTable.size(), ens.size());
+		Set<String> members = new HashSet<String>();
+		for (int i=0; i < ens.size(); i++) {
+			members.add(String.valueOf(ens.getNodeAddress(i)));
+		}
+		assertEquals(msg, expected.ensTable.keySet(), members);
+		for (int i=0; i < NROF_HOSTS; i++) {
+			assertEquals(msg, expected.ensTable.containsKey("" + i),
+					ens.containsNode(i));
+		}
+		double now = SimClock.getTime();
+		for (double window : new double[] {0, 60, 600, TTL}) {
+			assertEquals(msg, expected.countRecentEncounters(now, window),
+					ens.countRecentEncounters(now, window));
+		}
+		assertEquals(msg, expected.describe(), describe(ens));
+	}
+
+	/**
+	 * Returns the nodes of a set as sorted lines of the set's debug output
+	 */
+	private List<String> describe(EncounteredNodeSet ens) {
+		PrintStream out = System.out;
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(buffer));
+		try {
+			ens.debugENS(hosts.get(0));
+		} finally {
+			System.setOut(out);
+		}
+		List<String> lines = new ArrayList<String>();
+		for (String line : buffer.toString().split("\n")) {
+			if (line.contains(" -> ")) {
+				lines.add(line.trim());
+			}
+		}
+		Collections.sort(lines);
+		return lines;
+	}
+
+	/**
+	 * The earlier encountered node set: nodes in a map by node id.
+	 */
+	private static class MapENS {
+		private final Map<String, EncounteredNode> ensTable =
+			new HashMap<String, EncounteredNode>();
+
+		public void updateENS(DTNHost host, String nodeId, long encounterTime,
+				double remainingEnergy, int bufferSize,
+				long connectionDuration, double popularity) {
+			if (nodeId.equals(String.valueOf(host.getAddress()))) {
+				return;
+			}
+			EncounteredNode newNode = new EncounteredNode(nodeId,
+					encounterTime, remainingEnergy, bufferSize,
+					connectionDuration);
+			newNode.setPopularity(popularity);
+			EncounteredNode existing = ensTable.get(nodeId);
+			if (existing == null) {
+				ensTable.put(nodeId, newNode);
+				newNode.incrementEncounterCount();
+				return;
+			}
+			existing.incrementEncounterCount();
+			existing.setEncounterTime(newNode.getEncounterTime());
+			existing.setPopularity(newNode.getPopularity());
+			if (newNode.isMoreRelevantThan(existing)) {
+				existing.setRemainingEnergy(newNode.getRemainingEnergy());
+				existing.setBufferSize(newNode.getBufferSize());
+				existing.setConnectionDuration(
+						newNode.getConnectionDuration());
+			}
+		}
+
+		public void updateConnectionDuration(String nodeId, long duration) {
+			EncounteredNode node = ensTable.get(nodeId);
+			if (node != null) {
+				node.updateConnectionDuration(duration);
+			}
+		}
+
+		public void mergeENS(DTNHost host, MapENS other) {
+			String myId = String.valueOf(host.getAddress());
+			for (Map.Entry<String, EncounteredNode> e :
+					other.ensTable.entrySet()) {
+				if (e.getKey().equals(myId)) {
+					continue;
+				}
+				EncounteredNode node = ensTable.get(e.getKey());
+				if (node == null || e.getValue().isMoreRelevantThan(node)) {
+					ensTable.put(e.getKey(), e.getValue().clone());
+				}
+			}
+		}
+
+		/**
+		 * Merges a copy of the other set without the peer itself
+		 */
+		public void exchangeWith(MapENS other, DTNHost self, DTNHost peer) {
+			MapENS copy = new MapENS();
+			for (Map.Entry<String, EncounteredNode> e :
+					other.ensTable.entrySet()) {
+				copy.ensTable.put(e.getKey(), e.getValue().clone());
+			}
+			copy.removeEncounter(String.valueOf(peer.getAddress()));
+			mergeENS(self, copy);
+		}
+
+		public void removeEncounter(String nodeId) {
+			ensTable.remove(nodeId);
+		}
+
+		public void removeOldEncounters() {
+			for (String id : new ArrayList<String>(ensTable.keySet())) {
+				if (ensTable.get(id).isExpired()) {
+					ensTable.remove(id);
+				}
+			}
+		}
+
+		public int countRecentEncounters(double currentTime,
+				double timeWindow) {
+			int count = 0;
+			for (EncounteredNode node : ensTable.values()) {
+				if (currentTime - node.getEncounterTime() <= timeWindow) {
+					count++;
+				}
+			}
+			return count;
+		}
+
+		public List<String> describe() {
+			List<String> lines = new ArrayList<String>();
+			for (Map.Entry<String, EncounteredNode> e : ensTable.entrySet()) {
+				lines.add(e.getKey() + " -> " + e.getValue());
+			}
+			Collections.sort(lines);
+			return lines;
+		}
+	}
+}
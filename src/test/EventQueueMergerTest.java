@@ -0,0 +1,84 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package test;
+
+import input.EventQueue;
+import input.EventQueueMerger;
+import input.ScheduledUpdatesQueue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the EventQueueMerger
+ */
+public class EventQueueMergerTest extends TestCase {
+	private static final double MAX = Double.MAX_VALUE;
+	private List<ScheduledUpdatesQueue> queues;
+	private EventQueueMerger merger;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		queues = new ArrayList<ScheduledUpdatesQueue>();
+		for (int i=0; i<3; i++) {
+			queues.add(new ScheduledUpdatesQueue());
+		}
+	}
+
+	public void testEmpty() {
+		merger = new EventQueueMerger(new ArrayList<EventQueue>());
+		assertEquals(MAX, merger.nextEventsTime());
+		assertEquals(MAX, merger.nextEvent().getTime());
+
+		merger = new EventQueueMerger(queues);
+		assertEquals(MAX, merger.nextEventsTime());
+	}
+
+	public void testMerging() {
+		queues.get(0).addUpdate(5);
+		queues.get(0).addUpdate(1);
+		queues.get(1).addUpdate(3);
+		queues.get(2).addUpdate(2);
+		queues.get(2).addUpdate(4);
+		merger = new EventQueueMerger(queues);
+
+		for (int i=1; i<=5; i++) {
+			assertEquals((double)i, merger.nextEventsTime());
+			assertEquals((double)i, merger.nextEvent().getTime());
+		}
+		assertEquals(MAX, merger.nextEventsTime());
+	}
+
+	public void testUpdate() {
+		queues.get(1).addUpdate(10);
+		merger = new EventQueueMerger(queues);
+		assertEquals(10.0, merger.nextEventsTime());
+
+		queues.get(2).addUpdate(3);
+		assertEquals(10.0, merger.nextEventsTime()); // not updated yet
+		merger.update(queues.get(2));
+		assertEquals(3.0, merger.nextEventsTime());
+
+		queues.get(0).addUpdate(1);
+		merger.updateAll();
+		assertEquals(1.0, merger.nextEvent().getTime());
+		assertEquals(3.0, merger.nextEvent().getTime());
+		assertEquals(10.0, merger.nextEvent().getTime());
+	}
+
+	public void testEqualTimesInQueueOrder() {
+		for (int i=queues.size()-1; i>=0; i--) {
+			queues.get(i).addUpdate(1);
+		}
+		merger = new EventQueueMerger(queues);
+
+		for (int i=0; i<queues.size(); i++) {
+			merger.nextEvent();
+			assertEquals(MAX, queues.get(i).nextEventsTime());
+		}
+	}
+}
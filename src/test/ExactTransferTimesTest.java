@@ -0,0 +1,98 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+import core.DTNHost;
+import core.Message;
+import core.MessageListener;
+import core.SimClock;
+import core.World;
+
+/**
+ * Tests that with exact transfer times the transfers finish exactly at
+ * their start time plus the transfer time of the message.
+ */
+public class ExactTransferTimesTest extends TestCase {
+	private static final int NROF_HOSTS = 20;
+	private static final double END_TIME = 2000;
+	/** speed of the interfaces of the moving scenario (250k) */
+	private static final double SPEED = 250000;
+	private static final double EPSILON = 1e-9;
+
+	private TestSettings ts;
+	private ScenarioRunner runner;
+	private TransferTimer timer;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		ts = new TestSettings();
+		ScenarioRunner.putMovingScenario(ts, NROF_HOSTS, END_TIME);
+		runner = new ScenarioRunner();
+		timer = new TransferTimer();
+		runner.setMessageListener(timer);
+	}
+
+	private void setExactTransferTimes(boolean exact) {
+		ts.putSetting(World.SETTINGS_NS + "." + World.EXACT_TRANSFER_TIMES_S,
+				String.valueOf(exact));
+	}
+
+	public void testTransfersFinishAtExactTimes() {
+		setExactTransferTimes(true);
+		runner.run();
+		assertTrue(timer.nrofTransfers > 0);
+		assertEquals(0, timer.maxDelay, EPSILON);
+	}
+
+	public void testTransfersFinishAtUpdatesWithoutExactTimes() {
+		setExactTransferTimes(false);
+		runner.run();
+		assertTrue(timer.nrofTransfers > 0);
+		assertTrue(timer.maxDelay > 0.1);
+	}
+
+	/**
+	 * Measures how much later than start time + size / speed the
+	 * transfers finish
+	 */
+	private static class TransferTimer implements MessageListener {
+		private final Map<String, Double> startTimes =
+			new HashMap<String, Double>();
+		private int nrofTransfers;
+		private double maxDelay;
+
+		private static String key(Message m, DTNHost from, DTNHost to) {
+			return m.getId() + " " + from + " " + to;
+		}
+
+		public void messageTransferStarted(Message m, DTNHost from,
+				DTNHost to) {
+			startTimes.put(key(m, from, to), SimClock.getTime());
+		}
+
+		public void messageTransferred(Message m, DTNHost from, DTNHost to,
+				boolean firstDelivery) {
+			double start = startTimes.remove(key(m, from, to));
+			double delay = SimClock.getTime() - (start + m.getSize() / SPEED);
+			assertTrue("finished early: " + delay, delay > -EPSILON);
+			maxDelay = Math.max(maxDelay, delay);
+			nrofTransfers++;
+		}
+
+		public void messageTransferAborted(Message m, DTNHost from,
+				DTNHost to) {
+			startTimes.remove(key(m, from, to));
+		}
+
+		public void newMessage(Message m) {}
+
+		public void messageDeleted(Message m, DTNHost where,
+				boolean dropped) {}
+	}
+}
@@ -11,7 +11,11 @@ import input.ExternalEventsReader;
 import input.MessageCreateEvent;
 import input.StandardEventsReader;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.PrintWriter;
 import java.util.List;
 
@@ -82,6 +86,31 @@ public class ExternalEventsQueueTest extends TestCase {
 	}
 	
 	
+	public void testSerialization() throws Exception {
+		int preload = 3;
+		int taken = 4;
+		eeq = new ExternalEventsQueue(tempFile.getAbsolutePath(),preload);
+		for (int i=0; i < taken; i++) {
+			eeq.nextEvent();
+		}
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(eeq);
+		out.close();
+		ObjectInputStream in = new ObjectInputStream(
+				new ByteArrayInputStream(bytes.toByteArray()));
+		ExternalEventsQueue copy = (ExternalEventsQueue)in.readObject();
+
+		/* the copy continues from the same point as the original */
+		for (int i=taken; i < msgTimes.length; i++) {
+			assertEquals(msgTimes[i], copy.nextEventsTime());
+			assertEquals(msgTimes[i], copy.nextEvent().getTime());
+			assertEquals(msgTimes[i], eeq.nextEvent().getTime());
+		}
+		assertEquals(Double.MAX_VALUE, copy.nextEventsTime());
+	}
+	
 	private void checkEeq(ExternalEventsQueue eeq, int preloadVal) {
 		ExternalEvent ee;
 		assertEquals(msgTimes[0],eeq.nextEventsTime());
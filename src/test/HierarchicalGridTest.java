@@ -0,0 +1,125 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import interfaces.ConnectivityGrid;
+import interfaces.HierarchicalGrid;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import core.ConnectionListener;
+import core.Coord;
+import core.DTNHost;
+import core.MessageListener;
+import core.NetworkInterface;
+import core.SimContext;
+
+/**
+ * Tests for the hierarchical connectivity grid
+ */
+public class HierarchicalGridTest extends TestCase {
+	private static final double SHORT_RANGE = 10;
+	private static final double LONG_RANGE = 300;
+	/** side of the area where the hosts are */
+	private static final int AREA_SIZE = 200;
+
+	private TestSettings ts;
+	private Random rng;
+	private List<NetworkInterface> interfaces;
+	private HierarchicalGrid grid;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimContext.enter(new SimContext(0));
+		ts = new TestSettings();
+		rng = new Random(1);
+		interfaces = new ArrayList<NetworkInterface>();
+	}
+
+	protected void tearDown() throws Exception {
+		SimContext.exit();
+		super.tearDown();
+	}
+
+	/**
+	 * Creates hosts with a range to random locations in the area and adds
+	 * their interfaces to the grid
+	 * @return The utils used for creating the hosts
+	 */
+	private TestUtils createHosts(int count, double range) {
+		TestUtils utils = new TestUtils(new ArrayList<ConnectionListener>(),
+				new ArrayList<MessageListener>(), ts);
+		utils.setTransmitRange(range);
+		for (int i=0; i < count; i++) {
+			DTNHost host = utils.createHost(new Coord(
+					rng.nextDouble() * AREA_SIZE, rng.nextDouble() * AREA_SIZE));
+			interfaces.add(host.getInterfaces().get(0));
+		}
+		if (grid == null) {
+			grid = HierarchicalGrid.HierarchicalGridFactory(0, range);
+		}
+		grid.addInterfaces(interfaces);
+		return utils;
+	}
+
+	private void updateAll() {
+		for (NetworkInterface ni : interfaces) {
+			grid.updateLocation(ni);
+		}
+	}
+
+	/**
+	 * Checks that all interfaces within the smaller of the ranges are found
+	 */
+	private void checkAllFound() {
+		for (NetworkInterface ni : interfaces) {
+			Collection<NetworkInterface> near = grid.getNearInterfaces(ni);
+			for (NetworkInterface other : interfaces) {
+				double range = Math.min(ni.getTransmitRange(),
+						other.getTransmitRange());
+				if (other != ni && ni.getLocation().distance(
+						other.getLocation()) <= range) {
+					assertTrue(other + " not found for " + ni,
+							near.contains(other));
+				}
+			}
+		}
+	}
+
+	public void testMixedRanges() {
+		createHosts(300, SHORT_RANGE);
+		createHosts(30, LONG_RANGE);
+		checkAllFound();
+
+		// short range interfaces don't see all long range ones
+		NetworkInterface shortNi = interfaces.get(0);
+		assertTrue(grid.getNearInterfaces(shortNi).size() < 100);
+		assertEquals(330, grid.getAllInterfaces().size());
+	}
+
+	public void testRangeChange() {
+		TestUtils shortHosts = createHosts(200, SHORT_RANGE);
+		createHosts(20, LONG_RANGE);
+		shortHosts.setTransmitRange(LONG_RANGE / 3);
+		updateAll();
+		checkAllFound();
+	}
+
+	public void testSameOrderAsGrid() {
+		createHosts(200, SHORT_RANGE);
+		ConnectivityGrid cg = ConnectivityGrid.ConnectivityGridFactory(1,
+				SHORT_RANGE);
+		cg.addInterfaces(interfaces);
+
+		for (NetworkInterface ni : interfaces) {
+			assertEquals(new ArrayList<NetworkInterface>(
+					cg.getNearInterfaces(ni)), grid.getNearInterfaces(ni));
+		}
+	}
+}
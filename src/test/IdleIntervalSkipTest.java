@@ -0,0 +1,128 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.io.File;
+
+import junit.framework.TestCase;
+import routing.DecisionEngineRouter;
+import routing.contextAware.ContextAwareRLRouter;
+import core.SimScenario;
+import core.World;
+
+/**
+ * Tests that skipping idle update intervals in trace driven runs gives the
+ * same results as updating at every interval.
+ */
+public class IdleIntervalSkipTest extends TestCase {
+	private static final int NROF_HOSTS = 10;
+	private static final double END_TIME = 6000;
+
+	private TestSettings ts;
+	private ScenarioRunner runner;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		ts = new TestSettings();
+		File trace = ScenarioRunner.writeContactTrace(NROF_HOSTS, 30,
+				END_TIME, 1);
+		ScenarioRunner.putTraceScenario(ts, trace, NROF_HOSTS, END_TIME);
+		runner = new ScenarioRunner();
+	}
+
+	/**
+	 * Runs the scenario with and without skipping and checks that the runs
+	 * give the same events
+	 * @param canSkip If true, checks also that intervals were skipped
+	 */
+	private void assertSameWithSkipping(boolean canSkip) {
+		ts.putSetting(World.SETTINGS_NS + "." + World.NEXT_EVENT_ADVANCE_S,
+				"false");
+		String expected = runner.run();
+		int updates = runner.getNrofUpdates();
+		assertEquals(0, runner.getNrofSkips());
+		assertTrue(expected.contains(" relay "));
+
+		ts.putSetting(World.SETTINGS_NS + "." + World.NEXT_EVENT_ADVANCE_S,
+				"true");
+		assertEquals(expected, runner.run());
+		if (canSkip) {
+			assertTrue(runner.getNrofSkips() > 0);
+			assertTrue(runner.getNrofUpdates() < updates);
+		}
+		else {
+			assertEquals(updates, runner.getNrofUpdates());
+		}
+	}
+
+	public void testEpidemicRouter() {
+		ts.putSetting(SimScenario.GROUP_NS + "." + SimScenario.ROUTER_S,
+				"EpidemicRouter");
+		assertSameWithSkipping(true);
+	}
+
+	public void testFractionalUpdateInterval() {
+		ts.putSetting(SimScenario.GROUP_NS + "." + SimScenario.ROUTER_S,
+				"EpidemicRouter");
+		ts.putSetting(SimScenario.SCENARIO_NS + "." + SimScenario.UP_INT_S,
+				"0.1");
+		assertSameWithSkipping(true);
+	}
+
+	public void testLongUpdateInterval() {
+		ts.putSetting(SimScenario.GROUP_NS + "." + SimScenario.ROUTER_S,
+				"EpidemicRouter");
+		ts.putSetting(SimScenario.SCENARIO_NS + "." + SimScenario.UP_INT_S,
+				"2.5");
+		assertSameWithSkipping(true);
+	}
+
+	public void testMovingHosts() {
+		String gns = SimScenario.GROUP_NS + ".";
+		ts.putSetting(gns + SimScenario.ROUTER_S, "EpidemicRouter");
+		ts.putSetting(gns + SimScenario.MOVEMENT_MODEL_S, "RandomWaypoint");
+		ts.putSetting(gns + "waitTime", "200, 600");
+		ts.putSetting(gns + "speed", "0.5, 1.5");
+		assertSameWithSkipping(true);
+	}
+
+	public void testAddressUpdateOrder() {
+		ts.putSetting(SimScenario.GROUP_NS + "." + SimScenario.ROUTER_S,
+				"EpidemicRouter");
+		ts.putSetting(World.SETTINGS_NS + "." + World.RANDOMIZE_UPDATES_S,
+				"false");
+		assertSameWithSkipping(true);
+	}
+
+	public void testWithTouchedHostsOnly() {
+		ts.putSetting(SimScenario.GROUP_NS + "." + SimScenario.ROUTER_S,
+				"EpidemicRouter");
+		ts.putSetting(World.SETTINGS_NS + "." + World.UPDATE_TOUCHED_ONLY_S,
+				"true");
+		assertSameWithSkipping(true);
+	}
+
+	public void testDecisionEngineRouter() {
+		ts.putSetting(SimScenario.GROUP_NS + "." + SimScenario.ROUTER_S,
+				"DecisionEngineRouter");
+		ts.putSetting(DecisionEngineRouter.PUBSUB_NS + "." +
+				DecisionEngineRouter.ENGINE_SETTING, "ProphetDecisionEngine");
+		assertSameWithSkipping(true);
+	}
+
+	public void testContextAwareRLRouter() {
+		String gns = SimScenario.GROUP_NS + ".";
+		ts.putSetting(gns + SimScenario.ROUTER_S,
+				"contextAware.ContextAwareRLRouter");
+		ts.putSetting(gns + ContextAwareRLRouter.ALPHA_POPULARITY, "0.5");
+		ts.putSetting(gns + ContextAwareRLRouter.INIT_ENERGY_S, "5000");
+		ts.putSetting(gns + "scanEnergy", "0.1");
+		ts.putSetting(gns + "transmitEnergy", "0.2");
+		ts.putSetting(gns + "scanResponseEnergy", "0.1");
+		/* the router's initialEnergy also enables the energy model, which
+		 * charges scanning energy at every update */
+		assertSameWithSkipping(false);
+	}
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import interfaces.InterferenceGrid;
+import junit.framework.TestCase;
+import core.Coord;
+import core.SimContext;
+
+/**
+ * Tests for the transmitter counts of the interference grid
+ */
+public class InterferenceGridTest extends TestCase {
+	private static final double CELL_SIZE = 10;
+
+	private InterferenceGrid grid;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimContext.enter(new SimContext(0));
+		new TestSettings();
+		grid = InterferenceGrid.getGrid(1, CELL_SIZE);
+	}
+
+	protected void tearDown() throws Exception {
+		SimContext.exit();
+		super.tearDown();
+	}
+
+	private int cell(double x, double y) {
+		return grid.cellOf(new Coord(x, y));
+	}
+
+	public void testTransmittersAround() {
+		grid.addTransmitter(cell(5, 5));
+		grid.addTransmitter(cell(15, 5));
+		assertEquals(2, grid.getTransmittersAround(cell(5, 5)));
+		assertEquals(2, grid.getTransmittersAround(cell(15, 15)));
+		assertEquals(1, grid.getTransmittersAround(cell(25, 5)));
+		assertEquals(0, grid.getTransmittersAround(cell(35, 5)));
+
+		grid.moveTransmitter(cell(15, 5), cell(45, 5));
+		assertEquals(0, grid.getTransmittersAround(cell(25, 5)));
+		assertEquals(1, grid.getTransmittersAround(cell(35, 5)));
+
+		grid.removeTransmitter(cell(5, 5));
+		assertEquals(0, grid.getTransmittersAround(cell(5, 5)));
+	}
+
+	public void testStamps() {
+		long near = grid.getStamp(cell(15, 15));
+		long far = grid.getStamp(cell(35, 35));
+		grid.addTransmitter(cell(5, 5));
+		assertTrue(near != grid.getStamp(cell(15, 15)));
+		assertEquals(far, grid.getStamp(cell(35, 35)));
+
+		near = grid.getStamp(cell(15, 15));
+		grid.moveTransmitter(cell(5, 5), cell(9, 9)); // same cell
+		assertEquals(near, grid.getStamp(cell(15, 15)));
+	}
+
+	public void testOutsideWorld() {
+		assertEquals(cell(0, 0), cell(-5, -5));
+		grid.addTransmitter(cell(-5, -5));
+		assertEquals(1, grid.getTransmittersAround(cell(5, 5)));
+	}
+
+	public void testSeparateGrids() {
+		grid.addTransmitter(cell(5, 5));
+		assertSame(grid, InterferenceGrid.getGrid(1, CELL_SIZE));
+		InterferenceGrid other = InterferenceGrid.getGrid(2, CELL_SIZE);
+		assertEquals(0, other.getTransmittersAround(cell(5, 5)));
+	}
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+import movement.ActivenessHandler;
+import movement.MovementModel;
+import core.SimScenario;
+import core.World;
+
+/**
+ * Tests that the kinetic connectivity update gives the same contacts as
+ * the two phase update.
+ */
+public class KineticConnectivityTest extends TestCase {
+	private TestSettings ts;
+	private ScenarioRunner runner;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		ts = new TestSettings();
+		String sns = SimScenario.SCENARIO_NS + ".";
+		ts.putSetting(sns + SimScenario.NAME_S, "kinetic-scenario");
+		ts.putSetting(sns + SimScenario.END_TIME_S, "2000");
+		ts.putSetting(sns + SimScenario.UP_INT_S, "0.5");
+		ts.putSetting(sns + SimScenario.SIM_CON_S, "true");
+		ts.putSetting(sns + SimScenario.NROF_GROUPS_S, "3");
+		ts.putSetting(SimScenario.GROUP_NS + "." + SimScenario.MOVEMENT_MODEL_S,
+				"RandomWaypoint");
+		ts.putSetting(SimScenario.GROUP_NS + "." + SimScenario.ROUTER_S,
+				"EpidemicRouter");
+		ts.putSetting(MovementModel.MOVEMENT_MODEL_NS + "." +
+				MovementModel.WORLD_SIZE, "400, 400");
+		ts.putSetting("Events.nrof", "0");
+
+		/* slow pedestrians with pauses */
+		putGroup(1, "p", 20, "0.5, 1.5", "0, 60", "btInterface");
+		/* fast hosts with two interfaces of different ranges */
+		putGroup(2, "c", 10, "5, 10", "0, 0", "btInterface", "wlanInterface");
+		/* hosts that are active only part of the time */
+		putGroup(3, "a", 10, "0.5, 1.5", "0, 30", "btInterface");
+		ts.putSetting(SimScenario.GROUP_NS + "3." +
+				ActivenessHandler.ACTIVE_TIMES_S, "0, 400, 800, 1500");
+
+		ts.putSetting("btInterface.type", "SimpleBroadcastInterface");
+		ts.putSetting("btInterface.transmitSpeed", "250k");
+		ts.putSetting("btInterface.transmitRange", "20");
+		ts.putSetting("wlanInterface.type", "SimpleBroadcastInterface");
+		ts.putSetting("wlanInterface.transmitSpeed", "1M");
+		ts.putSetting("wlanInterface.transmitRange", "60");
+		ts.putSetting(World.SETTINGS_NS + "." +
+				World.TWO_PHASE_CONNECTIVITY_S, "true");
+		runner = new ScenarioRunner();
+	}
+
+	private void putGroup(int nr, String id, int nrofHosts, String speed,
+			String waitTime, String... interfaces) {
+		String gns = SimScenario.GROUP_NS + nr + ".";
+		ts.putSetting(gns + SimScenario.GROUP_ID_S, id);
+		ts.putSetting(gns + SimScenario.NROF_HOSTS_S, "" + nrofHosts);
+		ts.putSetting(gns + "speed", speed);
+		ts.putSetting(gns + "waitTime", waitTime);
+		ts.putSetting(gns + SimScenario.NROF_INTERF_S, "" + interfaces.length);
+		for (int i=0; i < interfaces.length; i++) {
+			ts.putSetting(gns + SimScenario.INTERFACENAME_S + (i + 1),
+					interfaces[i]);
+		}
+	}
+
+	/**
+	 * Runs the scenario with the two phase and the kinetic update and
+	 * checks that the same hosts connect and disconnect at the same times
+	 */
+	private void assertSameContacts() {
+		ts.putSetting(World.SETTINGS_NS + "." + World.KINETIC_CONNECTIVITY_S,
+				"false");
+		String expected = contacts(runner.run());
+		assertTrue(expected.contains(" up "));
+		assertTrue(expected.contains(" down "));
+
+		ts.putSetting(World.SETTINGS_NS + "." + World.KINETIC_CONNECTIVITY_S,
+				"true");
+		assertEquals(expected, contacts(runner.run()));
+	}
+
+	/**
+	 * Returns the connection events of a run log sorted so that the order
+	 * of the links changed in the same update doesn't matter
+	 * @param log The log of the run
+	 * @return The sorted connection events
+	 */
+	private static String contacts(String log) {
+		String[] lines = log.split("\n");
+		for (int i=0; i < lines.length; i++) {
+			String[] f = lines[i].split(" ");
+			if (f[2].compareTo(f[3]) > 0) {
+				lines[i] = f[0] + " " + f[1] + " " + f[3] + " " + f[2];
+			}
+		}
+		Arrays.sort(lines);
+		StringBuilder sb = new StringBuilder();
+		for (String line : lines) {
+			sb.append(line).append('\n');
+		}
+		return sb.toString();
+	}
+
+	public void testSameContactsAsTwoPhaseUpdate() {
+		assertSameContacts();
+	}
+
+	public void testSameContactsWithLongUpdateInterval() {
+		ts.putSetting(SimScenario.SCENARIO_NS + "." + SimScenario.UP_INT_S,
+				"2");
+		assertSameContacts();
+	}
+}
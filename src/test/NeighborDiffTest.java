@@ -0,0 +1,121 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import junit.framework.TestCase;
+import movement.ActivenessHandler;
+import movement.LinearFormation;
+import movement.MovementModel;
+import core.SimScenario;
+import core.World;
+
+/**
+ * Tests that the interface updates that check only the changed neighbors
+ * give the same results as the updates that check all neighbors.
+ */
+public class NeighborDiffTest extends TestCase {
+	private TestSettings ts;
+	private ScenarioRunner runner;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		ts = new TestSettings();
+		String sns = SimScenario.SCENARIO_NS + ".";
+		ts.putSetting(sns + SimScenario.NAME_S, "neighbor-diff-scenario");
+		ts.putSetting(sns + SimScenario.END_TIME_S, "2000");
+		ts.putSetting(sns + SimScenario.UP_INT_S, "1");
+		ts.putSetting(sns + SimScenario.SIM_CON_S, "true");
+		ts.putSetting(sns + SimScenario.NROF_GROUPS_S, "3");
+		ts.putSetting(SimScenario.GROUP_NS + "." + SimScenario.ROUTER_S,
+				"EpidemicRouter");
+		ts.putSetting(SimScenario.GROUP_NS + ".bufferSize", "5M");
+		ts.putSetting(SimScenario.GROUP_NS + ".msgTtl", "300");
+		ts.putSetting(MovementModel.MOVEMENT_MODEL_NS + "." +
+				MovementModel.WORLD_SIZE, "300, 300");
+
+		/* stationary hosts in a line, each within range of some others */
+		putGroup(1, "s", 25, "btInterface");
+		putLine(1, "20, 150", "280, 150");
+		/* a few moving hosts with two interfaces of different ranges */
+		putGroup(2, "m", 5, "btInterface", "wlanInterface");
+		ts.putSetting(SimScenario.GROUP_NS + "2." +
+				SimScenario.MOVEMENT_MODEL_S, "RandomWaypoint");
+		ts.putSetting(SimScenario.GROUP_NS + "2.speed", "1, 5");
+		ts.putSetting(SimScenario.GROUP_NS + "2.waitTime", "0, 60");
+		/* stationary hosts that are active only part of the time */
+		putGroup(3, "a", 5, "btInterface", "wlanInterface");
+		putLine(3, "50, 120", "250, 120");
+		ts.putSetting(SimScenario.GROUP_NS + "3." +
+				ActivenessHandler.ACTIVE_TIMES_S, "0, 500, 900, 1600");
+
+		ts.putSetting("btInterface.type", "SimpleBroadcastInterface");
+		ts.putSetting("btInterface.transmitSpeed", "250k");
+		ts.putSetting("btInterface.transmitRange", "30");
+		ts.putSetting("wlanInterface.type", "SimpleBroadcastInterface");
+		ts.putSetting("wlanInterface.transmitSpeed", "1M");
+		ts.putSetting("wlanInterface.transmitRange", "60");
+
+		ts.putSetting("Events.nrof", "1");
+		ts.putSetting("Events1.class", "MessageEventGenerator");
+		ts.putSetting("Events1.interval", "20, 40");
+		ts.putSetting("Events1.size", "50k, 200k");
+		ts.putSetting("Events1.hosts", "0, 35");
+		ts.putSetting("Events1.prefix", "M");
+		runner = new ScenarioRunner();
+	}
+
+	private void putGroup(int nr, String id, int nrofHosts,
+			String... interfaces) {
+		String gns = SimScenario.GROUP_NS + nr + ".";
+		ts.putSetting(gns + SimScenario.GROUP_ID_S, id);
+		ts.putSetting(gns + SimScenario.NROF_HOSTS_S, "" + nrofHosts);
+		ts.putSetting(gns + SimScenario.NROF_INTERF_S, "" + interfaces.length);
+		for (int i=0; i < interfaces.length; i++) {
+			ts.putSetting(gns + SimScenario.INTERFACENAME_S + (i + 1),
+					interfaces[i]);
+		}
+	}
+
+	private void putLine(int nr, String start, String end) {
+		String gns = SimScenario.GROUP_NS + nr + ".";
+		ts.putSetting(gns + SimScenario.MOVEMENT_MODEL_S, "LinearFormation");
+		ts.putSetting(gns + LinearFormation.LINEAR_FORMATION_NS +
+				LinearFormation.START_LOCATION_S, start);
+		ts.putSetting(gns + LinearFormation.LINEAR_FORMATION_NS +
+				LinearFormation.END_LOCATION_S, end);
+	}
+
+	/**
+	 * Runs the scenario with and without the neighbor tracking and checks
+	 * that the runs give the same events
+	 */
+	private void assertSameWithNeighborDiff() {
+		ts.putSetting(World.SETTINGS_NS + "." + World.NEIGHBOR_DIFF_S,
+				"false");
+		String expected = runner.run();
+		assertTrue(expected.contains(" down "));
+		assertTrue(expected.contains(" relay "));
+
+		ts.putSetting(World.SETTINGS_NS + "." + World.NEIGHBOR_DIFF_S,
+				"true");
+		assertEquals(expected, runner.run());
+	}
+
+	public void testSameAsFullScan() {
+		assertSameWithNeighborDiff();
+	}
+
+	public void testSameAsFullScanInAddressOrder() {
+		ts.putSetting(World.SETTINGS_NS + "." + World.RANDOMIZE_UPDATES_S,
+				"false");
+		assertSameWithNeighborDiff();
+	}
+
+	public void testSameAsFullScanWithSweepAndPrune() {
+		ts.putSetting(World.SETTINGS_NS + "." + World.CON_OPTIMIZER_S,
+				"SweepAndPrune");
+		assertSameWithNeighborDiff();
+	}
+}
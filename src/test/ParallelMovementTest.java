@@ -0,0 +1,45 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import junit.framework.TestCase;
+import movement.MovementModel;
+import core.World;
+
+/**
+ * Tests that moving the hosts with several movement threads gives the same
+ * host locations and movement listener events as moving them one by one.
+ */
+public class ParallelMovementTest extends TestCase {
+	private static final int NROF_HOSTS = 30;
+
+	private TestSettings ts;
+	private ScenarioRunner runner;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		ts = new TestSettings();
+		ScenarioRunner.putMovingScenario(ts, NROF_HOSTS, 2000);
+		ts.putSetting(MovementModel.MOVEMENT_MODEL_NS + "." +
+				MovementModel.PER_HOST_RNG_S, "true");
+		runner = new ScenarioRunner();
+		runner.setLogMovement(true);
+	}
+
+	private String run(int nrofThreads) {
+		ts.putSetting(World.SETTINGS_NS + "." + World.MOVEMENT_THREADS_S,
+				String.valueOf(nrofThreads));
+		return runner.run();
+	}
+
+	public void testSameAsOneThread() {
+		String expected = run(1);
+		assertTrue(expected.contains(" dest "));
+		assertTrue(expected.contains(" up "));
+		for (int threads = 2; threads <= 4; threads++) {
+			assertEquals("threads " + threads, expected, run(threads));
+		}
+	}
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.EventQueueHandler;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.List;
+
+import movement.MovementModel;
+import reinforcementLearning_ContextAware.Qtable;
+import routing.contextAware.ContextAwareRLRouter;
+import core.DTNHost;
+import core.DTNSim;
+import core.Message;
+import core.MessageListener;
+import core.Settings;
+import core.SimClock;
+import core.SimContext;
+import core.SimScenario;
+import core.World;
+
+/**
+ * Benchmark that compares the sparse top-K Q-tables of the
+ * ContextAwareRLRouter to the dense Q-table on the external event traces
+ * in <CODE>ee/</CODE>. Every mode runs the same scenario (same mobility and
+ * messages from the trace) and the Q-table of each host is compared to the
+ * dense table of the same host: share of the destinations where the best
+ * next hop is as good as in the dense table, mean absolute error of the
+ * non-zero dense Q-values and share of them that the sparse table has
+ * lost. The comparison is exact as long as the runs make the same routing
+ * decisions, which the delivery difference shows. Memory is the number of
+ * Q-values the hosts store at the end of the run. Not part of the test
+ * suite; run from the project directory with<BR>
+ * <CODE>java -cp ... test.QtableBenchmark [trace hosts endTime]</CODE>
+ */
+public class QtableBenchmark {
+	/** the compared K values; 0 is the dense Q-table */
+	private static final int[] TOP_KS = {0, 2, 4, 8, 16};
+	/** default trace, host count and end time (12 hours) */
+	private static final String DEF_TRACE = "ee/1000c_100n_12h.txt";
+	private static final int DEF_HOSTS = 100;
+	private static final double DEF_END_TIME = 43200;
+	/** size of the (square) world (meters) */
+	private static final int WORLD_SIZE = 800;
+
+	public static void main(String[] args) {
+		java.util.Locale.setDefault(java.util.Locale.US);
+		String trace = args.length > 0 ? args[0] : DEF_TRACE;
+		int nrofHosts = args.length > 1 ? Integer.parseInt(args[1]) :
+			DEF_HOSTS;
+		double endTime = args.length > 2 ? Double.parseDouble(args[2]) :
+			DEF_END_TIME;
+
+		Settings.init(null);
+		TestSettings ts = new TestSettings(null);
+		setScenario(ts, trace, nrofHosts, endTime);
+
+		System.out.println(trace + ", " + nrofHosts + " hosts, " +
+				endTime + " s");
+		System.out.println("K\tQ-values/host\tKB/host\tbest hop\t" +
+				"error\tlost\tdelivery\trun s");
+		Stats dense = null;
+		for (int topK : TOP_KS) {
+			ts.putSetting(SimScenario.GROUP_NS + "." +
+					ContextAwareRLRouter.QTABLE_TOP_K, String.valueOf(topK));
+			Stats stats = run(endTime);
+			if (dense == null) {
+				dense = stats;
+			}
+			compare(dense, stats);
+			/* dense tables store 8 byte values, sparse ones also the
+			 * 4 byte next hop address of each value */
+			double bytesPerValue = topK == 0 ? 8 : 12;
+			System.out.println(String.format(
+					"%s\t%.0f\t%.1f\t%.4f\t%.4f\t%.4f\t%.4f (%+.4f)\t%.1f",
+					topK == 0 ? "dense" : String.valueOf(topK),
+					stats.qValuesPerHost,
+					stats.qValuesPerHost * bytesPerValue / 1024,
+					stats.bestHop, stats.error, stats.lost,
+					stats.deliveryProb(),
+					stats.deliveryProb() - dense.deliveryProb(),
+					stats.runTime));
+		}
+	}
+
+	/**
+	 * Compares the Q-tables of a run to the dense tables of the same hosts
+	 * and stores the accuracy to the stats of the run
+	 */
+	private static void compare(Stats dense, Stats stats) {
+		int nrofHosts = dense.qtables.length;
+		long destinations = 0;
+		long sameBest = 0;
+		long values = 0;
+		long lost = 0;
+		double errorSum = 0;
+		for (int i=0; i < nrofHosts; i++) {
+			Qtable d = dense.qtables[i];
+			Qtable s = stats.qtables[i];
+			for (int dest=0; dest < nrofHosts; dest++) {
+				double denseMax = 0;
+				double sparseMax = 0;
+				int sparseBest = -1;
+				for (int hop=0; hop < nrofHosts; hop++) {
+					double dq = d.getQvalue(dest, hop);
+					double sq = s.getQvalue(dest, hop);
+					denseMax = Math.max(denseMax, dq);
+					if (sq > sparseMax) {
+						sparseMax = sq;
+						sparseBest = hop;
+					}
+					if (dq != 0) {
+						values++;
+						errorSum += Math.abs(dq - sq);
+						if (sq == 0) {
+							lost++;
+						}
+					}
+				}
+				if (denseMax > 0) {
+					destinations++;
+					if (sparseBest >= 0 &&
+							d.getQvalue(dest, sparseBest) == denseMax) {
+						sameBest++;
+					}
+				}
+			}
+		}
+		stats.bestHop = destinations == 0 ? 1 :
+			(double)sameBest / destinations;
+		stats.error = values == 0 ? 0 : errorSum / values;
+		stats.lost = values == 0 ? 0 : (double)lost / values;
+	}
+
+	/**
+	 * Puts the settings of the benchmark scenario
+	 */
+	private static void setScenario(TestSettings ts, String trace,
+			int nrofHosts, double endTime) {
+		String sns = SimScenario.SCENARIO_NS + ".";
+		String gns = SimScenario.GROUP_NS + ".";
+		String ens = EventQueueHandler.SETTINGS_NAMESPACE + ".";
+		ts.putSetting(sns + SimScenario.NAME_S, "QtableBenchmark");
+		ts.putSetting(sns + SimScenario.END_TIME_S, String.valueOf(endTime));
+		ts.putSetting(sns + SimScenario.NROF_GROUPS_S, "1");
+		ts.putSetting(gns + SimScenario.NROF_HOSTS_S,
+				String.valueOf(nrofHosts));
+		ts.putSetting(gns + "movementModel", "RandomWaypoint");
+		ts.putSetting(gns + "waitTime", "0, 120");
+		ts.putSetting(gns + "router", "contextAware.ContextAwareRLRouter");
+		ts.putSetting(gns + ContextAwareRLRouter.ALPHA_POPULARITY, "0.5");
+		ts.putSetting(gns + ContextAwareRLRouter.INIT_ENERGY_S, "5000");
+		ts.putSetting(gns + ContextAwareRLRouter.MSG_TTL, "300");
+		ts.putSetting(gns + ContextAwareRLRouter.BUFFER_SIZE, "5M");
+		ts.putSetting(gns + "scanEnergy", "0.1");
+		ts.putSetting(gns + "transmitEnergy", "0.2");
+		ts.putSetting(gns + "scanResponseEnergy", "0.1");
+		ts.putSetting(gns + "baseEnergy", "0.01");
+		ts.putSetting(MovementModel.MOVEMENT_MODEL_NS + "." +
+				MovementModel.WORLD_SIZE, WORLD_SIZE + "," + WORLD_SIZE);
+		ts.putSetting(ens + EventQueueHandler.NROF_SETTING, "1");
+		ts.putSetting(EventQueueHandler.SETTINGS_NAMESPACE + "1." +
+				EventQueueHandler.PATH_SETTING, trace);
+	}
+
+	/**
+	 * Runs the scenario with the current settings and returns the results
+	 */
+	private static Stats run(double endTime) {
+		/* the router prints debug lines for every update */
+		PrintStream out = System.out;
+		System.setOut(new PrintStream(new OutputStream() {
+			public void write(int b) {}
+		}));
+		SimContext.enter(new SimContext(0));
+		try {
+			Settings.setRunIndex(0);
+			DTNSim.resetForNextRun();
+			long start = System.currentTimeMillis();
+			SimScenario scen = SimScenario.getInstance();
+			Stats stats = new Stats();
+			scen.addMessageListener(stats);
+			World world = scen.getWorld();
+			while (SimClock.getTime() < endTime) {
+				world.skipIdleIntervals(endTime);
+				world.update();
+			}
+			stats.runTime = (System.currentTimeMillis() - start) / 1000.0;
+
+			List<DTNHost> hosts = scen.getHosts();
+			stats.qtables = new Qtable[hosts.size()];
+			long qValues = 0;
+			for (DTNHost host : hosts) {
+				Qtable qtable =
+					((ContextAwareRLRouter)host.getRouter()).getQtable();
+				stats.qtables[host.getAddress()] = qtable;
+				qValues += qtable.getStoredEntries();
+			}
+			stats.qValuesPerHost = (double)qValues / hosts.size();
+			return stats;
+		}
+		finally {
+			SimContext.exit();
+			System.setOut(out);
+		}
+	}
+
+	/**
+	 * Results of a run
+	 */
+	private static class Stats implements MessageListener {
+		private int created;
+		private int delivered;
+		private Qtable[] qtables;
+		private double qValuesPerHost;
+		private double bestHop;
+		private double error;
+		private double lost;
+		private double runTime;
+
+		public void newMessage(Message m) {
+			created++;
+		}
+
+		public void messageTransferred(Message m, DTNHost from, DTNHost to,
+				boolean firstDelivery) {
+			if (firstDelivery) {
+				delivered++;
+			}
+		}
+
+		public void messageTransferStarted(Message m, DTNHost from,
+				DTNHost to) {}
+		public void messageDeleted(Message m, DTNHost where,
+				boolean dropped) {}
+		public void messageTransferAborted(Message m, DTNHost from,
+				DTNHost to) {}
+
+		private double deliveryProb() {
+			return created == 0 ? 0 : (double)delivered / created;
+		}
+	}
+}
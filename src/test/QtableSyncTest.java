@@ -0,0 +1,225 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import reinforcementLearning_ContextAware.DenseQtable;
+import reinforcementLearning_ContextAware.QTableUpdateStrategy;
+import reinforcementLearning_ContextAware.Qtable;
+import reinforcementLearning_ContextAware.SparseQtable;
+import routing.contextAware.ENS.ConnectionDuration;
+import routing.contextAware.ENS.EncounteredNodeSet;
+import core.DTNHost;
+import core.SimClock;
+import core.SimContext;
+
+/**
+ * Tests that the Q-table sync that exchanges only the rows changed since
+ * the last sync of the same pair leaves the same tables as a full sync.
+ */
+public class QtableSyncTest extends TestCase {
+	private static final int NROF_HOSTS = 6;
+	/** destinations up to this address (some are not hosts) */
+	private static final int MAX_ADDRESS = NROF_HOSTS + 3;
+	private static final int NROF_STEPS = 4000;
+	/** top-K of the sparse tables that can't hold all the next hops */
+	private static final int TOP_K = 3;
+
+	private List<DTNHost> hosts;
+	private Set<String> ids;
+	private Random rng;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimContext.enter(new SimContext(0));
+		SimClock.getInstance().setTime(0);
+		core.DTNHost.reset();
+		TestUtils utils = new TestUtils(null, null, new TestSettings());
+		hosts = new ArrayList<DTNHost>();
+		ids = new HashSet<String>();
+		for (int i=0; i < NROF_HOSTS; i++) {
+			hosts.add(utils.createHost());
+			ids.add(String.valueOf(i));
+		}
+		rng = new Random(11);
+	}
+
+	protected void tearDown() throws Exception {
+		SimContext.exit();
+		super.tearDown();
+	}
+
+	public void testDenseWithInitialization() {
+		runRandomSyncs(0, true, 40);
+	}
+
+	public void testDenseWithoutInitialization() {
+		runRandomSyncs(0, false, 40);
+	}
+
+	public void testDenseWithSharedDefaults() {
+		runRandomSyncs(0, true, 1);
+	}
+
+	public void testSparseWithInitialization() {
+		runRandomSyncs(TOP_K, true, 40);
+	}
+
+	public void testSparseWithoutInitialization() {
+		runRandomSyncs(TOP_K, false, 40);
+	}
+
+	public void testSparseWithSharedDefaults() {
+		runRandomSyncs(TOP_K, true, 1);
+	}
+
+	public void testSparseWithRoomForAllHops() {
+		runRandomSyncs(MAX_ADDRESS + 1, true, 40);
+	}
+
+	public void testRepeatedSyncSendsNothing() {
+		Qtable a = new DenseQtable("0");
+		Qtable b = new DenseQtable("1");
+		a.initializeAllQvalues(ids);
+		b.initializeAllQvalues(ids);
+		a.updateQvalue(2, 3, 0.4);
+		b.updateQvalue(2, 3, 0.6);
+		b.updateQvalue(4, 5, 0.2);
+
+		QTableUpdateStrategy.updateThirdStrategy(a, b, "0", "1");
+		assertEquals(0.6, a.getQvalue(2, 3));
+		long entries = a.getSyncedEntries() + b.getSyncedEntries();
+		QTableUpdateStrategy.updateThirdStrategy(a, b, "0", "1");
+		QTableUpdateStrategy.updateThirdStrategy(b, a, "1", "0");
+		assertEquals(entries, a.getSyncedEntries() + b.getSyncedEntries());
+
+		/* a changed row is sent again */
+		a.updateQvalue(4, 5, 0.3);
+		QTableUpdateStrategy.updateThirdStrategy(a, b, "0", "1");
+		assertEquals(0.3, b.getQvalue(4, 5));
+		assertTrue(a.getSyncedEntries() + b.getSyncedEntries() > entries);
+	}
+
+	/**
+	 * Runs random updates, aging and syncs between the same pairs on two
+	 * sets of tables, one synced with {@link
+	 * QTableUpdateStrategy#updateThirdStrategy} and the other with a full
+	 * sync, and checks that the tables stay the same
+	 * @param topK Top-K of sparse tables or 0 for dense tables
+	 * @param init Are the tables initialized for all hosts first
+	 * @param updates Percentage of steps that update a Q-value; with few
+	 * updates most destinations keep sharing the initial values
+	 */
+	private void runRandomSyncs(int topK, boolean init, int updates) {
+		Qtable[] delta = new Qtable[NROF_HOSTS];
+		Qtable[] full = new Qtable[NROF_HOSTS];
+		for (int i=0; i < NROF_HOSTS; i++) {
+			delta[i] = newTable(i, topK);
+			full[i] = newTable(i, topK);
+			if (init) {
+				delta[i].initializeAllQvalues(ids);
+				full[i].initializeAllQvalues(ids);
+			}
+		}
+
+		for (int step = 0; step < NROF_STEPS; step++) {
+			/* most of the syncs are between the same few pairs */
+			int a = rng.nextInt(NROF_HOSTS);
+			int b = rng.nextInt(3) == 0 ? rng.nextInt(NROF_HOSTS) :
+				(a + 1) % NROF_HOSTS;
+			if (b == a) {
+				continue;
+			}
+			int op = rng.nextInt(100);
+			if (op < updates) {
+				/* new destinations and next hops appear over time */
+				int range = Math.min(MAX_ADDRESS, NROF_HOSTS - 1 + step / 500);
+				int dest = rng.nextInt(range + 1);
+				int hop = rng.nextInt(range + 1);
+				double q = rng.nextInt(4) == 0 ? 0.0 : rng.nextDouble();
+				delta[a].updateQvalue(dest, hop, q);
+				full[a].updateQvalue(dest, hop, q);
+			}
+			else if (op < updates + (100 - updates) / 3) {
+				int delay = rng.nextInt(500);
+				assertEquals(age(full[a], b, delay), age(delta[a], b, delay));
+			}
+			else {
+				QTableUpdateStrategy.updateThirdStrategy(delta[a], delta[b],
+						"" + a, "" + b);
+				fullSync(full[a], full[b]);
+				fullSync(full[b], full[a]);
+			}
+			for (int i=0; i < NROF_HOSTS; i++) {
+				assertEquals("step " + step, full[i].getAllQvalues(),
+						delta[i].getAllQvalues());
+			}
+		}
+	}
+
+	private static Qtable newTable(int owner, int topK) {
+		if (topK > 0) {
+			return new SparseQtable(String.valueOf(owner), topK);
+		}
+		return new DenseQtable(String.valueOf(owner));
+	}
+
+	/**
+	 * Full one way sync: every action that both tables have and that is
+	 * not zero in either gets the larger value in both tables
+	 */
+	private static void fullSync(Qtable target, Qtable source) {
+		int targetOwner = target.getOwner();
+		for (String state : source.getAllDestinations()) {
+			int dest = Integer.parseInt(state);
+			if (dest == targetOwner) {
+				continue;
+			}
+			for (Map.Entry<String, Double> e :
+					source.getActionMap(state).entrySet()) {
+				int hop = Integer.parseInt(e.getKey());
+				if (hop == targetOwner || !target.hasAction(dest, hop)) {
+					continue;
+				}
+				double targetQ = target.getQvalue(dest, hop);
+				double sourceQ = e.getValue();
+				if (targetQ == 0.0 || sourceQ == 0.0) {
+					continue;
+				}
+				if (targetQ < sourceQ) {
+					target.updateQvalue(dest, hop, sourceQ);
+				}
+				else if (targetQ > sourceQ) {
+					source.updateQvalue(dest, hop, targetQ);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Ages the Q-values through a next hop after the connection to it has
+	 * been down for the minimum aging time and the given delay
+	 * @return True if the table aged any Q-value
+	 */
+	private boolean age(Qtable q, int nextHop, int delay) {
+		DTNHost host = hosts.get(q.getOwner());
+		DTNHost neighbor = hosts.get(nextHop);
+		SimClock clock = SimClock.getInstance();
+		ConnectionDuration cd = ConnectionDuration.startConnection(host,
+				neighbor);
+		clock.advance(10);
+		cd.endConnection(host, neighbor, new EncounteredNodeSet());
+		clock.advance(QTableUpdateStrategy.MIN_ELAPSED_FOR_AGING + delay);
+		return new QTableUpdateStrategy(q).updateSecondStrategy(host,
+				neighbor);
+	}
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import reinforcementLearning_ContextAware.DenseQtable;
+import reinforcementLearning_ContextAware.QTableUpdateStrategy;
+import reinforcementLearning_ContextAware.Qtable;
+import routing.contextAware.ENS.ConnectionDuration;
+import routing.contextAware.ENS.EncounteredNodeSet;
+import core.DTNHost;
+import core.SimClock;
+import core.SimContext;
+
+/**
+ * Tests that the dense Q-table stored in rows keyed by host address behaves
+ * like the earlier Q-table stored in nested maps keyed by host ids.
+ */
+public class QtableTest extends TestCase {
+	private static final int NROF_HOSTS = 8;
+	/** destinations and next hops up to this address (some are not hosts) */
+	private static final int MAX_ADDRESS = NROF_HOSTS + 2;
+	private static final int NROF_STEPS = 5000;
+	/** aging parameters of the Q-learning */
+	private static final double AGING_CONSTANT = 0.998;
+	private static final double MIN_Q = 0.05;
+
+	private List<DTNHost> hosts;
+	private Random rng;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimContext.enter(new SimContext(0));
+		SimClock.getInstance().setTime(0);
+		core.DTNHost.reset();
+		TestUtils utils = new TestUtils(null, null, new TestSettings());
+		hosts = new ArrayList<DTNHost>();
+		for (int i=0; i < NROF_HOSTS; i++) {
+			hosts.add(utils.createHost());
+		}
+		rng = new Random(42);
+	}
+
+	protected void tearDown() throws Exception {
+		SimContext.exit();
+		super.tearDown();
+	}
+
+	public void testSameAsMapTableWithInitialization() {
+		runRandomOperations(true);
+	}
+
+	public void testSameAsMapTableWithoutInitialization() {
+		runRandomOperations(false);
+	}
+
+	public void testUnknownValues() {
+		Qtable q = new DenseQtable("0");
+		assertEquals(0.0, q.getQvalue(3, 5));
+		assertFalse(q.hasAction(3, 5));
+		assertNull(q.getActionMap("3"));
+
+		q.updateQvalue(3, 5, 1.5);
+		assertEquals(1.0, q.getQvalue("3", "5"));
+		assertTrue(q.hasAction("3", "5"));
+		assertFalse(q.hasAction(5, 3));
+		assertFalse(q.hasAction(3, 4));
+		assertEquals(0.0, q.getQvalue(3, 100));
+		assertEquals(0.0, q.getMaxQvalue(3, new EncounteredNodeSet()));
+	}
+
+	/**
+	 * Runs random updates, initializations and aging on Q-tables and
+	 * map based reference tables and checks that they stay the same
+	 * @param init Are the tables initialized for all hosts first
+	 */
+	private void runRandomOperations(boolean init) {
+		Set<String> ids = new HashSet<String>();
+		for (DTNHost host : hosts) {
+			ids.add(String.valueOf(host.getAddress()));
+		}
+		Qtable[] tables = new Qtable[NROF_HOSTS];
+		MapQtable[] expected = new MapQtable[NROF_HOSTS];
+		for (int i=0; i < NROF_HOSTS; i++) {
+			tables[i] = new DenseQtable(String.valueOf(i));
+			expected[i] = new MapQtable(String.valueOf(i));
+			if (init) {
+				tables[i].initializeAllQvalues(ids);
+				expected[i].initializeAllQvalues(ids);
+			}
+		}
+
+		for (int step = 0; step < NROF_STEPS; step++) {
+			int a = rng.nextInt(NROF_HOSTS);
+			int op = rng.nextInt(10);
+			if (op < 6) {
+				int dest = rng.nextInt(MAX_ADDRESS);
+				int hop = rng.nextInt(MAX_ADDRESS);
+				double q = rng.nextInt(4) == 0 ? 0.0 : rng.nextDouble() * 1.2;
+				tables[a].updateQvalue(dest, hop, q);
+				expected[a].updateQvalue("" + dest, "" + hop, q);
+			}
+			else if (op < 8) {
+				int b = rng.nextInt(NROF_HOSTS);
+				if (b == a) {
+					continue;
+				}
+				assertAging("step " + step, expected[a], tables[a], a, b);
+			}
+			else if (op < 9) {
+				EncounteredNodeSet ens = randomEns(a);
+				int dest = rng.nextInt(MAX_ADDRESS);
+				assertEquals(expected[a].getMaxQvalue("" + dest, ens),
+						tables[a].getMaxQvalue(dest, ens));
+				assertEquals(expected[a].getMaxQvalue("" + dest, ens),
+						tables[a].getMaxQvalue("" + dest, ens));
+			}
+			else if (rng.nextInt(20) == 0) {
+				tables[a].initializeAllQvalues(ids);
+				expected[a].initializeAllQvalues(ids);
+			}
+			assertSameTable("step " + step, expected[a], tables[a]);
+		}
+	}
+
+	/**
+	 * Ages the Q-values of a host through another host after their
+	 * connection has been down for a random time and checks that both
+	 * tables tell the same whether any Q-value was aged
+	 */
+	private void assertAging(String msg, MapQtable expected, Qtable table,
+			int a, int b) {
+		DTNHost host = hosts.get(a);
+		DTNHost neighbor = hosts.get(b);
+		SimClock clock = SimClock.getInstance();
+		ConnectionDuration cd = ConnectionDuration.startConnection(host,
+				neighbor);
+		clock.advance(1 + rng.nextInt(100));
+		cd.endConnection(host, neighbor, new EncounteredNodeSet());
+		clock.advance(QTableUpdateStrategy.MIN_ELAPSED_FOR_AGING +
+				rng.nextInt(1000));
+		double elapsed = SimClock.getTime() - cd.getEndTime();
+
+		boolean aged = expected.ageNextHop("" + b,
+				Math.pow(AGING_CONSTANT, elapsed));
+		assertEquals(msg, aged, new QTableUpdateStrategy(table)
+				.updateSecondStrategy(host, neighbor));
+	}
+
+	private EncounteredNodeSet randomEns(int owner) {
+		EncounteredNodeSet ens = new EncounteredNodeSet();
+		DTNHost host = hosts.get(owner);
+		for (DTNHost other : hosts) {
+			if (rng.nextBoolean()) {
+				ens.updateENS(host, other, String.valueOf(other.getAddress()),
+						SimClock.getIntTime(), 100, 1000, 10, 0.5);
+			}
+		}
+		return ens;
+	}
+
+	private static void assertSameTable(String msg, MapQtable expected,
+			Qtable table) {
+		assertEquals(msg, expected.qtable, table.getAllQvalues());
+		assertEquals(msg, expected.qtable.keySet(),
+				table.getAllDestinations());
+		for (int dest = 0; dest <= MAX_ADDRESS; dest++) {
+			assertEquals(msg, expected.qtable.get("" + dest),
+					table.getActionMap("" + dest));
+			for (int hop = 0; hop <= MAX_ADDRESS; hop++) {
+				assertEquals(msg, expected.getQvalue("" + dest, "" + hop),
+						table.getQvalue(dest, hop));
+				assertEquals(msg, expected.hasAction("" + dest, "" + hop),
+						table.hasAction(dest, hop));
+			}
+		}
+	}
+
+	/**
+	 * The earlier Q-table: Q-values in nested maps by destination and
+	 * next hop id.
+	 */
+	private static class MapQtable {
+		private final String ownerId;
+		private final Map<String, Map<String, Double>> qtable =
+			new HashMap<String, Map<String, Double>>();
+
+		public MapQtable(String ownerId) {
+			this.ownerId = ownerId;
+		}
+
+		public void initializeAllQvalues(Set<String> allNodeIds) {
+			for (String destinationId : allNodeIds) {
+				if (destinationId.equals(ownerId)) continue;
+				for (String nextHop : allNodeIds) {
+					if (nextHop.equals(ownerId)) continue;
+					updateQvalue(destinationId, nextHop, 0.0);
+				}
+			}
+		}
+
+		public double getQvalue(String destinationId, String nextHop) {
+			Map<String, Double> nextHopMap = qtable.get(destinationId);
+			if (nextHopMap == null) return 0.0;
+			Double q = nextHopMap.get(nextHop);
+			return q == null ? 0.0 : q;
+		}
+
+		public void updateQvalue(String destinationId, String nextHop,
+				double qvalue) {
+			qvalue = Math.min(qvalue, 1.0);
+			Map<String, Double> nextHopMap = qtable.get(destinationId);
+			if (nextHopMap == null) {
+				nextHopMap = new HashMap<String, Double>();
+				qtable.put(destinationId, nextHopMap);
+			}
+			nextHopMap.put(nextHop, qvalue);
+		}
+
+		public boolean hasAction(String destinationId, String nextHop) {
+			return qtable.containsKey(destinationId) &&
+				qtable.get(destinationId).containsKey(nextHop);
+		}
+
+		public double getMaxQvalue(String destinationId,
+				EncounteredNodeSet ensNeighbor) {
+			double maxQvalue = Double.NEGATIVE_INFINITY;
+			for (String y : ensNeighbor.getAllNodeIds()) {
+				maxQvalue = Math.max(maxQvalue, getQvalue(destinationId, y));
+			}
+			return maxQvalue == Double.NEGATIVE_INFINITY ? 0.0 : maxQvalue;
+		}
+
+		public boolean ageNextHop(String nextHop, double decayFactor) {
+			boolean updated = false;
+			for (Map.Entry<String, Map<String, Double>> e :
+					qtable.entrySet()) {
+				Double q = e.getValue().get(nextHop);
+				if (q == null) continue;
+				updateQvalue(e.getKey(), nextHop,
+						Math.max(q * decayFactor, MIN_Q));
+				updated = true;
+			}
+			return updated;
+		}
+	}
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Properties;
+
+import junit.framework.TestCase;
+import ui.DTNSimFanOutUI;
+import core.DTNSim;
+import core.Settings;
+import core.World;
+
+/**
+ * Tests that the router stacks of a router fan-out run produce the same
+ * reports as the same runs executed separately with the two phase
+ * connectivity update.
+ */
+public class RouterFanOutTest extends TestCase {
+	private static final String[] ROUTERS = {"EpidemicRouter",
+		"ProphetRouter", "SprayAndWaitRouter"};
+	private static final String[] REPORTS = {"MessageStatsReport",
+		"DeliveredMessagesReport", "ContactTimesReport"};
+
+	private File dir;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		dir = Files.createTempDirectory("routerFanOutTest").toFile();
+	}
+
+	protected void tearDown() throws Exception {
+		Settings.init(null);
+		TestSettings.init(null);
+		delete(dir);
+		super.tearDown();
+	}
+
+	public void testSameReportsAsSeparateRuns() throws IOException {
+		File separate = run(false, 1);
+		File fanOut = run(true, 1);
+
+		String[] names = separate.list();
+		Arrays.sort(names);
+		assertEquals(ROUTERS.length * REPORTS.length, names.length);
+		for (String name : names) {
+			assertEquals(name, read(new File(separate, name)),
+					read(new File(fanOut, name)));
+		}
+		assertFalse(read(new File(separate, "fanout_EpidemicRouter_" +
+				"MessageStatsReport.txt")).contains("delivered: 0\n"));
+	}
+
+	public void testSameReportsWithThreads() throws IOException {
+		File single = run(true, 1);
+		File concurrent = run(true, ROUTERS.length);
+
+		for (String name : single.list()) {
+			assertEquals(name, read(new File(single, name)),
+					read(new File(concurrent, name)));
+		}
+	}
+
+	/**
+	 * Runs all the routers of the test scenario
+	 * @param fanOut If true, the runs are executed as one fan-out run,
+	 * if false, one by one with the two phase connectivity update
+	 * @param nrofThreads Number of threads to run the runs with
+	 * @return Directory of the reports
+	 */
+	private File run(boolean fanOut, int nrofThreads) throws IOException {
+		File out = new File(dir, "out");
+		assertTrue(out.mkdir());
+
+		StringBuilder routers = new StringBuilder();
+		for (String router : ROUTERS) {
+			routers.append(routers.length() == 0 ? "[" : "; ").append(router);
+		}
+
+		Properties p = new Properties();
+		p.setProperty("Scenario.name", "fanout_%%Group.router%%");
+		p.setProperty("Scenario.simulateConnections", "true");
+		p.setProperty("Scenario.updateInterval", "1");
+		p.setProperty("Scenario.endTime", "4000");
+		p.setProperty("Scenario.nrofHostGroups", "1");
+		p.setProperty("Group.groupID", "n");
+		p.setProperty("Group.nrofHosts", "25");
+		p.setProperty("Group.movementModel", "RandomWaypoint");
+		p.setProperty("Group.router", routers.append("]").toString());
+		p.setProperty("Group.bufferSize", "2M");
+		p.setProperty("Group.msgTtl", "60");
+		p.setProperty("Group.waitTime", "0, 120");
+		p.setProperty("Group.speed", "0.5, 1.5");
+		p.setProperty("Group.nrofInterfaces", "1");
+		p.setProperty("Group.interface1", "btInterface");
+		p.setProperty("btInterface.type", "SimpleBroadcastInterface");
+		p.setProperty("btInterface.transmitSpeed", "250k");
+		p.setProperty("btInterface.transmitRange", "30");
+		p.setProperty("ProphetRouter.secondsInTimeUnit", "30");
+		p.setProperty("SprayAndWaitRouter.nrofCopies", "6");
+		p.setProperty("SprayAndWaitRouter.binaryMode", "true");
+		p.setProperty("MovementModel.rngSeed", "1");
+		p.setProperty("MovementModel.worldSize", "400, 400");
+		p.setProperty("MovementModel.warmup", "100");
+		p.setProperty("Events.nrof", "1");
+		p.setProperty("Events1.class", "MessageEventGenerator");
+		p.setProperty("Events1.interval", "25, 35");
+		p.setProperty("Events1.size", "50k, 500k");
+		p.setProperty("Events1.hosts", "0, 25");
+		p.setProperty("Events1.prefix", "M");
+		p.setProperty(World.SETTINGS_NS + "." +
+				World.TWO_PHASE_CONNECTIVITY_S, "true");
+		p.setProperty("Report.nrofReports", "" + REPORTS.length);
+		p.setProperty("Report.reportDir", out.getPath() + "/");
+		for (int i=0; i<REPORTS.length; i++) {
+			p.setProperty("Report.report" + (i+1), REPORTS[i]);
+		}
+
+		File conf = new File(dir, "settings.txt");
+		OutputStream confOut = new FileOutputStream(conf);
+		try {
+			p.store(confOut, null);
+		}
+		finally {
+			confOut.close();
+		}
+
+		PrintStream stdout = System.out;
+		System.setOut(new PrintStream(new OutputStream() {
+			public void write(int b) {}
+		}));
+		try {
+			Settings.init(conf.getPath());
+			if (fanOut) {
+				new DTNSimFanOutUI(0, ROUTERS.length, nrofThreads).start();
+			}
+			else {
+				DTNSim.runBatch(new int[] {0, ROUTERS.length}, nrofThreads);
+			}
+			Settings.init(null);
+		}
+		finally {
+			System.setOut(stdout);
+		}
+		File runDir = new File(dir, (fanOut ? "fanOut" : "separate") +
+				nrofThreads);
+		assertTrue(out.renameTo(runDir));
+		return runDir;
+	}
+
+	private static String read(File file) throws IOException {
+		return new String(Files.readAllBytes(file.toPath()), "UTF-8");
+	}
+
+	private static void delete(File file) {
+		File[] files = file.listFiles();
+		if (files != null) {
+			for (File f : files) {
+				delete(f);
+			}
+		}
+		file.delete();
+	}
+}
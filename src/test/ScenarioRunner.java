@@ -0,0 +1,347 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.EventQueueHandler;
+import input.StandardEventsReader;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import movement.MovementModel;
+
+import core.ConnectionListener;
+import core.Coord;
+import core.DTNHost;
+import core.DTNSim;
+import core.Message;
+import core.MessageListener;
+import core.MovementListener;
+import core.Settings;
+import core.SimClock;
+import core.SimContext;
+import core.SimScenario;
+import core.UpdateListener;
+import core.World;
+
+/**
+ * Runs a whole simulation scenario from the current (test) settings in its
+ * own {@link SimContext} and logs the connection and message events of the
+ * run in the order they happen, and the host locations at the end. Tests
+ * can compare the logs of runs that should behave identically, e.g., with
+ * and without an optimization. Movement events are logged too if
+ * requested.
+ */
+public class ScenarioRunner implements ConnectionListener, MessageListener,
+		MovementListener {
+	private StringBuilder log;
+	private boolean logMovement;
+	private UpdateListener updateListener;
+	private MessageListener messageListener;
+	private int nrofSkips;
+	private int nrofUpdates;
+
+	/**
+	 * Puts the settings of a trace driven scenario: stationary hosts whose
+	 * connections come from an external contact trace and random messages
+	 * between all hosts. The router settings are left to the caller.
+	 * @param ts The settings to put the scenario to
+	 * @param trace The contact trace (see {@link #writeContactTrace})
+	 * @param nrofHosts Number of hosts
+	 * @param endTime End time of the scenario
+	 */
+	public static void putTraceScenario(TestSettings ts, File trace,
+			int nrofHosts, double endTime) {
+		String sns = SimScenario.SCENARIO_NS + ".";
+		String gns = SimScenario.GROUP_NS + ".";
+		String ens = EventQueueHandler.SETTINGS_NAMESPACE;
+		ts.putSetting(sns + SimScenario.NAME_S, "trace-scenario");
+		ts.putSetting(sns + SimScenario.END_TIME_S, String.valueOf(endTime));
+		ts.putSetting(sns + SimScenario.UP_INT_S, "1");
+		ts.putSetting(sns + SimScenario.SIM_CON_S, "false");
+		ts.putSetting(sns + SimScenario.NROF_GROUPS_S, "1");
+		ts.putSetting(gns + SimScenario.GROUP_ID_S, "n");
+		ts.putSetting(gns + SimScenario.NROF_HOSTS_S,
+				String.valueOf(nrofHosts));
+		ts.putSetting(gns + SimScenario.MOVEMENT_MODEL_S,
+				"StationaryMovement");
+		ts.putSetting(gns + "nodeLocation", "10, 10");
+		ts.putSetting(gns + "bufferSize", "5M");
+		ts.putSetting(gns + "msgTtl", "300");
+		ts.putSetting(gns + SimScenario.NROF_INTERF_S, "1");
+		ts.putSetting(gns + SimScenario.INTERFACENAME_S + "1", "btInterface");
+		ts.putSetting("btInterface.type", "SimpleBroadcastInterface");
+		ts.putSetting("btInterface.transmitSpeed", "250k");
+		ts.putSetting("btInterface.transmitRange", "10");
+		ts.putSetting(MovementModel.MOVEMENT_MODEL_NS + "." +
+				MovementModel.WORLD_SIZE, "100, 100");
+		ts.putSetting(ens + "." + EventQueueHandler.NROF_SETTING, "2");
+		ts.putSetting(ens + "1." + EventQueueHandler.PATH_SETTING,
+				trace.getPath());
+		ts.putSetting(ens + "2." + EventQueueHandler.CLASS_SETTING,
+				"MessageEventGenerator");
+		ts.putSetting(ens + "2.interval", "50, 150");
+		ts.putSetting(ens + "2.size", "10k, 100k");
+		ts.putSetting(ens + "2.hosts", "0, " + nrofHosts);
+		ts.putSetting(ens + "2.prefix", "M");
+	}
+
+	/**
+	 * Puts the settings of a scenario with simulated connections between
+	 * moving hosts: half of the hosts use RandomWaypoint and half RandomWalk
+	 * movement, and random messages are created between all hosts. The
+	 * router is EpidemicRouter.
+	 * @param ts The settings to put the scenario to
+	 * @param nrofHosts Number of hosts (an even number)
+	 * @param endTime End time of the scenario
+	 */
+	public static void putMovingScenario(TestSettings ts, int nrofHosts,
+			double endTime) {
+		String sns = SimScenario.SCENARIO_NS + ".";
+		String gns = SimScenario.GROUP_NS + ".";
+		String ens = EventQueueHandler.SETTINGS_NAMESPACE;
+		ts.putSetting(sns + SimScenario.NAME_S, "moving-scenario");
+		ts.putSetting(sns + SimScenario.END_TIME_S, String.valueOf(endTime));
+		ts.putSetting(sns + SimScenario.UP_INT_S, "0.5");
+		ts.putSetting(sns + SimScenario.SIM_CON_S, "true");
+		ts.putSetting(sns + SimScenario.NROF_GROUPS_S, "2");
+		ts.putSetting(gns + SimScenario.NROF_HOSTS_S,
+				String.valueOf(nrofHosts / 2));
+		ts.putSetting(gns + SimScenario.ROUTER_S, "EpidemicRouter");
+		ts.putSetting(gns + "bufferSize", "5M");
+		ts.putSetting(gns + "waitTime", "0, 60");
+		ts.putSetting(gns + "speed", "0.5, 1.5");
+		ts.putSetting(gns + SimScenario.NROF_INTERF_S, "1");
+		ts.putSetting(gns + SimScenario.INTERFACENAME_S + "1", "btInterface");
+		ts.putSetting(SimScenario.GROUP_NS + "1." + SimScenario.GROUP_ID_S,
+				"w");
+		ts.putSetting(SimScenario.GROUP_NS + "1." +
+				SimScenario.MOVEMENT_MODEL_S, "RandomWaypoint");
+		ts.putSetting(SimScenario.GROUP_NS + "2." + SimScenario.GROUP_ID_S,
+				"r");
+		ts.putSetting(SimScenario.GROUP_NS + "2." +
+				SimScenario.MOVEMENT_MODEL_S, "RandomWalk");
+		ts.putSetting("btInterface.type", "SimpleBroadcastInterface");
+		ts.putSetting("btInterface.transmitSpeed", "250k");
+		ts.putSetting("btInterface.transmitRange", "20");
+		String mns = MovementModel.MOVEMENT_MODEL_NS + ".";
+		ts.putSetting(mns + MovementModel.WORLD_SIZE, "300, 300");
+		ts.putSetting(mns + MovementModel.RNG_SEED, "3");
+		ts.putSetting(ens + "." + EventQueueHandler.NROF_SETTING, "1");
+		ts.putSetting(ens + "1." + EventQueueHandler.CLASS_SETTING,
+				"MessageEventGenerator");
+		ts.putSetting(ens + "1.interval", "20, 40");
+		ts.putSetting(ens + "1.size", "10k, 100k");
+		ts.putSetting(ens + "1.hosts", "0, " + nrofHosts);
+		ts.putSetting(ens + "1.prefix", "M");
+	}
+
+	/**
+	 * Writes a random contact trace to a temporary file. Every host pair
+	 * meets at most once and the contacts last from 10 to 300 seconds.
+	 * @param nrofHosts Number of hosts
+	 * @param nrofContacts Number of contacts (at most the number of pairs)
+	 * @param endTime Latest end time of the contacts
+	 * @param seed Seed for the contact times
+	 * @return The trace file (deleted on exit)
+	 */
+	public static File writeContactTrace(int nrofHosts, int nrofContacts,
+			double endTime, long seed) throws IOException {
+		Random rng = new Random(seed);
+		List<int[]> pairs = new ArrayList<int[]>();
+		for (int i=0; i < nrofHosts; i++) {
+			for (int j=i+1; j < nrofHosts; j++) {
+				pairs.add(new int[] {i, j});
+			}
+		}
+		Collections.shuffle(pairs, rng);
+
+		List<String> lines = new ArrayList<String>();
+		for (int[] pair : pairs.subList(0, nrofContacts)) {
+			int duration = 10 + rng.nextInt(291);
+			int start = rng.nextInt((int)endTime - duration);
+			lines.add(contactLine(start, pair, true));
+			lines.add(contactLine(start + duration, pair, false));
+		}
+		Collections.sort(lines, new Comparator<String>() {
+			public int compare(String l1, String l2) {
+				return Integer.compare(time(l1), time(l2));
+			}
+			private int time(String line) {
+				return Integer.parseInt(line.substring(0, line.indexOf(' ')));
+			}
+		});
+
+		File trace = File.createTempFile("contactTrace", ".txt");
+		trace.deleteOnExit();
+		PrintWriter out = new PrintWriter(new FileWriter(trace));
+		for (String line : lines) {
+			out.println(line);
+		}
+		out.close();
+		return trace;
+	}
+
+	private static String contactLine(int time, int[] pair, boolean up) {
+		return time + " " + StandardEventsReader.CONNECTION + " " +
+			pair[0] + " " + pair[1] + " " +
+			(up ? StandardEventsReader.CONNECTION_UP :
+				StandardEventsReader.CONNECTION_DOWN);
+	}
+
+	/**
+	 * Sets whether the new destinations of the hosts are logged too (and
+	 * the final locations without rounding)
+	 * @param logMovement If true, movement events are logged
+	 */
+	public void setLogMovement(boolean logMovement) {
+		this.logMovement = logMovement;
+	}
+
+	/**
+	 * Sets a listener that is informed about every world update of the
+	 * following runs
+	 * @param listener The listener or null for none
+	 */
+	public void setUpdateListener(UpdateListener listener) {
+		this.updateListener = listener;
+	}
+
+	/**
+	 * Sets a listener that is informed about the message events of the
+	 * following runs (in addition to the log of this runner)
+	 * @param listener The listener or null for none
+	 */
+	public void setMessageListener(MessageListener listener) {
+		this.messageListener = listener;
+	}
+
+	/**
+	 * Runs the scenario defined by the current settings until its end time
+	 * @return Log of the connection and message events of the run
+	 */
+	public String run() {
+		this.log = new StringBuilder();
+		this.nrofSkips = 0;
+		this.nrofUpdates = 0;
+
+		/* some routers print debug lines for every update */
+		PrintStream out = System.out;
+		System.setOut(new PrintStream(new OutputStream() {
+			public void write(int b) {}
+		}));
+		SimContext.enter(new SimContext(0));
+		try {
+			Settings.setRunIndex(0);
+			DTNSim.resetForNextRun();
+			SimScenario scen = SimScenario.getInstance();
+			scen.addConnectionListener(this);
+			scen.addMessageListener(this);
+			if (this.logMovement) {
+				scen.addMovementListener(this);
+			}
+			if (this.updateListener != null) {
+				scen.addUpdateListener(this.updateListener);
+			}
+			if (this.messageListener != null) {
+				scen.addMessageListener(this.messageListener);
+			}
+			World world = scen.getWorld();
+			double endTime = scen.getEndTime();
+			while (SimClock.getTime() < endTime) {
+				double time = SimClock.getTime();
+				world.skipIdleIntervals(endTime);
+				if (SimClock.getTime() > time) {
+					nrofSkips++;
+				}
+				world.update();
+				nrofUpdates++;
+			}
+			for (DTNHost host : world.getHosts()) {
+				log("at " + host + " " + (this.logMovement ?
+						exact(host.getLocation()) : host.getLocation()));
+			}
+			return log.toString();
+		}
+		finally {
+			SimContext.exit();
+			System.setOut(out);
+		}
+	}
+
+	/**
+	 * Returns how many times the last run skipped idle update intervals
+	 * @return Number of skips
+	 */
+	public int getNrofSkips() {
+		return this.nrofSkips;
+	}
+
+	/**
+	 * Returns how many times the last run called World.update()
+	 * @return Number of world updates
+	 */
+	public int getNrofUpdates() {
+		return this.nrofUpdates;
+	}
+
+	private void log(String event) {
+		log.append(String.format("%.2f ", SimClock.getTime()));
+		log.append(event);
+		log.append('\n');
+	}
+
+	public void hostsConnected(DTNHost host1, DTNHost host2) {
+		log("up " + host1 + " " + host2);
+	}
+
+	public void hostsDisconnected(DTNHost host1, DTNHost host2) {
+		log("down " + host1 + " " + host2);
+	}
+
+	public void newMessage(Message m) {
+		log("new " + m.getId() + " " + m.getFrom() + " " + m.getTo());
+	}
+
+	public void messageTransferStarted(Message m, DTNHost from, DTNHost to) {
+		log("start " + m.getId() + " " + from + " " + to);
+	}
+
+	public void messageTransferred(Message m, DTNHost from, DTNHost to,
+			boolean firstDelivery) {
+		log("relay " + m.getId() + " " + from + " " + to + " " +
+				firstDelivery);
+	}
+
+	public void messageTransferAborted(Message m, DTNHost from, DTNHost to) {
+		log("abort " + m.getId() + " " + from + " " + to);
+	}
+
+	public void messageDeleted(Message m, DTNHost where, boolean dropped) {
+		log("delete " + m.getId() + " " + where + " " + dropped);
+	}
+
+	public void newDestination(DTNHost host, Coord destination,
+			double speed) {
+		log("dest " + host + " " + exact(destination) + " " + speed);
+	}
+
+	public void initialLocation(DTNHost host, Coord location) {
+		log("init " + host + " " + exact(location));
+	}
+
+	private static String exact(Coord c) {
+		return "(" + c.getX() + "," + c.getY() + ")";
+	}
+}
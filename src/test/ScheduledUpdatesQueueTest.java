@@ -107,4 +107,22 @@ public class ScheduledUpdatesQueueTest extends TestCase {
 		assertEquals(5.0, suq.nextEvent().getTime());
 		assertEquals(8.0, suq.nextEvent().getTime());
 	}
+	
+	public void testInterleavedDuplicateValues() {
+		for (int i=0; i<20; i++) {
+			suq.addUpdate(i % 5);
+			suq.addUpdate(-0.0);
+		}
+		assertEquals(0.0, suq.nextEvent().getTime());
+		assertEquals(1.0, suq.nextEvent().getTime());
+		suq.addUpdate(2.0);
+		suq.addUpdate(1.0); // the previous 1.0 was already taken
+		assertEquals("updates @ 1.0, 2.0, 3.0, 4.0", suq.toString());
+		
+		assertEquals(1.0, suq.nextEvent().getTime());
+		assertEquals(2.0, suq.nextEvent().getTime());
+		assertEquals(3.0, suq.nextEvent().getTime());
+		assertEquals(4.0, suq.nextEvent().getTime());
+		assertEquals(MAX, suq.nextEvent().getTime());
+	}
 }
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import junit.framework.TestCase;
+import core.SimClock;
+import core.SimContext;
+
+/**
+ * Tests for the per-run simulation context
+ */
+public class SimContextTest extends TestCase {
+	private final Object key = new Object();
+
+	protected void tearDown() throws Exception {
+		super.tearDown();
+		SimContext.exit();
+	}
+
+	public void testClockIsContextLocal() {
+		SimClock.getInstance().setTime(10);
+
+		SimContext.enter(new SimContext(1));
+		assertEquals(0.0, SimClock.getTime());
+		SimClock.getInstance().advance(5);
+		assertEquals(5.0, SimClock.getTime());
+		SimContext.exit();
+
+		assertEquals(10.0, SimClock.getTime());
+		SimClock.reset();
+	}
+
+	public void testState() {
+		SimContext c = new SimContext(0);
+		assertNull(c.getState(key));
+		c.setState(key, "value");
+		assertEquals("value", c.getState(key));
+		assertNull(new SimContext(0).getState(key));
+		c.setState(key, null);
+		assertNull(c.getState(key));
+	}
+
+	public void testCounters() {
+		SimContext c1 = new SimContext(0);
+		SimContext c2 = new SimContext(1);
+		assertEquals(0, c1.nextCounterValue(key));
+		assertEquals(1, c1.nextCounterValue(key));
+		assertEquals(0, c2.nextCounterValue(key));
+		c1.resetCounter(key);
+		assertEquals(0, c1.nextCounterValue(key));
+	}
+
+	public void testThreadsHaveOwnContexts() throws InterruptedException {
+		final double[] times = new double[2];
+		Thread[] threads = new Thread[2];
+		for (int i=0; i<threads.length; i++) {
+			final int index = i;
+			threads[i] = new Thread() {
+				public void run() {
+					SimContext.enter(new SimContext(index));
+					for (int j=0; j<1000; j++) {
+						SimClock.getInstance().advance(index + 1);
+					}
+					times[index] = SimClock.getTime();
+				}
+			};
+			threads[i].start();
+		}
+		for (Thread t : threads) {
+			t.join();
+		}
+
+		assertEquals(1000.0, times[0]);
+		assertEquals(2000.0, times[1]);
+	}
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import reinforcementLearning_ContextAware.DenseQtable;
+import reinforcementLearning_ContextAware.QTableUpdateStrategy;
+import reinforcementLearning_ContextAware.Qtable;
+import reinforcementLearning_ContextAware.SparseQtable;
+import routing.contextAware.ENS.ConnectionDuration;
+import routing.contextAware.ENS.EncounteredNodeSet;
+import core.DTNHost;
+import core.SimClock;
+import core.SimContext;
+
+/**
+ * Tests for the sparse Q-table that stores only the K best next hops of
+ * every destination.
+ */
+public class SparseQtableTest extends TestCase {
+	private static final int NROF_HOSTS = 8;
+	private static final int TOP_K = 3;
+	private static final int DEST = 1;
+
+	private List<DTNHost> hosts;
+	private Set<String> ids;
+	private Random rng;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimContext.enter(new SimContext(0));
+		SimClock.getInstance().setTime(0);
+		core.DTNHost.reset();
+		TestUtils utils = new TestUtils(null, null, new TestSettings());
+		hosts = new ArrayList<DTNHost>();
+		ids = new HashSet<String>();
+		for (int i=0; i < NROF_HOSTS; i++) {
+			hosts.add(utils.createHost());
+			ids.add(String.valueOf(i));
+		}
+		rng = new Random(7);
+	}
+
+	protected void tearDown() throws Exception {
+		SimContext.exit();
+		super.tearDown();
+	}
+
+	public void testKeepsBestValues() {
+		SparseQtable q = new SparseQtable("0", TOP_K);
+		q.updateQvalue(DEST, 2, 0.3);
+		q.updateQvalue(DEST, 3, 0.5);
+		q.updateQvalue(DEST, 4, 0.1);
+		assertEquals(actions(2, 0.3, 3, 0.5, 4, 0.1), q.getActionMap("1"));
+
+		/* a larger value evicts the smallest one */
+		q.updateQvalue(DEST, 5, 0.4);
+		assertEquals(actions(2, 0.3, 3, 0.5, 5, 0.4), q.getActionMap("1"));
+		assertEquals(0.0, q.getQvalue(DEST, 4));
+		assertTrue(q.hasAction(DEST, 4));
+
+		/* a smaller value than all the stored ones is not stored */
+		q.updateQvalue(DEST, 6, 0.2);
+		assertEquals(actions(2, 0.3, 3, 0.5, 5, 0.4), q.getActionMap("1"));
+		assertEquals(0.0, q.getQvalue(DEST, 6));
+
+		/* lowered value moves to the end of the row and gets evicted */
+		q.updateQvalue(DEST, 3, 0.05);
+		q.updateQvalue(DEST, 7, 0.2);
+		assertEquals(actions(2, 0.3, 5, 0.4, 7, 0.2), q.getActionMap("1"));
+
+		/* values are capped at 1.0 and zero is never stored */
+		q.updateQvalue(DEST, 2, 1.5);
+		q.updateQvalue(2, 3, 0.0);
+		assertEquals(1.0, q.getQvalue(DEST, 2));
+		assertEquals(new HashMap<String, Double>(), q.getActionMap("2"));
+		assertEquals(2 * TOP_K + TOP_K, q.getStoredEntries());
+	}
+
+	public void testUnknownDestinations() {
+		SparseQtable q = new SparseQtable("0", TOP_K);
+		assertNull(q.getActionMap("1"));
+		assertFalse(q.hasAction(DEST, 2));
+		assertEquals(0.0, q.getMaxQvalue(DEST, ens(0, 2, 3)));
+
+		q.initializeAllQvalues(ids);
+		assertEquals(new HashMap<String, Double>(), q.getActionMap("1"));
+		assertTrue(q.hasAction(DEST, 2));
+		assertFalse(q.hasAction(DEST, 0));
+		assertFalse(q.getAllDestinations().contains("0"));
+		assertEquals(NROF_HOSTS - 1, q.getAllDestinations().size());
+		/* initialized destinations share one row */
+		assertEquals(TOP_K, q.getStoredEntries());
+	}
+
+	public void testMaxQvalueLookup() {
+		SparseQtable q = new SparseQtable("0", TOP_K);
+		q.initializeAllQvalues(ids);
+		for (int step = 0; step < 2000; step++) {
+			int dest = 1 + rng.nextInt(NROF_HOSTS - 1);
+			q.updateQvalue(dest, 1 + rng.nextInt(NROF_HOSTS - 1),
+					rng.nextDouble());
+
+			int[] members = new int[rng.nextInt(NROF_HOSTS)];
+			for (int i=0; i < members.length; i++) {
+				members[i] = rng.nextInt(NROF_HOSTS);
+			}
+			EncounteredNodeSet ens = ens(0, members);
+			double expected = 0.0;
+			for (int i=0; i < ens.size(); i++) {
+				expected = Math.max(expected,
+						q.getQvalue(dest, ens.getNodeAddress(i)));
+			}
+			assertEquals(expected, q.getMaxQvalue(dest, ens));
+		}
+	}
+
+	public void testSameAsDenseWhenAllValuesFit() {
+		Qtable sparse = new SparseQtable("0", NROF_HOSTS);
+		Qtable dense = new DenseQtable("0");
+		sparse.initializeAllQvalues(ids);
+		dense.initializeAllQvalues(ids);
+		for (int step = 0; step < 2000; step++) {
+			int hop = 1 + rng.nextInt(NROF_HOSTS - 1);
+			if (rng.nextInt(5) == 0) {
+				int delay = rng.nextInt(500);
+				assertEquals(age(dense, hop, delay), age(sparse, hop, delay));
+			}
+			else {
+				double q = rng.nextInt(4) == 0 ? 0.0 : rng.nextDouble() * 1.2;
+				int dest = 1 + rng.nextInt(NROF_HOSTS - 1);
+				dense.updateQvalue(dest, hop, q);
+				sparse.updateQvalue(dest, hop, q);
+			}
+			for (int dest = 0; dest < NROF_HOSTS; dest++) {
+				for (int h = 0; h < NROF_HOSTS; h++) {
+					assertEquals(dense.getQvalue(dest, h),
+							sparse.getQvalue(dest, h));
+				}
+			}
+		}
+	}
+
+	public void testAgingWithoutChangesIsNotSynced() {
+		SparseQtable a = new SparseQtable("0", 2);
+		SparseQtable b = new SparseQtable("1", 2);
+		a.updateQvalue(2, 3, 0.8);
+		a.updateQvalue(2, 4, 0.6);
+		b.updateQvalue(2, 3, 0.7);
+		QTableUpdateStrategy.updateThirdStrategy(a, b, "0", "1");
+		long entries = a.getSyncedEntries() + b.getSyncedEntries();
+		assertTrue(entries > 0);
+
+		/* the aged value of hop 5 doesn't fit in the full row */
+		assertFalse(age(a, 5, 0));
+		assertEquals(actions(3, 0.8, 4, 0.6), a.getActionMap("2"));
+		QTableUpdateStrategy.updateThirdStrategy(a, b, "0", "1");
+		assertEquals(entries, a.getSyncedEntries() + b.getSyncedEntries());
+
+		/* hop 3 is stored and aged */
+		assertTrue(age(a, 3, 0));
+		assertTrue(a.getQvalue(2, 3) < 0.8);
+	}
+
+	/**
+	 * Ages the Q-values through a next hop after the connection to it has
+	 * been down for the minimum aging time and the given delay
+	 * @return True if the table aged any Q-value
+	 */
+	private boolean age(Qtable q, int nextHop, int delay) {
+		DTNHost host = hosts.get(q.getOwner());
+		DTNHost neighbor = hosts.get(nextHop);
+		SimClock clock = SimClock.getInstance();
+		ConnectionDuration cd = ConnectionDuration.startConnection(host,
+				neighbor);
+		clock.advance(10);
+		cd.endConnection(host, neighbor, new EncounteredNodeSet());
+		clock.advance(QTableUpdateStrategy.MIN_ELAPSED_FOR_AGING + delay);
+		return new QTableUpdateStrategy(q).updateSecondStrategy(host,
+				neighbor);
+	}
+
+	private EncounteredNodeSet ens(int owner, int... members) {
+		EncounteredNodeSet ens = new EncounteredNodeSet();
+		for (int member : members) {
+			ens.updateENS(hosts.get(owner), hosts.get(member),
+					String.valueOf(member), 0, 100, 1000, 10, 0.5);
+		}
+		return ens;
+	}
+
+	private static Map<String, Double> actions(Object... hopsAndValues) {
+		Map<String, Double> actions = new HashMap<String, Double>();
+		for (int i=0; i < hopsAndValues.length; i += 2) {
+			actions.put(String.valueOf(hopsAndValues[i]),
+					(Double)hopsAndValues[i + 1]);
+		}
+		return actions;
+	}
+}
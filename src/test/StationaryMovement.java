@@ -13,6 +13,8 @@ import core.Coord;
  * purposes
  */
 public class StationaryMovement extends MovementModel {
+	private static final long serialVersionUID = 1L;
+
 	private final Coord loc;
 	
 	public StationaryMovement(Coord location) {
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.io.File;
+
+import junit.framework.TestCase;
+import routing.DecisionEngineRouter;
+import core.SimScenario;
+import core.World;
+
+/**
+ * Tests that updating only the affected hosts after events gives the same
+ * results as updating all hosts after every event.
+ */
+public class TouchedHostUpdateTest extends TestCase {
+	private static final int NROF_HOSTS = 20;
+	private static final double END_TIME = 2000;
+
+	private TestSettings ts;
+	private ScenarioRunner runner;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		ts = new TestSettings();
+		/* dense enough that several events happen within the same second */
+		File trace = ScenarioRunner.writeContactTrace(NROF_HOSTS, 150,
+				END_TIME, 2);
+		ScenarioRunner.putTraceScenario(ts, trace, NROF_HOSTS, END_TIME);
+		ts.putSetting(SimScenario.SCENARIO_NS + "." + SimScenario.UP_INT_S,
+				"2");
+		runner = new ScenarioRunner();
+	}
+
+	/**
+	 * Runs the scenario with and without the option and checks that the
+	 * runs give the same events
+	 */
+	private void assertSameWithTouchedOnly() {
+		ts.putSetting(World.SETTINGS_NS + "." + World.UPDATE_TOUCHED_ONLY_S,
+				"false");
+		String expected = runner.run();
+		assertTrue(expected.contains(" relay "));
+
+		ts.putSetting(World.SETTINGS_NS + "." + World.UPDATE_TOUCHED_ONLY_S,
+				"true");
+		assertEquals(expected, runner.run());
+	}
+
+	public void testEpidemicRouter() {
+		ts.putSetting(SimScenario.GROUP_NS + "." + SimScenario.ROUTER_S,
+				"EpidemicRouter");
+		assertSameWithTouchedOnly();
+	}
+
+	public void testEpidemicRouterInAddressOrder() {
+		ts.putSetting(SimScenario.GROUP_NS + "." + SimScenario.ROUTER_S,
+				"EpidemicRouter");
+		ts.putSetting(World.SETTINGS_NS + "." + World.RANDOMIZE_UPDATES_S,
+				"false");
+		assertSameWithTouchedOnly();
+	}
+
+	public void testDecisionEngineRouter() {
+		ts.putSetting(SimScenario.GROUP_NS + "." + SimScenario.ROUTER_S,
+				"DecisionEngineRouter");
+		ts.putSetting(DecisionEngineRouter.PUBSUB_NS + "." +
+				DecisionEngineRouter.ENGINE_SETTING, "ProphetDecisionEngine");
+		assertSameWithTouchedOnly();
+	}
+
+	public void testWithExactTransferTimes() {
+		ts.putSetting(SimScenario.GROUP_NS + "." + SimScenario.ROUTER_S,
+				"EpidemicRouter");
+		ts.putSetting(World.SETTINGS_NS + "." + World.EXACT_TRANSFER_TIMES_S,
+				"true");
+		assertSameWithTouchedOnly();
+	}
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import junit.framework.TestCase;
+import core.World;
+
+/**
+ * Tests that the two phase connectivity update gives the same connection
+ * and message events with any number of connectivity threads.
+ */
+public class TwoPhaseConnectivityTest extends TestCase {
+	private static final int NROF_HOSTS = 40;
+
+	private TestSettings ts;
+	private ScenarioRunner runner;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		ts = new TestSettings();
+		ScenarioRunner.putMovingScenario(ts, NROF_HOSTS, 1500);
+		ts.putSetting(World.SETTINGS_NS + "." +
+				World.TWO_PHASE_CONNECTIVITY_S, "true");
+		runner = new ScenarioRunner();
+	}
+
+	private String run(int nrofThreads) {
+		ts.putSetting(World.SETTINGS_NS + "." + World.CONNECTIVITY_THREADS_S,
+				String.valueOf(nrofThreads));
+		return runner.run();
+	}
+
+	public void testSameWithAnyNrofThreads() {
+		String expected = run(1);
+		assertTrue(expected.contains(" up "));
+		assertTrue(expected.contains(" down "));
+		assertTrue(expected.contains(" relay "));
+		for (int threads = 2; threads <= 4; threads++) {
+			assertEquals("threads " + threads, expected, run(threads));
+		}
+	}
+
+	public void testSameWithOrderedUpdates() {
+		ts.putSetting(World.SETTINGS_NS + "." + World.RANDOMIZE_UPDATES_S,
+				"false");
+		assertEquals(run(1), run(3));
+	}
+}
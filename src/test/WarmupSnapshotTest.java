@@ -0,0 +1,204 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+
+import junit.framework.TestCase;
+import movement.MovementModel;
+import report.Report;
+import ui.DTNSimTextUI;
+import ui.DTNSimUI;
+import core.DTNSim;
+import core.Settings;
+import core.SimContext;
+import core.SimScenario;
+import core.WarmupSnapshot;
+
+/**
+ * Tests that runs that differ only by their router settings, scenario name
+ * and reports share a warm-up snapshot.
+ */
+public class WarmupSnapshotTest extends TestCase {
+	private File dir;
+	private File reportDir;
+	private File snapshotDir;
+	private TestSettings ts;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		dir = Files.createTempDirectory("warmupSnapshotTest").toFile();
+		reportDir = new File(dir, "reports");
+		snapshotDir = new File(dir, "snapshots");
+
+		ts = new TestSettings();
+		String sns = SimScenario.SCENARIO_NS + ".";
+		String gns = SimScenario.GROUP_NS + ".";
+		ts.putSetting(sns + SimScenario.NAME_S, "sweep_%%Group.bufferSize%%");
+		ts.putSetting(sns + SimScenario.END_TIME_S, "500");
+		ts.putSetting(sns + SimScenario.UP_INT_S, "1");
+		ts.putSetting(sns + SimScenario.SIM_CON_S, "true");
+		ts.putSetting(sns + SimScenario.NROF_GROUPS_S, "1");
+		ts.putSetting(gns + SimScenario.GROUP_ID_S, "n");
+		ts.putSetting(gns + SimScenario.NROF_HOSTS_S, "10");
+		ts.putSetting(gns + SimScenario.MOVEMENT_MODEL_S, "RandomWaypoint");
+		ts.putSetting(gns + SimScenario.ROUTER_S, "EpidemicRouter");
+		ts.putSetting(gns + "speed", "0.5, 1.5");
+		ts.putSetting(gns + "waitTime", "0, 120");
+		ts.putSetting(gns + "msgTtl", "300");
+		ts.putSetting(gns + SimScenario.NROF_INTERF_S, "1");
+		ts.putSetting(gns + SimScenario.INTERFACENAME_S + "1", "btInterface");
+		ts.putSetting("btInterface.type", "SimpleBroadcastInterface");
+		ts.putSetting("btInterface.transmitSpeed", "250k");
+		ts.putSetting("btInterface.transmitRange", "30");
+		ts.putSetting(MovementModel.MOVEMENT_MODEL_NS + "." +
+				MovementModel.WORLD_SIZE, "300, 300");
+		ts.putSetting(DTNSimUI.MM_WARMUP_S, "100");
+		ts.putSetting("Events.nrof", "0");
+		ts.putSetting(Report.REPORTDIR_SETTING, reportDir.getPath());
+		ts.putSetting(DTNSimUI.NROF_REPORT_S, "1");
+		ts.putSetting(WarmupSnapshot.SNAPSHOT_NS + "." +
+				WarmupSnapshot.ENABLED_S, "true");
+		ts.putSetting(WarmupSnapshot.SNAPSHOT_NS + "." +
+				WarmupSnapshot.DIR_S, snapshotDir.getPath());
+	}
+
+	protected void tearDown() throws Exception {
+		delete(dir);
+		super.tearDown();
+	}
+
+	public void testSweepOverRouterSettingsSharesSnapshot() {
+		ts.putSetting(SimScenario.GROUP_NS + ".bufferSize", "1M");
+		ts.putSetting(DTNSimUI.REPORT_S + "1", "MessageStatsReport");
+		assertEquals("sweep_1M", runScenario());
+		assertEquals(1, nrofSnapshots());
+
+		ts.putSetting(SimScenario.GROUP_NS + ".bufferSize", "2M");
+		ts.putSetting(DTNSimUI.REPORT_S + "1", "ContactTimesReport");
+		assertEquals("sweep_2M", runScenario());
+		assertEquals(1, nrofSnapshots());
+		assertTrue(new File(reportDir,
+				"sweep_2M_ContactTimesReport.txt").exists());
+	}
+
+	public void testOtherSettingsGetOwnSnapshot() {
+		ts.putSetting(SimScenario.GROUP_NS + ".bufferSize", "1M");
+		ts.putSetting(DTNSimUI.REPORT_S + "1", "MessageStatsReport");
+		runScenario();
+		ts.putSetting(SimScenario.GROUP_NS + ".speed", "1.0, 2.0");
+		runScenario();
+		assertEquals(2, nrofSnapshots());
+	}
+
+	public void testSameReportsAsWithoutSnapshots() throws IOException {
+		ts.putSetting(SimScenario.GROUP_NS + ".bufferSize", "1M");
+		ts.putSetting(DTNSimUI.REPORT_S + "1", "ContactTimesReport");
+		File report = new File(reportDir, "sweep_1M_ContactTimesReport.txt");
+
+		setSnapshotsEnabled(false);
+		runScenario();
+		String expected = read(report);
+		assertEquals(0, nrofSnapshots());
+
+		setSnapshotsEnabled(true);
+		runScenario(); /* records the snapshot */
+		assertEquals(expected, read(report));
+		runScenario(); /* uses the snapshot */
+		assertEquals(expected, read(report));
+		assertEquals(1, nrofSnapshots());
+	}
+
+	public void testMovementReportsDontUseSnapshots() throws IOException {
+		ts.putSetting(SimScenario.GROUP_NS + ".bufferSize", "1M");
+		ts.putSetting(DTNSimUI.REPORT_S + "1", "MovementNs2Report");
+		File report = new File(reportDir, "sweep_1M_MovementNs2Report.txt");
+
+		setSnapshotsEnabled(false);
+		runScenario();
+		String expected = read(report);
+
+		setSnapshotsEnabled(true);
+		runScenario();
+		assertEquals(expected, read(report));
+		assertEquals(0, nrofSnapshots());
+	}
+
+	public void testOnlyMatchingSnapshotIsRead() throws IOException {
+		ts.putSetting(SimScenario.GROUP_NS + ".bufferSize", "1M");
+		ts.putSetting(DTNSimUI.REPORT_S + "1", "MessageStatsReport");
+		runScenario();
+
+		/* an unreadable snapshot of other settings must not be opened */
+		Files.write(new File(snapshotDir, "0000" +
+				WarmupSnapshot.SNAPSHOT_EXT).toPath(), new byte[] {1, 2, 3});
+		assertEquals("sweep_1M", runScenario());
+		assertEquals(2, nrofSnapshots());
+	}
+
+	private void setSnapshotsEnabled(boolean enabled) {
+		ts.putSetting(WarmupSnapshot.SNAPSHOT_NS + "." +
+				WarmupSnapshot.ENABLED_S, String.valueOf(enabled));
+	}
+
+	/**
+	 * Returns the number of snapshot files in the snapshot directory
+	 * @return the number of snapshot files
+	 */
+	private int nrofSnapshots() {
+		String[] names = snapshotDir.list();
+		int count = 0;
+		for (int i=0; names != null && i < names.length; i++) {
+			if (names[i].endsWith(WarmupSnapshot.SNAPSHOT_EXT)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private static String read(File file) throws IOException {
+		return new String(Files.readAllBytes(file.toPath()), "UTF-8");
+	}
+
+	/**
+	 * Runs the scenario defined by the current settings
+	 * @return Name of the run's scenario
+	 */
+	private String runScenario() {
+		PrintStream out = System.out;
+		PrintStream err = System.err;
+		PrintStream nullOut = new PrintStream(new OutputStream() {
+			public void write(int b) {}
+		});
+		System.setOut(nullOut);
+		System.setErr(nullOut);
+		SimContext.enter(new SimContext(0));
+		try {
+			Settings.setRunIndex(0);
+			DTNSim.resetForNextRun();
+			new DTNSimTextUI().start();
+			return SimScenario.getInstance().getName();
+		}
+		finally {
+			SimContext.exit();
+			System.setOut(out);
+			System.setErr(err);
+		}
+	}
+
+	private static void delete(File f) {
+		File[] children = f.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		f.delete();
+	}
+}
@@ -7,7 +7,9 @@ package test;
 import input.EventQueue;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 
 import junit.framework.TestCase;
 import core.DTNHost;
@@ -15,6 +17,7 @@ import core.ModuleCommunicationBus;
 import core.NetworkInterface;
 import core.SimClock;
 import core.UpdateListener;
+import core.UpdateOrderShuffle;
 import core.World;
 
 /**
@@ -97,6 +100,26 @@ public class WorldTest extends TestCase {
 		assertNrofUpdates(5);
 
 	}
+
+	public void testUpdateOrderShuffle() {
+		Random seeds = new Random(1);
+		for (int n = 1; n < 300; n += 1 + n / 8) {
+			List<Integer> expected = new ArrayList<Integer>();
+			int[] order = new int[n];
+			for (int i=0; i < n; i++) {
+				expected.add(i);
+				order[i] = i;
+			}
+			for (int k=0; k < 20; k++) {
+				int seed = (k == 0 ? -n : seeds.nextInt());
+				Collections.shuffle(expected, new Random(seed));
+				UpdateOrderShuffle.shuffle(order, seed);
+				for (int i=0; i < n; i++) {
+					assertEquals("n=" + n, (int)expected.get(i), order[i]);
+				}
+			}
+		}
+	}
 	
 
 	/** Dummy scenario for providing test values for the World */ 
@@ -0,0 +1,329 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package ui;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import input.EventQueueHandler;
+import core.DTNSim;
+import core.LinkFeed;
+import core.Settings;
+import core.SettingsError;
+import core.SimClock;
+import core.SimContext;
+import core.SimError;
+import core.SimScenario;
+import core.World;
+
+/**
+ * Text based user interface that runs several batch runs as one "router
+ * fan-out" run. The movement and the contacts of the hosts are computed
+ * once, in a contact world whose hosts have passive routers, and the
+ * resulting locations and link changes are fed to one router stack per
+ * run. Every stack is a world of its own, with its own hosts, routers,
+ * buffers, external events and reports, in the {@link SimContext} of its
+ * run. The stacks differ only by their run specific settings (e.g.,
+ * <CODE>Group.router = [EpidemicRouter; ProphetRouter]</CODE>), which must
+ * not change the movement or the interfaces.
+ * <P>All worlds are updated in lockstep: first the contact world and then
+ * all the stacks, concurrently if more than one thread is used. In the
+ * stacks the link changes of the update are applied before the routers
+ * are updated, like in the two phase connectivity update
+ * ({@link World#TWO_PHASE_CONNECTIVITY_S}). The stacks' own movement
+ * models are not used, so the stacks' movement listeners are not
+ * informed about the movement.</P>
+ * <P>The contact world doesn't process the external events, but it stops
+ * at their times like the stacks do (see {@link World#setContactsOnly()}).
+ * The event times of the first run are used, so all runs must have the
+ * same external event settings; runs whose settings differ are rejected.
+ * With that, the results match the separate runs with two phase
+ * connectivity update exactly.</P>
+ * <P>If a stack fails, the failure is passed on and the reports of the
+ * stacks are not finalized.</P>
+ */
+public class DTNSimFanOutUI {
+	/** How often the UI view is updated (milliseconds) */
+	public static final long UI_UP_INTERVAL = DTNSimTextUI.UI_UP_INTERVAL;
+
+	/** run indexes of the stacks: first and (last index + 1) */
+	private final int firstIndex;
+	private final int lastIndex;
+	/** number of threads updating the stacks */
+	private final int nrofThreads;
+
+	/** context of the contact world */
+	private SimContext contactContext;
+	/** world where the movement and the contacts are computed */
+	private World contactWorld;
+	/** link changes of the contact world's latest update */
+	private LinkFeed links;
+	/** external event settings of the first run */
+	private SortedMap<String, String> eventSettings;
+	/** the router stacks */
+	private final List<Stack> stacks;
+
+	/**
+	 * Constructor.
+	 * @param firstIndex Run index of the first stack
+	 * @param lastIndex Run index of the last stack + 1
+	 * @param nrofThreads Number of threads updating the stacks
+	 */
+	public DTNSimFanOutUI(int firstIndex, int lastIndex, int nrofThreads) {
+		this.firstIndex = firstIndex;
+		this.lastIndex = lastIndex;
+		this.nrofThreads = nrofThreads;
+		this.stacks = new ArrayList<Stack>();
+	}
+
+	/**
+	 * Creates the contact world and the stacks and runs the simulation
+	 */
+	public void start() {
+		try {
+			initContactWorld();
+			for (int i=firstIndex; i<lastIndex; i++) {
+				Stack stack = new Stack(i);
+				checkEventSettings(i);
+				stack.init(this.contactWorld, this.links);
+				this.stacks.add(stack);
+			}
+		}
+		catch (SettingsError se) {
+			System.err.println("Can't start: error in configuration file(s)");
+			System.err.println(se.getMessage());
+			System.exit(-1);
+		}
+		catch (SimError er) {
+			System.err.println("Can't start: " + er.getMessage());
+			System.err.println("Caught at " + er.getStackTrace()[0]);
+			System.exit(-1);
+		}
+		finally {
+			SimContext.exit();
+		}
+
+		runSim();
+	}
+
+	/**
+	 * Creates the contact world in a context of its own and runs the
+	 * movement model warm-up in it
+	 */
+	private void initContactWorld() {
+		this.contactContext = enterNewContext(firstIndex);
+		SimScenario scen = SimScenario.createContactInstance();
+		if (!scen.simulateConnections()) {
+			throw new SettingsError("Router fan-out requires " +
+					SimScenario.SCENARIO_NS + "." + SimScenario.SIM_CON_S +
+					" = true");
+		}
+		this.links = new LinkFeed();
+		scen.addConnectionListener(this.links);
+		this.eventSettings = Settings.getRunSettings(
+				EventQueueHandler.SETTINGS_NAMESPACE);
+
+		Settings settings = new Settings();
+		double warmupTime = 0;
+		if (settings.contains(DTNSimUI.MM_WARMUP_S)) {
+			warmupTime = settings.getDouble(DTNSimUI.MM_WARMUP_S);
+			if (warmupTime > 0) {
+				SimClock.getInstance().setTime(-warmupTime);
+			}
+		}
+
+		this.contactWorld = scen.getWorld();
+		this.contactWorld.warmupMovementModel(warmupTime);
+	}
+
+	/**
+	 * Checks that the external event settings of the current run are the
+	 * same as the first run's
+	 * @param index Run index of the current run
+	 * @throws SettingsError if the settings differ
+	 */
+	private void checkEventSettings(int index) {
+		if (!Settings.getRunSettings(EventQueueHandler.SETTINGS_NAMESPACE).
+				equals(this.eventSettings)) {
+			throw new SettingsError("Router fan-out requires the same " +
+					"external event settings (" +
+					EventQueueHandler.SETTINGS_NAMESPACE + "*) in all runs " +
+					"but run " + index + " differs from run " + firstIndex);
+		}
+	}
+
+	/**
+	 * Creates a new simulation context for a run and enters it
+	 * @param index Run index of the run
+	 * @return The new context
+	 */
+	private static SimContext enterNewContext(int index) {
+		SimContext context = new SimContext(index);
+		SimContext.enter(context);
+		Settings.setRunIndex(index);
+		DTNSim.resetForNextRun();
+		return context;
+	}
+
+	/**
+	 * Runs the simulation until the end time or until one of the stacks
+	 * fails
+	 */
+	private void runSim() {
+		SimContext.enter(this.contactContext);
+		SimScenario scen = SimScenario.getInstance();
+		double endTime = scen.getEndTime();
+		ExecutorService pool = null;
+		if (nrofThreads > 1 && stacks.size() > 1) {
+			pool = Executors.newFixedThreadPool(
+					Math.min(nrofThreads, stacks.size()));
+		}
+
+		print("Running simulation '" + scen.getName() + "' with " +
+				stacks.size() + " router stacks");
+		long startTime = System.currentTimeMillis();
+		long lastUpdateRt = startTime;
+		double lastUpdate = SimClock.getTime();
+
+		try {
+			while (SimClock.getTime() < endTime) {
+				this.contactWorld.update();
+				updateStacks(pool);
+				this.links.clear();
+
+				long now = System.currentTimeMillis();
+				if (now - lastUpdateRt > UI_UP_INTERVAL) {
+					lastUpdate = printProgress(startTime, lastUpdateRt,
+							lastUpdate);
+					lastUpdateRt = now;
+				}
+			}
+		}
+		finally {
+			if (pool != null) {
+				pool.shutdown();
+			}
+		}
+
+		Settings.flushOutput(); // contact phase settings
+		for (Stack stack : stacks) {
+			SimContext.enter(stack.context);
+			stack.done();
+			Settings.flushOutput();
+		}
+		SimContext.enter(this.contactContext);
+		printProgress(startTime, lastUpdateRt, lastUpdate);
+		SimContext.exit();
+
+		double duration = (System.currentTimeMillis() - startTime)/1000.0;
+		print("Simulation done in " + String.format("%.2f", duration) + "s");
+	}
+
+	/**
+	 * Updates all the stacks once, using the thread pool if there is one
+	 * @param pool The thread pool or null to update the stacks one by one
+	 */
+	private void updateStacks(ExecutorService pool) {
+		if (pool == null) {
+			for (Stack stack : stacks) {
+				stack.update();
+			}
+			SimContext.enter(this.contactContext);
+			return;
+		}
+
+		List<Future<?>> updates = new ArrayList<Future<?>>(stacks.size());
+		for (final Stack stack : stacks) {
+			updates.add(pool.submit(new Runnable() {
+				public void run() {
+					stack.update();
+				}
+			}));
+		}
+		for (Future<?> update : updates) {
+			try {
+				update.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new SimError("Interrupted while updating the stacks");
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof Error) {
+					throw (Error)e.getCause();
+				}
+				throw new SimError("Router stack update failed: " +
+						e.getCause(), (Exception)e.getCause());
+			}
+		}
+	}
+
+	/**
+	 * Prints the simulation progress
+	 * @param startTime Real time when the simulation was started
+	 * @param lastUpdateRt Real time of the previous progress print
+	 * @param lastUpdate Simulation time of the previous progress print
+	 * @return The current simulation time
+	 */
+	private double printProgress(long startTime, long lastUpdateRt,
+			double lastUpdate) {
+		long now = System.currentTimeMillis();
+		double dur = (now - startTime)/1000.0;
+		double ssps = ((SimClock.getTime() - lastUpdate)*1000) /
+			Math.max(1, now - lastUpdateRt);
+		print(String.format("%.1f %d: %.2f 1/s", dur,
+				SimClock.getIntTime(), ssps));
+		return SimClock.getTime();
+	}
+
+	private void print(String txt) {
+		System.out.println(txt);
+	}
+
+	/**
+	 * One router stack: the world, hosts, routers and reports of one run
+	 */
+	private static class Stack extends DTNSimUI {
+		/** context of the stack's run */
+		private final SimContext context;
+
+		/**
+		 * Creates a new stack and its context and enters the context
+		 * @param index Run index of the stack
+		 */
+		private Stack(int index) {
+			this.context = enterNewContext(index);
+		}
+
+		/**
+		 * Creates the scenario and the reports of the stack and makes its
+		 * world follow the contact world
+		 * @param contactWorld The contact world
+		 * @param links Feed of the contact world's link changes
+		 */
+		private void init(World contactWorld, LinkFeed links) {
+			this.scen = SimScenario.getInstance();
+			addReports(new Settings());
+			this.world = this.scen.getWorld();
+			this.world.follow(contactWorld, links);
+		}
+
+		/**
+		 * Updates the stack's world in the stack's context
+		 */
+		private void update() {
+			SimContext.enter(this.context);
+			this.world.update();
+		}
+
+		/**
+		 * Stacks are run by the fan-out UI
+		 */
+		protected void runSim() {}
+	}
+}
@@ -26,6 +26,7 @@ public class DTNSimTextUI extends DTNSimUI {
 		
 		while (simTime < endTime && !simCancelled){
 			try {
+				world.skipIdleIntervals(endTime);
 				world.update();
 			} catch (AssertionError e) {
 				e.printStackTrace();
@@ -34,6 +35,9 @@ public class DTNSimTextUI extends DTNSimUI {
 			}
 			simTime = SimClock.getTime();
 			this.update(false);
+			if (simTime < endTime) {
+				checkpointIfDue();
+			}
 		}
 		
 		double duration = (System.currentTimeMillis() - startTime)/1000.0;
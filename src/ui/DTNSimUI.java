@@ -4,10 +4,12 @@
  */
 package ui;
 
+import java.io.File;
 import java.util.Vector;
 
 import report.Report;
 import core.ApplicationListener;
+import core.Checkpoint;
 import core.ConnectionListener;
 import core.MessageListener;
 import core.MovementListener;
@@ -17,6 +19,7 @@ import core.SimClock;
 import core.SimError;
 import core.SimScenario;
 import core.UpdateListener;
+import core.WarmupSnapshot;
 import core.World;
 
 /**
@@ -58,6 +61,10 @@ public abstract class DTNSimUI {
 	protected SimScenario scen;
 	/** simtime of last UI update */
 	protected double lastUpdate;
+	/** how often the simulation state is checkpointed (0 = never) */
+	protected double checkpointInterval;
+	/** simtime of the next checkpoint */
+	protected double nextCheckpoint;
 	
 	/**
 	 * Constructor.
@@ -74,8 +81,60 @@ public abstract class DTNSimUI {
 	 */
 	public void start() {
 		initModel();
+		initCheckpoints();
 		runSim();
 	}
+
+	/**
+	 * Continues a simulation from a checkpoint.
+	 * @param checkpointFile The file where the checkpoint is read from
+	 * @see Checkpoint
+	 */
+	@SuppressWarnings("unchecked")
+	public void resume(File checkpointFile) {
+		try {
+			this.reports = (Vector<Report>)Checkpoint.restore(checkpointFile);
+			this.scen = SimScenario.getInstance();
+			this.world = this.scen.getWorld();
+			initCheckpoints();
+		}
+		catch (SimError er) {
+			System.err.println("Can't resume: " + er.getMessage());
+			System.err.println("Caught at " + er.getStackTrace()[0]);
+			System.exit(-1);
+		}
+		runSim();
+	}
+
+	/**
+	 * Reads the checkpointing settings and sets the time of the first
+	 * checkpoint
+	 */
+	private void initCheckpoints() {
+		Settings s = new Settings(Checkpoint.CHECKPOINT_NS);
+		this.checkpointInterval = 0;
+		if (s.contains(Checkpoint.INTERVAL_S)) {
+			this.checkpointInterval = s.getDouble(Checkpoint.INTERVAL_S);
+		}
+		this.nextCheckpoint = SimClock.getTime() + this.checkpointInterval;
+	}
+
+	/**
+	 * Stores the state of the simulation to the checkpoint file if 
+	 * checkpointing is enabled and the checkpoint interval has passed 
+	 * since the last checkpoint
+	 */
+	protected void checkpointIfDue() {
+		if (this.checkpointInterval <= 0 || 
+				SimClock.getTime() < this.nextCheckpoint) {
+			return;
+		}
+
+		Checkpoint.save(Checkpoint.getFile(), this.reports);
+		while (this.nextCheckpoint <= SimClock.getTime()) {
+			this.nextCheckpoint += this.checkpointInterval;
+		}
+	}
 	
 	/**
 	 * Runs simulation after the model has been initialized.
@@ -90,13 +149,23 @@ public abstract class DTNSimUI {
 				
 		try {
 			settings = new Settings();
+			boolean useSnapshots = WarmupSnapshot.isEnabled() &&
+				!hasMovementReports(settings);
+
+			if (useSnapshots && WarmupSnapshot.restore()) {
+				this.scen = SimScenario.getInstance();
+				this.world = this.scen.getWorld();
+				addReports(settings);
+				return;
+			}
+
+			if (useSnapshots) {
+				WarmupSnapshot.startRecording();
+			}
 			this.scen = SimScenario.getInstance();
 
-			// add reports
-			for (int i=1, n = settings.getInt(NROF_REPORT_S); i<=n; i++){
-				String reportClass = settings.getSetting(REPORT_S + i);
-				addReport((Report)settings.createObject(REPORT_PAC + 
-						reportClass));	
+			if (!useSnapshots) {
+				addReports(settings);
 			}
 
 			double warmupTime = 0;
@@ -110,6 +179,12 @@ public abstract class DTNSimUI {
 
 			this.world = this.scen.getWorld();
 			world.warmupMovementModel(warmupTime);
+
+			if (useSnapshots) {
+				/* reports are left out of the snapshot */
+				WarmupSnapshot.save();
+				addReports(settings);
+			}
 		}
 		catch (SettingsError se) {
 			System.err.println("Can't start: error in configuration file(s)");
@@ -123,6 +198,44 @@ public abstract class DTNSimUI {
 		}		
 	}
 	
+	/**
+	 * Returns true if some of the reports defined in the settings listen
+	 * to movement. Such reports would miss the warm-up movement if the run
+	 * used a warm-up snapshot, so snapshots are not used with them.
+	 * @param settings The settings to read the report classes from
+	 * @return true if a report listens to movement
+	 */
+	private boolean hasMovementReports(Settings settings) {
+		for (int i=1, n = settings.getInt(NROF_REPORT_S); i<=n; i++){
+			String reportClass = settings.getSetting(REPORT_S + i);
+			Class<?> c;
+			try {
+				c = Class.forName(REPORT_PAC + reportClass);
+			} catch (ClassNotFoundException e) {
+				continue; /* reported when the reports are created */
+			}
+			if (MovementListener.class.isAssignableFrom(c)) {
+				System.err.println("Warning: not using warm-up snapshots " +
+						"since report " + reportClass + " listens to " +
+						"movement");
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Creates and adds the reports defined in the settings
+	 * @param settings The settings to read the report classes from
+	 */
+	protected void addReports(Settings settings) {
+		for (int i=1, n = settings.getInt(NROF_REPORT_S); i<=n; i++){
+			String reportClass = settings.getSetting(REPORT_S + i);
+			addReport((Report)settings.createObject(REPORT_PAC + 
+					reportClass));	
+		}
+	}
+	
 	/**
 	 * Runs maintenance jobs that are needed before exiting.
 	 */